@@ -84,21 +84,22 @@
 import org.infinity.resource.bcs.Signatures;
 import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.key.ResourceNameIndex;
 import org.infinity.resource.key.ResourceTreeModel;
 import org.infinity.resource.text.PlainTextResource;
+import org.infinity.search.AttributeIndex;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.search.SearchFrame;
 import org.infinity.updater.UpdateCheck;
 import org.infinity.updater.UpdateInfo;
 import org.infinity.updater.Updater;
 import org.infinity.updater.Utils;
+import org.infinity.util.CacheManager;
 import org.infinity.util.CharsetDetector;
 import org.infinity.util.CreMapCache;
 import org.infinity.util.FileDeletionHook;
-import org.infinity.util.IdsMapCache;
-import org.infinity.util.IniMapCache;
 import org.infinity.util.Misc;
 import org.infinity.util.StringTable;
-import org.infinity.util.Table2daCache;
 import org.infinity.util.io.DlcManager;
 import org.infinity.util.io.FileManager;
 
@@ -876,11 +877,11 @@ private static void clearCache(boolean refreshOnly)
     }
     DlcManager.close();
     FileManager.reset();
-    IdsMapCache.clearCache();
-    IniMapCache.clearCache();
-    Table2daCache.clearCache();
-    CreMapCache.clearCache();
+    CacheManager.clearAll();
+    ResourceNameIndex.clearCache();
     SearchFrame.clearCache();
+    ReferenceIndex.clearCache();
+    AttributeIndex.clearCache();
     StringTable.resetAll();
     ProRef.clearCache();
     Signatures.clearCache();
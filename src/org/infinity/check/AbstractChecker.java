@@ -5,20 +5,29 @@
 package org.infinity.check;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 import org.infinity.NearInfinity;
 import org.infinity.gui.Center;
 import org.infinity.gui.ChildFrame;
+import org.infinity.gui.WindowBlocker;
 import org.infinity.icon.Icons;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.search.AbstractSearcher;
 import org.infinity.search.FileTypeSelector;
+import org.infinity.util.PersistentCache;
 
 /**
  * Base class for selectiong files for check and runs checks in multithreaded mode.
@@ -27,6 +36,9 @@
  */
 public abstract class AbstractChecker extends AbstractSearcher implements ActionListener, Runnable
 {
+  /** Label of the checkbox that enables incremental checks. */
+  static final String INCREMENTAL_LABEL = "Skip unmodified files without errors";
+
   /** The window with checkboxes allowing to configure operation settings before its start. */
   private final ChildFrame settingsWindow;
   /** Selector of file types in which search must be performed. */
@@ -35,29 +47,65 @@ public abstract class AbstractChecker extends AbstractSearcher implements Action
   private final JButton bStart  = new JButton("Check", Icons.getIcon(Icons.ICON_FIND_16));
   /** Button that closes start check dialog. */
   private final JButton bCancel = new JButton("Cancel", Icons.getIcon(Icons.ICON_DELETE_16));
+  /** Checkbox that enables skipping of unmodified resources which passed the previous check. */
+  private final JCheckBox cbIncremental = new JCheckBox(INCREMENTAL_LABEL, true);
 
   /** Key used to save and restore checkbox selection. */
   private final String key;
+  /** Extensions of resources supported by this check. */
+  private final String[] filetypes;
   /** Resources, selected for check. */
   protected List<ResourceEntry> files;
+  /** Results of the current and previous runs. Available while the check is running. */
+  private CheckCache results;
+  /** Resources for which at least one error has been reported by the current run. */
+  private final Set<ResourceEntry> failed = ConcurrentHashMap.newKeySet();
 
   public AbstractChecker(String title, String key, String[] filetypes)
+  {
+    this(title, key, filetypes, true);
+  }
+
+  /**
+   * Creates the checker.
+   *
+   * @param title Title of the settings window
+   * @param key Key used to save and restore checkbox selection
+   * @param filetypes Extensions of resources supported by this check
+   * @param interactive If {@code true}, the settings window is shown and the check is started
+   *        from there. If {@code false}, no window is created and the check is expected to be
+   *        driven by a {@link MultiChecker}
+   */
+  protected AbstractChecker(String title, String key, String[] filetypes, boolean interactive)
   {
     super(CHECK_MULTI_TYPE_FORMAT, NearInfinity.getInstance());
+    this.key = key;
+    this.filetypes = filetypes;
+    if (!interactive) {
+      settingsWindow = null;
+      selector = null;
+      return;
+    }
+
     settingsWindow = new ChildFrame(title, true);
     settingsWindow.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
-    this.key = key;
     selector = new FileTypeSelector("Select files to check:", key, filetypes, null);
 
     final JPanel bpanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
     bpanel.add(bStart);
     bpanel.add(bCancel);
 
+    final JPanel spanel = new JPanel(new BorderLayout());
+    cbIncremental.setToolTipText("Resources which passed the previous check and have not been modified " +
+                                 "since then are not checked again.");
+    spanel.add(cbIncremental, BorderLayout.NORTH);
+    spanel.add(bpanel, BorderLayout.SOUTH);
+
     final JPanel pane = (JPanel)settingsWindow.getContentPane();
     pane.setLayout(new BorderLayout());
     pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
     pane.add(selector, BorderLayout.CENTER);
-    pane.add(bpanel, BorderLayout.SOUTH);
+    pane.add(spanel, BorderLayout.SOUTH);
 
     bStart.setMnemonic('s');
     bCancel.setMnemonic('c');
@@ -70,6 +118,127 @@ public AbstractChecker(String title, String key, String[] filetypes)
     settingsWindow.setVisible(true);
   }
 
+  /**
+   * Creates a checker without settings window. The check is either started by
+   * {@link #startCheck(List)} or driven by a {@link MultiChecker}.
+   *
+   * @param key Key used to store results of previous runs
+   * @param filetypes Extensions of resources supported by this check
+   * @param parent GUI component that owns the check
+   */
+  protected AbstractChecker(String key, String[] filetypes, Component parent)
+  {
+    super(CHECK_MULTI_TYPE_FORMAT, parent);
+    this.key = key;
+    this.filetypes = filetypes;
+    this.settingsWindow = null;
+    this.selector = null;
+  }
+
+  /**
+   * Returns whether resources of the specified type are checked by this checker.
+   *
+   * @param extension Resource extension. Never {@code null}
+   */
+  public boolean isSupported(String extension)
+  {
+    return Arrays.stream(filetypes).anyMatch(extension::equalsIgnoreCase);
+  }
+
+  /**
+   * Performs check of the specified resource. This method can be called from several threads.
+   *
+   * @param entry Pointer to resource for check. Never {@code null}
+   * @param resource Parsed resource. May be {@code null} if the resource could not be loaded
+   */
+  protected abstract void check(ResourceEntry entry, Resource resource);
+
+  /** Called once before any resource is checked. Does nothing by default. */
+  protected void prepareCheck() {}
+
+  /**
+   * Called once after all resources have been checked. Presents results of the check to the user.
+   *
+   * @param cancelled {@code true}, if check has been cancelled
+   */
+  protected abstract void finishCheck(boolean cancelled);
+
+  /**
+   * Notifies the checker that at least one error has been found in the specified resource.
+   * Checks must call this method for every reported error, so that the resource is checked
+   * again by subsequent incremental runs. This method can be called from several threads.
+   *
+   * @param entry The resource containing the error.
+   */
+  protected void hitFound(ResourceEntry entry)
+  {
+    failed.add(entry);
+  }
+
+  /**
+   * Prepares results of the check. Called once before any resource is checked.
+   *
+   * @param incremental Whether unmodified resources which passed the previous run are skipped.
+   */
+  void beginCheck(boolean incremental)
+  {
+    failed.clear();
+    results = CheckCache.load(key, incremental);
+    prepareCheck();
+  }
+
+  /**
+   * Stores results of the check. Called once after all resources have been checked.
+   *
+   * @param cancelled {@code true}, if check has been cancelled
+   */
+  void endCheck(boolean cancelled)
+  {
+    results.store();
+    results = null;
+    failed.clear();
+    finishCheck(cancelled);
+  }
+
+  /**
+   * Returns whether the specified resource has to be checked.
+   *
+   * @param entry The resource.
+   * @param stamp Current {@link PersistentCache#getStamp(ResourceEntry) stamp} of the resource.
+   */
+  boolean needsCheck(ResourceEntry entry, long stamp)
+  {
+    return results == null || !results.isClean(entry, stamp);
+  }
+
+  /**
+   * Checks the specified resource and records the result.
+   *
+   * @param entry The resource.
+   * @param stamp {@link PersistentCache#getStamp(ResourceEntry) Stamp} of the resource.
+   * @param resource Parsed resource. May be {@code null} if the resource could not be loaded
+   */
+  void checkResource(ResourceEntry entry, long stamp, Resource resource)
+  {
+    check(entry, resource);
+    final boolean clean = !failed.remove(entry) && resource != null;
+    if (results != null) {
+      results.setResult(entry, stamp, clean);
+    }
+  }
+
+  @Override
+  protected Runnable newWorker(ResourceEntry entry)
+  {
+    return () -> {
+      final long stamp = PersistentCache.getStamp(entry);
+      if (needsCheck(entry, stamp)) {
+        checkResource(entry, stamp, ResourceFactory.getResource(entry));
+      }
+      advanceProgress();
+    };
+  }
+
   /**
    * Runs check that {@link #newWorker spawns} working items that performs actual
    * checking.
@@ -84,6 +253,38 @@ protected boolean runCheck(List<ResourceEntry> entries)
     return runSearch("Checking", entries);
   }
 
+  /**
+   * Starts a full check of the specified resources in a background thread. Used by checks without
+   * settings window. The main window is blocked while the check is running.
+   *
+   * @param entries Entries for check
+   */
+  protected void startCheck(List<ResourceEntry> entries)
+  {
+    files = entries;
+    cbIncremental.setSelected(false);
+    new Thread(this).start();
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Runnable">
+  @Override
+  public void run()
+  {
+    final WindowBlocker blocker = (settingsWindow == null) ? new WindowBlocker(NearInfinity.getInstance()) : null;
+    if (blocker != null) {
+      blocker.setBlocked(true);
+    }
+    try {
+      beginCheck(cbIncremental.isSelected());
+      endCheck(runCheck(files));
+    } finally {
+      if (blocker != null) {
+        blocker.setBlocked(false);
+      }
+    }
+  }
+  //</editor-fold>
+
   //<editor-fold defaultstate="collapsed" desc="ActionListener">
   @Override
   public void actionPerformed(ActionEvent event)
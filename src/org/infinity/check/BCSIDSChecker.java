@@ -30,29 +30,38 @@
 import org.infinity.gui.SortableTable;
 import org.infinity.gui.TableItem;
 import org.infinity.gui.ViewFrame;
-import org.infinity.gui.WindowBlocker;
 import org.infinity.icon.Icons;
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.bcs.BcsResource;
-import org.infinity.resource.bcs.Decompiler;
-import org.infinity.resource.bcs.ScriptType;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.search.AbstractSearcher;
 import org.infinity.util.Misc;
 
 /** Performs checking {@link BcsResource BCS} & {@code BS} resources. */
-public final class BCSIDSChecker extends AbstractSearcher implements Runnable, ActionListener, ListSelectionListener
+public final class BCSIDSChecker extends AbstractChecker implements ActionListener, ListSelectionListener
 {
+  static final String[] FILETYPES = {"BCS", "BS"};
+
   private ChildFrame resultFrame;
   private JButton bopen, bopennew, bsave;
   /** List of the {@link BCSIDSErrorTableLine} objects. */
-  private SortableTable table;
+  private final SortableTable table = new SortableTable(new String[]{"File", "Error message", "Line"},
+                                                        new Class<?>[]{ResourceEntry.class, String.class, Integer.class},
+                                                        new Integer[]{100, 300, 50});
 
   public BCSIDSChecker(Component parent)
   {
-    super(CHECK_ONE_TYPE_FORMAT, parent);
-    new Thread(this).start();
+    super("BCSIDSChecker", FILETYPES, parent);
+    final List<ResourceEntry> bcsFiles = ResourceFactory.getResources("BCS");
+    bcsFiles.addAll(ResourceFactory.getResources("BS"));
+    startCheck(bcsFiles);
+  }
+
+  /** Creates the checker without starting the check. Used by {@link MultiChecker}. */
+  BCSIDSChecker()
+  {
+    super("BCSIDSChecker", FILETYPES, NearInfinity.getInstance());
   }
 
 // --------------------- Begin Interface ActionListener ---------------------
@@ -98,101 +107,83 @@ public void valueChanged(ListSelectionEvent event)
 
 // --------------------- End Interface ListSelectionListener ---------------------
 
-
-// --------------------- Begin Interface Runnable ---------------------
-
   @Override
-  public void run()
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    final WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
-    blocker.setBlocked(true);
-    try {
-      final List<ResourceEntry> bcsFiles = ResourceFactory.getResources("BCS");
-      bcsFiles.addAll(ResourceFactory.getResources("BS"));
-
-      table = new SortableTable(new String[]{"File", "Error message", "Line"},
-                                new Class<?>[]{ResourceEntry.class, String.class, Integer.class},
-                                new Integer[]{100, 300, 50});
-
-      if (runSearch("Checking", bcsFiles)) {
-        return;
-      }
-
-      if (table.getRowCount() == 0) {
-        JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No unknown references found",
-                                      "Info", JOptionPane.INFORMATION_MESSAGE);
-      } else {
-        table.tableComplete();
-        resultFrame = new ChildFrame("Result", true);
-        resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
-        bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
-        bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
-        bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
-        JLabel count = new JLabel(table.getRowCount() + " hits(s) found", JLabel.CENTER);
-        count.setFont(count.getFont().deriveFont((float)count.getFont().getSize() + 2.0f));
-        bopen.setMnemonic('o');
-        bopennew.setMnemonic('n');
-        bsave.setMnemonic('s');
-        resultFrame.getRootPane().setDefaultButton(bopennew);
-        JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        panel.add(bopen);
-        panel.add(bopennew);
-        panel.add(bsave);
-        JScrollPane scrollTable = new JScrollPane(table);
-        scrollTable.getViewport().setBackground(table.getBackground());
-        JPanel pane = (JPanel)resultFrame.getContentPane();
-        pane.setLayout(new BorderLayout(0, 3));
-        pane.add(count, BorderLayout.NORTH);
-        pane.add(scrollTable, BorderLayout.CENTER);
-        pane.add(panel, BorderLayout.SOUTH);
-        bopen.setEnabled(false);
-        bopennew.setEnabled(false);
-        table.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
-        table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 1);
-        table.getSelectionModel().addListSelectionListener(this);
-        table.addMouseListener(new MouseAdapter()
-        {
-          @Override
-          public void mouseReleased(MouseEvent event)
-          {
-            if (event.getClickCount() == 2) {
-              int row = table.getSelectedRow();
-              if (row != -1) {
-                ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
-                Resource resource = ResourceFactory.getResource(resourceEntry);
-                new ViewFrame(resultFrame, resource);
-              }
-            }
-          }
-        });
-        bopen.addActionListener(this);
-        bopennew.addActionListener(this);
-        bsave.addActionListener(this);
-        pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
-        resultFrame.pack();
-        Center.center(resultFrame, NearInfinity.getInstance().getBounds());
-        resultFrame.setVisible(true);
+    if (resource instanceof BcsResource) {
+      try {
+        checkScript((BcsResource)resource);
+      } catch (Exception e) {
+        synchronized (System.err) {
+          e.printStackTrace();
+        }
+        hitFound(entry);
       }
-    } finally {
-      blocker.setBlocked(false);
     }
   }
 
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void finishCheck(boolean cancelled)
   {
-    return () -> {
-      try {
-        checkScript(new BcsResource(entry));
-      } catch (Exception e) {
-        synchronized (System.err) {
-          e.printStackTrace();
+    if (cancelled) {
+      return;
+    }
+
+    if (table.getRowCount() == 0) {
+      JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No unknown references found",
+                                    "Info", JOptionPane.INFORMATION_MESSAGE);
+    } else {
+      table.tableComplete();
+      resultFrame = new ChildFrame("Result", true);
+      resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
+      bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
+      bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
+      bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
+      JLabel count = new JLabel(table.getRowCount() + " hits(s) found", JLabel.CENTER);
+      count.setFont(count.getFont().deriveFont((float)count.getFont().getSize() + 2.0f));
+      bopen.setMnemonic('o');
+      bopennew.setMnemonic('n');
+      bsave.setMnemonic('s');
+      resultFrame.getRootPane().setDefaultButton(bopennew);
+      JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+      panel.add(bopen);
+      panel.add(bopennew);
+      panel.add(bsave);
+      JScrollPane scrollTable = new JScrollPane(table);
+      scrollTable.getViewport().setBackground(table.getBackground());
+      JPanel pane = (JPanel)resultFrame.getContentPane();
+      pane.setLayout(new BorderLayout(0, 3));
+      pane.add(count, BorderLayout.NORTH);
+      pane.add(scrollTable, BorderLayout.CENTER);
+      pane.add(panel, BorderLayout.SOUTH);
+      bopen.setEnabled(false);
+      bopennew.setEnabled(false);
+      table.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
+      table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 1);
+      table.getSelectionModel().addListSelectionListener(this);
+      table.addMouseListener(new MouseAdapter()
+      {
+        @Override
+        public void mouseReleased(MouseEvent event)
+        {
+          if (event.getClickCount() == 2) {
+            int row = table.getSelectedRow();
+            if (row != -1) {
+              ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
+              Resource resource = ResourceFactory.getResource(resourceEntry);
+              new ViewFrame(resultFrame, resource);
+            }
+          }
         }
-      }
-      advanceProgress();
-    };
+      });
+      bopen.addActionListener(this);
+      bopennew.addActionListener(this);
+      bsave.addActionListener(this);
+      pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+      resultFrame.pack();
+      Center.center(resultFrame, NearInfinity.getInstance().getBounds());
+      resultFrame.setVisible(true);
+    }
   }
 
   /**
@@ -204,11 +195,8 @@ protected Runnable newWorker(ResourceEntry entry)
    */
   private void checkScript(BcsResource script) throws Exception
   {
-    final Decompiler decompiler = new Decompiler(script.getCode(), ScriptType.BCS, true);
-    decompiler.setGenerateComments(false);
-    decompiler.setGenerateResourcesUsed(true);
-    decompiler.decompile();
-    for (final Map.Entry<Integer, String> e : decompiler.getIdsErrors().entrySet()) {
+    final ScriptCache.Script decompiled = ScriptCache.get(script.getResourceEntry(), script.getCode(), false);
+    for (final Map.Entry<Integer, String> e : decompiled.getIdsErrors().entrySet()) {
       final Integer lineNr = e.getKey();
       final String error = e.getValue();
       if (!error.contains("GTIMES.IDS") &&
@@ -219,6 +207,7 @@ private void checkScript(BcsResource script) throws Exception
         synchronized (table) {
           table.addTableItem(new BCSIDSErrorTableLine(script.getResourceEntry(), error, lineNr));
         }
+        hitFound(script.getResourceEntry());
       }
     }
   }
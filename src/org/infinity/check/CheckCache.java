@@ -0,0 +1,179 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.check;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.infinity.resource.Profile;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.PersistentCache;
+import org.infinity.util.StringTable;
+
+/**
+ * Remembers the resources which passed a check without any errors. A resource is skipped by
+ * subsequent runs of the same check as long as neither the {@link PersistentCache#getStamp(ResourceEntry)
+ * resource stamp} nor the stamp of the global data the checks depend on (IDS and 2DA resources,
+ * talk tables, game folders) have changed. Resources with errors are always checked again,
+ * so their results are reported as before.
+ */
+final class CheckCache
+{
+  private static final int CACHE_MAGIC = 0x4e494343;  // "NICC"
+  private static final int CACHE_VERSION = 1;
+
+  /** Name of the cache file. */
+  private final String fileName;
+  /** Stamp of the global data at the time the check was started. */
+  private final long dependencyStamp;
+  /** Resource stamps of resources without errors, by upper-cased resource name. */
+  private final Map<String, Long> cleanResources = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the cache of the specified check.
+   *
+   * @param key Key of the check.
+   * @param restore Whether results of previous runs should be restored. A new empty cache is returned otherwise.
+   */
+  public static CheckCache load(String key, boolean restore)
+  {
+    final CheckCache cache = new CheckCache(key);
+    if (restore) {
+      cache.load();
+    }
+    return cache;
+  }
+
+  /** Returns the stamp of all global data which may affect the results of a check. */
+  private static long getDependencyStamp()
+  {
+    final List<Path> paths = new ArrayList<>(Profile.getOverrideFolders(true));
+    paths.add(Profile.getChitinKey());
+    paths.add(Profile.getProperty(Profile.Key.GET_GAME_DIALOG_FILE));
+    paths.add(Profile.getProperty(Profile.Key.GET_GAME_DIALOGF_FILE));
+    long stamp = 17L;
+    for (final Path path : paths) {
+      try {
+        if (path != null && Files.exists(path)) {
+          stamp = stamp * 31L + Files.getLastModifiedTime(path).toMillis();
+          stamp = stamp * 31L + Files.size(path);
+        }
+      } catch (IOException e) {
+        // file not available
+      }
+    }
+    stamp = stamp * 31L + StringTable.getNumEntries();
+    for (final String type : new String[]{"IDS", "2DA"}) {
+      for (final ResourceEntry entry : ResourceFactory.getResources(type)) {
+        stamp = stamp * 31L + entry.getResourceName().hashCode();
+        stamp = stamp * 31L + PersistentCache.getStamp(entry);
+      }
+    }
+    return (stamp != 0L) ? stamp : 1L;
+  }
+
+  private static String getKey(ResourceEntry entry)
+  {
+    return entry.getResourceName().toUpperCase(Locale.ENGLISH);
+  }
+
+  private CheckCache(String key)
+  {
+    this.fileName = "check_" + key + ".dat";
+    this.dependencyStamp = getDependencyStamp();
+  }
+
+  /**
+   * Returns whether the specified resource passed the check in a previous run and has not
+   * been modified since then.
+   *
+   * @param entry The resource.
+   * @param stamp Current stamp of the resource.
+   */
+  public boolean isClean(ResourceEntry entry, long stamp)
+  {
+    final Long cleanStamp = (stamp != 0L) ? cleanResources.get(getKey(entry)) : null;
+    return (cleanStamp != null && cleanStamp.longValue() == stamp);
+  }
+
+  /**
+   * Records the result of a check. This method can be called from several threads.
+   *
+   * @param entry The checked resource.
+   * @param stamp Stamp of the resource at the time it was checked.
+   * @param clean Whether the resource passed the check without errors.
+   */
+  public void setResult(ResourceEntry entry, long stamp, boolean clean)
+  {
+    if (clean && stamp != 0L) {
+      cleanResources.put(getKey(entry), Long.valueOf(stamp));
+    } else {
+      cleanResources.remove(getKey(entry));
+    }
+  }
+
+  /** Writes the cache to disk. */
+  public void store()
+  {
+    final Path file = PersistentCache.getFile(fileName);
+    if (file == null) {
+      return;
+    }
+
+    final Path tmpFile = file.resolveSibling(fileName + ".tmp");
+    try {
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        final Map<String, Long> snapshot = new HashMap<>(cleanResources);
+        dos.writeInt(CACHE_MAGIC);
+        dos.writeInt(CACHE_VERSION);
+        dos.writeLong(dependencyStamp);
+        dos.writeInt(snapshot.size());
+        for (final Map.Entry<String, Long> e : snapshot.entrySet()) {
+          dos.writeUTF(e.getKey());
+          dos.writeLong(e.getValue().longValue());
+        }
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /** Restores results of previous runs. Results are discarded if global data has changed. */
+  private void load()
+  {
+    final Path file = PersistentCache.getFile(fileName);
+    if (file == null || !Files.isRegularFile(file)) {
+      return;
+    }
+
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (dis.readInt() != CACHE_MAGIC || dis.readInt() != CACHE_VERSION ||
+          dis.readLong() != dependencyStamp) {
+        return;
+      }
+      for (int i = 0, count = dis.readInt(); i < count; i++) {
+        final String key = dis.readUTF();
+        cleanResources.put(key, Long.valueOf(dis.readLong()));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      cleanResources.clear();
+    }
+  }
+}
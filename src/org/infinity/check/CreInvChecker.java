@@ -31,7 +31,6 @@
 import org.infinity.gui.SortableTable;
 import org.infinity.gui.TableItem;
 import org.infinity.gui.ViewFrame;
-import org.infinity.gui.WindowBlocker;
 import org.infinity.icon.Icons;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
@@ -40,21 +39,32 @@
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.cre.Item;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.search.AbstractSearcher;
 import org.infinity.util.Misc;
 
 /** Performs checking {@link CreResource CRE} & {@code CHR} resources. */
-public final class CreInvChecker extends AbstractSearcher implements Runnable, ActionListener, ListSelectionListener
+public final class CreInvChecker extends AbstractChecker implements ActionListener, ListSelectionListener
 {
+  static final String[] FILETYPES = {"CRE", "CHR"};
+
   private ChildFrame resultFrame;
   private JButton bopen, bopennew, bsave;
   /** List of the {@link CreInvError} objects. */
-  private SortableTable table;
+  private final SortableTable table = new SortableTable(new String[]{"File", "Name", "Item"},
+                                                        new Class<?>[]{ResourceEntry.class, String.class, Item.class},
+                                                        new Integer[]{100, 100, 200});
 
   public CreInvChecker(Component parent)
   {
-    super(CHECK_ONE_TYPE_FORMAT, parent);
-    new Thread(this).start();
+    super("CreInvChecker", FILETYPES, parent);
+    final List<ResourceEntry> creFiles = ResourceFactory.getResources("CRE");
+    creFiles.addAll(ResourceFactory.getResources("CHR"));
+    startCheck(creFiles);
+  }
+
+  /** Creates the checker without starting the check. Used by {@link MultiChecker}. */
+  CreInvChecker()
+  {
+    super("CreInvChecker", FILETYPES, NearInfinity.getInstance());
   }
 
 // --------------------- Begin Interface ActionListener ---------------------
@@ -98,101 +108,83 @@ public void valueChanged(ListSelectionEvent event)
 
 // --------------------- End Interface ListSelectionListener ---------------------
 
-
-// --------------------- Begin Interface Runnable ---------------------
-
   @Override
-  public void run()
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    final WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
-    blocker.setBlocked(true);
-    try {
-      final List<ResourceEntry> creFiles = ResourceFactory.getResources("CRE");
-      creFiles.addAll(ResourceFactory.getResources("CHR"));
-
-      table = new SortableTable(new String[]{"File", "Name", "Item"},
-                                new Class<?>[]{ResourceEntry.class, String.class, Item.class},
-                                new Integer[]{100, 100, 200});
-
-      if (runSearch("Checking inventories", creFiles)) {
-        return;
-      }
-
-      if (table.getRowCount() == 0) {
-        JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No hits found",
-                                      "Info", JOptionPane.INFORMATION_MESSAGE);
-      } else {
-        resultFrame = new ChildFrame("Result of CRE inventory check", true);
-        resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
-        bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
-        bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
-        bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
-        JLabel count = new JLabel(table.getRowCount() + " hit(s) found", JLabel.CENTER);
-        count.setFont(count.getFont().deriveFont((float)count.getFont().getSize() + 2.0f));
-        bopen.setMnemonic('o');
-        bopennew.setMnemonic('n');
-        bsave.setMnemonic('s');
-        resultFrame.getRootPane().setDefaultButton(bopennew);
-        JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        panel.add(bopen);
-        panel.add(bopennew);
-        panel.add(bsave);
-        JScrollPane scrollTable = new JScrollPane(table);
-        scrollTable.getViewport().setBackground(table.getBackground());
-        JPanel pane = (JPanel)resultFrame.getContentPane();
-        pane.setLayout(new BorderLayout(0, 3));
-        pane.add(count, BorderLayout.NORTH);
-        pane.add(scrollTable, BorderLayout.CENTER);
-        pane.add(panel, BorderLayout.SOUTH);
-        bopen.setEnabled(false);
-        bopennew.setEnabled(false);
-        table.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
-        table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 1);
-        table.getSelectionModel().addListSelectionListener(this);
-        table.addMouseListener(new MouseAdapter()
-        {
-          @Override
-          public void mouseReleased(MouseEvent event)
-          {
-            if (event.getClickCount() == 2) {
-              int row = table.getSelectedRow();
-              if (row != -1) {
-                ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
-                Resource resource = ResourceFactory.getResource(resourceEntry);
-                new ViewFrame(resultFrame, resource);
-                ((AbstractStruct)resource).getViewer().selectEntry((String)table.getValueAt(row, 1));
-              }
-            }
-          }
-        });
-        bopen.addActionListener(this);
-        bopennew.addActionListener(this);
-        bsave.addActionListener(this);
-        pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
-        resultFrame.pack();
-        Center.center(resultFrame, NearInfinity.getInstance().getBounds());
-        resultFrame.setVisible(true);
+    if (resource instanceof CreResource) {
+      try {
+        checkCreature((CreResource)resource);
+      } catch (Exception e) {
+        synchronized (System.err) {
+          e.printStackTrace();
+        }
+        hitFound(entry);
       }
-    } finally {
-      blocker.setBlocked(false);
     }
   }
 
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void finishCheck(boolean cancelled)
   {
-    return () -> {
-      try {
-        checkCreature(new CreResource(entry));
-      } catch (Exception e) {
-        synchronized (System.err) {
-          e.printStackTrace();
+    if (cancelled) {
+      return;
+    }
+
+    if (table.getRowCount() == 0) {
+      JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No hits found",
+                                    "Info", JOptionPane.INFORMATION_MESSAGE);
+    } else {
+      resultFrame = new ChildFrame("Result of CRE inventory check", true);
+      resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
+      bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
+      bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
+      bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
+      JLabel count = new JLabel(table.getRowCount() + " hit(s) found", JLabel.CENTER);
+      count.setFont(count.getFont().deriveFont((float)count.getFont().getSize() + 2.0f));
+      bopen.setMnemonic('o');
+      bopennew.setMnemonic('n');
+      bsave.setMnemonic('s');
+      resultFrame.getRootPane().setDefaultButton(bopennew);
+      JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+      panel.add(bopen);
+      panel.add(bopennew);
+      panel.add(bsave);
+      JScrollPane scrollTable = new JScrollPane(table);
+      scrollTable.getViewport().setBackground(table.getBackground());
+      JPanel pane = (JPanel)resultFrame.getContentPane();
+      pane.setLayout(new BorderLayout(0, 3));
+      pane.add(count, BorderLayout.NORTH);
+      pane.add(scrollTable, BorderLayout.CENTER);
+      pane.add(panel, BorderLayout.SOUTH);
+      bopen.setEnabled(false);
+      bopennew.setEnabled(false);
+      table.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
+      table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 1);
+      table.getSelectionModel().addListSelectionListener(this);
+      table.addMouseListener(new MouseAdapter()
+      {
+        @Override
+        public void mouseReleased(MouseEvent event)
+        {
+          if (event.getClickCount() == 2) {
+            int row = table.getSelectedRow();
+            if (row != -1) {
+              ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
+              Resource resource = ResourceFactory.getResource(resourceEntry);
+              new ViewFrame(resultFrame, resource);
+              ((AbstractStruct)resource).getViewer().selectEntry((String)table.getValueAt(row, 1));
+            }
+          }
         }
-      }
-      advanceProgress();
-    };
+      });
+      bopen.addActionListener(this);
+      bopennew.addActionListener(this);
+      bsave.addActionListener(this);
+      pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+      resultFrame.pack();
+      Center.center(resultFrame, NearInfinity.getInstance().getBounds());
+      resultFrame.setVisible(true);
+    }
   }
 
   private void checkCreature(CreResource cre)
@@ -221,6 +213,7 @@ private void checkCreature(CreResource cre)
         synchronized (table) {
           table.addTableItem(new CreInvError(cre.getResourceEntry(), item));
         }
+        hitFound(cre.getResourceEntry());
       }
     }
   }
@@ -33,7 +33,6 @@
 import org.infinity.gui.SortableTable;
 import org.infinity.gui.TableItem;
 import org.infinity.gui.ViewFrame;
-import org.infinity.gui.WindowBlocker;
 import org.infinity.icon.Icons;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
@@ -48,26 +47,45 @@
 import org.infinity.resource.dlg.State;
 import org.infinity.resource.dlg.Transition;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.search.AbstractSearcher;
 import org.infinity.util.Misc;
 
 /** Performs checking {@link DlgResource DLG} resources. */
-public final class DialogChecker extends AbstractSearcher implements Runnable, ActionListener, ListSelectionListener, ChangeListener
+public final class DialogChecker extends AbstractChecker implements ActionListener, ListSelectionListener, ChangeListener
 {
-  private final boolean checkOnlyOverride;
+  static final String[] FILETYPES = {"DLG"};
+
   private ChildFrame resultFrame;
   private JButton bopen, bopennew, bsave;
   private JTabbedPane tabbedPane;
   /** List of the {@link Problem} objects with compiler errors in dialog actions. */
-  private SortableTable errorTable;
+  private final SortableTable errorTable = new SortableTable(
+      new String[]{"Dialogue", "Field", "Error message", "Line"},
+      new Class<?>[]{ResourceEntry.class, String.class, String.class, Integer.class},
+      new Integer[]{50, 100, 350, 10});
   /** List of the {@link Problem} objects with compiler warnings in dialog actions. */
-  private SortableTable warningTable;
+  private final SortableTable warningTable = new SortableTable(
+      new String[]{"Dialogue", "Field", "Warning", "Line"},
+      new Class<?>[]{ResourceEntry.class, String.class, String.class, Integer.class},
+      new Integer[]{50, 100, 350, 10});
 
   public DialogChecker(boolean checkOnlyOverride, Component parent)
   {
-    super(CHECK_ONE_TYPE_FORMAT, parent);
-    this.checkOnlyOverride = checkOnlyOverride;
-    new Thread(this).start();
+    super("DialogChecker", FILETYPES, parent);
+    final List<ResourceEntry> dlgFiles = ResourceFactory.getResources("DLG");
+    if (checkOnlyOverride) {
+      for (Iterator<ResourceEntry> i = dlgFiles.iterator(); i.hasNext();) {
+        ResourceEntry resourceEntry = i.next();
+        if (!resourceEntry.hasOverride())
+          i.remove();
+      }
+    }
+    startCheck(dlgFiles);
+  }
+
+  /** Creates the checker without starting the check. Used by {@link MultiChecker}. */
+  DialogChecker()
+  {
+    super("DialogChecker", FILETYPES, NearInfinity.getInstance());
   }
 
 // --------------------- Begin Interface ActionListener ---------------------
@@ -134,117 +152,12 @@ public void valueChanged(ListSelectionEvent event)
 
 // --------------------- End Interface ListSelectionListener ---------------------
 
-
-// --------------------- Begin Interface Runnable ---------------------
-
-  @Override
-  public void run()
-  {
-    final WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
-    blocker.setBlocked(true);
-    try {
-      final List<ResourceEntry> dlgFiles = ResourceFactory.getResources("DLG");
-      if (checkOnlyOverride) {
-        for (Iterator<ResourceEntry> i = dlgFiles.iterator(); i.hasNext();) {
-          ResourceEntry resourceEntry = i.next();
-          if (!resourceEntry.hasOverride())
-            i.remove();
-        }
-      }
-
-      final Class<?>[] colClasses = {ResourceEntry.class, String.class, String.class, Integer.class};
-      errorTable = new SortableTable(
-          new String[]{"Dialogue", "Field", "Error message", "Line"},
-          colClasses,
-          new Integer[]{50, 100, 350, 10});
-      warningTable = new SortableTable(
-          new String[]{"Dialogue", "Field", "Warning", "Line"},
-          colClasses,
-          new Integer[]{50, 100, 350, 10});
-
-      if (runSearch("Checking dialogues", dlgFiles)) {
-        return;
-      }
-
-      if (errorTable.getRowCount() + warningTable.getRowCount() == 0) {
-        JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No errors or warnings found",
-                                      "Info", JOptionPane.INFORMATION_MESSAGE);
-      } else {
-        errorTable.tableComplete();
-        warningTable.tableComplete();
-        resultFrame = new ChildFrame("Result of dialogues check", true);
-        resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
-        bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
-        bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
-        bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
-        JScrollPane scrollErrorTable = new JScrollPane(errorTable);
-        scrollErrorTable.getViewport().setBackground(errorTable.getBackground());
-        JScrollPane scrollWarningTable = new JScrollPane(warningTable);
-        scrollWarningTable.getViewport().setBackground(warningTable.getBackground());
-        tabbedPane = new JTabbedPane();
-        tabbedPane.addTab("Errors (" + errorTable.getRowCount() + ')', scrollErrorTable);
-        tabbedPane.addTab("Warnings (" + warningTable.getRowCount() + ')', scrollWarningTable);
-        tabbedPane.addChangeListener(this);
-        bopen.setMnemonic('o');
-        bopennew.setMnemonic('n');
-        bsave.setMnemonic('s');
-        resultFrame.getRootPane().setDefaultButton(bopennew);
-        JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        panel.add(bopen);
-        panel.add(bopennew);
-        panel.add(bsave);
-        JPanel pane = (JPanel)resultFrame.getContentPane();
-        pane.setLayout(new BorderLayout(0, 3));
-        pane.add(tabbedPane, BorderLayout.CENTER);
-        pane.add(panel, BorderLayout.SOUTH);
-        bopen.setEnabled(false);
-        bopennew.setEnabled(false);
-        errorTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
-        errorTable.setRowHeight(errorTable.getFontMetrics(errorTable.getFont()).getHeight() + 1);
-        errorTable.getSelectionModel().addListSelectionListener(this);
-        warningTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
-        warningTable.setRowHeight(warningTable.getFontMetrics(warningTable.getFont()).getHeight() + 1);
-        warningTable.getSelectionModel().addListSelectionListener(this);
-        MouseListener listener = new MouseAdapter()
-        {
-          @Override
-          public void mouseReleased(MouseEvent event)
-          {
-            if (event.getClickCount() == 2) {
-              SortableTable table = (SortableTable)event.getSource();
-              int row = table.getSelectedRow();
-              if (row != -1) {
-                ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
-                Resource resource = ResourceFactory.getResource(resourceEntry);
-                new ViewFrame(resultFrame, resource);
-                ((AbstractStruct)resource).getViewer().selectEntry((String)table.getValueAt(row, 1));
-              }
-            }
-          }
-        };
-        errorTable.addMouseListener(listener);
-        warningTable.addMouseListener(listener);
-        bopen.addActionListener(this);
-        bopennew.addActionListener(this);
-        bsave.addActionListener(this);
-        pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
-        resultFrame.setSize(700, 600);
-        Center.center(resultFrame, NearInfinity.getInstance().getBounds());
-        resultFrame.setVisible(true);
-      }
-    } finally {
-      blocker.setBlocked(false);
-    }
-  }
-
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    return () -> {
+    if (resource instanceof DlgResource) {
       try {
-        final DlgResource dialog = new DlgResource(entry);
+        final DlgResource dialog = (DlgResource)resource;
         for (final StructEntry o : dialog.getFields()) {
           if (o instanceof AbstractCode) {
             checkCode(entry, (AbstractCode)o);
@@ -257,9 +170,84 @@ protected Runnable newWorker(ResourceEntry entry)
         synchronized (System.err) {
           e.printStackTrace();
         }
+        hitFound(entry);
       }
-      advanceProgress();
-    };
+    }
+  }
+
+  @Override
+  protected void finishCheck(boolean cancelled)
+  {
+    if (cancelled) {
+      return;
+    }
+
+    if (errorTable.getRowCount() + warningTable.getRowCount() == 0) {
+      JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No errors or warnings found",
+                                    "Info", JOptionPane.INFORMATION_MESSAGE);
+    } else {
+      errorTable.tableComplete();
+      warningTable.tableComplete();
+      resultFrame = new ChildFrame("Result of dialogues check", true);
+      resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
+      bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
+      bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
+      bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
+      JScrollPane scrollErrorTable = new JScrollPane(errorTable);
+      scrollErrorTable.getViewport().setBackground(errorTable.getBackground());
+      JScrollPane scrollWarningTable = new JScrollPane(warningTable);
+      scrollWarningTable.getViewport().setBackground(warningTable.getBackground());
+      tabbedPane = new JTabbedPane();
+      tabbedPane.addTab("Errors (" + errorTable.getRowCount() + ')', scrollErrorTable);
+      tabbedPane.addTab("Warnings (" + warningTable.getRowCount() + ')', scrollWarningTable);
+      tabbedPane.addChangeListener(this);
+      bopen.setMnemonic('o');
+      bopennew.setMnemonic('n');
+      bsave.setMnemonic('s');
+      resultFrame.getRootPane().setDefaultButton(bopennew);
+      JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+      panel.add(bopen);
+      panel.add(bopennew);
+      panel.add(bsave);
+      JPanel pane = (JPanel)resultFrame.getContentPane();
+      pane.setLayout(new BorderLayout(0, 3));
+      pane.add(tabbedPane, BorderLayout.CENTER);
+      pane.add(panel, BorderLayout.SOUTH);
+      bopen.setEnabled(false);
+      bopennew.setEnabled(false);
+      errorTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
+      errorTable.setRowHeight(errorTable.getFontMetrics(errorTable.getFont()).getHeight() + 1);
+      errorTable.getSelectionModel().addListSelectionListener(this);
+      warningTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
+      warningTable.setRowHeight(warningTable.getFontMetrics(warningTable.getFont()).getHeight() + 1);
+      warningTable.getSelectionModel().addListSelectionListener(this);
+      MouseListener listener = new MouseAdapter()
+      {
+        @Override
+        public void mouseReleased(MouseEvent event)
+        {
+          if (event.getClickCount() == 2) {
+            SortableTable table = (SortableTable)event.getSource();
+            int row = table.getSelectedRow();
+            if (row != -1) {
+              ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
+              Resource resource = ResourceFactory.getResource(resourceEntry);
+              new ViewFrame(resultFrame, resource);
+              ((AbstractStruct)resource).getViewer().selectEntry((String)table.getValueAt(row, 1));
+            }
+          }
+        }
+      };
+      errorTable.addMouseListener(listener);
+      warningTable.addMouseListener(listener);
+      bopen.addActionListener(this);
+      bopennew.addActionListener(this);
+      bsave.addActionListener(this);
+      pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+      resultFrame.setSize(700, 600);
+      Center.center(resultFrame, NearInfinity.getInstance().getBounds());
+      resultFrame.setVisible(true);
+    }
   }
 
   /**
@@ -286,6 +274,9 @@ private void checkCode(ResourceEntry entry, AbstractCode code) {
         ));
       }
     }
+    if (!compiler.getErrors().isEmpty() || !compiler.getWarnings().isEmpty()) {
+      hitFound(entry);
+    }
   }
 
   /**
@@ -333,6 +324,7 @@ private void checkState(DlgResource dlg, State state)
         synchronized (errorTable) {
           errorTable.addTableItem(new Problem(dlg.getResourceEntry(), t, null, message, Problem.Type.ERROR));
         }
+        hitFound(dlg.getResourceEntry());
       }
     }
   }
@@ -10,7 +10,6 @@
 import org.infinity.resource.AbstractAbility;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
-import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.spl.SplResource;
@@ -18,40 +17,38 @@
 
 public class EffectsIndexChecker extends AbstractChecker
 {
+  static final String[] FILETYPES = {"ITM", "SPL"};
+
   /** Window with check results. */
   private final ReferenceHitFrame hitFrame;
 
   public EffectsIndexChecker()
   {
-    super("Effects Index Checker", "EffectsIndexChecker",
-          new String[]{"ITM", "SPL"});
-    hitFrame = new ReferenceHitFrame("Mis-indexed Effects", NearInfinity.getInstance());
+    this(true);
   }
 
-// --------------------- Begin Interface Runnable ---------------------
+  EffectsIndexChecker(boolean interactive)
+  {
+    super("Effects Index Checker", "EffectsIndexChecker", FILETYPES, interactive);
+    hitFrame = new ReferenceHitFrame("Mis-indexed Effects", NearInfinity.getInstance());
+  }
 
   @Override
-  public void run()
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    if (runCheck(files)) {
-      hitFrame.close();
-    } else {
-      hitFrame.setVisible(true);
+    if (resource instanceof AbstractStruct) {
+      search(entry, (AbstractStruct)resource);
     }
   }
 
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void finishCheck(boolean cancelled)
   {
-    return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource instanceof AbstractStruct) {
-        search(entry, (AbstractStruct)resource);
-      }
-      advanceProgress();
-    };
+    if (cancelled) {
+      hitFrame.close();
+    } else {
+      hitFrame.setVisible(true);
+    }
   }
 
   private void search(ResourceEntry entry, AbstractStruct struct)
@@ -65,6 +62,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
         if (effectsIndex != expectedEffectsIndex) {
           synchronized (hitFrame) {
             hitFrame.addHit(entry, entry.getSearchString(), abil);
+            hitFound(entry);
           }
         }
         expectedEffectsIndex += abil.getEffectsCount();
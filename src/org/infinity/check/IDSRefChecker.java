@@ -8,47 +8,44 @@
 import org.infinity.datatype.IdsBitmap;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
-import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.search.ReferenceHitFrame;
 
 public final class IDSRefChecker extends AbstractChecker
 {
+  static final String[] FILETYPES = {"CRE", "EFF", "ITM", "PRO", "SPL"};
+
   /** Window with check results. */
   private final ReferenceHitFrame hitFrame;
 
   public IDSRefChecker()
   {
-    super("IDSRef Checker", "IDSRefChecker",
-          new String[]{"CRE", "EFF", "ITM", "PRO", "SPL"});
-    hitFrame = new ReferenceHitFrame("Unknown IDS references", NearInfinity.getInstance());
+    this(true);
   }
 
-// --------------------- Begin Interface Runnable ---------------------
+  IDSRefChecker(boolean interactive)
+  {
+    super("IDSRef Checker", "IDSRefChecker", FILETYPES, interactive);
+    hitFrame = new ReferenceHitFrame("Unknown IDS references", NearInfinity.getInstance());
+  }
 
   @Override
-  public void run()
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    if (runCheck(files)) {
-      hitFrame.close();
-    } else {
-      hitFrame.setVisible(true);
+    if (resource instanceof AbstractStruct) {
+      search(entry, (AbstractStruct)resource);
     }
   }
 
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void finishCheck(boolean cancelled)
   {
-    return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource instanceof AbstractStruct) {
-        search(entry, (AbstractStruct)resource);
-      }
-      advanceProgress();
-    };
+    if (cancelled) {
+      hitFrame.close();
+    } else {
+      hitFrame.setVisible(true);
+    }
   }
 
   private void search(ResourceEntry entry, AbstractStruct struct)
@@ -60,6 +57,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
         if (value != 0L && ref.getValueOf(value) == null) {
           synchronized (hitFrame) {
             hitFrame.addHit(entry, entry.getSearchString(), ref);
+            hitFound(entry);
           }
         }
       }
@@ -0,0 +1,208 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.check;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+
+import org.infinity.NearInfinity;
+import org.infinity.gui.Center;
+import org.infinity.gui.ChildFrame;
+import org.infinity.icon.Icons;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.search.AbstractSearcher;
+import org.infinity.search.FileTypeSelector;
+import org.infinity.search.StringReferenceSearcher;
+import org.infinity.util.PersistentCache;
+
+/**
+ * Runs several {@link AbstractChecker checks} in a single pass. Each resource is read and parsed
+ * only once and is then passed to every selected check that supports the resource type.
+ * Results are reported separately by each check.
+ */
+public final class MultiChecker extends AbstractSearcher implements ActionListener, Runnable
+{
+  /** Key used to save and restore checkbox selection. */
+  private static final String KEY = "MultiChecker";
+
+  /** Available checks. Order of entries defines order of checkboxes. */
+  private static final CheckInfo[] CHECKS = {
+    new CheckInfo("Illegal ResourceRefs", ResRefChecker.FILETYPES, ResRefChecker::new),
+    new CheckInfo("Unknown IDS references", IDSRefChecker.FILETYPES, IDSRefChecker::new),
+    new CheckInfo("Illegal strrefs", StringReferenceSearcher.FILE_TYPES, StrrefIndexChecker::new),
+    new CheckInfo("Corrupted files", StructChecker.FILETYPES, StructChecker::new),
+    new CheckInfo("Mis-indexed effects", EffectsIndexChecker.FILETYPES, EffectsIndexChecker::new),
+    new CheckInfo("Script errors and warnings", ScriptChecker.FILETYPES, interactive -> new ScriptChecker()),
+    new CheckInfo("Unknown IDS references in scripts", BCSIDSChecker.FILETYPES, interactive -> new BCSIDSChecker()),
+    new CheckInfo("Dialogue errors and warnings", DialogChecker.FILETYPES, interactive -> new DialogChecker()),
+    new CheckInfo("CRE items not in inventory", CreInvChecker.FILETYPES, interactive -> new CreInvChecker()),
+  };
+
+  /** Last state of the check selection. */
+  private static final boolean[] LAST_SELECTION = new boolean[CHECKS.length];
+  static {
+    for (int i = 0; i < LAST_SELECTION.length; i++) {
+      LAST_SELECTION[i] = true;
+    }
+  }
+
+  private final ChildFrame settingsWindow = new ChildFrame("Run Selected Checks", true);
+  private final JCheckBox[] cbChecks = new JCheckBox[CHECKS.length];
+  private final FileTypeSelector selector;
+  private final JButton bStart  = new JButton("Check", Icons.getIcon(Icons.ICON_FIND_16));
+  private final JButton bCancel = new JButton("Cancel", Icons.getIcon(Icons.ICON_DELETE_16));
+  private final JCheckBox cbIncremental = new JCheckBox(AbstractChecker.INCREMENTAL_LABEL, true);
+
+  /** Checks enabled for the current run. */
+  private final List<AbstractChecker> checkers = new ArrayList<>();
+  /** Resources, selected for check. */
+  private List<ResourceEntry> files;
+
+  public MultiChecker()
+  {
+    super(CHECK_MULTI_TYPE_FORMAT, NearInfinity.getInstance());
+    settingsWindow.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
+
+    final JPanel checkPanel = new JPanel(new GridLayout(0, 1, 3, 3));
+    checkPanel.setBorder(BorderFactory.createTitledBorder("Select checks:"));
+    final Set<String> types = new TreeSet<>();
+    for (int i = 0; i < CHECKS.length; i++) {
+      cbChecks[i] = new JCheckBox(CHECKS[i].label, LAST_SELECTION[i]);
+      checkPanel.add(cbChecks[i]);
+      for (final String type : CHECKS[i].filetypes) {
+        types.add(type);
+      }
+    }
+    final String[] filetypes = types.toArray(new String[types.size()]);
+    selector = new FileTypeSelector("Select files to check:", KEY, filetypes, null);
+
+    final JPanel bpanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+    bpanel.add(bStart);
+    bpanel.add(bCancel);
+
+    final JPanel spanel = new JPanel(new BorderLayout());
+    cbIncremental.setToolTipText("Resources which passed the previous check and have not been modified " +
+                                 "since then are not checked again.");
+    spanel.add(cbIncremental, BorderLayout.NORTH);
+    spanel.add(bpanel, BorderLayout.SOUTH);
+
+    final JPanel pane = (JPanel)settingsWindow.getContentPane();
+    pane.setLayout(new BorderLayout(3, 3));
+    pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+    pane.add(checkPanel, BorderLayout.WEST);
+    pane.add(selector, BorderLayout.CENTER);
+    pane.add(spanel, BorderLayout.SOUTH);
+
+    bStart.setMnemonic('s');
+    bCancel.setMnemonic('c');
+    bStart.addActionListener(this);
+    bCancel.addActionListener(this);
+    settingsWindow.getRootPane().setDefaultButton(bStart);
+
+    settingsWindow.pack();
+    Center.center(settingsWindow, NearInfinity.getInstance().getBounds());
+    settingsWindow.setVisible(true);
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="ActionListener">
+  @Override
+  public void actionPerformed(ActionEvent event)
+  {
+    if (event.getSource() == bStart) {
+      settingsWindow.setVisible(false);
+      checkers.clear();
+      for (int i = 0; i < CHECKS.length; i++) {
+        LAST_SELECTION[i] = cbChecks[i].isSelected();
+        if (LAST_SELECTION[i]) {
+          checkers.add(CHECKS[i].factory.apply(Boolean.FALSE));
+        }
+      }
+      files = selector.getResources(KEY);
+      files.removeIf(entry -> checkers.stream().noneMatch(c -> c.isSupported(entry.getExtension())));
+      if (!checkers.isEmpty() && !files.isEmpty()) {
+        new Thread(this).start();
+      }
+      settingsWindow.dispose();
+    }
+    else if (event.getSource() == bCancel) {
+      settingsWindow.setVisible(false);
+      settingsWindow.dispose();
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Runnable">
+  @Override
+  public void run()
+  {
+    final boolean incremental = cbIncremental.isSelected();
+    for (final AbstractChecker checker : checkers) {
+      checker.beginCheck(incremental);
+    }
+    final boolean cancelled = runSearch("Checking", files);
+    for (final AbstractChecker checker : checkers) {
+      checker.endCheck(cancelled);
+    }
+  }
+  //</editor-fold>
+
+  @Override
+  protected Runnable newWorker(ResourceEntry entry)
+  {
+    return () -> {
+      final String ext = entry.getExtension();
+      final long stamp = PersistentCache.getStamp(entry);
+      Resource resource = null;
+      boolean loaded = false;
+      for (final AbstractChecker checker : checkers) {
+        if (isCancelled()) {
+          break;
+        }
+        if (checker.isSupported(ext) && checker.needsCheck(entry, stamp)) {
+          // resource is loaded only if at least one check has to be performed
+          if (!loaded) {
+            resource = ResourceFactory.getResource(entry);
+            loaded = true;
+          }
+          checker.checkResource(entry, stamp, resource);
+        }
+      }
+      advanceProgress();
+    };
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Describes a single check available for selection. */
+  private static final class CheckInfo
+  {
+    private final String label;
+    private final String[] filetypes;
+    /** Creates the checker. Argument specifies whether checker is interactive. */
+    private final Function<Boolean, AbstractChecker> factory;
+
+    public CheckInfo(String label, String[] filetypes, Function<Boolean, AbstractChecker> factory)
+    {
+      this.label = label;
+      this.filetypes = filetypes;
+      this.factory = factory;
+    }
+  }
+}
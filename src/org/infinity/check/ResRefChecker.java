@@ -20,15 +20,20 @@
 
 public final class ResRefChecker extends AbstractChecker
 {
-  private static final String[] FILETYPES = {"ARE", "CHR", "CHU", "CRE", "DLG", "EFF", "GAM", "ITM", "PRO",
-                                             "SPL", "STO", "VEF", "VVC", "WED", "WMP"};
+  static final String[] FILETYPES = {"ARE", "CHR", "CHU", "CRE", "DLG", "EFF", "GAM", "ITM", "PRO",
+                                     "SPL", "STO", "VEF", "VVC", "WED", "WMP"};
   /** Window with check results. */
   private final ReferenceHitFrame hitFrame;
   private List<String> extraValues;
 
   public ResRefChecker()
   {
-    super("ResRef Checker", "ResRefChecker", FILETYPES);
+    this(true);
+  }
+
+  ResRefChecker(boolean interactive)
+  {
+    super("ResRef Checker", "ResRefChecker", FILETYPES, interactive);
     hitFrame = new ReferenceHitFrame("Illegal ResourceRefs", NearInfinity.getInstance());
 
     final ResourceEntry spawnRef = ResourceFactory.getResourceEntry("SPAWNGRP.2DA");
@@ -38,30 +43,22 @@ public ResRefChecker()
     }
   }
 
-// --------------------- Begin Interface Runnable ---------------------
-
   @Override
-  public void run()
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    if (runCheck(files)) {
-      hitFrame.close();
-    } else {
-      hitFrame.setVisible(true);
+    if (resource instanceof AbstractStruct) {
+      search(entry, (AbstractStruct)resource);
     }
   }
 
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void finishCheck(boolean cancelled)
   {
-    return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource instanceof AbstractStruct) {
-        search(entry, (AbstractStruct)resource);
-      }
-      advanceProgress();
-    };
+    if (cancelled) {
+      hitFrame.close();
+    } else {
+      hitFrame.setVisible(true);
+    }
   }
 
   private void search(ResourceEntry entry, AbstractStruct struct)
@@ -90,6 +87,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
       if (!ref.isLegalEntry(resource)) {
         synchronized (hitFrame) {
           hitFrame.addHit(entry, entry.getSearchString(), ref);
+          hitFound(entry);
         }
       }
     }
@@ -13,8 +13,12 @@
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,6 +51,7 @@
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Compiler;
 import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.bcs.ScriptType;
 import org.infinity.resource.dlg.AbstractCode;
 import org.infinity.resource.dlg.Action;
@@ -56,6 +61,7 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.text.PlainTextResource;
 import org.infinity.search.AbstractSearcher;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.util.Misc;
 import org.infinity.util.StringTable;
 
@@ -180,7 +186,35 @@ public void run()
       }
 
       unusedResources.addAll(ResourceFactory.getResources(checkType));
-      if (runSearch("Searching", files)) {
+
+      // resources covered by the reference index don't have to be parsed
+      final Set<String> usedNames = new HashSet<>();
+      final List<ResourceEntry> remaining = ReferenceIndex.forEachRecord(files, (entry, record) -> {
+        if (record.isText()) {
+          for (final String token : record.getTokens()) {
+            final Matcher m = RESREFPATTERN.matcher(token);
+            while (m.find()) {
+              usedNames.add(m.group() + '.' + checkType);
+            }
+          }
+        } else {
+          usedNames.addAll(Arrays.asList(record.getNames()));
+          if (checkType.equalsIgnoreCase("WAV") && !(entry.getExtension().equalsIgnoreCase("BCS") ||
+                                                     entry.getExtension().equalsIgnoreCase("BS"))) {
+            for (final int index : record.getStringRefs()) {
+              if (index >= 0) {
+                final String wav = StringTable.getSoundResource(index);
+                if (!wav.isEmpty()) {
+                  usedNames.add((wav + ".WAV").toUpperCase(Locale.ENGLISH));
+                }
+              }
+            }
+          }
+        }
+      });
+      unusedResources.removeIf(entry -> usedNames.contains(entry.getResourceName().toUpperCase(Locale.ENGLISH)));
+
+      if (runSearch("Searching", remaining)) {
         return;
       }
 
@@ -304,7 +338,12 @@ else if (checkType.equalsIgnoreCase("WAV") &&
   private void checkScript(BcsResource script)
   {
     try {
-      checkCode(script.getCode(), ScriptType.BCS);
+      final ScriptCache.Script decompiled = ScriptCache.get(script.getResourceEntry(), script.getCode(), false);
+      synchronized (unusedResources) {
+        for (final ResourceEntry entry : decompiled.getResourcesUsed()) {
+          unusedResources.remove(entry);
+        }
+      }
     } catch (Exception e) {
       e.printStackTrace();
     }
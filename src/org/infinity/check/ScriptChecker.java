@@ -32,33 +32,47 @@
 import org.infinity.gui.SortableTable;
 import org.infinity.gui.TableItem;
 import org.infinity.gui.ViewFrame;
-import org.infinity.gui.WindowBlocker;
 import org.infinity.icon.Icons;
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Compiler;
-import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.bcs.ScriptMessage;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.search.AbstractSearcher;
 import org.infinity.util.Misc;
 
 /** Performs checking {@link BcsResource BCS} & {@code BS} resources. */
-public final class ScriptChecker extends AbstractSearcher implements Runnable, ActionListener, ListSelectionListener, ChangeListener
+public final class ScriptChecker extends AbstractChecker implements ActionListener, ListSelectionListener, ChangeListener
 {
+  static final String[] FILETYPES = {"BCS", "BS"};
+
   private ChildFrame resultFrame;
   private JButton bopen, bopennew, bsave;
   private JTabbedPane tabbedPane;
   /** List of the {@link ScriptErrorsTableLine} objects with compiler errors. */
-  private SortableTable errorTable;
+  private final SortableTable errorTable =
+      new SortableTable(new String[]{"Script", "Error message", "Line"},
+                        new Class<?>[]{ResourceEntry.class, String.class, Integer.class},
+                        new Integer[]{120, 440, 50});
   /** List of the {@link ScriptErrorsTableLine} objects with compiler warnings. */
-  private SortableTable warningTable;
+  private final SortableTable warningTable =
+      new SortableTable(new String[]{"Script", "Warning", "Line"},
+                        new Class<?>[]{ResourceEntry.class, String.class, Integer.class},
+                        new Integer[]{120, 440, 50});
 
   public ScriptChecker(Component parent)
   {
-    super(CHECK_MULTI_TYPE_FORMAT, parent);
-    new Thread(this).start();
+    super("ScriptChecker", FILETYPES, parent);
+    final List<ResourceEntry> scriptFiles = ResourceFactory.getResources("BCS");
+    scriptFiles.addAll(ResourceFactory.getResources("BS"));
+    startCheck(scriptFiles);
+  }
+
+  /** Creates the checker without starting the check. Used by {@link MultiChecker}. */
+  ScriptChecker()
+  {
+    super("ScriptChecker", FILETYPES, NearInfinity.getInstance());
   }
 
 // --------------------- Begin Interface ActionListener ---------------------
@@ -125,134 +139,112 @@ public void valueChanged(ListSelectionEvent event)
 
 // --------------------- End Interface ListSelectionListener ---------------------
 
-
-// --------------------- Begin Interface Runnable ---------------------
-
-  @Override
-  public void run()
-  {
-    final WindowBlocker blocker = new WindowBlocker(NearInfinity.getInstance());
-    blocker.setBlocked(true);
-    try {
-      final List<ResourceEntry> scriptFiles = ResourceFactory.getResources("BCS");
-      scriptFiles.addAll(ResourceFactory.getResources("BS"));
-
-      final Class<?>[] colClasses = {ResourceEntry.class, String.class, Integer.class};
-      errorTable = new SortableTable(new String[]{"Script", "Error message", "Line"},
-                                     colClasses,
-                                     new Integer[]{120, 440, 50});
-      warningTable = new SortableTable(new String[]{"Script", "Warning", "Line"},
-                                       colClasses,
-                                       new Integer[]{120, 440, 50});
-
-      if (runSearch("Checking scripts", scriptFiles)) {
-        return;
-      }
-
-      if (errorTable.getRowCount() + warningTable.getRowCount() == 0) {
-        JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No errors or warnings found",
-                                      "Info", JOptionPane.INFORMATION_MESSAGE);
-      } else {
-        errorTable.tableComplete();
-        warningTable.tableComplete();
-        resultFrame = new ChildFrame("Result of script check", true);
-        resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
-        JScrollPane scrollErrorTable = new JScrollPane(errorTable);
-        scrollErrorTable.getViewport().setBackground(errorTable.getBackground());
-        JScrollPane scrollWarningTable = new JScrollPane(warningTable);
-        scrollWarningTable.getViewport().setBackground(warningTable.getBackground());
-        tabbedPane = new JTabbedPane();
-        tabbedPane.addTab("Errors (" + errorTable.getRowCount() + ')', scrollErrorTable);
-        tabbedPane.addTab("Warnings (" + warningTable.getRowCount() + ')', scrollWarningTable);
-        tabbedPane.addChangeListener(this);
-        bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
-        bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
-        bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
-        bopen.setMnemonic('o');
-        bopennew.setMnemonic('n');
-        bsave.setMnemonic('s');
-        resultFrame.getRootPane().setDefaultButton(bopennew);
-        JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        panel.add(bopen);
-        panel.add(bopennew);
-        panel.add(bsave);
-        JPanel pane = (JPanel)resultFrame.getContentPane();
-        pane.setLayout(new BorderLayout(0, 3));
-        pane.add(tabbedPane, BorderLayout.CENTER);
-        pane.add(panel, BorderLayout.SOUTH);
-        bopen.setEnabled(false);
-        bopennew.setEnabled(false);
-        errorTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
-        errorTable.setRowHeight(errorTable.getFontMetrics(errorTable.getFont()).getHeight() + 1);
-        errorTable.getSelectionModel().addListSelectionListener(this);
-        warningTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
-        warningTable.setRowHeight(warningTable.getFontMetrics(warningTable.getFont()).getHeight() + 1);
-        warningTable.getSelectionModel().addListSelectionListener(this);
-        MouseListener listener = new MouseAdapter()
-        {
-          @Override
-          public void mouseReleased(MouseEvent event)
-          {
-            if (event.getClickCount() == 2) {
-              SortableTable table = (SortableTable)event.getSource();
-              int row = table.getSelectedRow();
-              if (row != -1) {
-                ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
-                Resource resource = ResourceFactory.getResource(resourceEntry);
-                new ViewFrame(resultFrame, resource);
-                ((BcsResource)resource).highlightText(((Integer)table.getValueAt(row, 2)).intValue(), null);
-              }
-            }
-          }
-        };
-        errorTable.addMouseListener(listener);
-        warningTable.addMouseListener(listener);
-        bopen.addActionListener(this);
-        bopennew.addActionListener(this);
-        bsave.addActionListener(this);
-        pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
-        resultFrame.pack();
-        Center.center(resultFrame, NearInfinity.getInstance().getBounds());
-        resultFrame.setVisible(true);
-      }
-    } finally {
-      blocker.setBlocked(false);
-    }
-  }
-
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    return () -> {
+    if (resource instanceof BcsResource) {
       try {
-        final BcsResource script = new BcsResource(entry);
-        final Decompiler decompiler = new Decompiler(script.getCode(), true);
-        decompiler.setGenerateComments(false);
-        decompiler.setGenerateResourcesUsed(false);
+        final BcsResource script = (BcsResource)resource;
+        final String source = ScriptCache.get(entry, script.getCode(), false).getSource();
 
-        final Compiler compiler = new Compiler(decompiler.decompile());
+        final Compiler compiler = new Compiler(source);
         compiler.compile();
         for (final ScriptMessage sm : compiler.getErrors()) {
           synchronized (errorTable) {
             errorTable.addTableItem(new ScriptErrorsTableLine(entry, sm.getLine(), sm.getMessage(),
                                                               ScriptErrorsTableLine.Type.ERROR));
           }
+          hitFound(entry);
         }
         for (final ScriptMessage sm : compiler.getWarnings()) {
           synchronized (warningTable) {
             warningTable.addTableItem(new ScriptErrorsTableLine(entry, sm.getLine(), sm.getMessage(),
                                                                 ScriptErrorsTableLine.Type.WARNING));
           }
+          hitFound(entry);
         }
       } catch (Exception e) {
         synchronized (System.err) {
           e.printStackTrace();
         }
+        hitFound(entry);
       }
-      advanceProgress();
-    };
+    }
+  }
+
+  @Override
+  protected void finishCheck(boolean cancelled)
+  {
+    if (cancelled) {
+      return;
+    }
+
+    if (errorTable.getRowCount() + warningTable.getRowCount() == 0) {
+      JOptionPane.showMessageDialog(NearInfinity.getInstance(), "No errors or warnings found",
+                                    "Info", JOptionPane.INFORMATION_MESSAGE);
+    } else {
+      errorTable.tableComplete();
+      warningTable.tableComplete();
+      resultFrame = new ChildFrame("Result of script check", true);
+      resultFrame.setIconImage(Icons.getIcon(Icons.ICON_REFRESH_16).getImage());
+      JScrollPane scrollErrorTable = new JScrollPane(errorTable);
+      scrollErrorTable.getViewport().setBackground(errorTable.getBackground());
+      JScrollPane scrollWarningTable = new JScrollPane(warningTable);
+      scrollWarningTable.getViewport().setBackground(warningTable.getBackground());
+      tabbedPane = new JTabbedPane();
+      tabbedPane.addTab("Errors (" + errorTable.getRowCount() + ')', scrollErrorTable);
+      tabbedPane.addTab("Warnings (" + warningTable.getRowCount() + ')', scrollWarningTable);
+      tabbedPane.addChangeListener(this);
+      bopen = new JButton("Open", Icons.getIcon(Icons.ICON_OPEN_16));
+      bopennew = new JButton("Open in new window", Icons.getIcon(Icons.ICON_OPEN_16));
+      bsave = new JButton("Save...", Icons.getIcon(Icons.ICON_SAVE_16));
+      bopen.setMnemonic('o');
+      bopennew.setMnemonic('n');
+      bsave.setMnemonic('s');
+      resultFrame.getRootPane().setDefaultButton(bopennew);
+      JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+      panel.add(bopen);
+      panel.add(bopennew);
+      panel.add(bsave);
+      JPanel pane = (JPanel)resultFrame.getContentPane();
+      pane.setLayout(new BorderLayout(0, 3));
+      pane.add(tabbedPane, BorderLayout.CENTER);
+      pane.add(panel, BorderLayout.SOUTH);
+      bopen.setEnabled(false);
+      bopennew.setEnabled(false);
+      errorTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
+      errorTable.setRowHeight(errorTable.getFontMetrics(errorTable.getFont()).getHeight() + 1);
+      errorTable.getSelectionModel().addListSelectionListener(this);
+      warningTable.setFont(Misc.getScaledFont(BrowserMenuBar.getInstance().getScriptFont()));
+      warningTable.setRowHeight(warningTable.getFontMetrics(warningTable.getFont()).getHeight() + 1);
+      warningTable.getSelectionModel().addListSelectionListener(this);
+      MouseListener listener = new MouseAdapter()
+      {
+        @Override
+        public void mouseReleased(MouseEvent event)
+        {
+          if (event.getClickCount() == 2) {
+            SortableTable table = (SortableTable)event.getSource();
+            int row = table.getSelectedRow();
+            if (row != -1) {
+              ResourceEntry resourceEntry = (ResourceEntry)table.getValueAt(row, 0);
+              Resource resource = ResourceFactory.getResource(resourceEntry);
+              new ViewFrame(resultFrame, resource);
+              ((BcsResource)resource).highlightText(((Integer)table.getValueAt(row, 2)).intValue(), null);
+            }
+          }
+        }
+      };
+      errorTable.addMouseListener(listener);
+      warningTable.addMouseListener(listener);
+      bopen.addActionListener(this);
+      bopennew.addActionListener(this);
+      bsave.addActionListener(this);
+      pane.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+      resultFrame.pack();
+      Center.center(resultFrame, NearInfinity.getInstance().getBounds());
+      resultFrame.setVisible(true);
+    }
   }
 
 // -------------------------- INNER CLASSES --------------------------
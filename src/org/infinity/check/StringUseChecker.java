@@ -9,6 +9,7 @@
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 
 import javax.swing.BorderFactory;
@@ -48,6 +49,7 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.text.PlainTextResource;
 import org.infinity.search.AbstractSearcher;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.search.SearchClient;
 import org.infinity.search.SearchMaster;
 import org.infinity.search.StringReferenceSearcher;
@@ -104,7 +106,15 @@ public void run()
       if (Profile.getGame() == Profile.Game.PST || Profile.getGame() == Profile.Game.PSTEE) {
         Bestiary.markUsedStrings(strUsed);
       }
-      if (runSearch("Searching", files)) {
+      // resources covered by the reference index don't have to be parsed
+      final List<ResourceEntry> remaining = ReferenceIndex.forEachRecord(files, (entry, record) -> {
+        for (final int index : record.getStringRefs()) {
+          if (index >= 0 && index < strUsed.length) {
+            strUsed[index] = true;
+          }
+        }
+      });
+      if (runSearch("Searching", remaining)) {
         return;
       }
 
@@ -39,6 +39,7 @@
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Compiler;
 import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.bcs.ScriptType;
 import org.infinity.resource.dlg.AbstractCode;
 import org.infinity.resource.dlg.Action;
@@ -64,7 +65,12 @@ public class StrrefIndexChecker extends AbstractChecker implements ListSelection
 
   public StrrefIndexChecker()
   {
-    super("Find illegal strrefs", "StrrefIndexChecker", StringReferenceSearcher.FILE_TYPES);
+    this(true);
+  }
+
+  StrrefIndexChecker(boolean interactive)
+  {
+    super("Find illegal strrefs", "StrrefIndexChecker", StringReferenceSearcher.FILE_TYPES, interactive);
 
     table = new SortableTable(new String[]{"File", "Offset / Line:Pos", "Strref"},
                               new Class<?>[]{StrrefEntry.class, String.class, Integer.class},
@@ -108,13 +114,16 @@ public void valueChanged(ListSelectionEvent event)
 
 //--------------------- End Interface ListSelectionListener ---------------------
 
-//--------------------- Begin Interface Runnable ---------------------
-
   @Override
-  public void run()
+  protected void prepareCheck()
   {
     strrefCount = StringTable.getNumEntries();
-    if (runCheck(files)) {
+  }
+
+  @Override
+  protected void finishCheck(boolean cancelled)
+  {
+    if (cancelled) {
       resultFrame.close();
       return;
     }
@@ -178,24 +187,18 @@ public void mouseReleased(MouseEvent event)
     }
   }
 
-//--------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource instanceof DlgResource) {
-        checkDialog((DlgResource)resource);
-      } else if (resource instanceof BcsResource) {
-        checkScript((BcsResource)resource);
-      } else if (resource instanceof PlainTextResource) {
-        checkText((PlainTextResource)resource);
-      } else if (resource instanceof AbstractStruct) {
-        checkStruct((AbstractStruct)resource);
-      }
-      advanceProgress();
-    };
+    if (resource instanceof DlgResource) {
+      checkDialog((DlgResource)resource);
+    } else if (resource instanceof BcsResource) {
+      checkScript((BcsResource)resource);
+    } else if (resource instanceof PlainTextResource) {
+      checkText((PlainTextResource)resource);
+    } else if (resource instanceof AbstractStruct) {
+      checkStruct((AbstractStruct)resource);
+    }
   }
 
   private void checkDialog(DlgResource dialog)
@@ -204,6 +207,7 @@ private void checkDialog(DlgResource dialog)
       if (entry instanceof StringRef) {
         final int strref = ((StringRef)entry).getValue();
         if (strref < -1 || strref >= strrefCount) {
+          hitFound(dialog.getResourceEntry());
           synchronized (table) {
             table.addTableItem(new StrrefEntry(dialog.getResourceEntry(), entry.getOffset(), strref));
           }
@@ -221,6 +225,7 @@ private void checkDialog(DlgResource dialog)
           for (final Integer stringRef : decompiler.getStringRefsUsed()) {
             final int strref = stringRef.intValue();
             if (strref < -1 || strref >= strrefCount) {
+              hitFound(dialog.getResourceEntry());
               synchronized (table) {
                 table.addTableItem(new StrrefEntry(dialog.getResourceEntry(), entry.getOffset(), strref));
               }
@@ -235,17 +240,14 @@ private void checkDialog(DlgResource dialog)
 
   private void checkScript(BcsResource script)
   {
-    final Decompiler decompiler = new Decompiler(script.getCode(), true);
-    decompiler.setGenerateComments(false);
-    decompiler.setGenerateResourcesUsed(true);
     try {
-      decompiler.decompile();
-      for (final Integer stringRef : decompiler.getStringRefsUsed()) {
+      final ScriptCache.Script decompiled = ScriptCache.get(script.getResourceEntry(), script.getCode(), false);
+      for (final Integer stringRef : decompiled.getStringRefsUsed()) {
         final int strref = stringRef.intValue();
         if (strref < -1 || strref >= strrefCount) {
           // XXX: search routine may produce false positives
           final String strrefString = stringRef.toString();
-          final String source = decompiler.getSource();
+          final String source = decompiled.getSource();
           final String[] lines = source.split("\r?\n");
           int line = -1, pos = -1;
           final Pattern pattern = Pattern.compile("\\b" + strrefString + "\\b", Pattern.DOTALL);
@@ -257,6 +259,7 @@ private void checkScript(BcsResource script)
               break;
             }
           }
+          hitFound(script.getResourceEntry());
           synchronized (table) {
             table.addTableItem(new StrrefEntry(script.getResourceEntry(), line + 1, pos + 1, strref));
           }
@@ -278,6 +281,7 @@ private void checkStruct(AbstractStruct struct)
             // skip talk override entries
             continue;
           }
+          hitFound(struct.getResourceEntry());
           synchronized (table) {
             table.addTableItem(new StrrefEntry(struct.getResourceEntry(), entry.getOffset(), strref));
           }
@@ -300,6 +304,7 @@ private void checkText(PlainTextResource text)
           // skip values out of integer range
           if (strref >= Integer.MIN_VALUE && strref <= Integer.MAX_VALUE) {
             if (strref < -1 || strref > strrefCount) {
+              hitFound(text.getResourceEntry());
               synchronized (table) {
                 table.addTableItem(new StrrefEntry(text.getResourceEntry(), line + 1, pos + 1, (int)strref));
               }
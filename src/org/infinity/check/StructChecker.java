@@ -48,8 +48,8 @@
 
 public final class StructChecker extends AbstractChecker implements ListSelectionListener
 {
-  private static final String[] FILETYPES = {"ARE", "CHR", "CHU", "CRE", "DLG", "EFF", "GAM", "ITM",
-                                             "PRO", "SPL", "STO", "VEF", "VVC", "WED", "WMP"};
+  static final String[] FILETYPES = {"ARE", "CHR", "CHU", "CRE", "DLG", "EFF", "GAM", "ITM",
+                                     "PRO", "SPL", "STO", "VEF", "VVC", "WED", "WMP"};
   private static final HashMap<String, StructInfo> fileInfo = new HashMap<String, StructInfo>();
   static {
     fileInfo.put("ARE", new StructInfo("AREA", new String[]{"V1.0", "V9.1"}));
@@ -78,7 +78,12 @@ public final class StructChecker extends AbstractChecker implements ListSelectio
 
   public StructChecker()
   {
-    super("Find Corrupted Files", "StructChecker", FILETYPES);
+    this(true);
+  }
+
+  StructChecker(boolean interactive)
+  {
+    super("Find Corrupted Files", "StructChecker", FILETYPES, interactive);
 
     table = new SortableTable(new String[]{"File", "Offset", "Error message"},
                               new Class<?>[]{ResourceEntry.class, String.class, String.class},//TODO: replace "Offset" by Integer
@@ -126,12 +131,10 @@ public void valueChanged(ListSelectionEvent event)
 // --------------------- End Interface ListSelectionListener ---------------------
 
 
-// --------------------- Begin Interface Runnable ---------------------
-
   @Override
-  public void run()
+  protected void finishCheck(boolean cancelled)
   {
-    if (runCheck(files)) {
+    if (cancelled) {
       resultFrame.close();
       return;
     }
@@ -190,18 +193,12 @@ public void mouseReleased(MouseEvent event)
     }
   }
 
-// --------------------- End Interface Runnable ---------------------
-
   @Override
-  protected Runnable newWorker(ResourceEntry entry)
+  protected void check(ResourceEntry entry, Resource resource)
   {
-    return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource instanceof AbstractStruct) {
-        search(entry, (AbstractStruct)resource);
-      }
-      advanceProgress();
-    };
+    if (resource instanceof AbstractStruct) {
+      search(entry, (AbstractStruct)resource);
+    }
   }
 
   private void search(ResourceEntry entry, AbstractStruct struct)
@@ -218,6 +215,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
       if (!entry2.getName().equals(AbstractStruct.COMMON_UNUSED_BYTES)) {
         int delta = entry2.getOffset() - offset;
         if (entry2.getSize() > 0 && delta < 0) {
+          hitFound(entry);
           synchronized (table) {
             table.addTableItem(new Corruption(entry, entry1.getOffset(),
                                               entry1.getName() + '(' + Integer.toHexString(entry1.getOffset()) +
@@ -228,6 +226,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
                                               " by " + -delta + " bytes"));
           }
         } else if (delta > 0) {
+          hitFound(entry);
           synchronized (table) {
             table.addTableItem(new Corruption(entry, entry1.getOffset(),
                                               delta + " unused bytes between " +
@@ -245,6 +244,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
     }
     StructEntry last = flatList.get(flatList.size() - 1);
     if (last.getName().equals(AbstractStruct.COMMON_UNUSED_BYTES)) {
+      hitFound(entry);
       synchronized (table) {
         table.addTableItem(new Corruption(entry, last.getOffset(),
                                           last.getSize() + " unused bytes after " +
@@ -261,12 +261,14 @@ private void search(ResourceEntry entry, AbstractStruct struct)
         String ver = ((TextString)struct.getAttribute(AbstractStruct.COMMON_VERSION)).toString();
         if (!info.isVersion(ver)) {
           // invalid version?
+          hitFound(entry);
           synchronized (table) {
             table.addTableItem(new Corruption(entry, 4, "Unsupported or invalid version: \"" + ver + "\""));
           }
         }
       } else {
         // invalid signature?
+        hitFound(entry);
         synchronized (table) {
           table.addTableItem(new Corruption(entry, 0, "Invalid signature: \"" + sig + "\""));
         }
@@ -277,6 +279,7 @@ private void search(ResourceEntry entry, AbstractStruct struct)
     if (entry.getExtension().equalsIgnoreCase("WED")) {
       List<Corruption> list = getWedCorruption(entry, struct);
       for (Iterator<Corruption> iter = list.iterator(); iter.hasNext();) {
+        hitFound(entry);
         synchronized (table) {
           table.addTableItem(iter.next());
         }
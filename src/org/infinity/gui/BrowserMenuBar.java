@@ -63,6 +63,7 @@
 import org.infinity.check.DialogChecker;
 import org.infinity.check.EffectsIndexChecker;
 import org.infinity.check.IDSRefChecker;
+import org.infinity.check.MultiChecker;
 import org.infinity.check.ResRefChecker;
 import org.infinity.check.ResourceUseChecker;
 import org.infinity.check.ScriptChecker;
@@ -96,6 +97,7 @@
 import org.infinity.updater.UpdateInfo;
 import org.infinity.updater.Updater;
 import org.infinity.updater.UpdaterSettings;
+import org.infinity.util.CacheManager;
 import org.infinity.util.CharsetDetector;
 import org.infinity.util.MassExporter;
 import org.infinity.util.Misc;
@@ -1454,11 +1456,11 @@ private static final class ToolsMenu extends JMenu implements ActionListener
     private final JMenuItem toolCheckResRef, toolIDSBrowser, toolDropZone, toolCheckCREInv;
     private final JMenuItem toolCheckIDSRef, toolCheckIDSBCSRef, toolCheckScripts, toolCheckStructs;
     private final JMenuItem toolCheckStringUse, toolCheckStringIndex, toolCheckFileUse, toolMassExport;
-    private final JMenuItem toolCheckEffectsIndex;
+    private final JMenuItem toolCheckEffectsIndex, toolCheckMulti;
     private final JMenuItem toolConvImageToBam, toolConvImageToBmp, toolConvImageToMos, toolConvImageToTis,
                             toolConvImageToPvrz;
     private final JCheckBoxMenuItem toolConsole, toolClipBoard;
-    private final JMenuItem dumpDebugInfo;
+    private final JMenuItem dumpDebugInfo, dumpCacheInfo;
 
     private ToolsMenu()
     {
@@ -1543,6 +1545,13 @@ private ToolsMenu()
       toolCheckEffectsIndex =
           makeMenuItem("For Mis-indexed Effects...", -1, Icons.getIcon(Icons.ICON_FIND_16), -1, this);
       checkMenu.add(toolCheckEffectsIndex);
+
+      checkMenu.addSeparator();
+
+      toolCheckMulti =
+          makeMenuItem("Run Selected Checks...", -1, Icons.getIcon(Icons.ICON_FIND_16), -1, this);
+      toolCheckMulti.setToolTipText("Performs several checks at once, reading each resource only once");
+      checkMenu.add(toolCheckMulti);
       // *** End Check submenu ***
 
       // *** Begin Convert submenu ***
@@ -1603,6 +1612,12 @@ private ToolsMenu()
       dumpDebugInfo.setEnabled(getPrefs().getBoolean(TOOLS_DEBUG_EXTRA_INFO, false));
       dumpDebugInfo.setVisible(dumpDebugInfo.isEnabled());
       add(dumpDebugInfo);
+      dumpCacheInfo = new JMenuItem("Print cache statistics to Console", Icons.getIcon(Icons.ICON_PROPERTIES_16));
+      dumpCacheInfo.setToolTipText("Output to console size, hit rate and evictions of all resource caches");
+      dumpCacheInfo.addActionListener(this);
+      dumpCacheInfo.setEnabled(dumpDebugInfo.isEnabled());
+      dumpCacheInfo.setVisible(dumpDebugInfo.isEnabled());
+      add(dumpCacheInfo);
     }
 
 //    private static void cleanKeyfile()
@@ -1642,6 +1657,8 @@ private void setShowDebugExtraInfo(boolean show)
     {
       dumpDebugInfo.setEnabled(show);
       dumpDebugInfo.setVisible(show);
+      dumpCacheInfo.setEnabled(show);
+      dumpCacheInfo.setVisible(show);
     }
 
     private void storePreferences()
@@ -1689,6 +1706,9 @@ public void windowClosing(WindowEvent e)
       else if (event.getSource() == dumpDebugInfo) {
         dumpDebugInfo();
       }
+      else if (event.getSource() == dumpCacheInfo) {
+        System.out.print(CacheManager.getReport());
+      }
       else if (event.getSource() == toolCleanKeyfile)
 //        cleanKeyfile();
         ;
@@ -1721,6 +1741,8 @@ else if (event.getSource() == toolMassExport)
         new MassExporter();
       else if (event.getSource() == toolCheckEffectsIndex)
         new EffectsIndexChecker();
+      else if (event.getSource() == toolCheckMulti)
+        new MultiChecker();
       else if (event.getSource() == toolConvImageToPvrz) {
         ChildFrame.show(ConvertToPvrz.class, () -> new ConvertToPvrz());
       } else if (event.getSource() == toolConvImageToTis) {
@@ -11,12 +11,8 @@
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.Vector;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -35,20 +31,18 @@
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
-import org.infinity.resource.key.ResourceTreeFolder;
+import org.infinity.resource.key.ResourceNameIndex;
 import org.infinity.resource.key.ResourceTreeModel;
-import org.infinity.util.MapTree;
 import org.infinity.util.Misc;
 
 /**
  * Implements a search panel for quickly finding specific resources.
+ * Matching resources are determined by the shared {@link ResourceNameIndex}.
  */
-public class QuickSearch extends JPanel implements Runnable
+public class QuickSearch extends JPanel
 {
-  // Internally used to control actions in the background task
-  private enum Command {
-    IDLE, UPDATE, DESTROY
-  }
+  // Max. number of suggested resources
+  private static final int MAX_RESULTS = 1000;
 
   // Defines available search actions
   private enum Result {
@@ -57,15 +51,18 @@ private enum Result {
 
   private final ButtonPopupWindow parent;
   private final ResourceTree tree;
-  private final MapTree<Character, List<ResourceEntry>> resourceTree;
-  private final Object monitor = new Object();  // synchronization object
   private final JPanel mainPanel = new JPanel(new GridBagLayout());
 
   private JLabel lSearch;
   private JComboBox<ResourceEntry> cbSearch;
   private JButton bOk, bOkNew, bCancel;
-  private String keyword;
-  private Command command;
+
+  // Updates suggestions when a rebuilt resource name index is available
+  private final Runnable indexListener = () -> {
+    if (isShowing()) {
+      updateSuggestions(getSearchString());
+    }
+  };
 
   public QuickSearch(ButtonPopupWindow parent, ResourceTree tree)
   {
@@ -75,9 +72,11 @@ public QuickSearch(ButtonPopupWindow parent, ResourceTree tree)
     }
     this.parent = parent;
     this.tree = tree;
-    this.resourceTree = new MapTree<Character, List<ResourceEntry>>(Character.valueOf('\0'), null);
-    this.command = Command.IDLE;
-    new Thread(this).start();   // updating list of matching resources is done in the background
+    // index is (re)built in the background if the resource tree has changed
+    final ResourceTreeModel model = tree.getModel();
+    if (model != null) {
+      ResourceNameIndex.get(model, null);
+    }
     init();
   }
 
@@ -146,11 +145,6 @@ public void keyReleased(KeyEvent event)
       public void popupWindowWillBecomeInvisible(PopupWindowEvent event)
       {
         cbSearch.hidePopup();
-
-        synchronized (monitor) {
-          command = Command.DESTROY;
-          monitor.notify();
-        }
       }
     };
 
@@ -211,10 +205,42 @@ public boolean requestFocusInWindow()
   // Updates the list of resources matching the specified text
   private void updateSuggestions(String text)
   {
-    synchronized (monitor) {
-      keyword = (text != null) ? text : "";
-      command = Command.UPDATE;
-      monitor.notify();
+    List<ResourceEntry> list = Collections.emptyList();
+    final ResourceTreeModel model = tree.getModel();
+    if (model != null && text != null && !text.isEmpty()) {
+      final boolean searchNames = BrowserMenuBar.getInstance().showTreeSearchNames();
+      // an outdated index is used until the rebuilt index is available
+      final ResourceNameIndex index = ResourceNameIndex.get(model, indexListener);
+      if (index != null) {
+        list = index.find(text, searchNames, MAX_RESULTS);
+      }
+    }
+
+    // setting matching resource entries
+    DefaultComboBoxModel<ResourceEntry> cbModel = (DefaultComboBoxModel<ResourceEntry>)cbSearch.getModel();
+
+    // Deactivating listeners to prevent autoselecting items
+    ListDataListener[] listeners = cbModel.getListDataListeners();
+    for (int i = listeners.length - 1; i >= 0; i--) {
+      cbModel.removeListDataListener(listeners[i]);
+    }
+
+    cbSearch.hidePopup();   // XXX: work-around to force visual update of file list
+    cbModel.removeAllElements();
+    for (final ResourceEntry entry : list) {
+      cbModel.addElement(entry);
+    }
+
+    // Reactivating listeners
+    for (int i = 0; i < listeners.length; i++) {
+      cbModel.addListDataListener(listeners[i]);
+    }
+
+    cbSearch.setMaximumRowCount(Math.min(8, cbModel.getSize()));
+    if (cbModel.getSize() > 0 && !cbSearch.isPopupVisible()) {
+      cbSearch.showPopup();
+    } else if (cbModel.getSize() == 0 && cbSearch.isPopupVisible()) {
+      cbSearch.hidePopup();
     }
   }
 
@@ -247,188 +273,4 @@ private void close(Result result)
 
     parent.hidePopupWindow();
   }
-
-  // Generates root list of resource entries
-  private void generateRootNode()
-  {
-    // removing old list (if any)
-    List<ResourceEntry> list = resourceTree.getValue();
-    if (list != null) {
-      list.clear();
-    } else {
-      list = new Vector<ResourceEntry>();
-      resourceTree.setValue(list);
-    }
-
-    // populating list with new entries
-    ResourceTreeModel model = tree.getModel();
-    if (model != null) {
-      SortedSet<ResourceEntry> entries = generateResourceList(model.getRoot(), null);
-      if (entries != null) {
-        list.addAll(entries);
-      }
-    }
-  }
-
-  // Returns a set of resource entries from the resource tree
-  private SortedSet<ResourceEntry> generateResourceList(ResourceTreeFolder folder, SortedSet<ResourceEntry> set)
-  {
-    if (set == null) {
-      set = new TreeSet<ResourceEntry>();
-    }
-
-    if (folder != null) {
-      set.addAll(folder.getResourceEntries());
-      for (final ResourceTreeFolder subFolder: folder.getFolders()) {
-        generateResourceList(subFolder, set);
-      }
-    }
-    return set;
-  }
-
-  // Creates a new node with a list of matching resources based on the specified node and the new character
-  private MapTree<Character, List<ResourceEntry>> generateNode(MapTree<Character, List<ResourceEntry>> node, char ch)
-  {
-    // determining node level (0 = first level)
-    int index = 0;
-    for (MapTree<Character, List<ResourceEntry>> curNode = node;
-         curNode.getParent() != null;
-         curNode = curNode.getParent()) {
-      index++;
-    }
-
-    // generating filtered list of resource entries based on list of previous node
-    ch = Character.toUpperCase(ch);
-
-    // preparing child node
-    MapTree<Character, List<ResourceEntry>> retVal = node.getChild(Character.valueOf(ch));
-    if (retVal != null) {
-      if (retVal.getValue() != null) {
-        retVal.getValue().clear();
-      } else {
-        retVal.setValue(new Vector<ResourceEntry>());
-      }
-    } else {
-      retVal = new MapTree<Character, List<ResourceEntry>>(Character.valueOf(ch),
-                                                           new Vector<ResourceEntry>());
-    }
-    node.addChild(retVal);
-
-    // generating filtered list of resource entries
-    List<ResourceEntry> parentList = node.getValue();
-    List<ResourceEntry> curList = retVal.getValue();
-    for (Iterator<ResourceEntry> iter = parentList.iterator(); iter.hasNext();) {
-      final ResourceEntry entry = iter.next();
-      final String resName = entry.getResourceName();
-      if (resName.length() > index && Character.toUpperCase(resName.charAt(index)) == ch) {
-        curList.add(entry);
-      }
-    }
-
-    return retVal;
-  }
-
-  // Removes all child nodes and their values recursively
-//  private void clearResourceTree(MapTree<Character, List<ResourceEntry>> node)
-//  {
-//    if (node != null) {
-//      for (Iterator<MapTree<Character, List<ResourceEntry>>> iter = node.getChildren().iterator();
-//           iter.hasNext();) {
-//        MapTree<Character, List<ResourceEntry>> curNode = iter.next();
-//        clearResourceTree(curNode);
-//      }
-//      node.removeAllChildren();
-//      List<ResourceEntry> list = node.setValue(null);
-//      if (list != null) {
-//        list.clear();
-//        list = null;
-//      }
-//    }
-//  }
-
-// --------------------- Begin Interface Runnable ---------------------
-
-  @Override
-  public void run()
-  {
-    // main loop
-    while (true) {
-      if (command == Command.DESTROY) {
-        synchronized (monitor) {
-          command = Command.IDLE;
-        }
-        break;
-      } else if (command == Command.UPDATE) {
-        synchronized (monitor) {
-          command = Command.IDLE;
-
-          // populating root node
-          if (resourceTree.getValue() == null || resourceTree.getValue().isEmpty()) {
-            generateRootNode();
-          }
-
-          // processing new keyword
-          if (keyword != null) {
-            keyword = keyword.toUpperCase(Locale.ENGLISH);
-            MapTree<Character, List<ResourceEntry>> node = resourceTree;
-            for (int i = 0, size = keyword.length(); i < size; i++) {
-              MapTree<Character, List<ResourceEntry>> newNode = node.getChild(Character.valueOf(keyword.charAt(i)));
-              if (newNode == null) {
-                node = generateNode(node, keyword.charAt(i));
-              } else {
-                node = newNode;
-              }
-            }
-
-            // setting matching resource entries
-            DefaultComboBoxModel<ResourceEntry> cbModel = (DefaultComboBoxModel<ResourceEntry>)cbSearch.getModel();
-
-            // Deactivating listeners to prevent autoselecting items
-            ListDataListener[] listeners = cbModel.getListDataListeners();
-            for (int i = listeners.length - 1; i >= 0; i--) {
-              cbModel.removeListDataListener(listeners[i]);
-            }
-
-            cbSearch.hidePopup();   // XXX: work-around to force visual update of file list
-            cbModel.removeAllElements();
-            if (!keyword.isEmpty() && node != null && node.getValue() != null) {
-              List<ResourceEntry> list = node.getValue();
-              for (Iterator<ResourceEntry> iter = list.iterator(); iter.hasNext();) {
-                cbModel.addElement(iter.next());
-              }
-            }
-
-            // Reactivating listeners
-            for (int i = 0; i < listeners.length; i++) {
-              cbModel.addListDataListener(listeners[i]);
-            }
-
-            cbSearch.setMaximumRowCount(Math.min(8, cbModel.getSize()));
-            if (cbModel.getSize() > 0 && !cbSearch.isPopupVisible()) {
-              cbSearch.showPopup();
-            } else if (cbModel.getSize() == 0 && cbSearch.isPopupVisible()) {
-              cbSearch.hidePopup();
-            }
-          }
-//      } else if (command == Command.Clear) {
-//        // reset data
-//        synchronized(monitor) {
-//          command = Command.Idle;
-//          clearResourceTree(resourceTree);
-//          ((DefaultComboBoxModel)cbSearch.getModel()).removeAllElements();
-//          ((JTextComponent)cbSearch.getEditor().getEditorComponent()).setText("");
-        }
-      } else {
-        // nothing else to do?
-        synchronized(monitor) {
-          try {
-            monitor.wait();
-          } catch (InterruptedException e) {
-          }
-        }
-      }
-    }
-  }
-
-// --------------------- End Interface Runnable ---------------------
 }
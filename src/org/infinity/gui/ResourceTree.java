@@ -54,6 +54,7 @@
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.key.ResourceTreeFolder;
 import org.infinity.resource.key.ResourceTreeModel;
+import org.infinity.util.SearchNameCache;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
@@ -780,7 +781,8 @@ public Component getTreeCellRendererComponent(JTree tree, Object o, boolean sel,
         final BrowserMenuBar options = BrowserMenuBar.getInstance();
         if (options.showTreeSearchNames()) {
           final String name  = e.getResourceName();
-          final String title = e.getSearchString();
+          // names are shown as soon as they have been gathered in the background
+          final String title = SearchNameCache.isInitialized() ? e.getSearchString() : SearchNameCache.peekName(e);
           //TODO: refactor code and remove "No such index" comparison
           // Now getSearchString returns that string when StringRef index not found
           // in the talk table
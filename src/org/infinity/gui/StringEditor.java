@@ -1094,6 +1094,7 @@ private final class ProgressTracker extends StringTable.ProgressCallback
     private final String msgFailed;
 
     private ProgressMonitor pm;
+    private String warning;
     private int count, step;
 
     public ProgressTracker(String title, String successMessage, String failedMessage)
@@ -1121,10 +1122,19 @@ public void init(int numEntries)
       pm.setMillisToPopup(0);
     }
 
+    @Override
+    public void warning(String message)
+    {
+      warning = message;
+    }
+
     @Override
     public void done(boolean success)
     {
       pm.close();
+      if (warning != null) {
+        JOptionPane.showMessageDialog(StringEditor.this, warning, "Warning", JOptionPane.WARNING_MESSAGE);
+      }
       if (success && msgSuccess != null) {
         JOptionPane.showMessageDialog(StringEditor.this, msgSuccess, "Information", JOptionPane.INFORMATION_MESSAGE);
       } else if (!success && msgFailed != null) {
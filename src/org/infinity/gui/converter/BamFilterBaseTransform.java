@@ -23,4 +23,22 @@ protected BamFilterBaseTransform(ConvertToBam parent, String name, String desc)
    *         or a new FrameEntry instance.
    */
   public abstract PseudoBamFrameEntry process(PseudoBamFrameEntry frame) throws Exception;
+
+  /**
+   * Applies the filter to each of the specified FrameEntry objects. Override to prepare data that
+   * is shared by all frames only once.
+   * @param frames The frame entries to modify. Entries are replaced by the modified frame entries.
+   * @throws Exception if the filter could not be applied to one of the frames.
+   */
+  public void process(PseudoBamFrameEntry[] frames) throws Exception
+  {
+    for (int i = 0; i < frames.length; i++) {
+      PseudoBamFrameEntry entry = process(frames[i]);
+      if (entry != null) {
+        frames[i] = entry;
+      } else {
+        throw new Exception();
+      }
+    }
+  }
 }
@@ -59,6 +59,16 @@ public PseudoBamFrameEntry process(PseudoBamFrameEntry frame) throws Exception
     return applyEffect(frame);
   }
 
+  @Override
+  public void process(PseudoBamFrameEntry[] frames) throws Exception
+  {
+    // canvas size is the same for all frames
+    Rectangle rect = getCanvasRectangle();
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = applyEffect(frames[i], rect);
+    }
+  }
+
   @Override
   public String getConfiguration()
   {
@@ -389,14 +399,15 @@ public static BufferedImage padFrame(PseudoBamFrameEntry entry, Rectangle canvas
 
   private PseudoBamFrameEntry applyEffect(PseudoBamFrameEntry entry)
   {
-    if (getConverter() != null && entry != null) {
+    return applyEffect(entry, getCanvasRectangle());
+  }
+
+  /** Returns canvas size and center of all frames, including extra space. Returns null if not available. */
+  private Rectangle getCanvasRectangle()
+  {
+    if (getConverter() != null) {
       // calculating canvas size and center
       Rectangle rect = getMaxRectangle(getConverter().getBamDecoder(ConvertToBam.BAM_ORIGINAL));
-      if (rect.isEmpty()) {
-        return entry;
-      }
-
-      // rendering frame to canvas
       if (!rect.isEmpty()) {
         int padLeft = ((Integer)spinnerLeft.getValue()).intValue();
         int padTop = ((Integer)spinnerTop.getValue()).intValue();
@@ -406,26 +417,34 @@ private PseudoBamFrameEntry applyEffect(PseudoBamFrameEntry entry)
         rect.width += padLeft + padRight;
         rect.y += padTop;
         rect.height += padTop + padBottom;
+        return rect;
+      }
+    }
+    return null;
+  }
 
-        BufferedImage dstImage = padFrame(entry, rect);
-        if (dstImage != null) {
-          entry.setFrame(dstImage);
-        } else {
-          return entry;
-        }
+  private PseudoBamFrameEntry applyEffect(PseudoBamFrameEntry entry, Rectangle rect)
+  {
+    if (entry != null && rect != null) {
+      // rendering frame to canvas
+      BufferedImage dstImage = padFrame(entry, rect);
+      if (dstImage != null) {
+        entry.setFrame(dstImage);
+      } else {
+        return entry;
+      }
 
-        // setting center position
-        int cx = 0, cy = 0;
-        if (cbAdjustCenter.isSelected()) {
-          cx = rect.x;
-          cy = rect.y;
-        } else {
-          cx = ((Integer)spinnerCenterX.getValue()).intValue();
-          cy = ((Integer)spinnerCenterY.getValue()).intValue();
-        }
-        entry.setCenterX(cx);
-        entry.setCenterY(cy);
+      // setting center position
+      int cx = 0, cy = 0;
+      if (cbAdjustCenter.isSelected()) {
+        cx = rect.x;
+        cy = rect.y;
+      } else {
+        cx = ((Integer)spinnerCenterX.getValue()).intValue();
+        cy = ((Integer)spinnerCenterY.getValue()).intValue();
       }
+      entry.setCenterX(cx);
+      entry.setCenterY(cy);
     }
     return entry;
   }
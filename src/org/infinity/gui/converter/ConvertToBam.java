@@ -47,6 +47,9 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
@@ -103,6 +106,7 @@
 import org.infinity.resource.graphics.ColorConvert;
 import org.infinity.resource.graphics.DxtEncoder;
 import org.infinity.resource.graphics.GifSequenceReader;
+import org.infinity.resource.graphics.PaletteMatcher;
 import org.infinity.resource.graphics.PseudoBamDecoder;
 import org.infinity.resource.graphics.BamDecoder.BamControl;
 import org.infinity.resource.graphics.PseudoBamDecoder.PseudoBamControl;
@@ -167,6 +171,9 @@ public class ConvertToBam extends ChildFrame
   static final int BAM_ORIGINAL = 0;    // the original unprocessed frames list
   static final int BAM_FINAL    = 1;    // final frames list including palette and/or post-processor
 
+  // Min. number of frames for converting and filtering frames in parallel
+  private static final int PARALLEL_MIN_FRAMES = 2;
+
   private static Path currentPath;
 
   // Global BamDecoder instance for managing frames and cycles
@@ -3957,58 +3964,26 @@ private void updateFilteredBamDecoder(int bamVersion, boolean force) throws Exce
     if (outputIsModified() || force) {
       outputSetModified(false);
 
-      updateFinalBamDecoder(bamVersion);
-
-      // Processing each filter sequentially
-      List<BamFilterBase> filters = createFilterList(false);
-      if (filters != null) {
-        for (int idx = 0; idx < filters.size(); idx++) {
-          if (filters.get(idx) instanceof BamFilterBaseColor) {
-            // processing color filter
-            try {
-              BamFilterBaseColor filter = (BamFilterBaseColor)filters.get(idx);
-              for (int frameIdx = 0; frameIdx < listFrameEntries.get(BAM_FINAL).size(); frameIdx++) {
-                BufferedImage image = filter.process(listFrameEntries.get(BAM_FINAL).get(frameIdx).getFrame());
-                if (image != null) {
-                  listFrameEntries.get(BAM_FINAL).get(frameIdx).setFrame(image);
-                  image = null;
-                } else {
-                  throw new Exception();
-                }
-              }
-            } catch (Exception e) {
-              e.printStackTrace();
-              throw e;
-            }
-          } else if (filters.get(idx) instanceof BamFilterBaseTransform) {
-            // processing transform filter
-            try {
-              BamFilterBaseTransform filter = (BamFilterBaseTransform)filters.get(idx);
-              for (int frameIdx = 0; frameIdx < listFrameEntries.get(BAM_FINAL).size(); frameIdx++) {
-                PseudoBamFrameEntry entry = filter.process(listFrameEntries.get(BAM_FINAL).get(frameIdx));
-                if (entry != null) {
-                  if (entry != listFrameEntries.get(BAM_FINAL).get(frameIdx)) {
-                    listFrameEntries.get(BAM_FINAL).set(frameIdx, entry);
-                  }
-                } else {
-                  throw new Exception();
-                }
-              }
-            } catch (Exception e) {
-              e.printStackTrace();
-              throw e;
-            }
-          } else if (filters.get(idx) instanceof BamFilterBaseOutput) {
+      // Collecting color and transform filters to be applied to each converted frame
+      List<BamFilterBase> filters = new ArrayList<BamFilterBase>();
+      List<BamFilterBase> list = createFilterList(false);
+      if (list != null) {
+        for (int idx = 0; idx < list.size(); idx++) {
+          if (list.get(idx) instanceof BamFilterBaseColor || list.get(idx) instanceof BamFilterBaseTransform) {
+            filters.add(list.get(idx));
+          } else if (list.get(idx) instanceof BamFilterBaseOutput) {
             // skipping output filter
           } else {
-            if (filters.get(idx) != null) {
-              System.err.println(String.format("Unrecognized filter at index %d: %s", idx, filters.get(idx)));
+            if (list.get(idx) != null) {
+              System.err.println(String.format("Unrecognized filter at index %d: %s", idx, list.get(idx)));
             } else {
               System.err.println(String.format("null filter at index %d", idx));
             }
           }
         }
       }
+
+      updateFinalBamDecoder(bamVersion, filters);
     }
   }
 
@@ -4057,9 +4032,10 @@ private List<BamFilterBaseOutput> createOutputFilterList()
 
   /**
    * Creates a new BAM structure from the existing structure that is compatible with the
-   * specified target BAM version.
+   * specified target BAM version. Frames are converted in parallel. The specified filters are applied
+   * to the converted frames afterwards on the calling thread, since they depend on their Swing controls.
    */
-  private void updateFinalBamDecoder(int bamVersion) throws Exception
+  private void updateFinalBamDecoder(int bamVersion, List<BamFilterBase> filters) throws Exception
   {
     listFrameEntries.get(BAM_FINAL).clear();
 
@@ -4073,6 +4049,7 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
         bamDecoderFinal.setOption(options[i], bamDecoder.getOption(options[i]));
       }
 
+      FrameConverter converter;
       if (bamVersion == VERSION_BAMV1) {
         // BAM v1: creating paletted version of each source frame
         paletteDialog.updateGeneratedPalette();
@@ -4084,7 +4061,7 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
                                   Boolean.valueOf(isBamV1Compressed()));
         // preparing palette
         int[] palette = paletteDialog.getPalette(paletteDialog.getPaletteType());
-        int threshold = getUseAlpha() ? -1 : getTransparencyThreshold();
+        final int threshold = getUseAlpha() ? -1 : getTransparencyThreshold();
         int transIndex = -1;
         for (int i = 0; i < palette.length; i++) {
           int c = palette[i] & 0x00ffffff;
@@ -4096,74 +4073,89 @@ private void updateFinalBamDecoder(int bamVersion) throws Exception
         if (transIndex < 0) {
           transIndex = 0;
         }
-        HashMap<Integer, Byte> colorCache = new HashMap<Integer, Byte>(4096);
-        for (int i = 0; i < palette.length; i++) {
-          if (i != transIndex) {
-            colorCache.put(Integer.valueOf(palette[i]), Byte.valueOf((byte)i));
-          }
-        }
+        final PaletteMatcher matcher = new PaletteMatcher(palette, !getUseAlpha());
+        final IndexColorModel cm = new IndexColorModel(8, 256, palette, 0, getUseAlpha(), transIndex, DataBuffer.TYPE_BYTE);
+        final byte transColor = (byte)transIndex;
 
-        // processing frames
-        IndexColorModel cm = new IndexColorModel(8, 256, palette, 0, getUseAlpha(), transIndex, DataBuffer.TYPE_BYTE);
-        for (int i = 0; i < srcListFrames.size(); i++) {
-          PseudoBamFrameEntry srcEntry = srcListFrames.get(i);
+        converter = srcEntry -> {
           BufferedImage srcImage = ColorConvert.toBufferedImage(srcEntry.getFrame(), true, true);
           int[] srcBuf = ((DataBufferInt)srcImage.getRaster().getDataBuffer()).getData();
           BufferedImage dstImage = new BufferedImage(srcEntry.getWidth(), srcEntry.getHeight(),
                                                      BufferedImage.TYPE_BYTE_INDEXED, cm);
           byte[] dstBuf = ((DataBufferByte)dstImage.getRaster().getDataBuffer()).getData();
 
+          matcher.nearestColors(srcBuf, dstBuf);
           for (int ofs = 0; ofs < srcBuf.length; ofs++) {
-            int c = srcBuf[ofs];
-            if (PseudoBamDecoder.isTransparentColor(c, threshold)) {
-              dstBuf[ofs] = (byte)transIndex;
-            } else {
-              Byte colIdx = colorCache.get(Integer.valueOf(c));
-              if (colIdx != null) {
-                int ci = colIdx.intValue() & 0xff;
-                if (ci >= transIndex) ci++;
-                dstBuf[ofs] = colIdx.byteValue();//(byte)ci;
-              } else {
-                byte color = (byte)ColorConvert.nearestColorRGB(srcBuf[ofs], palette, !getUseAlpha());
-                dstBuf[ofs] = color;//(byte)ci;
-                colorCache.put(Integer.valueOf(c), Byte.valueOf(color));
-              }
+            if (PseudoBamDecoder.isTransparentColor(srcBuf[ofs], threshold)) {
+              dstBuf[ofs] = transColor;
             }
           }
           srcBuf = null;
           srcImage.flush();
           srcImage = null;
           dstBuf = null;
+          return dstImage;
+        };
+      } else {
+        // BAM v2: create truecolored version of each frame
+        converter = srcEntry -> ColorConvert.toBufferedImage(srcEntry.getFrame(), true, true);
+      }
 
-          PseudoBamFrameEntry dstEntry = new PseudoBamFrameEntry(dstImage, srcEntry.getCenterX(),
-                                                                 srcEntry.getCenterY());
-          // adding frame-specific options
-          options = srcEntry.getOptionNames();
-          for (int j = 0; j < options.length; j++) {
-            dstEntry.setOption(options[j], srcEntry.getOption(options[j]));
-          }
-          dstListFrames.add(dstEntry);
+      // converting frames
+      PseudoBamFrameEntry[] frames = new PseudoBamFrameEntry[srcListFrames.size()];
+      if (frames.length >= PARALLEL_MIN_FRAMES && ForkJoinPool.getCommonPoolParallelism() > 1) {
+        AtomicReference<Exception> error = new AtomicReference<>();
+        ForkJoinPool.commonPool().invoke(new FrameTask(srcListFrames, frames, converter, 0, frames.length, error));
+        if (error.get() != null) {
+          throw error.get();
         }
       } else {
-        // BAM v2: create truecolored version of each frame
-        for (int i = 0; i < srcListFrames.size(); i++) {
-          PseudoBamFrameEntry srcEntry = srcListFrames.get(i);
-          BufferedImage dstImage = ColorConvert.toBufferedImage(srcEntry.getFrame(), true, true);
-          PseudoBamFrameEntry dstEntry = new PseudoBamFrameEntry(dstImage, srcEntry.getCenterX(),
-                                                                 srcEntry.getCenterY());
-          // adding frame-specific options
-          options = srcEntry.getOptionNames();
-          for (int j = 0; j < options.length; j++) {
-            dstEntry.setOption(options[j], srcEntry.getOption(options[j]));
+        for (int i = 0; i < frames.length; i++) {
+          frames[i] = convertFrame(srcListFrames.get(i), converter);
+        }
+      }
+
+      // processing each filter sequentially
+      try {
+        for (final BamFilterBase filter : filters) {
+          if (filter instanceof BamFilterBaseColor) {
+            for (final PseudoBamFrameEntry entry : frames) {
+              BufferedImage image = ((BamFilterBaseColor)filter).process(entry.getFrame());
+              if (image != null) {
+                entry.setFrame(image);
+                image = null;
+              } else {
+                throw new Exception();
+              }
+            }
+          } else if (filter instanceof BamFilterBaseTransform) {
+            ((BamFilterBaseTransform)filter).process(frames);
           }
-          dstListFrames.add(dstEntry);
         }
+      } catch (Exception e) {
+        e.printStackTrace();
+        throw e;
       }
+      dstListFrames.addAll(Arrays.asList(frames));
     } else {
       throw new Exception("Unknown target BAM format");
     }
   }
 
+  /** Converts a single source frame into a frame that is compatible with the target BAM version. */
+  private static PseudoBamFrameEntry convertFrame(PseudoBamFrameEntry srcEntry, FrameConverter converter)
+      throws Exception
+  {
+    PseudoBamFrameEntry dstEntry = new PseudoBamFrameEntry(converter.convert(srcEntry), srcEntry.getCenterX(),
+                                                           srcEntry.getCenterY());
+    // adding frame-specific options
+    String[] options = srcEntry.getOptionNames();
+    for (int j = 0; j < options.length; j++) {
+      dstEntry.setOption(options[j], srcEntry.getOption(options[j]));
+    }
+    return dstEntry;
+  }
+
   /** Creates a new single frame that is compatible with the specified BAM version. */
   private void updateFinalBamFrame(int bamVersion, int frameIdx)
   {
@@ -4190,12 +4182,7 @@ private void updateFinalBamFrame(int bamVersion, int frameIdx)
         if (transIndex < 0) {
           transIndex = 0;
         }
-        HashMap<Integer, Byte> colorCache = new HashMap<Integer, Byte>(4096);
-        for (int i = 0; i < palette.length; i++) {
-          if (i != transIndex) {
-            colorCache.put(Integer.valueOf(palette[i]), Byte.valueOf((byte)i));
-          }
-        }
+        PaletteMatcher matcher = new PaletteMatcher(palette, !getUseAlpha());
         IndexColorModel cm = new IndexColorModel(8, 256, palette, 0, getUseAlpha(), transIndex, DataBuffer.TYPE_BYTE);
 
         // converting frame
@@ -4205,21 +4192,10 @@ private void updateFinalBamFrame(int bamVersion, int frameIdx)
                                      BufferedImage.TYPE_BYTE_INDEXED, cm);
         byte[] dstBuf = ((DataBufferByte)dstImage.getRaster().getDataBuffer()).getData();
 
+        matcher.nearestColors(srcBuf, dstBuf);
         for (int ofs = 0; ofs < srcBuf.length; ofs++) {
-          int c = srcBuf[ofs];
-          if (PseudoBamDecoder.isTransparentColor(c, threshold)) {
+          if (PseudoBamDecoder.isTransparentColor(srcBuf[ofs], threshold)) {
             dstBuf[ofs] = (byte)transIndex;
-          } else {
-            Byte colIdx = colorCache.get(Integer.valueOf(c));
-            if (colIdx != null) {
-              int ci = colIdx.intValue() & 0xff;
-              if (ci >= transIndex) ci++;
-              dstBuf[ofs] = colIdx.byteValue();
-            } else {
-              byte color = (byte)ColorConvert.nearestColorRGB(srcBuf[ofs], palette, !getUseAlpha());
-              dstBuf[ofs] = color;//(byte)ci;
-              colorCache.put(Integer.valueOf(c), Byte.valueOf(color));
-            }
           }
         }
         srcBuf = null;
@@ -4384,6 +4360,54 @@ ProgressMonitor getProgressMonitor()
 
 //-------------------------- INNER CLASSES --------------------------
 
+  /** Converts a single source frame into a frame that is compatible with the target BAM version. */
+  private interface FrameConverter
+  {
+    BufferedImage convert(PseudoBamFrameEntry srcEntry) throws Exception;
+  }
+
+  /** Splits ranges of frames into tasks of the fork/join pool. */
+  private static class FrameTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final List<PseudoBamFrameEntry> srcFrames;
+    private final PseudoBamFrameEntry[] dstFrames;
+    private final FrameConverter converter;
+    private final int start, count;
+    private final AtomicReference<Exception> error;
+
+    public FrameTask(List<PseudoBamFrameEntry> srcFrames, PseudoBamFrameEntry[] dstFrames,
+                     FrameConverter converter, int start, int count, AtomicReference<Exception> error)
+    {
+      this.srcFrames = srcFrames;
+      this.dstFrames = dstFrames;
+      this.converter = converter;
+      this.start = start;
+      this.count = count;
+      this.error = error;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (count == 1) {
+        // remaining frames are skipped after the first error
+        if (error.get() == null) {
+          try {
+            dstFrames[start] = convertFrame(srcFrames.get(start), converter);
+          } catch (Exception e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      } else if (count > 1) {
+        int half = count >>> 1;
+        invokeAll(new FrameTask(srcFrames, dstFrames, converter, start, half, error),
+                  new FrameTask(srcFrames, dstFrames, converter, start + half, count - half, error));
+      }
+    }
+  }
+
   /** Manages the frames aspect of BAM resources. */
   private static class BamFramesListModel extends AbstractListModel<PseudoBamFrameEntry>
   {
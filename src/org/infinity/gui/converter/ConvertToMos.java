@@ -55,11 +55,12 @@
 import org.infinity.icon.Icons;
 import org.infinity.resource.Profile;
 import org.infinity.resource.graphics.ColorConvert;
+import org.infinity.resource.graphics.ColorQuantizer;
 import org.infinity.resource.graphics.Compressor;
 import org.infinity.resource.graphics.DxtEncoder;
+import org.infinity.resource.graphics.PaletteMatcher;
 import org.infinity.util.BinPack2D;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IntegerHashMap;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
@@ -153,12 +154,11 @@ public static boolean convertV1(Component parent, BufferedImage img, String mosF
 
       // applying color reduction to each tile
       int[] palette = new int[255];
+      ColorQuantizer quantizer = new ColorQuantizer();
       byte[] tilePalette = new byte[1024];
       byte[] tileData = new byte[64*64];
       int curPalOfs = palOfs, curTableOfs = tableOfs, curDataOfs = dataOfs;
-      IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(1536);   // caching RGBColor -> index
       for (int tileIdx = 0; tileIdx < tileList.size(); tileIdx++) {
-        colorCache.clear();
         if (showProgress) {
           if (progress.isCanceled()) {
             dst = null;
@@ -174,7 +174,7 @@ public static boolean convertV1(Component parent, BufferedImage img, String mosF
         }
 
         int[] pixels = tileList.get(tileIdx);
-        if (ColorConvert.medianCut(pixels, 255, palette, true)) {
+        if (quantizer.medianCut(pixels, 255, palette, true)) {
           // filling palette
           // first palette entry denotes transparency
           tilePalette[0] = tilePalette[2] = tilePalette[3] = 0; tilePalette[1] = (byte)255;
@@ -183,21 +183,14 @@ public static boolean convertV1(Component parent, BufferedImage img, String mosF
             tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
             tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
             tilePalette[(i << 2) + 3] = 0;
-            colorCache.put(palette[i - 1], (byte)(i - 1));
           }
           // filling pixel data
+          PaletteMatcher matcher = new PaletteMatcher(palette, true);
           for (int i = 0; i < pixels.length; i++) {
             if ((pixels[i] & 0xff000000) == 0) {
               tileData[i] = 0;
             } else {
-              Byte palIndex = colorCache.get(pixels[i]);
-              if (palIndex != null) {
-                tileData[i] = (byte)(palIndex + 1);
-              } else {
-                byte color = (byte)ColorConvert.nearestColorRGB(pixels[i], palette, true);
-                tileData[i] = (byte)(color + 1);
-                colorCache.put(pixels[i], color);
-              }
+              tileData[i] = (byte)(matcher.nearestColor(pixels[i]) + 1);
             }
           }
         } else {
@@ -61,6 +61,9 @@
 
 public class ConvertToPvrz extends ChildFrame implements ActionListener, PropertyChangeListener
 {
+  // Number of blocks encoded between updates of the progress meter
+  private static final int CHUNK_BLOCKS = 8192;
+
   private static String currentDir = Profile.getGameRoot().toString();
 
   private JList<Path> lInputList;
@@ -69,7 +72,7 @@ public class ConvertToPvrz extends ChildFrame implements ActionListener, Propert
   private JButton bInputAdd, bInputAddFolder, bInputRemove, bInputRemoveAll;
   private JButton bTargetDir, bCompressionHelp;
   private JTextField tfTargetDir;
-  private JComboBox<String> cbOverwrite, cbCompression;
+  private JComboBox<String> cbOverwrite, cbCompression, cbQuality;
   private JCheckBox cbCloseOnExit;
   private SwingWorker<List<String>, Void> workerConvert;
   private ProgressMonitor progress;
@@ -368,6 +371,7 @@ private void init()
     JLabel lTargetDir = new JLabel("Directory:");
     JLabel lOverwrite = new JLabel("Overwrite:");
     JLabel lCompression = new JLabel("Compression type:");
+    JLabel lQuality = new JLabel("Quality:");
     tfTargetDir = new JTextField();
     bTargetDir = new JButton("...");
     bTargetDir.addActionListener(this);
@@ -380,6 +384,9 @@ private void init()
     bCompressionHelp.addActionListener(this);
     bCompressionHelp.setMargin(new Insets(bCompressionHelp.getMargin().top, 4,
                                           bCompressionHelp.getMargin().bottom, 4));
+    cbQuality = new JComboBox<>(new String[]{"High", "Balanced", "Fast"});
+    cbQuality.setSelectedIndex(0);
+    cbQuality.setToolTipText("Lower quality levels speed up the color compression");
 
     JPanel pOutputSub = new JPanel(new GridBagLayout());
     c = ViewerUtil.setGBC(c, 0, 0, 1, 1, 0.0, 0.0, GridBagConstraints.LINE_START,
@@ -391,9 +398,15 @@ private void init()
     c = ViewerUtil.setGBC(c, 2, 0, 1, 1, 0.0, 0.0, GridBagConstraints.LINE_START,
                           GridBagConstraints.NONE, new Insets(0, 4, 0, 0), 8, 0);
     pOutputSub.add(cbCompression, c);
-    c = ViewerUtil.setGBC(c, 3, 0, 2, 1, 0.0, 0.0, GridBagConstraints.LINE_START,
+    c = ViewerUtil.setGBC(c, 3, 0, 1, 1, 0.0, 0.0, GridBagConstraints.LINE_START,
                           GridBagConstraints.NONE, new Insets(0, 4, 0, 0), 0, 0);
     pOutputSub.add(bCompressionHelp, c);
+    c = ViewerUtil.setGBC(c, 4, 0, 1, 1, 0.0, 0.0, GridBagConstraints.LINE_START,
+                          GridBagConstraints.NONE, new Insets(0, 16, 0, 0), 0, 0);
+    pOutputSub.add(lQuality, c);
+    c = ViewerUtil.setGBC(c, 5, 0, 1, 1, 0.0, 0.0, GridBagConstraints.LINE_START,
+                          GridBagConstraints.NONE, new Insets(0, 4, 0, 0), 8, 0);
+    pOutputSub.add(cbQuality, c);
 
     JPanel pOutput = new JPanel(new GridBagLayout());
     pOutput.setBorder(BorderFactory.createTitledBorder("Output "));
@@ -518,6 +531,34 @@ private static boolean isValidPVRInput(Path inFile)
     return result;
   }
 
+  // Encodes the specified rows of blocks one block at a time. Blocks that cannot be encoded are zeroed.
+  // Returns whether all blocks have been encoded successfully.
+  private static boolean encodeBlocks(int[] pixels, int width, int firstRow, int rowCount, byte[] output,
+                                      DxtEncoder.DxtType dxtType, DxtEncoder.Quality quality)
+  {
+    boolean retVal = true;
+    int bw = width / 4;
+    int blockSize = DxtEncoder.calcBlockSize(dxtType);
+    int[] inBlock = new int[16];
+    byte[] outBlock = new byte[blockSize];
+    for (int y = firstRow; y < firstRow + rowCount; y++) {
+      for (int x = 0; x < bw; x++) {
+        int ofs = (y*4)*width + (x*4);
+        for (int i = 0; i < 4; i++, ofs += width) {
+          System.arraycopy(pixels, ofs, inBlock, i*4, 4);
+        }
+        try {
+          DxtEncoder.encodeBlock(inBlock, outBlock, dxtType, quality);
+        } catch (Exception e) {
+          retVal = false;
+          Arrays.fill(outBlock, (byte)0);
+        }
+        System.arraycopy(outBlock, 0, output, (y*bw + x)*blockSize, blockSize);
+      }
+    }
+    return retVal;
+  }
+
   // Convert source image(s) into the PVRZ format. Returns a short summary of the conversion process.
   // Return value: First list element is used for success message, second element for error message.
   private List<String> convert()
@@ -536,6 +577,12 @@ private List<String> convert()
       case 2:  dxt = 5; break;
     }
 
+    DxtEncoder.Quality quality = DxtEncoder.Quality.HIGH;
+    switch (cbQuality.getSelectedIndex()) {
+      case 1:  quality = DxtEncoder.Quality.BALANCED; break;
+      case 2:  quality = DxtEncoder.Quality.FAST; break;
+    }
+
     Path targetPath = FileManager.resolve("");
     if (tfTargetDir.getText() != null && !tfTargetDir.getText().isEmpty()) {
       targetPath = FileManager.resolve(tfTargetDir.getText());
@@ -684,60 +731,40 @@ private List<String> convert()
               header = createPVRHeader(w, h, 7);
           }
 
-          // encoding block by block
+          // encoding in chunks of block rows
           int outSize = DxtEncoder.calcImageSize(w, h, dxtType);
           byte[] output = new byte[outSize];
-          int outOfs = 0;
           int bw = w / 4;
           int bh = h / 4;
-          int[] inBlock = new int[16];
-          byte[] outBlock = new byte[DxtEncoder.calcBlockSize(dxtType)];
-          // more initialization for progress meter
-          int counter = 0;
-          if (isSingle) {
-            progressInc = (bw*bh / 100);
-            if (progressInc == 0) {
-              progress.setMaximum(bw*bh + 1);
-              progressInc = 1;
-            }
+          int chunkRows = Math.max(1, CHUNK_BLOCKS / bw);
+          if (!isSingle) {
+            // force the progress meter to pop up
+            progress.setProgress(progressIndex);
           }
-          for (int y = 0; y < bh; y++) {
-            if (!isSingle) {
-              // force the progress meter to pop up
-              progress.setProgress(progressIndex);
+          for (int y = 0; y < bh; y += chunkRows) {
+            if (progress.isCanceled()) {
+              progress.close();
+              progress = null;
+              List<String> l = new Vector<String>(2);
+              l.add(null);
+              l.add("Conversion cancelled.");
+              return l;
             }
-            for (int x = 0; x < bw; x++) {
-              // handling progress meter
-              if (isSingle) {
-                if (counter >= progressInc) {
-                  counter = 0;
-                  progressIndex++;
-                  progress.setProgress(progressIndex);
-                }
-                counter++;
-              }
-              if (progress.isCanceled()) {
-                progress.close();
-                progress = null;
-                List<String> l = new Vector<String>(2);
-                l.add(null);
-                l.add("Conversion cancelled.");
-                return l;
-              }
 
-              // starting encoding process
-              int ofs = y*w*4 + x*4;
-              for (int i = 0; i < 4; i++, ofs+=w) {
-                System.arraycopy(pixels, ofs, inBlock, i*4, 4);
-              }
-              try {
-                DxtEncoder.encodeBlock(inBlock, outBlock, dxtType);
-              } catch (Exception e) {
+            int rows = Math.min(chunkRows, bh - y);
+            try {
+              DxtEncoder.encodeBlockRows(pixels, w, h, y, rows, output, dxtType, quality);
+            } catch (Exception e) {
+              // encoding blocks of the failed chunk individually
+              if (!encodeBlocks(pixels, w, y, rows, output, dxtType, quality)) {
                 warnings++;
-                Arrays.fill(outBlock, (byte)0);
               }
-              System.arraycopy(outBlock, 0, output, outOfs, outBlock.length);
-              outOfs += outBlock.length;
+            }
+
+            // handling progress meter (maximum is one above, to keep the dialog open until the file is written)
+            if (isSingle) {
+              progressIndex = (y + rows) * progressMax / bh;
+              progress.setProgress(progressIndex);
             }
           }
 
@@ -759,8 +786,6 @@ private List<String> convert()
           srcImg = null;
           output = null;
           pvrz = null;
-          inBlock = null;
-          outBlock = null;
           header = null;
         }
       } else {
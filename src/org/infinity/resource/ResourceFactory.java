@@ -85,10 +85,12 @@
 import org.infinity.resource.video.WbmResource;
 import org.infinity.resource.wed.WedResource;
 import org.infinity.resource.wmp.WmpResource;
+import org.infinity.search.AttributeIndex;
+import org.infinity.search.ReferenceIndex;
 import org.infinity.util.StaticSimpleXorDecryptor;
+import org.infinity.util.CacheManager;
 import org.infinity.util.CreMapCache;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IdsMapCache;
 import org.infinity.util.Misc;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.FileWatcher;
@@ -1635,8 +1637,11 @@ private boolean saveResourceInternal(Resource resource, Component parent)
     }
     JOptionPane.showMessageDialog(parent, "File saved to \"" + outPath.toAbsolutePath() + '\"',
                                   "Save complete", JOptionPane.INFORMATION_MESSAGE);
+    ReferenceIndex.invalidate(entry);
+    AttributeIndex.invalidate(entry);
+    CreMapCache.creInvalid(entry);
+    CacheManager.invalidate(entry);
     if ("IDS".equals(entry.getExtension())) {
-      IdsMapCache.remove(entry);
       final IdsBrowser idsbrowser = ChildFrame.getFirstFrame(IdsBrowser.class);
       if (idsbrowser != null) {
         idsbrowser.refreshList();
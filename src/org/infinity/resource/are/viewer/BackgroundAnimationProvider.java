@@ -46,6 +46,7 @@ public class BackgroundAnimationProvider implements BasicAnimationProvider
   private int[] palette;    // external palette
   private Rectangle imageRect;
   private BufferedImage image, working;
+  private int[] frameIndices = new int[1];    // frame indices of the current tick
 
   public BackgroundAnimationProvider()
   {
@@ -72,6 +73,10 @@ public void setAnimation(BamDecoder bam)
       // setting pseudo bam
       this.bam = BamDecoder.loadBam(ColorConvert.createCompatibleImage(1, 1, true));
     }
+    if (this.bam instanceof BamV1Decoder) {
+      // decoders are shared by identical animations
+      ((BamV1Decoder)this.bam).setFrameCacheEnabled(true);
+    }
     this.control = this.bam.createControl();
     this.control.setMode(BamDecoder.BamControl.Mode.INDIVIDUAL);
     this.control.setSharedPerCycle(!isMultiPart());
@@ -420,14 +425,18 @@ private synchronized void updateGraphics()
     if (image != null) {
       if (isActive() || isActiveIgnored()) {
         // preparing frames
-        int[] frameIndices = null;
+        int frameCount;
         if (isMultiPart()) {
-          frameIndices = new int[control.cycleCount()];
-          for (int i = 0, cCount = control.cycleCount(); i < cCount; i++) {
+          frameCount = control.cycleCount();
+          if (frameIndices.length < frameCount) {
+            frameIndices = new int[frameCount];
+          }
+          for (int i = 0; i < frameCount; i++) {
             frameIndices[i] = control.cycleGetFrameIndexAbsolute(i, control.cycleGetFrameIndex());
           }
         } else {
-          frameIndices = new int[]{control.cycleGetFrameIndexAbsolute()};
+          frameCount = 1;
+          frameIndices[0] = control.cycleGetFrameIndexAbsolute();
         }
 
         // clearing old content
@@ -438,13 +447,14 @@ private synchronized void updateGraphics()
           g.fillRect(0, 0, image.getWidth(), image.getHeight());
 
           // rendering frame
-          for (int i = 0; i < frameIndices.length; i++) {
+          for (int i = 0; i < frameCount; i++) {
             // fetching frame data
             int[] buffer = ((DataBufferInt)working.getRaster().getDataBuffer()).getData();
-            Arrays.fill(buffer, 0);
             if (bam instanceof BamV1Decoder) {
+              // all pixels of the frame area are overwritten
               ((BamV1Decoder)bam).frameGet(control, frameIndices[i], working);
             } else {
+              Arrays.fill(buffer, 0);
               bam.frameGet(control, frameIndices[i], working);
             }
 
@@ -8,6 +8,8 @@
 import java.util.HashMap;
 import java.util.Iterator;
 
+import org.infinity.util.CacheManager;
+
 /**
  * A global storage class that caches data objects of supported types associated with a unique key.
  */
@@ -24,8 +26,11 @@ public static enum Type {
     tables.put(Type.ICON, new HashMap<Object, DataWrapper>());
     tables.put(Type.ANIMATION, new HashMap<Object, DataWrapper>());
 //    tables.put(Type.Creature, new HashMap<Object, DataWrapper>());
+    CacheManager.register(new ManagedCache());
   }
 
+  private static final CacheManager.Statistics stats = new CacheManager.Statistics();
+
 
   /**
    * Generates a simple key from the hash code of the specified object.
@@ -57,10 +62,12 @@ public static synchronized boolean add(Type type, Object key, Object data)
     if (tables.get(type).containsKey(key)) {
       // add reference only
       tables.get(type).get(key).incRefCount();
+      stats.hit();
       return false;
     } else {
       // add new entry
       tables.get(type).put(key, new DataWrapper(data));
+      stats.miss();
       return true;
     }
   }
@@ -202,6 +209,43 @@ private SharedResourceCache() {}
 
 //----------------------------- INNER CLASSES -----------------------------
 
+  /**
+   * Provides usage of the cache to the cache manager. Entries are owned by the area viewers
+   * referencing them and can therefore not be discarded.
+   */
+  private static class ManagedCache implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "Area viewer resources"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.NONE; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (SharedResourceCache.class) {
+        int count = 0;
+        for (final HashMap<Object, DataWrapper> map : tables.values()) {
+          count += map.size();
+        }
+        return count;
+      }
+    }
+
+    @Override
+    public long getMemorySize() { return -1L; }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return stats; }
+
+    @Override
+    public void clear()
+    {
+      // entries are released by the area viewers
+    }
+  }
+
   /** Wrapper for data objects that supports reference counting. */
   private static class DataWrapper
   {
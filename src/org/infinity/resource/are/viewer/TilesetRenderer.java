@@ -792,12 +792,12 @@ private void drawDoorTiles()
   }
 
   // render tile graphics without overlays
-  private void drawTileSimple(int[] sourceTile, int[] renderTarget)
+  private void drawTileSimple(int[] sourceTile, int sourceOfs, int[] renderTarget)
   {
     if (sourceTile != null) {
       int pixel, fr, fg, fb;
       for (int ofs = 0; ofs < 4096; ofs++) {
-        pixel = sourceTile[ofs];
+        pixel = sourceTile[sourceOfs+ofs];
         fr = (pixel >>> 16) & 0xff;
         fg = (pixel >>> 8) & 0xff;
         fb = pixel & 0xff;
@@ -816,17 +816,19 @@ private void drawTileSimple(int[] sourceTile, int[] renderTarget)
   }
 
   // compose tile graphics in BG1 mode
-  private void drawTileMasked(int[] primaryTile, int[] secondaryTile, int[] overlayTile, int[] renderTarget, boolean isDoorTile, boolean isDoorClosed)
+  private void drawTileMasked(int[] primaryTile, int primaryOfs, int[] secondaryTile, int secondaryOfs,
+                              int[] overlayTile, int overlayOfs, int[] renderTarget, boolean isDoorTile, boolean isDoorClosed)
   {
     if (renderTarget != null) {
       int[] src = (isDoorTile && isDoorClosed) ? secondaryTile : primaryTile;
+      int srcOfs = (isDoorTile && isDoorClosed) ? secondaryOfs : primaryOfs;
       int fr, fg, fb, pixel;
       for (int ofs = 0; ofs < 4096; ofs++) {
         // composing pixel data
-        if (src != null && (src[ofs] & 0xff000000) != 0)
-          pixel = src[ofs];
+        if (src != null && (src[srcOfs+ofs] & 0xff000000) != 0)
+          pixel = src[srcOfs+ofs];
         else if (overlayTile != null)
-          pixel = overlayTile[ofs];
+          pixel = overlayTile[overlayOfs+ofs];
         else
           pixel = 0;
         fr = (pixel >>> 16) & 0xff;
@@ -843,7 +845,8 @@ else if (overlayTile != null)
   }
 
   // compose tile graphics in BG2 mode
-  private void drawTileBlended(int[] primaryTile, int[] secondaryTile, int[] overlayTile, int[] renderTarget, boolean isPaletted)
+  private void drawTileBlended(int[] primaryTile, int primaryOfs, int[] secondaryTile, int secondaryOfs,
+                               int[] overlayTile, int overlayOfs, int[] renderTarget, boolean isPaletted)
   {
     if (renderTarget != null) {
       int pixel, fr, fg, fb;
@@ -853,7 +856,7 @@ private void drawTileBlended(int[] primaryTile, int[] secondaryTile, int[] overl
       for (int ofs = 0; ofs < 4096; ofs++) {
         // getting source pixels
         if (primaryTile != null) {
-          pixel = primaryTile[ofs];
+          pixel = primaryTile[primaryOfs+ofs];
           pa = (pixel & 0xff000000) != 0;
           pr = (pixel >>> 16) & 0xff;
           pg = (pixel >>> 8) & 0xff;
@@ -861,7 +864,7 @@ private void drawTileBlended(int[] primaryTile, int[] secondaryTile, int[] overl
         }
 
         if (secondaryTile != null) {
-          pixel = secondaryTile[ofs];
+          pixel = secondaryTile[secondaryOfs+ofs];
           sa = (pixel & 0xff000000) != 0;
           sr = (pixel >>> 16) & 0xff;
           sg = (pixel >>> 8) & 0xff;
@@ -869,7 +872,7 @@ private void drawTileBlended(int[] primaryTile, int[] secondaryTile, int[] overl
         }
 
         if (overlayTile != null) {
-          pixel = overlayTile[ofs];
+          pixel = overlayTile[overlayOfs+ofs];
           or = (pixel >>> 16) & 0xff;
           og = (pixel >>> 8) & 0xff;
           ob = pixel & 0xff;
@@ -927,20 +930,28 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
         // preparing graphics data
         int overlay = tile.getOverlayIndex();
         if (overlay < listTilesets.size() && !listTilesets.get(overlay).listTiles.isEmpty()) {
-          int tileIdx = listTilesets.get(overlay).listTiles.get(0).getPrimaryIndex();
+          Tileset tsOvl = listTilesets.get(overlay);
+          Tileset tsBase = listTilesets.get(0);
+          int tileIdx = tsOvl.listTiles.get(0).getPrimaryIndex();
           int[] srcOvl = null;
-          if (tileIdx >= 0) {
-            srcOvl = listTilesets.get(overlay).listTileData.get(tileIdx);
+          int ofsOvl = 0;
+          if (tsOvl.hasTileData(tileIdx)) {
+            srcOvl = tsOvl.tileData;
+            ofsOvl = tsOvl.getTileDataOffset(tileIdx);
           }
           int[] srcPri = null;
+          int ofsPri = 0;
           tileIdx = tile.getPrimaryIndex();
-          if (tileIdx >= 0) {
-            srcPri = listTilesets.get(0).listTileData.get(tileIdx);
+          if (tsBase.hasTileData(tileIdx)) {
+            srcPri = tsBase.tileData;
+            ofsPri = tsBase.getTileDataOffset(tileIdx);
           }
           int[] srcSec = null;
+          int ofsSec = 0;
           tileIdx = tile.getSecondaryIndex();
-          if (tileIdx >= 0) {
-            srcSec = listTilesets.get(0).listTileData.get(tileIdx);
+          if (tsBase.hasTileData(tileIdx)) {
+            srcSec = tsBase.tileData;
+            ofsSec = tsBase.getTileDataOffset(tileIdx);
           }
 
           // determining correct rendering mode
@@ -948,9 +959,9 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
 
           // drawing tile graphics
           if (blended) {
-            drawTileBlended(srcPri, srcSec, srcOvl, target, tile.isTisV1());
+            drawTileBlended(srcPri, ofsPri, srcSec, ofsSec, srcOvl, ofsOvl, target, tile.isTisV1());
           } else {
-            drawTileMasked(srcPri, srcSec, srcOvl, target, isDoorTile, isDoorClosed);
+            drawTileMasked(srcPri, ofsPri, srcSec, ofsSec, srcOvl, ofsOvl, target, isDoorTile, isDoorClosed);
           }
           srcOvl = null;
           srcPri = null;
@@ -959,17 +970,19 @@ private synchronized void drawTile(Tile tile, boolean isDoorTile)
       } else {    // no overlay or disabled overlay
         // preparing tile graphics
         int[] srcTile = null;
+        int ofsTile = 0;
         int tileIdx = (!isDoorClosed || !isDoorTile) ? tile.getPrimaryIndex() : tile.getSecondaryIndex();
         if (tileIdx < 0) { tileIdx = tile.getPrimaryIndex(); }    // XXX: hackish work-around for faulty tile definitions
-        if (tileIdx >= 0 && tileIdx < listTilesets.get(0).listTileData.size()) {
-          srcTile = listTilesets.get(0).listTileData.get(tileIdx);
+        if (listTilesets.get(0).hasTileData(tileIdx)) {
+          srcTile = listTilesets.get(0).tileData;
+          ofsTile = listTilesets.get(0).getTileDataOffset(tileIdx);
         } else {
           // loading default tile
           srcTile = DEFAULT_TILE_DATA;
         }
 
         // drawing tile graphics
-        drawTileSimple(srcTile, target);
+        drawTileSimple(srcTile, ofsTile, target);
         srcTile = null;
       }
 
@@ -1072,8 +1085,9 @@ private void notifyChangeListeners()
   // Stores data of a specific overlay structure
   private static class Tileset
   {
-    // graphics data for all tiles of this overlay (as int arrays of 64*64 pixels)
-    public final List<int[]> listTileData = new ArrayList<int[]>();
+    // graphics data for all tiles of this overlay (64*64 pixels per tile, stored one after another)
+    public int[] tileData = new int[0];
+    public int tileCount;
     // info structures for all tiles of this overlay
     public final List<Tile> listTiles = new ArrayList<Tile>();
     // lists references to all tiles containing overlays from listTiles
@@ -1101,6 +1115,18 @@ public void setTileFrame(int index)
       }
     }
 
+    // Returns whether graphics data is available for the specified tile
+    public boolean hasTileData(int tileIdx)
+    {
+      return tileIdx >= 0 && tileIdx < tileCount;
+    }
+
+    // Returns the offset of the specified tile in the graphics data
+    public int getTileDataOffset(int tileIdx)
+    {
+      return tileIdx*4096;
+    }
+
     private void init(WedResource wed, Overlay ovl)
     {
       if (wed != null && ovl != null) {
@@ -1111,16 +1137,8 @@ private void init(WedResource wed, Overlay ovl)
           try {
             TisDecoder decoder = TisDecoder.loadTis(tisEntry);
             isTisPalette = decoder.getType() == TisDecoder.Type.PALETTE;
-            BufferedImage tileImage = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
-            for (int i = 0, tCount = decoder.getTileCount(); i < tCount; i++) {
-              decoder.getTile(i, tileImage);
-              int[] srcData = ((DataBufferInt)tileImage.getRaster().getDataBuffer()).getData();
-              int[] dstData = new int[64*64];
-              System.arraycopy(srcData, 0, dstData, 0, 64*64);
-              listTileData.add(dstData);
-            }
-            tileImage.flush();
-            tileImage = null;
+            tileCount = decoder.getTileCount();
+            tileData = decoder.getTileData(0, tileCount);
             decoder.close();
             decoder = null;
           } catch (Exception e) {
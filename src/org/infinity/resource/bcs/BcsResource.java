@@ -577,10 +577,8 @@ public String getText()
     if (sourceText != null) {
       return sourceText.getText();
     }
-    Decompiler decompiler = new Decompiler(text, false);
-    decompiler.setGenerateComments(BrowserMenuBar.getInstance().autogenBCSComments());
     try {
-      return decompiler.getSource();
+      return ScriptCache.get(entry, text, BrowserMenuBar.getInstance().autogenBCSComments()).getSource();
     } catch (Exception e) {
       e.printStackTrace();
       return "// Error: " + e.getMessage();
@@ -0,0 +1,457 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.bcs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.infinity.resource.Profile;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.CacheManager;
+import org.infinity.util.PersistentCache;
+
+/**
+ * Caches decompiled BCS scripts together with the resources, string references and IDS errors
+ * determined by the {@link Decompiler}.<br>
+ * <br>
+ * Cached scripts are identified by resource, comment option and indentation and validated against
+ * the compiled script code. Results are kept in memory up to a fixed number of characters
+ * and additionally stored on disk. Stored results are validated by the resource stamp and by a stamp
+ * of all IDS resources and game folders the decompiled output depends on. Modifications of these
+ * dependencies invalidate all cached scripts. Scripts with generated comments are kept in memory
+ * only, since comments include strings and script names of other resources which are not covered
+ * by these stamps.
+ */
+public final class ScriptCache
+{
+  /** Max. number of source characters kept in memory. */
+  private static final long MAX_CHARS = 16L * 1024L * 1024L;
+  /** Subfolder of the persistent cache folder containing stored scripts. */
+  private static final String CACHE_FOLDER = "scripts";
+  private static final int SCRIPT_MAGIC = 0x4e494453;   // "NIDS"
+  private static final int SCRIPT_VERSION = 1;
+
+  /** Decompiled scripts in least recently used order. */
+  private static final LinkedHashMap<String, Script> CACHE = new LinkedHashMap<>(256, 0.75f, true);
+  private static final CacheManager.Statistics STATS = new CacheManager.Statistics();
+
+  private static long numChars;
+  /** Changed whenever IDS resources have been modified. */
+  private static int generation;
+  /** Stamp of the resources the decompiled output depends on. 0 if not yet determined. */
+  private static long dependencyStamp;
+  /** Stamps of the individual resources and folders covered by {@link #dependencyStamp}. */
+  private static List<CacheManager.ResourceStamp> dependencyStamps;
+
+  static {
+    CacheManager.register(new Managed());
+  }
+
+  /**
+   * Returns the decompiled script of the specified BCS resource.
+   *
+   * @param entry The script resource. Results are not cached if {@code null}.
+   * @param code The compiled script code.
+   * @param generateComments Whether to generate comments in the decompiled source.
+   * @return The decompiled script.
+   * @throws Exception if the script could not be decompiled.
+   */
+  public static Script get(ResourceEntry entry, String code, boolean generateComments) throws Exception
+  {
+    final Decompiler decompiler = new Decompiler(code, ScriptType.BCS, true);
+    decompiler.setGenerateComments(generateComments);
+    decompiler.setGenerateResourcesUsed(true);
+    if (entry == null) {
+      decompiler.decompile();
+      return new Script(decompiler, 0L, 0);
+    }
+
+    final String key = getKey(entry, generateComments, decompiler.getIndent());
+    final long hash = hash(decompiler.getCode());
+    checkDependencies();
+    final int gen;
+    synchronized (CACHE) {
+      gen = generation;
+      final Script script = CACHE.get(key);
+      if (script != null && script.hash == hash && script.generation == gen) {
+        STATS.hit();
+        return script;
+      }
+    }
+    STATS.miss();
+
+    // scripts with comments are not stored on disk
+    final long stamp = generateComments ? 0L : PersistentCache.getStamp(entry);
+    Script script = load(key, stamp, hash, gen);
+    if (script == null) {
+      decompiler.decompile();
+      script = new Script(decompiler, hash, gen);
+      store(key, stamp, script);
+    }
+
+    boolean added = false;
+    synchronized (CACHE) {
+      if (gen == generation) {
+        final Script old = CACHE.put(key, script);
+        if (old != null) {
+          numChars -= old.getSize();
+        }
+        numChars += script.getSize();
+        // discarding least recently used scripts
+        evict(numChars - MAX_CHARS);
+        added = true;
+      }
+    }
+    if (added) {
+      CacheManager.notifyAdded(script.getSize() * 2L);
+    }
+    return script;
+  }
+
+  /** Convenience method: Returns the decompiled script of the specified resource. */
+  public static Script get(ResourceEntry entry, boolean generateComments) throws Exception
+  {
+    final BcsResource bcs = new BcsResource(entry);
+    return get(entry, bcs.getCode(), generateComments);
+  }
+
+  /** Discards all decompiled scripts, e.g. after IDS resources have been modified. */
+  public static void invalidateIds()
+  {
+    synchronized (CACHE) {
+      generation++;
+      dependencyStamp = 0L;
+      dependencyStamps = null;
+      CACHE.clear();
+      numChars = 0L;
+    }
+  }
+
+  /** Removes all scripts from memory. */
+  public static void clearCache()
+  {
+    invalidateIds();
+  }
+
+  /**
+   * Discards least recently used scripts until the specified number of characters has been freed.
+   * Returns the number of freed characters.
+   */
+  private static long evict(long chars)
+  {
+    synchronized (CACHE) {
+      long freed = 0L;
+      int count = 0;
+      for (final Iterator<Script> iter = CACHE.values().iterator(); freed < chars && iter.hasNext(); ) {
+        freed += iter.next().getSize();
+        iter.remove();
+        count++;
+      }
+      numChars -= freed;
+      STATS.evicted(count);
+      return freed;
+    }
+  }
+
+  private static String getKey(ResourceEntry entry, boolean generateComments, String indent)
+  {
+    return String.format("%s_%c_%08x", entry.getResourceName().toUpperCase(Locale.ENGLISH),
+                         generateComments ? 'C' : 'N', indent.hashCode());
+  }
+
+  /** Returns a 64-bit FNV-1a hash of the specified string. */
+  private static long hash(String s)
+  {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0, len = s.length(); i < len; i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  /** Discards all decompiled scripts if IDS resources or game folders have been modified by another application. */
+  private static void checkDependencies()
+  {
+    boolean current = true;
+    synchronized (CACHE) {
+      if (dependencyStamps == null) {
+        getDependencyStamp();
+      }
+      for (final CacheManager.ResourceStamp stamp : dependencyStamps) {
+        if (!stamp.isCurrent()) {
+          current = false;
+          break;
+        }
+      }
+    }
+    if (!current) {
+      invalidateIds();
+    }
+  }
+
+  /** Returns the stamp of all IDS resources and game folders, which affect the decompiled output. */
+  private static long getDependencyStamp()
+  {
+    synchronized (CACHE) {
+      if (dependencyStamp == 0L) {
+        final List<Path> paths = new ArrayList<>(Profile.getOverrideFolders(true));
+        paths.add(Profile.getChitinKey());
+        final List<CacheManager.ResourceStamp> stamps = new ArrayList<>();
+        long stamp = 17L;
+        for (final Path path : paths) {
+          if (path != null) {
+            stamp = stamp * 31L + PersistentCache.getStamp(path);
+            stamps.add(new CacheManager.ResourceStamp(path));
+          }
+        }
+        for (final ResourceEntry ids : ResourceFactory.getResources("IDS")) {
+          stamp = stamp * 31L + ids.getResourceName().hashCode();
+          stamp = stamp * 31L + PersistentCache.getStamp(ids);
+          stamps.add(new CacheManager.ResourceStamp(ids));
+        }
+        dependencyStamp = (stamp != 0L) ? stamp : 1L;
+        dependencyStamps = stamps;
+      }
+      return dependencyStamp;
+    }
+  }
+
+  private static Path getFile(String key, boolean create)
+  {
+    final Path folder = PersistentCache.getFolder();
+    if (folder != null) {
+      final Path path = folder.resolve(CACHE_FOLDER);
+      try {
+        if (create) {
+          Files.createDirectories(path);
+        }
+        return path.resolve(key + ".dat");
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return null;
+  }
+
+  /** Loads a stored script. Returns {@code null} if not available or outdated. */
+  private static Script load(String key, long stamp, long hash, int gen)
+  {
+    if (stamp == 0L) {
+      return null;
+    }
+    final Path file = getFile(key, false);
+    if (file == null || !Files.isRegularFile(file)) {
+      return null;
+    }
+
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (dis.readInt() != SCRIPT_MAGIC || dis.readInt() != SCRIPT_VERSION ||
+          dis.readLong() != stamp || dis.readLong() != getDependencyStamp() || dis.readLong() != hash) {
+        return null;
+      }
+      final byte[] buf = new byte[dis.readInt()];
+      dis.readFully(buf);
+      final String source = new String(buf, StandardCharsets.UTF_8);
+
+      final Set<ResourceEntry> resources = new HashSet<>();
+      for (int i = 0, cnt = dis.readInt(); i < cnt; i++) {
+        final ResourceEntry entry = ResourceFactory.getResourceEntry(dis.readUTF());
+        if (entry == null) {
+          return null;
+        }
+        resources.add(entry);
+      }
+      final Set<Integer> strrefs = new HashSet<>();
+      for (int i = 0, cnt = dis.readInt(); i < cnt; i++) {
+        strrefs.add(dis.readInt());
+      }
+      final SortedMap<Integer, String> errors = new TreeMap<>();
+      for (int i = 0, cnt = dis.readInt(); i < cnt; i++) {
+        final int line = dis.readInt();
+        errors.put(line, dis.readUTF());
+      }
+      return new Script(source, resources, strrefs, errors, hash, gen);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Stores the specified script on disk. */
+  private static void store(String key, long stamp, Script script)
+  {
+    if (stamp == 0L) {
+      return;
+    }
+    final Path file = getFile(key, true);
+    if (file == null) {
+      return;
+    }
+
+    Path tmpFile = null;
+    try {
+      tmpFile = Files.createTempFile(file.getParent(), key, ".tmp");
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        dos.writeInt(SCRIPT_MAGIC);
+        dos.writeInt(SCRIPT_VERSION);
+        dos.writeLong(stamp);
+        dos.writeLong(getDependencyStamp());
+        dos.writeLong(script.hash);
+        final byte[] buf = script.source.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(buf.length);
+        dos.write(buf);
+        dos.writeInt(script.resourcesUsed.size());
+        for (final ResourceEntry entry : script.resourcesUsed) {
+          dos.writeUTF(entry.getResourceName());
+        }
+        dos.writeInt(script.stringRefsUsed.size());
+        for (final Integer strref : script.stringRefsUsed) {
+          dos.writeInt(strref.intValue());
+        }
+        dos.writeInt(script.idsErrors.size());
+        for (final Map.Entry<Integer, String> e : script.idsErrors.entrySet()) {
+          dos.writeInt(e.getKey().intValue());
+          dos.writeUTF(e.getValue());
+        }
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      e.printStackTrace();
+      if (tmpFile != null) {
+        try {
+          Files.deleteIfExists(tmpFile);
+        } catch (IOException e2) {
+        }
+      }
+    }
+  }
+
+  private ScriptCache()
+  {
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Read-only results of a decompiled script. */
+  public static final class Script
+  {
+    private final String source;
+    private final Set<ResourceEntry> resourcesUsed;
+    private final Set<Integer> stringRefsUsed;
+    private final SortedMap<Integer, String> idsErrors;
+    private final long hash;
+    private final int generation;
+
+    private Script(Decompiler decompiler, long hash, int generation) throws Exception
+    {
+      this(decompiler.getSource(), new HashSet<>(decompiler.getResourcesUsed()),
+           new HashSet<>(decompiler.getStringRefsUsed()), new TreeMap<>(decompiler.getIdsErrors()),
+           hash, generation);
+    }
+
+    private Script(String source, Set<ResourceEntry> resources, Set<Integer> strrefs,
+                   SortedMap<Integer, String> errors, long hash, int generation)
+    {
+      this.source = source;
+      this.resourcesUsed = Collections.unmodifiableSet(resources);
+      this.stringRefsUsed = Collections.unmodifiableSet(strrefs);
+      this.idsErrors = Collections.unmodifiableSortedMap(errors);
+      this.hash = hash;
+      this.generation = generation;
+    }
+
+    /** Returns the decompiled script source. */
+    public String getSource() { return source; }
+
+    /** Returns the resources referenced by the script. */
+    public Set<ResourceEntry> getResourcesUsed() { return resourcesUsed; }
+
+    /** Returns the string references used by the script. */
+    public Set<Integer> getStringRefsUsed() { return stringRefsUsed; }
+
+    /** Returns IDS errors by line number. */
+    public SortedMap<Integer, String> getIdsErrors() { return idsErrors; }
+
+    private long getSize()
+    {
+      return source.length();
+    }
+  }
+
+  private static final class Managed implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "Decompiled scripts"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (CACHE) {
+        return CACHE.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      synchronized (CACHE) {
+        return numChars * 2L;
+      }
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return STATS; }
+
+    @Override
+    public void clear() { clearCache(); }
+
+    @Override
+    public long evict(long size) { return ScriptCache.evict((size + 1L) / 2L) * 2L; }
+
+    @Override
+    public void invalidate(ResourceEntry entry)
+    {
+      if (entry != null && "IDS".equalsIgnoreCase(entry.getExtension())) {
+        invalidateIds();
+      } else if (entry != null && "BCS".equalsIgnoreCase(entry.getExtension())) {
+        final String prefix = entry.getResourceName().toUpperCase(Locale.ENGLISH) + "_";
+        synchronized (CACHE) {
+          int count = 0;
+          for (final Iterator<Map.Entry<String, Script>> iter = CACHE.entrySet().iterator(); iter.hasNext(); ) {
+            final Map.Entry<String, Script> e = iter.next();
+            if (e.getKey().startsWith(prefix)) {
+              numChars -= e.getValue().getSize();
+              iter.remove();
+              count++;
+            }
+          }
+          STATS.evicted(count);
+        }
+      }
+    }
+  }
+}
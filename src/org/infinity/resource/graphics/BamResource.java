@@ -81,7 +81,6 @@
 import org.infinity.resource.spl.SplResource;
 import org.infinity.search.ReferenceSearcher;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IntegerHashMap;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
@@ -1078,11 +1077,6 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
       g.dispose();
       int[] chainedImageData = ((DataBufferInt)composedImage.getRaster().getDataBuffer()).getData();
       int[] palette = ColorConvert.medianCut(chainedImageData, hasTransparency ? 255 : 256, ignoreAlpha);
-      // initializing color cache
-      IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(1536);
-      for (int i = 0; i < palette.length; i++) {
-        colorCache.put(palette[i], (byte)i);
-      }
       // adding transparent color index to the palette if available
       if (hasTransparency) {
         int[] tmp = palette;
@@ -1091,10 +1085,10 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
         System.arraycopy(tmp, 0, palette, 1, tmp.length);
         tmp = null;
       }
+      PaletteMatcher matcher = new PaletteMatcher(palette, ignoreAlpha);
 
       // 2. encoding frames
       List<byte[]> frameList = new ArrayList<byte[]>(frameCount);
-      int colorShift = hasTransparency ? 1 : 0;   // considers transparent color index
       for (int i = 0; i < frameCount; i++) {
         if (decoder.frameGet(control, i) != null) {
           BufferedImage img = ColorConvert.toBufferedImage(decoder.frameGet(control, i), true);
@@ -1116,16 +1110,7 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
                 dstData[dstIdx++] = (byte)cnt;
               } else {
                 // visible pixel
-                Byte colIdx = colorCache.get(srcData[srcIdx]);
-                if (colIdx != null) {
-                  dstData[dstIdx++] = (byte)(colIdx + colorShift);
-                } else {
-                  int color = ColorConvert.nearestColorRGB(srcData[srcIdx], palette, ignoreAlpha);
-                  dstData[dstIdx++] = (byte)(color);
-                  if (color > 0) {
-                    colorCache.put(srcData[srcIdx], (byte)(color - colorShift));
-                  }
-                }
+                dstData[dstIdx++] = (byte)matcher.nearestColor(srcData[srcIdx]);
                 srcIdx++;
               }
             }
@@ -1138,20 +1123,7 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
           } else {
             // storing uncompressed pixel data
             byte[] dstData = new byte[img.getWidth()*img.getHeight()];
-            int idx = 0, max = dstData.length;
-            while (idx < max) {
-              Byte colIdx = colorCache.get(srcData[idx]);
-              if (colIdx != null) {
-                dstData[idx] = (byte)(colIdx + colorShift);
-              } else {
-                int color = ColorConvert.nearestColorRGB(srcData[idx], palette, ignoreAlpha);
-                dstData[idx] = (byte)(color);
-                if (color > 0) {
-                  colorCache.put(srcData[idx], (byte)(color - colorShift));
-                }
-              }
-              idx++;
-            }
+            matcher.nearestColors(srcData, 0, dstData, 0, dstData.length);
             frameList.add(dstData);
           }
         } else {
@@ -1232,7 +1204,6 @@ private byte[] convertToBamV1(boolean compressed) throws Exception
         }
       }
       frameList.clear(); frameList = null;
-      colorCache.clear(); colorCache = null;
       palette = null;
 
       // optionally compressing to MOSC V1
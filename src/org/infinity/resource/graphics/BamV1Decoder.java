@@ -13,10 +13,14 @@
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.infinity.resource.Profile;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.CacheManager;
 import org.infinity.util.io.StreamUtils;
 
 
@@ -25,6 +29,22 @@
  */
 public class BamV1Decoder extends BamDecoder
 {
+  // Max. number of palettes with cached frames
+  private static final int MAX_CACHED_PALETTES = 4;
+  // Max. number of pixels stored for a single palette
+  private static final int MAX_ATLAS_PIXELS = 1 << 22;
+
+  // Frame atlases of all decoders, provided to the cache manager. Atlases of decoders which are
+  // no longer in use are removed automatically.
+  private static final WeakHashMap<FrameAtlas, Boolean> atlasRegistry = new WeakHashMap<>();
+  // Provides access stamps for frame atlases
+  private static final AtomicLong atlasClock = new AtomicLong();
+  private static final CacheManager.Statistics atlasStats = new CacheManager.Statistics();
+
+  static {
+    CacheManager.register(new ManagedFrameCache());
+  }
+
   private final List<BamV1FrameEntry> listFrames = new ArrayList<BamV1FrameEntry>();
   private final List<CycleEntry> listCycles = new ArrayList<CycleEntry>();
   private final BamV1FrameEntry defaultFrameInfo = new BamV1FrameEntry(null, 0);
@@ -33,6 +53,9 @@ public class BamV1Decoder extends BamDecoder
   private ByteBuffer bamBuffer;   // contains the raw (uncompressed) data of the BAM resource
   private int[] bamPalette;    // BAM palette
   private int rleIndex;     // color index for RLE compressed pixels
+  private boolean frameCacheEnabled;
+  // decoded frames by palette, most recently used first
+  private final List<FrameAtlas> frameCache = new ArrayList<FrameAtlas>();
 
   /**
    * Loads and decodes a BAM v1 resource. This includes both compressed (BAMC) and uncompressed BAM
@@ -70,6 +93,7 @@ public void close()
     listFrames.clear();
     listCycles.clear();
     rleIndex = 0;
+    clearFrameCache();
   }
 
   @Override
@@ -149,6 +173,41 @@ public int getRleIndex()
     return rleIndex;
   }
 
+  /** Returns whether decoded frames are cached. */
+  public boolean isFrameCacheEnabled()
+  {
+    return frameCacheEnabled;
+  }
+
+  /**
+   * Specifies whether decoded frames are cached. If enabled, the frames of a cycle are decoded
+   * at once when the first of them is requested and kept for each palette in use, so that
+   * repeated requests are served by copying pixel data. The cache is only used when frames are
+   * rendered onto images of integer type. Disabling the cache discards all cached frames.
+   */
+  public void setFrameCacheEnabled(boolean enable)
+  {
+    if (enable != frameCacheEnabled) {
+      frameCacheEnabled = enable;
+      if (!enable) {
+        clearFrameCache();
+      }
+    }
+  }
+
+  /** Discards all cached frames. */
+  public void clearFrameCache()
+  {
+    synchronized (frameCache) {
+      synchronized (atlasRegistry) {
+        for (final FrameAtlas atlas : frameCache) {
+          atlasRegistry.remove(atlas);
+        }
+      }
+      frameCache.clear();
+    }
+  }
+
 
   // Initializes the current BAM
   private void init()
@@ -291,29 +350,43 @@ private void decodeFrame(BamControl control, int frameIdx, Image canvas)
         srcOfs = ofsData;
         dstOfs = 0;
       }
+
+      // using cached frame data if available
+      FrameAtlas atlas = (frameCacheEnabled && bufferI != null) ? getFrameAtlas(control, frameIdx, palette) : null;
+      if (atlas != null) {
+        srcOfs = atlas.offsets[frameIdx];
+        maxWidth = Math.min(maxWidth, srcWidth);
+      }
+
       try {
-        for (int y = 0; y < maxHeight; y++) {
-          for (int x = 0; x < srcWidth; x++, dstOfs++) {
-            if (count > 0) {
-              // writing remaining RLE compressed pixels
-              count--;
-              if (x < maxWidth) {
-                if (bufferB != null) bufferB[dstOfs] = pixel;
-                if (bufferI != null) bufferI[dstOfs] = color;
-              }
-            } else {
-              pixel = bamBuffer.get(srcOfs++);
-              color = palette[pixel & 0xff];
-              if (isCompressed && (pixel & 0xff) == rleIndex) {
-                count = bamBuffer.get(srcOfs++) & 0xff;
-              }
-              if (x < maxWidth) {
-                if (bufferB != null) bufferB[dstOfs] = pixel;
-                if (bufferI != null) bufferI[dstOfs] = color;
+        if (atlas != null) {
+          for (int y = 0; y < maxHeight && maxWidth > 0; y++, srcOfs += srcWidth, dstOfs += dstWidth) {
+            System.arraycopy(atlas.pixels, srcOfs, bufferI, dstOfs, maxWidth);
+          }
+        } else {
+          for (int y = 0; y < maxHeight; y++) {
+            for (int x = 0; x < srcWidth; x++, dstOfs++) {
+              if (count > 0) {
+                // writing remaining RLE compressed pixels
+                count--;
+                if (x < maxWidth) {
+                  if (bufferB != null) bufferB[dstOfs] = pixel;
+                  if (bufferI != null) bufferI[dstOfs] = color;
+                }
+              } else {
+                pixel = bamBuffer.get(srcOfs++);
+                color = palette[pixel & 0xff];
+                if (isCompressed && (pixel & 0xff) == rleIndex) {
+                  count = bamBuffer.get(srcOfs++) & 0xff;
+                }
+                if (x < maxWidth) {
+                  if (bufferB != null) bufferB[dstOfs] = pixel;
+                  if (bufferI != null) bufferI[dstOfs] = color;
+                }
               }
             }
+            dstOfs += dstWidth - srcWidth;
           }
-          dstOfs += dstWidth - srcWidth;
         }
       } catch (Exception e) {
         System.err.printf("Error [%s]: input (offset=%d, size=%d), output (offset=%d, size=%d)\n",
@@ -339,6 +412,164 @@ private void decodeFrame(BamControl control, int frameIdx, Image canvas)
   }
 
 
+  // Returns the cached frames for the specified palette. Decodes the frames of the cycle
+  // containing the specified frame if needed. Returns null if the frame could not be cached.
+  private FrameAtlas getFrameAtlas(BamControl control, int frameIdx, int[] palette)
+  {
+    FrameAtlas retVal = null;
+    long added = 0L;
+    synchronized (frameCache) {
+      FrameAtlas atlas = null;
+      int index = -1;
+      for (final Iterator<FrameAtlas> iter = frameCache.iterator(); iter.hasNext(); ) {
+        final FrameAtlas a = iter.next();
+        if (a.evicted) {
+          // discarded by the cache manager
+          iter.remove();
+        } else if (atlas == null && Arrays.equals(a.palette, palette)) {
+          atlas = a;
+        }
+      }
+      if (atlas != null) {
+        index = frameCache.indexOf(atlas);
+      }
+
+      if (atlas != null && atlas.offsets[frameIdx] >= 0) {
+        atlasStats.hit();
+      } else {
+        atlasStats.miss();
+        final FrameAtlas target = (atlas != null) ? atlas : new FrameAtlas(palette, listFrames.size());
+        final long oldSize = target.getMemorySize();
+        final int[] frames = getCycleFrames(control, frameIdx);
+        final boolean success = target.add(frames) || target.add(new int[]{frameIdx});
+        added = target.getMemorySize() - oldSize;
+        if (!success) {
+          // frame could not be cached: keeping cached palettes unchanged
+          if (atlas != null) {
+            registerAtlas(atlas);
+          }
+          atlas = null;
+        } else if (atlas == null) {
+          atlas = target;
+          if (frameCache.size() >= MAX_CACHED_PALETTES) {
+            final FrameAtlas old = frameCache.remove(frameCache.size() - 1);
+            synchronized (atlasRegistry) {
+              atlasRegistry.remove(old);
+            }
+          }
+        }
+      }
+
+      if (atlas != null) {
+        if (index != 0) {
+          if (index > 0) {
+            frameCache.remove(index);
+          }
+          frameCache.add(0, atlas);
+        }
+        registerAtlas(atlas);
+        retVal = atlas;
+      }
+    }
+    // cache manager may discard atlases of other decoders
+    if (added > 0L) {
+      CacheManager.notifyAdded(added);
+    }
+    return retVal;
+  }
+
+  // Adds the specified atlas to the global registry and updates its access stamp.
+  private static void registerAtlas(FrameAtlas atlas)
+  {
+    synchronized (atlasRegistry) {
+      if (!atlas.evicted) {
+        atlas.lastAccess = atlasClock.incrementAndGet();
+        atlasRegistry.put(atlas, Boolean.TRUE);
+      }
+    }
+  }
+
+  // Discards least recently used frame atlases of all decoders until the specified amount of data
+  // has been freed.
+  private static long evictFrameAtlases(long size)
+  {
+    final List<FrameAtlas> list;
+    synchronized (atlasRegistry) {
+      list = new ArrayList<>(atlasRegistry.keySet());
+    }
+    list.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+    long freed = 0L;
+    int count = 0;
+    for (final FrameAtlas atlas : list) {
+      if (freed >= size) {
+        break;
+      }
+      synchronized (atlasRegistry) {
+        if (atlasRegistry.remove(atlas) == null) {
+          continue;
+        }
+        atlas.evicted = true;
+      }
+      atlas.discard();
+      freed += atlas.getMemorySize();
+      count++;
+    }
+    atlasStats.evicted(count);
+    return freed;
+  }
+
+  // Discards the frame atlases of all decoders.
+  private static void clearFrameAtlases()
+  {
+    final List<FrameAtlas> list;
+    synchronized (atlasRegistry) {
+      list = new ArrayList<>(atlasRegistry.keySet());
+      for (final FrameAtlas atlas : list) {
+        atlas.evicted = true;
+      }
+      atlasRegistry.clear();
+    }
+    for (final FrameAtlas atlas : list) {
+      atlas.discard();
+    }
+  }
+
+  // Returns the frame indices of the cycle containing the specified frame. Prefers the current cycle.
+  private int[] getCycleFrames(BamControl control, int frameIdx)
+  {
+    int current = control.cycleGet();
+    for (int i = -1; i < listCycles.size(); i++) {
+      int cycleIdx = (i < 0) ? current : i;
+      if (cycleIdx >= 0 && cycleIdx < listCycles.size() && (i < 0 || i != current)) {
+        for (final int idx : listCycles.get(cycleIdx).frames) {
+          if (idx == frameIdx) {
+            return listCycles.get(cycleIdx).frames;
+          }
+        }
+      }
+    }
+    return new int[]{frameIdx};
+  }
+
+  // Decodes the whole frame into the buffer, using the frame width as scanline stride.
+  private void decodeFramePixels(int frameIdx, int[] palette, int[] buffer, int dstOfs)
+  {
+    BamV1FrameEntry entry = listFrames.get(frameIdx);
+    int srcOfs = entry.ofsData;
+    int dstEnd = dstOfs + entry.width * entry.height;
+    while (dstOfs < dstEnd) {
+      int pixel = bamBuffer.get(srcOfs++) & 0xff;
+      int count = 1;
+      if (entry.compressed && pixel == rleIndex) {
+        count += bamBuffer.get(srcOfs++) & 0xff;
+      }
+      count = Math.min(count, dstEnd - dstOfs);
+      Arrays.fill(buffer, dstOfs, dstOfs + count, palette[pixel]);
+      dstOfs += count;
+    }
+  }
+
+
 //-------------------------- INNER CLASSES --------------------------
 
   /** Provides information for a single frame entry */
@@ -721,4 +952,112 @@ private CycleEntry(ByteBuffer buffer, int ofsLookup, int idxCount, int idxLookup
       }
     }
   }
+
+
+  // Stores the decoded frames for a single palette in a common pixel buffer
+  private class FrameAtlas
+  {
+    private final int[] palette;
+    private final int[] offsets;   // start of frame pixels, or -1 if not yet decoded
+
+    private volatile int[] pixels;
+    private int size;
+    // access stamp used by the cache manager
+    private volatile long lastAccess;
+    // set if the atlas has been discarded by the cache manager
+    private volatile boolean evicted;
+
+    private FrameAtlas(int[] palette, int frameCount)
+    {
+      this.palette = palette.clone();
+      this.offsets = new int[frameCount];
+      Arrays.fill(this.offsets, -1);
+      this.pixels = new int[0];
+    }
+
+    // Removes the atlas from the frame cache of its decoder. Must not be called while holding the
+    // lock of the atlas registry.
+    private void discard()
+    {
+      synchronized (frameCache) {
+        frameCache.remove(this);
+      }
+    }
+
+    // Returns the memory size of the decoded pixels, in bytes
+    private long getMemorySize()
+    {
+      return pixels.length * 4L;
+    }
+
+    // Decodes all specified frames which are not yet available. Returns false if frames could not be added.
+    private boolean add(int[] frames)
+    {
+      int required = 0;
+      for (final int idx : frames) {
+        if (idx >= 0 && idx < offsets.length && offsets[idx] < 0) {
+          required += listFrames.get(idx).width * listFrames.get(idx).height;
+        }
+      }
+      if (size + required > MAX_ATLAS_PIXELS) {
+        return false;
+      }
+
+      if (required > 0) {
+        pixels = Arrays.copyOf(pixels, size + required);
+        try {
+          for (final int idx : frames) {
+            if (idx >= 0 && idx < offsets.length && offsets[idx] < 0) {
+              decodeFramePixels(idx, palette, pixels, size);
+              offsets[idx] = size;
+              size += listFrames.get(idx).width * listFrames.get(idx).height;
+            }
+          }
+        } catch (Exception e) {
+          e.printStackTrace();
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  // Provides size and usage of the frame atlases of all BAM v1 decoders to the cache manager
+  private static class ManagedFrameCache implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "BAM frames"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (atlasRegistry) {
+        return atlasRegistry.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      long size = 0L;
+      synchronized (atlasRegistry) {
+        for (final FrameAtlas atlas : atlasRegistry.keySet()) {
+          size += atlas.getMemorySize();
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return atlasStats; }
+
+    @Override
+    public void clear() { clearFrameAtlases(); }
+
+    @Override
+    public long evict(long size) { return evictFrameAtlases(size); }
+  }
 }
@@ -21,13 +21,10 @@
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.List;
-import java.util.PriorityQueue;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
@@ -229,6 +226,7 @@ public static Dimension getImageDimension(Path fileName)
 
   /**
    * Calculates the nearest color available in the given RGBA palette for the specified color.
+   * Use {@link PaletteMatcher} to match many colors against the same palette.
    * @param rgbColor The source color in ARGB format.
    * @param rgbPalette A palette containing ARGB color entries.
    * @param ignoreAlpha Whether to exclude alpha component from the calculation.
@@ -342,9 +340,9 @@ private static double[] getNormalizedColor(int color)
 
   /**
    * Reduces the number of colors of the specified pixel data block.
-   * @param pixels The pixel block of the image in ARGB format (alpha is ignored).
+   * @param pixels The pixel block of the image in ARGB format.
    * @param desiredColors The resulting number of colors after reduction (range 1..256).
-   * @param ignoreAlpha If {@code false}, only visible color values (alpha > 0) will be counted.
+   * @param ignoreAlpha Whether to treat all pixels as fully opaque.
    * @return An array containing the resulting colors, or {@code null} on error.
    */
   public static int[] medianCut(int[] pixels, int desiredColors, boolean ignoreAlpha)
@@ -361,72 +359,17 @@ public static int[] medianCut(int[] pixels, int desiredColors, boolean ignoreAlp
   }
 
   /**
-   * TODO: Consider alpha values in color reduction.
    * Reduces the number of colors of the specified pixel data block.
-   * @param pixels The pixel block of the image in ARGB format (alpha is ignored).
+   * Use {@link ColorQuantizer} directly to reduce colors of many pixel blocks in a row.
+   * @param pixels The pixel block of the image in ARGB format.
    * @param desiredColors The resulting number of colors after reduction (range 1..256).
    * @param palette The array to write the resulting colors into.
-   * @param ignoreAlpha If {@code false}, only visible color values (alpha > 0) will be counted.
+   * @param ignoreAlpha Whether to treat all pixels as fully opaque.
    * @return {@code true} if color reduction succeeded, {@code false} otherwise.
    */
   public static boolean medianCut(int[] pixels, int desiredColors, int[] palette, boolean ignoreAlpha)
   {
-    if (pixels == null || palette == null)
-      throw new NullPointerException();
-
-    if (desiredColors > 0 && desiredColors <= MAX_COLORS && palette.length >= desiredColors) {
-      PriorityQueue<PixelBlock> blockQueue =
-          new PriorityQueue<PixelBlock>(desiredColors, PixelBlock.PixelBlockComparator);
-
-      Pixel[] p = null;
-      p = new Pixel[pixels.length];
-      int mask = ignoreAlpha ? 0xff000000: 0;
-      p = new Pixel[pixels.length];
-      for (int i = 0; i < p.length; i++) {
-        p[i] = new Pixel(pixels[i] | mask);
-      }
-
-      PixelBlock initialBlock = new PixelBlock(p);
-      initialBlock.shrink();
-      blockQueue.add(initialBlock);
-      while (blockQueue.size() < desiredColors) {
-        PixelBlock longestBlock = blockQueue.poll();
-        int ofsBegin = longestBlock.offset();
-        int ofsMedian = longestBlock.offset() + (longestBlock.size() + 1) / 2;
-        int ofsEnd = longestBlock.offset() + longestBlock.size();
-        Arrays.sort(longestBlock.getPixels(), longestBlock.offset(),
-                    longestBlock.offset() + longestBlock.size(),
-                    Pixel.PixelComparator.get(longestBlock.getLongestSideIndex()));
-        PixelBlock block1 = new PixelBlock(longestBlock.getPixels(), ofsBegin, ofsMedian - ofsBegin);
-        PixelBlock block2 = new PixelBlock(longestBlock.getPixels(), ofsMedian, ofsEnd - ofsMedian);
-        block1.shrink();
-        block2.shrink();
-        blockQueue.add(block1);
-        blockQueue.add(block2);
-      }
-
-      int palIndex = 0;
-      while (!blockQueue.isEmpty() && palIndex < desiredColors) {
-        PixelBlock block = blockQueue.poll();
-        int[] sum = {0, 0, 0, 0};
-        for (int i = 0; i < block.size(); i++) {
-          for (int j = 0; j < Pixel.MAX_SIZE; j++) {
-            sum[j] += block.getPixel(i).getElement(j);
-          }
-        }
-        Pixel avgPixel = new Pixel();
-        if (block.size() > 0) {
-          for (int i = 0; i < Pixel.MAX_SIZE; i++) {
-            avgPixel.color[i] = (byte)(sum[i] / block.size());
-          }
-        }
-        palette[palIndex++] = avgPixel.toColor();
-      }
-      blockQueue.clear();
-
-      return true;
-    }
-    return false;
+    return new ColorQuantizer().medianCut(pixels, desiredColors, palette, ignoreAlpha);
   }
 
   /**
@@ -717,176 +660,6 @@ private static BufferedImage convertToIndexedImage(BufferedImage image)
 
 //-------------------------- INNER CLASSES --------------------------
 
-  private static class PixelBlock
-  {
-    private final Pixel minCorner, maxCorner;
-    private final Pixel[] pixels;
-    private final int ofs, len;
-
-    public PixelBlock(Pixel[] pixels)
-    {
-      this(pixels, 0, pixels != null ? pixels.length : 0);
-    }
-
-    public PixelBlock(Pixel[] pixels, int ofs, int len)
-    {
-      if (pixels == null)
-        throw new NullPointerException();
-
-      this.pixels = pixels;
-      this.ofs = ofs;
-      this.len = len;
-      minCorner = new Pixel(Byte.MIN_VALUE, Byte.MIN_VALUE, Byte.MIN_VALUE, Byte.MIN_VALUE);
-      maxCorner = new Pixel(Byte.MAX_VALUE, Byte.MAX_VALUE, Byte.MAX_VALUE, Byte.MAX_VALUE);
-    }
-
-    public Pixel[] getPixels()
-    {
-      return pixels;
-    }
-
-    public int size()
-    {
-      return len;
-    }
-
-    public int offset()
-    {
-      return ofs;
-    }
-
-    public Pixel getPixel(int index)
-    {
-      if (index >= 0 && index < len) {
-        return pixels[ofs + index];
-      } else {
-        return new Pixel(0);
-      }
-    }
-
-    public int getLongestSideIndex()
-    {
-      int m = Integer.MIN_VALUE;
-      int maxIndex = -1;
-      for (int i = 0; i < Pixel.MAX_SIZE; i++) {
-        int diff = maxCorner.getElement(i) - minCorner.getElement(i);
-        if (diff > m) {
-          m = diff;
-          maxIndex = i;
-        }
-      }
-      return maxIndex;
-    }
-
-    public int getLongestSideLength()
-    {
-      int i = getLongestSideIndex();
-      return maxCorner.getElement(i) - minCorner.getElement(i);
-    }
-
-    public void shrink()
-    {
-      if (len > 0) {
-        for (int i = 0; i < Pixel.MAX_SIZE; i++) {
-          minCorner.color[i] = maxCorner.color[i] = pixels[ofs].color[i];
-        }
-      } else {
-        for (int i = 0; i < Pixel.MAX_SIZE; i++) {
-          minCorner.color[i] = maxCorner.color[i] = 0;
-        }
-      }
-
-      for (int i = ofs; i < ofs + len; i++) {
-        for (int j = 0; j < Pixel.MAX_SIZE; j++) {
-          if (pixels[i].getElement(j) < minCorner.getElement(j))
-            minCorner.color[j] = pixels[i].color[j];
-          if (pixels[i].getElement(j) > maxCorner.getElement(j))
-            maxCorner.color[j] = pixels[i].color[j];
-        }
-      }
-    }
-
-    public static Comparator<PixelBlock> PixelBlockComparator = new Comparator<PixelBlock>() {
-      @Override
-      public int compare(PixelBlock pb1, PixelBlock pb2)
-      {
-        // inverting natural order by switching sides
-        return pb2.getLongestSideLength() - pb1.getLongestSideLength();
-      }
-    };
-  }
-
-  private static class Pixel
-  {
-    public static final int MAX_SIZE = 4;
-    public final byte[] color;
-
-    public Pixel()
-    {
-      this.color = new byte[]{0, 0, 0, 0};
-    }
-
-    public Pixel(int color)
-    {
-      this.color = new byte[]{(byte)((color >>> 24) & 0xff),
-                              (byte)((color >>> 16) & 0xff),
-                              (byte)((color >>> 8) & 0xff),
-                              (byte)(color & 0xff)};
-    }
-
-    public Pixel(byte r, byte g, byte b, byte a)
-    {
-      this.color = new byte[]{a, r, g, b};
-    }
-
-    public int toColor()
-    {
-      return ((color[0] & 0xff) << 24) | ((color[1] & 0xff) << 16) | ((color[2] & 0xff) << 8) | (color[3] & 0xff);
-    }
-
-    public int getElement(int index)
-    {
-      if (index >= 0 && index < MAX_SIZE) {
-        return (color[index] & 0xff);
-      }  else {
-        return 0;
-      }
-    }
-
-    public static List<Comparator<Pixel>> PixelComparator = new ArrayList<Comparator<Pixel>>(MAX_SIZE);
-    static {
-      PixelComparator.add(new Comparator<Pixel>() {
-        @Override
-        public int compare(Pixel p1, Pixel p2)
-        {
-          return p1.getElement(0) - p2.getElement(0);
-        }
-      });
-      PixelComparator.add(new Comparator<Pixel>() {
-        @Override
-        public int compare(Pixel p1, Pixel p2)
-        {
-          return p1.getElement(1) - p2.getElement(1);
-        }
-      });
-      PixelComparator.add(new Comparator<Pixel>() {
-        @Override
-        public int compare(Pixel p1, Pixel p2)
-        {
-          return p1.getElement(2) - p2.getElement(2);
-        }
-      });
-      PixelComparator.add(new Comparator<Pixel>() {
-        @Override
-        public int compare(Pixel p1, Pixel p2)
-        {
-          return p1.getElement(3) - p2.getElement(3);
-        }
-      });
-    }
-  }
-
-
   // Compare colors by perceived lightness.
   private static class CompareByLightness implements Comparator<Integer> {
     @Override
@@ -0,0 +1,238 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Reduces the number of colors of pixel data by the median cut algorithm.<br>
+ * <br>
+ * Pixels are first reduced to a histogram of unique colors and their pixel counts. Boxes of the
+ * histogram are split at the weighted median of their longest side, so that the cost of a split
+ * depends on the number of unique colors of the box instead of the number of pixels. Histograms of
+ * larger pixel blocks are built in parallel.<br>
+ * <br>
+ * Instances keep their work buffers for subsequent calls, so that a single instance can be used for
+ * reducing colors of many pixel blocks in a row. Instances must not be used by several threads
+ * at the same time.
+ */
+public class ColorQuantizer
+{
+  private static final int MAX_COLORS = 256;
+  // Bit positions of the color components {a, r, g, b}
+  private static final int[] SHIFT = { 24, 16, 8, 0 };
+
+  // work buffer for sorting pixels
+  private int[] buffer = new int[0];
+  // unique colors and their pixel counts
+  private int[] colors = new int[0];
+  private int[] counts = new int[0];
+  // weighted histogram of a single color component
+  private final long[] histogram = new long[256];
+  // range of unique colors, longest side and component index of the longest side by box
+  private final int[] boxFrom = new int[MAX_COLORS];
+  private final int[] boxTo = new int[MAX_COLORS];
+  private final int[] boxMin = new int[MAX_COLORS];
+  private final int[] boxLength = new int[MAX_COLORS];
+  private final int[] boxAxis = new int[MAX_COLORS];
+
+  public ColorQuantizer()
+  {
+  }
+
+  /**
+   * Reduces the number of colors of the specified pixel data block.
+   * @param pixels The pixel block of the image in ARGB format.
+   * @param desiredColors The resulting number of colors after reduction (range 1..256).
+   * @param ignoreAlpha Whether to treat all pixels as fully opaque.
+   * @return An array containing the resulting colors, or {@code null} on error.
+   */
+  public int[] medianCut(int[] pixels, int desiredColors, boolean ignoreAlpha)
+  {
+    if (desiredColors > 0 && desiredColors <= MAX_COLORS) {
+      int[] pal = new int[desiredColors];
+      if (medianCut(pixels, desiredColors, pal, ignoreAlpha)) {
+        return pal;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reduces the number of colors of the specified pixel data block. Unused palette entries
+   * are filled with the first resulting color if the pixel block contains less unique colors
+   * than requested.
+   * @param pixels The pixel block of the image in ARGB format.
+   * @param desiredColors The resulting number of colors after reduction (range 1..256).
+   * @param palette The array to write the resulting colors into.
+   * @param ignoreAlpha Whether to treat all pixels as fully opaque.
+   * @return {@code true} if color reduction succeeded, {@code false} otherwise.
+   */
+  public boolean medianCut(int[] pixels, int desiredColors, int[] palette, boolean ignoreAlpha)
+  {
+    if (pixels == null || palette == null) {
+      throw new NullPointerException();
+    }
+    if (desiredColors <= 0 || desiredColors > MAX_COLORS || palette.length < desiredColors) {
+      return false;
+    }
+
+    int numColors = createHistogram(pixels, ignoreAlpha);
+    int numBoxes = 0;
+    if (numColors > 0) {
+      boxFrom[0] = 0;
+      boxTo[0] = numColors;
+      updateBox(0);
+      numBoxes = 1;
+    }
+
+    while (numBoxes < desiredColors) {
+      // box with longest side is split next
+      int box = -1, maxLength = 0;
+      for (int i = 0; i < numBoxes; i++) {
+        if (boxLength[i] > maxLength) {
+          maxLength = boxLength[i];
+          box = i;
+        }
+      }
+      if (box < 0) {
+        // all boxes consist of a single color
+        break;
+      }
+      splitBox(box, numBoxes);
+      numBoxes++;
+    }
+
+    for (int i = 0; i < numBoxes; i++) {
+      palette[i] = getAverageColor(i);
+    }
+    Arrays.fill(palette, numBoxes, desiredColors, (numBoxes > 0) ? palette[0] : 0);
+
+    return true;
+  }
+
+  // Builds a sorted list of unique colors with their pixel counts. Returns the number of unique colors.
+  private int createHistogram(int[] pixels, boolean ignoreAlpha)
+  {
+    int numPixels = pixels.length;
+    if (buffer.length < numPixels) {
+      buffer = new int[numPixels];
+    }
+    int mask = ignoreAlpha ? 0xff000000 : 0;
+    for (int i = 0; i < numPixels; i++) {
+      buffer[i] = pixels[i] | mask;
+    }
+    // sorted sequentially if the block is too small for parallel sorting
+    Arrays.parallelSort(buffer, 0, numPixels);
+
+    int numColors = 0;
+    for (int i = 0; i < numPixels; ) {
+      int color = buffer[i];
+      int start = i;
+      while (++i < numPixels && buffer[i] == color) {}
+      if (numColors == colors.length) {
+        int size = Math.max(256, numColors * 2);
+        colors = Arrays.copyOf(colors, size);
+        counts = Arrays.copyOf(counts, size);
+      }
+      colors[numColors] = color;
+      counts[numColors] = i - start;
+      numColors++;
+    }
+    return numColors;
+  }
+
+  // Determines longest side of the specified box
+  private void updateBox(int box)
+  {
+    int from = boxFrom[box], to = boxTo[box];
+    int minA = 255, minR = 255, minG = 255, minB = 255;
+    int maxA = 0, maxR = 0, maxG = 0, maxB = 0;
+    for (int i = from; i < to; i++) {
+      int c = colors[i];
+      int a = c >>> 24, r = (c >>> 16) & 0xff, g = (c >>> 8) & 0xff, b = c & 0xff;
+      if (a < minA) { minA = a; }
+      if (a > maxA) { maxA = a; }
+      if (r < minR) { minR = r; }
+      if (r > maxR) { maxR = r; }
+      if (g < minG) { minG = g; }
+      if (g > maxG) { maxG = g; }
+      if (b < minB) { minB = b; }
+      if (b > maxB) { maxB = b; }
+    }
+
+    int[] min = { minA, minR, minG, minB };
+    int[] length = { maxA - minA, maxR - minR, maxG - minG, maxB - minB };
+    int axis = 0;
+    for (int i = 1; i < length.length; i++) {
+      if (length[i] > length[axis]) {
+        axis = i;
+      }
+    }
+    boxAxis[box] = axis;
+    boxMin[box] = min[axis];
+    boxLength[box] = length[axis];
+  }
+
+  // Splits the box at the weighted median of its longest side. Second half is stored as new box.
+  private void splitBox(int box, int newBox)
+  {
+    int from = boxFrom[box], to = boxTo[box];
+    int shift = SHIFT[boxAxis[box]];
+    int min = boxMin[box], max = min + boxLength[box];
+
+    long total = 0;
+    for (int i = from; i < to; i++) {
+      histogram[(colors[i] >>> shift) & 0xff] += counts[i];
+      total += counts[i];
+    }
+
+    // first half contains all colors up to the median value; both halves must not be empty
+    long target = (total + 1) / 2;
+    long sum = 0;
+    int median = min;
+    for (; median < max; median++) {
+      sum += histogram[median];
+      if (sum >= target) {
+        break;
+      }
+    }
+    median = Math.min(median, max - 1);
+    Arrays.fill(histogram, min, max + 1, 0L);
+
+    int i = from, j = to - 1;
+    while (i <= j) {
+      if (((colors[i] >>> shift) & 0xff) <= median) {
+        i++;
+      } else {
+        int c = colors[i]; colors[i] = colors[j]; colors[j] = c;
+        int n = counts[i]; counts[i] = counts[j]; counts[j] = n;
+        j--;
+      }
+    }
+
+    boxTo[box] = i;
+    boxFrom[newBox] = i;
+    boxTo[newBox] = to;
+    updateBox(box);
+    updateBox(newBox);
+  }
+
+  // Returns the average color of all pixels in the specified box
+  private int getAverageColor(int box)
+  {
+    long a = 0, r = 0, g = 0, b = 0, total = 0;
+    for (int i = boxFrom[box], to = boxTo[box]; i < to; i++) {
+      int c = colors[i];
+      long n = counts[i];
+      a += (c >>> 24) * n;
+      r += ((c >>> 16) & 0xff) * n;
+      g += ((c >>> 8) & 0xff) * n;
+      b += (c & 0xff) * n;
+      total += n;
+    }
+    return (int)(a / total) << 24 | (int)(r / total) << 16 | (int)(g / total) << 8 | (int)(b / total);
+  }
+}
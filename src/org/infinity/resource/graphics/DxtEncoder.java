@@ -29,6 +29,10 @@
 
 package org.infinity.resource.graphics;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Encodes pixel data into the DXT1/DXT3/DXT5 format.
  */
@@ -39,6 +43,21 @@
    */
   public static enum DxtType { DXT1, DXT3, DXT5 }
 
+  /**
+   * Supported compression quality levels for color data
+   * <ul>
+   * <li>FAST: Uses the range of colors along their principle axis.</li>
+   * <li>BALANCED: Uses a cluster fit along the principle axis of the colors.</li>
+   * <li>HIGH: Uses an iterative cluster fit which refines the axis of the colors (default).</li>
+   * </ul>
+   */
+  public static enum Quality { FAST, BALANCED, HIGH }
+
+  // Min. number of blocks for encoding images in parallel
+  private static final int PARALLEL_MIN_BLOCKS = 1024;
+  // Number of blocks encoded by a single task
+  private static final int TASK_BLOCKS = 256;
+
   /**
    * Encodes an image into a series of DXTn code blocks.
    * @param pixels The pixel data as array of integers in ARGB format.
@@ -49,6 +68,22 @@ public static enum DxtType { DXT1, DXT3, DXT5 }
    * @throws Exception
    */
   static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dxtType) throws Exception
+  {
+    return encodeImage(pixels, width, height, dxtType, Quality.HIGH);
+  }
+
+  /**
+   * Encodes an image into a series of DXTn code blocks.
+   * @param pixels The pixel data as array of integers in ARGB format.
+   * @param width The width of the image (must be a multiple of 4).
+   * @param height The height of the image (must be a multiple of 4).
+   * @param dxtType The compression type to use.
+   * @param quality The compression quality to use.
+   * @return A data block containing the DXT-encoded image.
+   * @throws Exception
+   */
+  static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dxtType,
+                                   Quality quality) throws Exception
   {
     // consistency check
     if (dxtType == null)
@@ -63,7 +98,7 @@ static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dx
     int size = calcImageSize(width, height, dxtType);
     byte[] output = new byte[size];
     try {
-      encodeImage(pixels, width, height, output, dxtType);
+      encodeImage(pixels, width, height, output, dxtType, quality);
     } catch (Exception e) {
       output = null;
       throw e;
@@ -83,38 +118,67 @@ static public byte[] encodeImage(int[] pixels, int width, int height, DxtType dx
    */
   static public void encodeImage(int[] pixels, int width, int height, byte[] output,
                               DxtType dxtType) throws Exception
+  {
+    encodeImage(pixels, width, height, output, dxtType, Quality.HIGH);
+  }
+
+  /**
+   * Encodes an image into a series of DXTn code blocks. Larger images are encoded in parallel.
+   * @param pixels The pixel data as array of integers in ARGB format.
+   * @param width The width of the image (must be a multiple of 4).
+   * @param height The height of the image (must be a multiple of 4).
+   * @param output The storage space for the compressed data.
+   * @param dxtType The compression type to use.
+   * @param quality The compression quality to use.
+   * @throws Exception
+   */
+  static public void encodeImage(int[] pixels, int width, int height, byte[] output,
+                                 DxtType dxtType, Quality quality) throws Exception
+  {
+    encodeBlockRows(pixels, width, height, 0, height / 4, output, dxtType, quality);
+  }
+
+  /**
+   * Encodes a range of rows of 4x4 pixel blocks into a series of DXTn code blocks. The code blocks
+   * are stored at the same position as if the whole image was encoded. Larger ranges are encoded
+   * in parallel.
+   * @param pixels The pixel data as array of integers in ARGB format.
+   * @param width The width of the image (must be a multiple of 4).
+   * @param height The height of the image (must be a multiple of 4).
+   * @param firstRow The first row of blocks to encode.
+   * @param rowCount The number of block rows to encode.
+   * @param output The storage space for the compressed data of the whole image.
+   * @param dxtType The compression type to use.
+   * @param quality The compression quality to use.
+   * @throws Exception
+   */
+  static public void encodeBlockRows(int[] pixels, int width, int height, int firstRow, int rowCount,
+                                     byte[] output, DxtType dxtType, Quality quality) throws Exception
   {
     // consistency check
     if (dxtType == null)
       throw new Exception("No DXT type specified");
+    if (quality == null)
+      throw new Exception("No compression quality specified");
     if (width <= 0 || height <= 0)
       throw new Exception("Invalid width or height specified");
     if ((width & 3) != 0 || (height & 3) != 0)
       throw new Exception("Width and height must be a multiple of 4");
+    if (firstRow < 0 || rowCount < 0 || firstRow + rowCount > height / 4)
+      throw new Exception("Invalid range of block rows specified");
     if (pixels == null || pixels.length < width*height)
       throw new Exception("Insufficient source data.");
     if (output == null || output.length < calcImageSize(width, height, dxtType))
       throw new Exception(String.format("Insufficient space in output array. Needed: %d bytes, available: %d bytes",
                           calcImageSize(width, height, dxtType), (output == null) ? 0 : output.length));
 
-    int outputOfs = 0;    // points to the end of encoded data
     int bw = width / 4;
-    int bh = height / 4;
-    int[] inBlock = new int[16];
-    byte[] outBlock = new byte[calcBlockSize(dxtType)];
-    for (int y = 0; y < bh; y++) {
-      for (int x = 0; x < bw; x++) {
-        // create 4x4 block of pixels for DXTn compression
-        int ofs = (y*4)*width + (x*4);
-        for (int i = 0; i < 4; i++, ofs+=width) {
-          System.arraycopy(pixels, ofs, inBlock, i*4, 4);
-        }
-
-        // compress pixel block
-        encodeBlock(inBlock, outBlock, dxtType);
-        System.arraycopy(outBlock, 0, output, outputOfs, outBlock.length);
-        outputOfs += outBlock.length;
-      }
+    if (rowCount > 1 && rowCount*bw >= PARALLEL_MIN_BLOCKS && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      int taskRows = Math.max(1, TASK_BLOCKS / bw);
+      ForkJoinPool.commonPool().invoke(new EncodeTask(pixels, width, output, dxtType, quality,
+                                                      firstRow, firstRow + rowCount, taskRows));
+    } else {
+      new BlockEncoder(dxtType, quality).encodeRows(pixels, width, output, firstRow, firstRow + rowCount);
     }
   }
 
@@ -125,52 +189,28 @@ static public void encodeImage(int[] pixels, int width, int height, byte[] outpu
    * @param dxtType The DXT type to use.
    */
   public static void encodeBlock(int[] pixels, byte[] block, DxtType dxtType) throws Exception
+  {
+    encodeBlock(pixels, block, dxtType, Quality.HIGH);
+  }
+
+  /**
+   * Encodes a single 4x4 block of pixel data in ARGB format into a DXTn code block.
+   * @param pixels The block of pixels to encode.
+   * @param block Data block to store the compressed DXTn data in.
+   * @param dxtType The DXT type to use.
+   * @param quality The compression quality to use.
+   */
+  public static void encodeBlock(int[] pixels, byte[] block, DxtType dxtType, Quality quality) throws Exception
   {
     if (pixels == null || pixels.length < 16)
       throw new Exception("Insufficient source data.");
     if (block == null || block.length < calcBlockSize(dxtType))
       throw new Exception(String.format("Insufficient output space. Needed: %d bytes, available: %d bytes",
                           calcBlockSize(dxtType), (block == null) ? 0 : block.length));
+    if (quality == null)
+      throw new Exception("No compression quality specified");
 
-    byte[] colorBlock = new byte[8];
-    byte[] alphaBlock = null;
-    if (dxtType == DxtType.DXT3 || dxtType == DxtType.DXT5) {
-      alphaBlock = new byte[8];
-    }
-
-    // create the minimal point set
-    ColorSet colors = new ColorSet(pixels, dxtType);
-
-    // check the compression type and compress color
-    ColorFit fit = null;
-    if (colors.getCount() == 1) {
-      // always do a single color fit
-      fit = new SingleColorFit(colors, dxtType);
-    } else if (colors.getCount() == 0) {
-      // do a range fit
-      fit = new RangeFit(colors, dxtType);
-    } else {
-      // default to a cluster fit
-      fit = new ClusterFit(colors, dxtType);
-    }
-    fit.compress(colorBlock);
-
-    // compress alpha separately if necessary
-    if (dxtType == DxtType.DXT3) {
-      Alpha.compressAlphaDxt3(pixels, alphaBlock);
-    } else if (dxtType == DxtType.DXT5) {
-      Alpha.compressAlphaDxt5(pixels, alphaBlock);
-    }
-
-    int ofs = 0;
-    if (alphaBlock != null) {
-      for (int i = 0; i < alphaBlock.length; i++, ofs++) {
-        block[ofs] = alphaBlock[i];
-      }
-    }
-    for (int i = 0; i < colorBlock.length; i++, ofs++) {
-      block[ofs] = colorBlock[i];
-    }
+    new BlockEncoder(dxtType, quality).encode(pixels, block, 0);
   }
 
 
@@ -214,6 +254,122 @@ public static int calcImageSize(int width, int height, DxtType dxtType)
 
 // --------------------------- INNER CLASSES ---------------------------
 
+  /** Encodes pixel blocks with work buffers which are reused for all blocks. */
+  private static final class BlockEncoder
+  {
+    private final DxtType dxtType;
+    private final Quality quality;
+    private final int[] inBlock = new int[16];
+    private final byte[] colorBlock = new byte[8];
+    private final byte[] alphaBlock = new byte[8];
+    private final ColorSet colors;
+    private final ClusterFit clusterFit;
+
+    public BlockEncoder(DxtType dxtType, Quality quality)
+    {
+      this.dxtType = dxtType;
+      this.quality = quality;
+      this.colors = new ColorSet();
+      this.clusterFit = new ClusterFit(colors, dxtType,
+                                       (quality == Quality.HIGH) ? ClusterFit.IterationCount : 1);
+    }
+
+    /** Encodes the block rows [rowFrom, rowTo) of the image. */
+    public void encodeRows(int[] pixels, int width, byte[] output, int rowFrom, int rowTo)
+    {
+      int bw = width / 4;
+      int blockSize = calcBlockSize(dxtType);
+      for (int y = rowFrom; y < rowTo; y++) {
+        int outputOfs = y*bw*blockSize;
+        for (int x = 0; x < bw; x++, outputOfs += blockSize) {
+          // create 4x4 block of pixels for DXTn compression
+          int ofs = (y*4)*width + (x*4);
+          for (int i = 0; i < 4; i++, ofs+=width) {
+            System.arraycopy(pixels, ofs, inBlock, i*4, 4);
+          }
+
+          // compress pixel block
+          encode(inBlock, output, outputOfs);
+        }
+      }
+    }
+
+    /** Encodes 16 pixels into a single code block at the specified offset. */
+    public void encode(int[] pixels, byte[] block, int blockOfs)
+    {
+      // create the minimal point set
+      colors.init(pixels, dxtType);
+
+      // check the compression type and compress color
+      ColorFit fit = null;
+      if (colors.getCount() == 1) {
+        // always do a single color fit
+        fit = new SingleColorFit(colors, dxtType);
+      } else if (colors.getCount() == 0 || quality == Quality.FAST) {
+        // do a range fit
+        fit = new RangeFit(colors, dxtType);
+      } else {
+        // default to a cluster fit
+        fit = clusterFit.init();
+      }
+      Arrays.fill(colorBlock, (byte)0);
+      fit.compress(colorBlock);
+
+      // compress alpha separately if necessary
+      int ofs = blockOfs;
+      if (dxtType == DxtType.DXT3 || dxtType == DxtType.DXT5) {
+        if (dxtType == DxtType.DXT3) {
+          Alpha.compressAlphaDxt3(pixels, alphaBlock);
+        } else {
+          Alpha.compressAlphaDxt5(pixels, alphaBlock);
+        }
+        System.arraycopy(alphaBlock, 0, block, ofs, alphaBlock.length);
+        ofs += alphaBlock.length;
+      }
+      System.arraycopy(colorBlock, 0, block, ofs, colorBlock.length);
+    }
+  }
+
+
+  /** Splits ranges of block rows into tasks of the fork/join pool. */
+  private static final class EncodeTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] pixels;
+    private final int width;
+    private final byte[] output;
+    private final DxtType dxtType;
+    private final Quality quality;
+    private final int rowFrom, rowTo, taskRows;
+
+    public EncodeTask(int[] pixels, int width, byte[] output, DxtType dxtType, Quality quality,
+                      int rowFrom, int rowTo, int taskRows)
+    {
+      this.pixels = pixels;
+      this.width = width;
+      this.output = output;
+      this.dxtType = dxtType;
+      this.quality = quality;
+      this.rowFrom = rowFrom;
+      this.rowTo = rowTo;
+      this.taskRows = taskRows;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (rowTo - rowFrom <= taskRows) {
+        new BlockEncoder(dxtType, quality).encodeRows(pixels, width, output, rowFrom, rowTo);
+      } else {
+        int mid = (rowFrom + rowTo) >>> 1;
+        invokeAll(new EncodeTask(pixels, width, output, dxtType, quality, rowFrom, mid, taskRows),
+                  new EncodeTask(pixels, width, output, dxtType, quality, mid, rowTo, taskRows));
+      }
+    }
+  }
+
+
   private static class ColorSet
   {
     private final Vec3[] points;
@@ -228,11 +384,19 @@ public static int argb(int color, int pos)
       return (color >>> ((pos & 3) << 3)) & 0xff;
     }
 
-    public ColorSet(int[] pixels, DxtType dxtType)
+    public ColorSet()
     {
       points = new Vec3[16];
+      for (int i = 0; i < points.length; i++) {
+        points[i] = new Vec3();
+      }
       weights = new float[16];
       remap = new int[16];
+    }
+
+    /** Creates the minimal set of the specified pixels. Previous content is discarded. */
+    public void init(int[] pixels, DxtType dxtType)
+    {
       count = 0;
       transparent = false;
 
@@ -260,7 +424,9 @@ public ColorSet(int[] pixels, DxtType dxtType)
             float w = (float)(argb(pixels[i], 3) + 1) / 256.0f;
 
             // add the points
-            points[count] = new Vec3(x, y, z);
+            points[count].vx = x;
+            points[count].vy = y;
+            points[count].vz = z;
             weights[count] = w;
             remap[i] = count;
 
@@ -615,25 +781,44 @@ private static class ClusterFit extends ColorFit
   {
     private static final int IterationCount = 8;
 
+    // using perceptual metric for color error
+    private static final float METRIC_X = 0.2126f, METRIC_Y = 0.7152f, METRIC_Z = 0.0722f;
+
+    private final int iterationCount;
     private final int[] order;
-    private final Vec4[] pointsWeights;
+    // ordered points multiplied by their weights: {x, y, z, weight}
+    private final float[] pointsX, pointsY, pointsZ, pointsW;
+    private final float[] dps;
+    private final int[] unordered;
+    private final int[] bestIndices;
+    // end points of the last evaluated solution
+    private final float[] lastA, lastB;
 
     private Vec3 principle;
-    private Vec4 xsum_wsum;
-    private Vec4 metric;
-    private Vec4 bestError;
+    private float xsumX, xsumY, xsumZ, xsumW;
+    private float bestError;
 
-    public ClusterFit(ColorSet colors, DxtType dxtType)
+    public ClusterFit(ColorSet colors, DxtType dxtType, int iterationCount)
     {
       super(colors, dxtType);
-      order = new int[16*IterationCount];
-      pointsWeights = new Vec4[16];
-
+      this.iterationCount = iterationCount;
+      order = new int[16*iterationCount];
+      pointsX = new float[16];
+      pointsY = new float[16];
+      pointsZ = new float[16];
+      pointsW = new float[16];
+      dps = new float[16];
+      unordered = new int[16];
+      bestIndices = new int[16];
+      lastA = new float[3];
+      lastB = new float[3];
+    }
+
+    /** Prepares the fit for the current content of the color set. */
+    public ClusterFit init()
+    {
       // initialize the best error
-      bestError = new Vec4(Float.MAX_VALUE);
-
-      // using perceptual metric for color error
-      metric = new Vec4(0.2126f, 0.7152f, 0.0722f, 0.0f);
+      bestError = Float.MAX_VALUE;
 
       // get the covariance matrix
       Sym3x3 covariance = Sym3x3.computeWeightedCovariance(this.colors.getCount(),
@@ -642,6 +827,7 @@ public ClusterFit(ColorSet colors, DxtType dxtType)
 
       // compute the principle component
       principle = Sym3x3.computePrincipleComponent(covariance);
+      return this;
     }
 
     @Override
@@ -649,71 +835,57 @@ protected void compress3(byte[] block)
     {
       // declare variables
       final int count = colors.getCount();
-      final Vec4 two = new Vec4(2.0f);
-      final Vec4 one = new Vec4(1.0f);
-      final Vec4 halfHalf2 = new Vec4(0.5f, 0.5f, 0.5f, 0.25f);
-      final Vec4 zero = new Vec4(0.0f);
-      final Vec4 half = new Vec4(0.5f);
-      final Vec4 grid = new Vec4(31.0f, 63.0f, 31.0f, 0.0f);
-      final Vec4 gridrcp = new Vec4(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f, 0.0f);
+      final float half = 0.5f, half2 = 0.25f;
 
       // prepare an ordering using the principle axis
-      constructOrdering(principle, 0);
+      constructOrdering(principle.x(), principle.y(), principle.z(), 0);
 
       // check all possible clusters and iterate on the total order
-      Vec4 bestStart = new Vec4();
-      Vec4 bestEnd = new Vec4();
-      Vec4 bestError = this.bestError;
-      int[] bestIndices = new int[16];
+      float bestStartX = 0.0f, bestStartY = 0.0f, bestStartZ = 0.0f;
+      float bestEndX = 0.0f, bestEndY = 0.0f, bestEndZ = 0.0f;
+      float bestError = this.bestError;
       int bestIteration = 0;
       int bestI = 0, bestJ = 0;
 
       // loop over iterations (we avoid the case that all points in first or last cluster)
       for (int iterIndex = 0; ; ) {
         // first cluster [0, i) is at the start
-        Vec4 part0 = new Vec4();
+        float part0X = 0.0f, part0Y = 0.0f, part0Z = 0.0f, part0W = 0.0f;
         for (int i = 0; i < count; i++) {
           // second cluster [i, j) is half along
-          Vec4 part1 = (i == 0) ? (Vec4)pointsWeights[0].clone() : new Vec4();
+          float part1X = 0.0f, part1Y = 0.0f, part1Z = 0.0f, part1W = 0.0f;
+          if (i == 0) {
+            part1X = pointsX[0]; part1Y = pointsY[0]; part1Z = pointsZ[0]; part1W = pointsW[0];
+          }
           int jmin = (i == 0) ? 1 : i;
           for (int j = jmin; ; ) {
             // last cluster [j, count) is at the end
-            Vec4 part2 = Vec4.sub(xsum_wsum, part1).sub(part0);
+            float part2X = xsumX - part1X - part0X;
+            float part2Y = xsumY - part1Y - part0Y;
+            float part2Z = xsumZ - part1Z - part0Z;
+            float part2W = xsumW - part1W - part0W;
 
             // compute least squares terms directly
-            Vec4 alphaXSum = Vec4.multiplyAdd(part1, halfHalf2, part0);
-            Vec4 alpha2Sum = alphaXSum.splatW();
+            float alphaXSumX = part1X*half + part0X;
+            float alphaXSumY = part1Y*half + part0Y;
+            float alphaXSumZ = part1Z*half + part0Z;
+            float alpha2Sum = part1W*half2 + part0W;
 
-            Vec4 betaXSum = Vec4.multiplyAdd(part1, halfHalf2, part2);
-            Vec4 beta2Sum = betaXSum.splatW();
+            float betaXSumX = part1X*half + part2X;
+            float betaXSumY = part1Y*half + part2Y;
+            float betaXSumZ = part1Z*half + part2Z;
+            float beta2Sum = part1W*half2 + part2W;
 
-            Vec4 alphaBetaSum = Vec4.mul(part1, halfHalf2).splatW();
+            float alphaBetaSum = part1W*half2;
 
-            // compute the least squares optimal points
-            Vec4 factor = Vec4.reciprocal(Vec4.negMulSub(alphaBetaSum, alphaBetaSum, Vec4.mul(alpha2Sum, beta2Sum)));
-            Vec4 a = Vec4.negMulSub(betaXSum, alphaBetaSum, Vec4.mul(alphaXSum, beta2Sum)).mul(factor);
-            Vec4 b = Vec4.negMulSub(alphaXSum, alphaBetaSum, Vec4.mul(betaXSum, alpha2Sum)).mul(factor);
-
-            // clamp to the grid
-            a = Vec4.min(one, Vec4.max(zero, a));
-            b = Vec4.min(one, Vec4.max(zero, b));
-            a = Vec4.truncate(Vec4.multiplyAdd(grid, a, half)).mul(gridrcp);
-            b = Vec4.truncate(Vec4.multiplyAdd(grid, b, half)).mul(gridrcp);
-
-            // compute the error (we skip the constant xxsum)
-            Vec4 e1 = Vec4.multiplyAdd(Vec4.mul(a, a), alpha2Sum, Vec4.mul(b, b).mul(beta2Sum));
-            Vec4 e2 = Vec4.negMulSub(a, alphaXSum, Vec4.mul(a, b).mul(alphaBetaSum));
-            Vec4 e3 = Vec4.negMulSub(b, betaXSum, e2);
-            Vec4 e4 = Vec4.multiplyAdd(two, e3, e1);
-
-            // apply the metric to the error terms
-            Vec4 e5 = Vec4.mul(e4, metric);
-            Vec4 error = Vec4.add(e5.splatX(), e5.splatY()).add(e5.splatZ());
+            // compute the least squares optimal points and compare the error
+            float error = evaluate(alphaXSumX, alphaXSumY, alphaXSumZ, alpha2Sum,
+                                   betaXSumX, betaXSumY, betaXSumZ, beta2Sum, alphaBetaSum);
 
             // keep the solution if it wins
-            if (Vec4.compareAnyLessThan(error, bestError)) {
-              bestStart = a;
-              bestEnd = b;
+            if (error < bestError) {
+              bestStartX = lastA[0]; bestStartY = lastA[1]; bestStartZ = lastA[2];
+              bestEndX = lastB[0]; bestEndY = lastB[1]; bestEndZ = lastB[2];
               bestI = i;
               bestJ = j;
               bestError = error;
@@ -723,11 +895,11 @@ protected void compress3(byte[] block)
             // advance
             if (j == count)
               break;
-            part1.add(pointsWeights[j]);
+            part1X += pointsX[j]; part1Y += pointsY[j]; part1Z += pointsZ[j]; part1W += pointsW[j];
             j++;
           }
           // advance
-          part0.add(pointsWeights[i]);
+          part0X += pointsX[i]; part0Y += pointsY[i]; part0Z += pointsZ[i]; part0W += pointsW[i];
         }
         // stop if we didn't improve in this iteration
         if (bestIteration != iterIndex)
@@ -735,20 +907,18 @@ protected void compress3(byte[] block)
 
         // advance if possible
         iterIndex++;
-        if (iterIndex == IterationCount)
+        if (iterIndex == iterationCount)
           break;
 
         // stop if a new iteration is an ordering that has already been tried
-        Vec3 axis = Vec4.sub(bestEnd, bestStart).getVec3();
-        if (!constructOrdering(axis, iterIndex))
+        if (!constructOrdering(bestEndX - bestStartX, bestEndY - bestStartY, bestEndZ - bestStartZ, iterIndex))
           break;
       }
 
       // save the block if necessary
-      if (Vec4.compareAnyLessThan(bestError, this.bestError)) {
+      if (bestError < this.bestError) {
         // remap the indices
         int orderIdx = 16*bestIteration;
-        int[] unordered = new int[16];
         for (int m = 0; m < bestI; m++)
           unordered[order[orderIdx+m]] = 0;
         for (int m = bestI; m < bestJ; m++)
@@ -759,7 +929,8 @@ protected void compress3(byte[] block)
         colors.remapIndices(unordered, bestIndices);
 
         // save the block
-        ColorBlock.writeColorBlock3(bestStart.getVec3(), bestEnd.getVec3(), bestIndices, block);
+        ColorBlock.writeColorBlock3(new Vec3(bestStartX, bestStartY, bestStartZ),
+                                    new Vec3(bestEndX, bestEndY, bestEndZ), bestIndices, block);
 
         // save the error
         this.bestError = bestError;
@@ -771,79 +942,62 @@ protected void compress4(byte[] block)
     {
       // declare variables
       final int count = colors.getCount();
-      final Vec4 two = new Vec4(2.0f);
-      final Vec4 one = new Vec4(1.0f);
-      final Vec4 oneThirdOneThird2 = new Vec4(1.0f/3.0f, 1.0f/3.0f, 1.0f/3.0f, 1.0f/9.0f);
-      final Vec4 twoThirdsTwoThirds2 = new Vec4(2.0f/3.0f, 2.0f/3.0f, 2.0f/3.0f, 4.0f/9.0f);
-      final Vec4 twoNineth = new Vec4(2.0f/9.0f);
-      final Vec4 zero = new Vec4(0.0f);
-      final Vec4 half = new Vec4(0.5f);
-      final Vec4 grid = new Vec4(31.0f, 63.0f, 31.0f, 0.0f);
-      final Vec4 gridrcp = new Vec4(1.0f/31.0f, 1.0f/63.0f, 1.0f/31.0f, 0.0f);
+      final float oneThird = 1.0f/3.0f, oneThird2 = 1.0f/9.0f;
+      final float twoThirds = 2.0f/3.0f, twoThirds2 = 4.0f/9.0f;
+      final float twoNineth = 2.0f/9.0f;
 
       // prepare an ordering using the principle axis
-      constructOrdering(principle, 0);
+      constructOrdering(principle.x(), principle.y(), principle.z(), 0);
 
       // check all possible clusters and iterate on the total order
-      Vec4 bestStart = new Vec4();
-      Vec4 bestEnd = new Vec4();
-      Vec4 bestError = this.bestError;
-      int[] bestIndices = new int[16];
+      float bestStartX = 0.0f, bestStartY = 0.0f, bestStartZ = 0.0f;
+      float bestEndX = 0.0f, bestEndY = 0.0f, bestEndZ = 0.0f;
+      float bestError = this.bestError;
       int bestIteration = 0;
       int bestI = 0, bestJ = 0, bestK = 0;
 
       // loop over iterations (we avoid the case all points in first or last cluster)
       for (int iterIndex = 0; ; ) {
         // first cluster [0, i) is at the start
-        Vec4 part0 = new Vec4();
+        float part0X = 0.0f, part0Y = 0.0f, part0Z = 0.0f, part0W = 0.0f;
         for (int i = 0; i < count; i++) {
           // second cluster [i, j) is one third along
-          Vec4 part1 = new Vec4();
+          float part1X = 0.0f, part1Y = 0.0f, part1Z = 0.0f, part1W = 0.0f;
           for (int j = i; ; ) {
             // third cluster [j, k) is two thirds along
-            Vec4 part2 = (j == 0) ? (Vec4)pointsWeights[0].clone() : new Vec4();
+            float part2X = 0.0f, part2Y = 0.0f, part2Z = 0.0f, part2W = 0.0f;
+            if (j == 0) {
+              part2X = pointsX[0]; part2Y = pointsY[0]; part2Z = pointsZ[0]; part2W = pointsW[0];
+            }
             int kmin = (j == 0) ? 1 : j;
             for (int k = kmin; ; ) {
               // last cluster [k, count) is at the end
-              Vec4 part3 = Vec4.sub(xsum_wsum, part2).sub(part1).sub(part0);
+              float part3X = xsumX - part2X - part1X - part0X;
+              float part3Y = xsumY - part2Y - part1Y - part0Y;
+              float part3Z = xsumZ - part2Z - part1Z - part0Z;
+              float part3W = xsumW - part2W - part1W - part0W;
 
               // compute least squares terms directly
-              Vec4 alphaXSum = Vec4.multiplyAdd(part2, oneThirdOneThird2,
-                                                Vec4.multiplyAdd(part1, twoThirdsTwoThirds2, part0));
-              Vec4 alpha2Sum = alphaXSum.splatW();
-
-              Vec4 betaXSum = Vec4.multiplyAdd(part1, oneThirdOneThird2,
-                                               Vec4.multiplyAdd(part2, twoThirdsTwoThirds2, part3));
-              Vec4 beta2Sum = betaXSum.splatW();
-
-              Vec4 alphaBetaSum = Vec4.mul(twoNineth, Vec4.add(part1, part2).splatW());
-
-              // compute the least-squares optimal points
-              Vec4 factor = Vec4.reciprocal(Vec4.negMulSub(alphaBetaSum, alphaBetaSum,
-                                            Vec4.mul(alpha2Sum, beta2Sum)));
-              Vec4 a = Vec4.negMulSub(betaXSum, alphaBetaSum, Vec4.mul(alphaXSum, beta2Sum)).mul(factor);
-              Vec4 b = Vec4.negMulSub(alphaXSum, alphaBetaSum, Vec4.mul(betaXSum, alpha2Sum)).mul(factor);
-
-              // clamp to the grid
-              a = Vec4.min(one, Vec4.max(zero, a));
-              b = Vec4.min(one, Vec4.max(zero, b));
-              a = Vec4.truncate(Vec4.multiplyAdd(grid, a, half)).mul(gridrcp);
-              b = Vec4.truncate(Vec4.multiplyAdd(grid, b, half)).mul(gridrcp);
-
-              // compute the error (we skip the constant xxsum)
-              Vec4 e1 = Vec4.multiplyAdd(Vec4.mul(a, a), alpha2Sum, Vec4.mul(b, b).mul(beta2Sum));
-              Vec4 e2 = Vec4.negMulSub(a, alphaXSum, Vec4.mul(a, b).mul(alphaBetaSum));
-              Vec4 e3 = Vec4.negMulSub(b, betaXSum, e2);
-              Vec4 e4 = Vec4.multiplyAdd(two, e3, e1);
-
-              // apply the metric to the error term
-              Vec4 e5 = Vec4.mul(e4, metric);
-              Vec4 error = Vec4.add(e5.splatX(), e5.splatY()).add(e5.splatZ());
+              float alphaXSumX = part2X*oneThird + (part1X*twoThirds + part0X);
+              float alphaXSumY = part2Y*oneThird + (part1Y*twoThirds + part0Y);
+              float alphaXSumZ = part2Z*oneThird + (part1Z*twoThirds + part0Z);
+              float alpha2Sum = part2W*oneThird2 + (part1W*twoThirds2 + part0W);
+
+              float betaXSumX = part1X*oneThird + (part2X*twoThirds + part3X);
+              float betaXSumY = part1Y*oneThird + (part2Y*twoThirds + part3Y);
+              float betaXSumZ = part1Z*oneThird + (part2Z*twoThirds + part3Z);
+              float beta2Sum = part1W*oneThird2 + (part2W*twoThirds2 + part3W);
+
+              float alphaBetaSum = twoNineth*(part1W + part2W);
+
+              // compute the least-squares optimal points and compare the error
+              float error = evaluate(alphaXSumX, alphaXSumY, alphaXSumZ, alpha2Sum,
+                                     betaXSumX, betaXSumY, betaXSumZ, beta2Sum, alphaBetaSum);
 
               // keep the solution if it wins
-              if (Vec4.compareAnyLessThan(error, bestError)) {
-                bestStart = a;
-                bestEnd = b;
+              if (error < bestError) {
+                bestStartX = lastA[0]; bestStartY = lastA[1]; bestStartZ = lastA[2];
+                bestEndX = lastB[0]; bestEndY = lastB[1]; bestEndZ = lastB[2];
                 bestError = error;
                 bestI = i;
                 bestJ = j;
@@ -853,17 +1007,17 @@ protected void compress4(byte[] block)
               // advance
               if (k == count)
                 break;
-              part2.add(pointsWeights[k]);
+              part2X += pointsX[k]; part2Y += pointsY[k]; part2Z += pointsZ[k]; part2W += pointsW[k];
               k++;
             }
             // advance
             if (j == count)
               break;
-            part1.add(pointsWeights[j]);
+            part1X += pointsX[j]; part1Y += pointsY[j]; part1Z += pointsZ[j]; part1W += pointsW[j];
             j++;
           }
           // advance
-          part0.add(pointsWeights[i]);
+          part0X += pointsX[i]; part0Y += pointsY[i]; part0Z += pointsZ[i]; part0W += pointsW[i];
         }
         // stop if we didn't improve in this iteration
         if (bestIteration != iterIndex)
@@ -871,20 +1025,18 @@ protected void compress4(byte[] block)
 
         // advance if possible
         iterIndex++;
-        if (iterIndex == IterationCount)
+        if (iterIndex == iterationCount)
           break;
 
         // stop if a new iteration is an ordering that has already been tried
-        Vec3 axis = Vec4.sub(bestEnd, bestStart).getVec3();
-        if (!constructOrdering(axis, iterIndex))
+        if (!constructOrdering(bestEndX - bestStartX, bestEndY - bestStartY, bestEndZ - bestStartZ, iterIndex))
           break;
       }
 
       // save the block if necessary
-      if (Vec4.compareAnyLessThan(bestError, this.bestError)) {
+      if (bestError < this.bestError) {
         // remap the indices
         int orderIdx = 16*bestIteration;
-        int[] unordered = new int[16];
         for (int m = 0; m < bestI; m++)
           unordered[order[orderIdx+m]] = 0;
         for (int m = bestI; m < bestJ; m++)
@@ -897,24 +1049,61 @@ protected void compress4(byte[] block)
         colors.remapIndices(unordered, bestIndices);
 
         // save the block
-        ColorBlock.writeColorBlock4(bestStart.getVec3(), bestEnd.getVec3(), bestIndices, block);
+        ColorBlock.writeColorBlock4(new Vec3(bestStartX, bestStartY, bestStartZ),
+                                    new Vec3(bestEndX, bestEndY, bestEndZ), bestIndices, block);
 
         // save the error
         this.bestError = bestError;
       }
     }
 
-    private boolean constructOrdering(Vec3 axis, int iteration)
+    // Computes the least squares optimal end points clamped to the grid and returns their error
+    // (we skip the constant xxsum). End points are stored in lastA and lastB.
+    private float evaluate(float alphaXSumX, float alphaXSumY, float alphaXSumZ, float alpha2Sum,
+                           float betaXSumX, float betaXSumY, float betaXSumZ, float beta2Sum,
+                           float alphaBetaSum)
+    {
+      float factor = 1.0f / (alpha2Sum*beta2Sum - alphaBetaSum*alphaBetaSum);
+
+      float aX = toGrid((alphaXSumX*beta2Sum - betaXSumX*alphaBetaSum)*factor, 31.0f, 1.0f/31.0f);
+      float aY = toGrid((alphaXSumY*beta2Sum - betaXSumY*alphaBetaSum)*factor, 63.0f, 1.0f/63.0f);
+      float aZ = toGrid((alphaXSumZ*beta2Sum - betaXSumZ*alphaBetaSum)*factor, 31.0f, 1.0f/31.0f);
+      float bX = toGrid((betaXSumX*alpha2Sum - alphaXSumX*alphaBetaSum)*factor, 31.0f, 1.0f/31.0f);
+      float bY = toGrid((betaXSumY*alpha2Sum - alphaXSumY*alphaBetaSum)*factor, 63.0f, 1.0f/63.0f);
+      float bZ = toGrid((betaXSumZ*alpha2Sum - alphaXSumZ*alphaBetaSum)*factor, 31.0f, 1.0f/31.0f);
+      lastA[0] = aX; lastA[1] = aY; lastA[2] = aZ;
+      lastB[0] = bX; lastB[1] = bY; lastB[2] = bZ;
+
+      // apply the metric to the error terms
+      float eX = (2.0f*(aX*bX*alphaBetaSum - aX*alphaXSumX - bX*betaXSumX) +
+                  (aX*aX*alpha2Sum + bX*bX*beta2Sum)) * METRIC_X;
+      float eY = (2.0f*(aY*bY*alphaBetaSum - aY*alphaXSumY - bY*betaXSumY) +
+                  (aY*aY*alpha2Sum + bY*bY*beta2Sum)) * METRIC_Y;
+      float eZ = (2.0f*(aZ*bZ*alphaBetaSum - aZ*alphaXSumZ - bZ*betaXSumZ) +
+                  (aZ*aZ*alpha2Sum + bZ*bZ*beta2Sum)) * METRIC_Z;
+      return eX + eY + eZ;
+    }
+
+    // Clamps the value to [0, 1] and rounds it to the specified grid
+    private static float toGrid(float value, float grid, float gridrcp)
+    {
+      if (Float.isNaN(value))
+        value = 0.0f;
+      value = Math.min(1.0f, Math.max(0.0f, value));
+      // truncation is exact for the positive range [0.5, grid + 0.5]
+      return (float)(int)(grid*value + 0.5f) * gridrcp;
+    }
+
+    private boolean constructOrdering(float axisX, float axisY, float axisZ, int iteration)
     {
       // cache some values
       final int count = colors.getCount();
       final Vec3[] values = colors.getPoints();
 
       // build list of dot products
-      float[] dps = new float[16];
       int orderIdx = 16*iteration;
       for (int i = 0; i < count; i++) {
-        dps[i] = Vec3.dot(values[i], axis);
+        dps[i] = values[i].vx*axisX + values[i].vy*axisY + values[i].vz*axisZ;
         order[orderIdx+i] = i;
       }
 
@@ -941,16 +1130,19 @@ private boolean constructOrdering(Vec3 axis, int iteration)
       }
 
       // copy the ordering and weight all the points
-      final Vec3[] unweighted = colors.getPoints();
       final float[] weights = colors.getWeights();
-      xsum_wsum = new Vec4();
+      xsumX = xsumY = xsumZ = xsumW = 0.0f;
       for (int i = 0; i < count; i++) {
         int j = order[orderIdx+i];
-        Vec4 p = new Vec4(unweighted[j].x(), unweighted[j].y(), unweighted[j].z(), 1.0f);
-        Vec4 w = new Vec4(weights[j]);
-        Vec4 x = Vec4.mul(p, w);
-        pointsWeights[i] = x;
-        xsum_wsum.add(x);
+        float w = weights[j];
+        pointsX[i] = values[j].vx*w;
+        pointsY[i] = values[j].vy*w;
+        pointsZ[i] = values[j].vz*w;
+        pointsW[i] = w;
+        xsumX += pointsX[i];
+        xsumY += pointsY[i];
+        xsumZ += pointsZ[i];
+        xsumW += pointsW[i];
       }
       return true;
     }
@@ -0,0 +1,264 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.graphics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps colors to the nearest entries of a fixed palette.<br>
+ * <br>
+ * Colors are matched by the same rules as {@link ColorConvert#nearestColorRGB(int, int[], boolean)}.
+ * In addition, colors which are defined by the palette are always mapped to the corresponding
+ * palette entry (the last one if the color is defined several times).<br>
+ * <br>
+ * The color space is divided into cells. For each cell the palette entries which can be nearest
+ * to any color of the cell are determined when the cell is accessed for the first time, so that
+ * queries only have to check a few palette entries. Instances can be used by several threads
+ * at the same time.
+ */
+public class PaletteMatcher
+{
+  // Weights of the color components (same as ColorConvert.nearestColorRGB)
+  private static final int WEIGHT_A = 48, WEIGHT_R = 14, WEIGHT_G = 28, WEIGHT_B = 6;
+  // Number of bits per color component which are ignored for determining the cell
+  private static final int CELL_SHIFT_RGB = 4;
+  private static final int CELL_SHIFT_ALPHA = 6;
+  private static final int CELL_BITS_RGB = 8 - CELL_SHIFT_RGB;
+  // Min. number of pixels for matching colors in parallel
+  private static final int PARALLEL_MIN_PIXELS = 1 << 16;
+  // Number of pixels matched by a single task
+  private static final int TASK_PIXELS = 1 << 14;
+
+  private final int[] palette;
+  private final boolean ignoreAlpha;
+  // index of the first transparent palette entry, or -1 if not available
+  private final int transparentIndex;
+  // open addressing hash table of palette colors
+  private final int[] exactColors;
+  private final int[] exactIndices;
+  // candidate palette indices by cell, in ascending order
+  private final AtomicReferenceArray<int[]> cells;
+
+  /**
+   * Creates a matcher for the specified palette.
+   * @param palette A palette containing ARGB color entries. The array is copied.
+   * @param ignoreAlpha Whether to exclude alpha component from the calculation.
+   */
+  public PaletteMatcher(int[] palette, boolean ignoreAlpha)
+  {
+    if (palette == null) {
+      throw new NullPointerException();
+    }
+    this.palette = palette.clone();
+    this.ignoreAlpha = ignoreAlpha;
+
+    int index = -1;
+    for (int i = 0; i < this.palette.length && index < 0; i++) {
+      if ((this.palette[i] & 0xff000000) == 0 || this.palette[i] == 0xff00ff00) {
+        index = i;
+      }
+    }
+    this.transparentIndex = index;
+
+    int capacity = Integer.highestOneBit(Math.max(4, this.palette.length) * 4);
+    this.exactColors = new int[capacity];
+    this.exactIndices = new int[capacity];
+    Arrays.fill(this.exactIndices, -1);
+    for (int i = 0; i < this.palette.length; i++) {
+      int slot = findSlot(this.palette[i]);
+      exactColors[slot] = this.palette[i];
+      exactIndices[slot] = i;
+    }
+
+    int alphaCells = ignoreAlpha ? 1 : (1 << (8 - CELL_SHIFT_ALPHA));
+    this.cells = new AtomicReferenceArray<>(alphaCells << (3 * CELL_BITS_RGB));
+  }
+
+  /** Returns a copy of the palette. */
+  public int[] getPalette()
+  {
+    return palette.clone();
+  }
+
+  /** Returns whether the alpha component is excluded from the calculation. */
+  public boolean isAlphaIgnored()
+  {
+    return ignoreAlpha;
+  }
+
+  /**
+   * Returns the palette index of the color nearest to the specified color.
+   * @param argb The source color in ARGB format.
+   * @return The palette index pointing to the nearest color, or -1 if the palette is empty.
+   */
+  public int nearestColor(int argb)
+  {
+    int index = exactIndices[findSlot(argb)];
+    if (index >= 0) {
+      return index;
+    }
+
+    int a = ignoreAlpha ? 0 : (argb >>> 24);
+    if (a == 0 && transparentIndex >= 0) {
+      // Extra check for full transparency
+      return transparentIndex;
+    }
+    int r = (argb >>> 16) & 0xff;
+    int g = (argb >>> 8) & 0xff;
+    int b = argb & 0xff;
+
+    int cell = ((((a >>> CELL_SHIFT_ALPHA) << CELL_BITS_RGB | (r >>> CELL_SHIFT_RGB))
+                 << CELL_BITS_RGB | (g >>> CELL_SHIFT_RGB)) << CELL_BITS_RGB) | (b >>> CELL_SHIFT_RGB);
+    int[] candidates = cells.get(cell);
+    if (candidates == null) {
+      candidates = getCandidates(cell);
+      cells.set(cell, candidates);
+    }
+
+    int minDist = Integer.MAX_VALUE;
+    for (final int i : candidates) {
+      int col = palette[i];
+      int da = (a - (ignoreAlpha ? 0 : (col >>> 24))) * WEIGHT_A;
+      int dr = (r - ((col >>> 16) & 0xff)) * WEIGHT_R;
+      int dg = (g - ((col >>> 8) & 0xff)) * WEIGHT_G;
+      int db = (b - (col & 0xff)) * WEIGHT_B;
+      int dist = da*da + dr*dr + dg*dg + db*db;
+      if (dist < minDist) {
+        minDist = dist;
+        index = i;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Maps a range of colors to palette indices. Larger ranges are processed in parallel.
+   * @param src Source colors in ARGB format.
+   * @param srcOfs Offset of the first source color.
+   * @param dst Receives the palette indices.
+   * @param dstOfs Offset of the first palette index.
+   * @param count Number of colors.
+   */
+  public void nearestColors(int[] src, int srcOfs, byte[] dst, int dstOfs, int count)
+  {
+    if (src == null || dst == null) {
+      throw new NullPointerException();
+    }
+    if (srcOfs < 0 || dstOfs < 0 || count < 0 || srcOfs + count > src.length || dstOfs + count > dst.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (count >= PARALLEL_MIN_PIXELS && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ForkJoinPool.commonPool().invoke(new MatchTask(src, srcOfs, dst, dstOfs, count));
+    } else {
+      for (int i = 0; i < count; i++) {
+        dst[dstOfs + i] = (byte)nearestColor(src[srcOfs + i]);
+      }
+    }
+  }
+
+  /** Maps all colors of the source array to palette indices. */
+  public void nearestColors(int[] src, byte[] dst)
+  {
+    nearestColors(src, 0, dst, 0, src.length);
+  }
+
+  // Returns the slot of the specified color in the hash table of palette colors
+  private int findSlot(int color)
+  {
+    int mask = exactColors.length - 1;
+    int slot = (color * 0x9e3779b9) >>> 16 & mask;
+    while (exactIndices[slot] >= 0 && exactColors[slot] != color) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  // Returns all palette entries which can be nearest to any color of the specified cell
+  private int[] getCandidates(int cell)
+  {
+    int mask = (1 << CELL_BITS_RGB) - 1;
+    int b0 = (cell & mask) << CELL_SHIFT_RGB;
+    int g0 = ((cell >>> CELL_BITS_RGB) & mask) << CELL_SHIFT_RGB;
+    int r0 = ((cell >>> (2 * CELL_BITS_RGB)) & mask) << CELL_SHIFT_RGB;
+    int a0 = (cell >>> (3 * CELL_BITS_RGB)) << CELL_SHIFT_ALPHA;
+    int a1 = ignoreAlpha ? 0 : a0 + (1 << CELL_SHIFT_ALPHA) - 1;
+    int rgbSize = (1 << CELL_SHIFT_RGB) - 1;
+
+    // smallest distance to the farthest color of the cell
+    int[] minDist = new int[palette.length];
+    long minMaxDist = Long.MAX_VALUE;
+    for (int i = 0; i < palette.length; i++) {
+      int col = palette[i];
+      int a = ignoreAlpha ? 0 : (col >>> 24);
+      int r = (col >>> 16) & 0xff;
+      int g = (col >>> 8) & 0xff;
+      int b = col & 0xff;
+      minDist[i] = sqr(distance(a, a0, a1) * WEIGHT_A) + sqr(distance(r, r0, r0 + rgbSize) * WEIGHT_R) +
+                   sqr(distance(g, g0, g0 + rgbSize) * WEIGHT_G) + sqr(distance(b, b0, b0 + rgbSize) * WEIGHT_B);
+      long maxDist = sqr(Math.max(Math.abs(a - a0), Math.abs(a - a1)) * WEIGHT_A) +
+                     sqr(Math.max(Math.abs(r - r0), Math.abs(r - r0 - rgbSize)) * WEIGHT_R) +
+                     sqr(Math.max(Math.abs(g - g0), Math.abs(g - g0 - rgbSize)) * WEIGHT_G) +
+                     sqr(Math.max(Math.abs(b - b0), Math.abs(b - b0 - rgbSize)) * WEIGHT_B);
+      minMaxDist = Math.min(minMaxDist, maxDist);
+    }
+
+    // entries farther away than minMaxDist are never nearest
+    int[] retVal = new int[palette.length];
+    int count = 0;
+    for (int i = 0; i < palette.length; i++) {
+      if (minDist[i] <= minMaxDist) {
+        retVal[count++] = i;
+      }
+    }
+    return Arrays.copyOf(retVal, count);
+  }
+
+  // Returns the distance of the value to the range [min, max]
+  private static int distance(int value, int min, int max)
+  {
+    return (value < min) ? min - value : (value > max) ? value - max : 0;
+  }
+
+  private static int sqr(int value)
+  {
+    return value * value;
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Splits ranges of colors into tasks of the fork/join pool. */
+  private class MatchTask extends RecursiveAction
+  {
+    private final int[] src;
+    private final byte[] dst;
+    private final int srcOfs, dstOfs, count;
+
+    public MatchTask(int[] src, int srcOfs, byte[] dst, int dstOfs, int count)
+    {
+      this.src = src;
+      this.srcOfs = srcOfs;
+      this.dst = dst;
+      this.dstOfs = dstOfs;
+      this.count = count;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (count <= TASK_PIXELS) {
+        for (int i = 0; i < count; i++) {
+          dst[dstOfs + i] = (byte)nearestColor(src[srcOfs + i]);
+        }
+      } else {
+        int half = count >>> 1;
+        invokeAll(new MatchTask(src, srcOfs, dst, dstOfs, half),
+                  new MatchTask(src, srcOfs + half, dst, dstOfs + half, count - half));
+      }
+    }
+  }
+}
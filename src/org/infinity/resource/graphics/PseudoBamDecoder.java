@@ -25,12 +25,15 @@
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.ProgressMonitor;
 
 import org.infinity.gui.converter.ConvertToPvrz;
 import org.infinity.resource.Profile;
 import org.infinity.util.BinPack2D;
+import org.infinity.util.BoundedExecutor;
 import org.infinity.util.DynamicArray;
 import org.infinity.util.Pair;
 import org.infinity.util.io.FileManager;
@@ -56,6 +59,8 @@ public class PseudoBamDecoder extends BamDecoder
 
 
   private static final Color TransparentColor = new Color(0, true);
+  // Max. number of encoded PVRZ pages waiting to be compressed and written to disk
+  private static final int PVRZ_PENDING_PAGES = 2;
 
   private final PseudoBamFrameEntry defaultFrameInfo = new PseudoBamFrameEntry(null, 0, 0);
   private final HashMap<String, Object> mapOptions = new HashMap<String, Object>();
@@ -1255,6 +1260,7 @@ private boolean buildFrameDataList(List<FrameDataV2> framesList, List<BinPack2D>
   }
 
   // Creates all PVRZ files defined in the method arguments.
+  // Pages are compressed and written to disk in the background while the next page is being encoded.
   private boolean createPvrzPages(Path path, DxtEncoder.DxtType dxtType, List<BinPack2D> gridList,
                                   List<FrameDataV2> framesList, ProgressMonitor progress,
                                   int curProgress) throws Exception
@@ -1262,8 +1268,7 @@ private boolean createPvrzPages(Path path, DxtEncoder.DxtType dxtType, List<BinP
     if (path == null) {
       path = FileManager.resolve("");
     }
-    int dxtCode = (dxtType == DxtEncoder.DxtType.DXT5) ? 11 : 7;
-    byte[] output = new byte[DxtEncoder.calcImageSize(1024, 1024, dxtType)];
+    final int dxtCode = (dxtType == DxtEncoder.DxtType.DXT5) ? 11 : 7;
     int pageMin = Integer.MAX_VALUE;
     int pageMax = -1;
     for (int i = 0; i < framesList.size(); i++) {
@@ -1279,78 +1284,106 @@ private boolean createPvrzPages(Path path, DxtEncoder.DxtType dxtType, List<BinP
       progress.setProgress(curProgress++);
     }
 
-    // processing each PVRZ page
-    for (int i = pageMin; i <= pageMax; i++) {
-      if (progress != null) {
-        if (progress.isCanceled()) {
-          throw new Exception("Conversion has been cancelled by the user.");
+    // first error reported by the background writer
+    final AtomicReference<String> errorMsg = new AtomicReference<>();
+    final BoundedExecutor writer = new BoundedExecutor(1, PVRZ_PENDING_PAGES, false);
+    boolean success = false;
+    try {
+      // processing each PVRZ page
+      for (int i = pageMin; i <= pageMax; i++) {
+        if (errorMsg.get() != null) {
+          throw new Exception(errorMsg.get());
         }
-        progress.setProgress(curProgress);
-        progress.setNote(String.format(note, curProgress, pageMax - pageMin + 1));
-        curProgress++;
-      }
-
-      Path pvrzName = path.resolve(String.format("MOS%04d.PVRZ", i));
-      BinPack2D packer = gridList.get(i - pageMin);
-      packer.shrinkBin(true);
-
-      // generating texture image
-      int tw = packer.getBinWidth();
-      int th = packer.getBinHeight();
-      BufferedImage texture = ColorConvert.createCompatibleImage(tw, th, true);
-      Graphics2D g = texture.createGraphics();
-      try {
-        g.setComposite(AlphaComposite.Src);
-        g.setColor(TransparentColor);
-        g.fillRect(0, 0, texture.getWidth(), texture.getHeight());
-        for (int frameIdx = 0; frameIdx < listFrames.size(); frameIdx++) {
-          BufferedImage image = listFrames.get(frameIdx).frame;
-          FrameDataV2 frame = framesList.get(frameIdx);
-          if (frame.page == i) {
-            int sx = frame.dx, sy = frame.dy;
-            int dx = frame.sx, dy = frame.sy;
-            int w = frame.width, h = frame.height;
-            g.fillRect(dx - 1, dy - 1, w + 2, h + 2);   // compensating for padding done in buildFrameDataList()
-            g.drawImage(image, dx, dy, dx+w, dy+h, sx, sy, sx+w, sy+h, null);
+        if (progress != null) {
+          if (progress.isCanceled()) {
+            throw new Exception("Conversion has been cancelled by the user.");
           }
+          progress.setProgress(curProgress);
+          progress.setNote(String.format(note, curProgress, pageMax - pageMin + 1));
+          curProgress++;
         }
-      } finally {
-        g.dispose();
-        g = null;
-      }
-
-      // compressing PVRZ
-      String errorMsg = null;
-      int[] textureData = ((DataBufferInt)texture.getRaster().getDataBuffer()).getData();
-      try {
-        int outSize = DxtEncoder.calcImageSize(texture.getWidth(), texture.getHeight(), dxtType);
-        DxtEncoder.encodeImage(textureData, texture.getWidth(), texture.getHeight(), output, dxtType);
-        byte[] header = ConvertToPvrz.createPVRHeader(texture.getWidth(), texture.getHeight(), dxtCode);
-        byte[] pvrz = new byte[header.length + outSize];
-        System.arraycopy(header, 0, pvrz, 0, header.length);
-        System.arraycopy(output, 0, pvrz, header.length, outSize);
-        header = null;
-        pvrz = Compressor.compress(pvrz, 0, pvrz.length, true);
-
-        // writing PVRZ to disk
-        try (OutputStream os = StreamUtils.getOutputStream(pvrzName, true)) {
-          os.write(pvrz);
+
+        final Path pvrzName = path.resolve(String.format("MOS%04d.PVRZ", i));
+        BinPack2D packer = gridList.get(i - pageMin);
+        packer.shrinkBin(true);
+
+        // generating texture image
+        final int tw = packer.getBinWidth();
+        final int th = packer.getBinHeight();
+        BufferedImage texture = ColorConvert.createCompatibleImage(tw, th, true);
+        Graphics2D g = texture.createGraphics();
+        try {
+          g.setComposite(AlphaComposite.Src);
+          g.setColor(TransparentColor);
+          g.fillRect(0, 0, texture.getWidth(), texture.getHeight());
+          for (int frameIdx = 0; frameIdx < listFrames.size(); frameIdx++) {
+            BufferedImage image = listFrames.get(frameIdx).frame;
+            FrameDataV2 frame = framesList.get(frameIdx);
+            if (frame.page == i) {
+              int sx = frame.dx, sy = frame.dy;
+              int dx = frame.sx, dy = frame.sy;
+              int w = frame.width, h = frame.height;
+              g.fillRect(dx - 1, dy - 1, w + 2, h + 2);   // compensating for padding done in buildFrameDataList()
+              g.drawImage(image, dx, dy, dx+w, dy+h, sx, sy, sx+w, sy+h, null);
+            }
+          }
+        } finally {
+          g.dispose();
+          g = null;
+        }
+
+        // encoding texture; output buffer is handed over to the background writer
+        final int outSize = DxtEncoder.calcImageSize(tw, th, dxtType);
+        final byte[] output = new byte[outSize];
+        try {
+          int[] textureData = ((DataBufferInt)texture.getRaster().getDataBuffer()).getData();
+          DxtEncoder.encodeImage(textureData, tw, th, output, dxtType);
+          textureData = null;
+          texture.flush();
+          texture = null;
         } catch (Exception e) {
-          errorMsg = String.format("Error writing PVRZ file \"%s\" to disk.", pvrzName);
           e.printStackTrace();
+          throw new Exception(String.format("Error generating PVRZ files:\n%s.", e.getMessage()));
         }
-        textureData = null;
-        pvrz = null;
-      } catch (Exception e) {
-        e.printStackTrace();
-        errorMsg = String.format("Error generating PVRZ files:\n%s.", e.getMessage());
+
+        // compressing PVRZ and writing it to disk
+        final byte[] header = ConvertToPvrz.createPVRHeader(tw, th, dxtCode);
+        writer.execute(() -> {
+          byte[] pvrz = null;
+          try {
+            pvrz = new byte[header.length + outSize];
+            System.arraycopy(header, 0, pvrz, 0, header.length);
+            System.arraycopy(output, 0, pvrz, header.length, outSize);
+            pvrz = Compressor.compress(pvrz, 0, pvrz.length, true);
+          } catch (Throwable t) {
+            // errors must not get lost in the background thread
+            t.printStackTrace();
+            errorMsg.compareAndSet(null, String.format("Error generating PVRZ files:\n%s.", t.getMessage()));
+            return;
+          }
+
+          try (OutputStream os = StreamUtils.getOutputStream(pvrzName, true)) {
+            os.write(pvrz);
+          } catch (Exception e) {
+            errorMsg.compareAndSet(null, String.format("Error writing PVRZ file \"%s\" to disk.", pvrzName));
+            e.printStackTrace();
+          }
+          pvrz = null;
+        });
       }
 
-      if (errorMsg != null) {
-        throw new Exception(errorMsg);
+      // waiting for pending pages
+      writer.awaitCompletion(-1, TimeUnit.MILLISECONDS);
+      if (errorMsg.get() != null) {
+        throw new Exception(errorMsg.get());
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        writer.cancel();
       }
+      writer.shutdown();
     }
-    output = null;
     return true;
   }
 
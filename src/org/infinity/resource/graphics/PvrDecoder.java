@@ -15,15 +15,20 @@
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.zip.InflaterInputStream;
 
 import org.infinity.resource.key.FileResourceEntry;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.CacheManager;
 import org.infinity.util.DynamicArray;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
@@ -62,10 +67,24 @@ public enum ChannelType {
     FLOAT
   }
 
-  // The global cache list for PVR objects. The "key" has to be a unique String (e.g. filename or integer as string)
-  private static final Map<String, PvrDecoder> pvrCache = new LinkedHashMap<String, PvrDecoder>();
-  // The max. number of cache entries to hold
-  private static int MaxCacheEntries = 32;
+  // The global cache list for PVR objects in access order. The "key" has to be a unique String
+  // (e.g. filename or integer as string)
+  private static final LinkedHashMap<String, PvrDecoder> pvrCache = new LinkedHashMap<>(16, 0.75f, true);
+  // The global cache list for fully decoded PVR textures in access order
+  private static final LinkedHashMap<PvrDecoder, int[]> decodedCache = new LinkedHashMap<>(16, 0.75f, true);
+  // Max. size of encoded and decoded texture data to hold, in bytes
+  private static long maxEncodedCacheSize = 64L * 1024L * 1024L;
+  private static long maxDecodedCacheSize = 64L * 1024L * 1024L;
+  // Current size of encoded and decoded texture data, in bytes
+  private static long encodedCacheSize, decodedCacheSize;
+  // Access statistics of the PVR caches
+  private static final CacheManager.Statistics cacheStats = new CacheManager.Statistics();
+  private static final CacheManager.Statistics decodedCacheStats = new CacheManager.Statistics();
+
+  static {
+    CacheManager.register(new ManagedPvrCache(false));
+    CacheManager.register(new ManagedPvrCache(true));
+  }
 
   // Supported pixel formats
   private static final EnumSet<PixelFormat> SupportedFormat =
@@ -73,7 +92,16 @@ public enum ChannelType {
                  PixelFormat.PVRTC_2BPP_RGB, PixelFormat.PVRTC_2BPP_RGBA,
                  PixelFormat.PVRTC_4BPP_RGB, PixelFormat.PVRTC_4BPP_RGBA);
 
+  // Min. number of encoded pixel blocks to decode in parallel (about 256x256 pixels)
+  private static final int PARALLEL_MIN_BLOCKS = 4096;
+  // Min. number of encoded pixel blocks decoded by a single parallel task
+  private static final int TASK_MIN_BLOCKS = 1024;
+
   private PvrInfo info;
+  // Stamp of the source file at the time it has been loaded, or null if not available
+  private CacheManager.ResourceStamp stamp;
+  // Regions decoded from the encoded texture data since the texture has been loaded or fully decoded
+  private final Set<Rectangle> decodedRegions = new HashSet<>();
 
 
   /**
@@ -97,7 +125,7 @@ public static PvrDecoder loadPvr(ResourceEntry entry)
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, entry.getResourceDataAsStream());
+        return createPvrDecoder(key, new CacheManager.ResourceStamp(entry), entry.getResourceDataAsStream());
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -121,7 +149,8 @@ public static PvrDecoder loadPvr(String fileName)
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, StreamUtils.getInputStream(FileManager.resolve(fileName)));
+        Path file = FileManager.resolve(fileName);
+        return createPvrDecoder(key, new CacheManager.ResourceStamp(file), StreamUtils.getInputStream(file));
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -142,7 +171,7 @@ public static PvrDecoder loadPvr(Path file)
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, StreamUtils.getInputStream(file));
+        return createPvrDecoder(key, new CacheManager.ResourceStamp(file), StreamUtils.getInputStream(file));
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -166,7 +195,7 @@ public static PvrDecoder loadPvr(InputStream input)
       if (decoder != null) {
         return decoder;
       } else {
-        return createPvrDecoder(key, input);
+        return createPvrDecoder(key, null, input);
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -174,78 +203,179 @@ public static PvrDecoder loadPvr(InputStream input)
     return null;
   }
 
-  /** Returns the max. number of PvrDecoder objects to cache. */
-  public static int getMaxCacheEntries()
+  /** Returns the max. size of encoded PVR data to cache, in bytes. */
+  public static synchronized long getMaxEncodedCacheSize()
   {
-    return MaxCacheEntries;
+    return maxEncodedCacheSize;
   }
 
-  /** Specify the new max. number of PvrDecoder objects to cache. Specifying 0 disables the cache. */
-  public static synchronized void setMaxCacheEntries(int maxValue)
+  /**
+   * Specify the new max. size of encoded PVR data to cache, in bytes. Specifying 0 disables the
+   * cache. Fully decoded textures are discarded together with their encoded data.
+   */
+  public static synchronized void setMaxEncodedCacheSize(long size)
   {
-    if (maxValue < 0) maxValue = 0; else if (maxValue > 65535) maxValue = 65535;
-    if (maxValue != MaxCacheEntries) {
-      MaxCacheEntries = maxValue;
-      while (pvrCache.size() > MaxCacheEntries) {
-        pvrCache.remove(pvrCache.keySet().iterator().next());
-      }
-    }
+    maxEncodedCacheSize = Math.max(0L, size);
+    trimEncodedCache(encodedCacheSize - maxEncodedCacheSize);
   }
 
-  /** Clears all available caches. */
-  public static synchronized void flushCache()
+  /** Returns the max. size of fully decoded textures to cache, in bytes. */
+  public static synchronized long getMaxDecodedCacheSize()
   {
-    pvrCache.clear();
-    DecodePVRT.flushCache();
+    return maxDecodedCacheSize;
+  }
+
+  /**
+   * Specify the new max. size of fully decoded textures to cache, in bytes. Specifying 0 disables
+   * the cache. Textures are decoded region by region in this case.
+   */
+  public static synchronized void setMaxDecodedCacheSize(long size)
+  {
+    maxDecodedCacheSize = Math.max(0L, size);
+    trimDecodedCache(decodedCacheSize - maxDecodedCacheSize);
   }
 
-  /** Returns the current cache load as percentage value. */
-  public static int getCacheLoad()
+  /** Clears all available caches. */
+  public static synchronized void flushCache()
   {
-    if (MaxCacheEntries > 0) {
-      return (pvrCache.size()*100) / MaxCacheEntries;
-    } else {
-      return 0;
-    }
+    pvrCache.clear();
+    decodedCache.clear();
+    encodedCacheSize = 0L;
+    decodedCacheSize = 0L;
   }
 
-  // Returns a PvrDecoder object only if it already exists in the cache.
+  // Returns a PvrDecoder object only if it already exists in the cache and is up to date.
   private static synchronized PvrDecoder getCachedPvrDecoder(String key)
   {
     PvrDecoder retVal = null;
     if (key != null && !key.isEmpty()) {
       key = key.toUpperCase(Locale.ENGLISH);
-      if (pvrCache.containsKey(key)) {
-        retVal = pvrCache.get(key);
-        // re-inserting entry to prevent premature removal from cache
+      retVal = pvrCache.get(key);
+      if (retVal != null && retVal.stamp != null && !retVal.stamp.isCurrent()) {
+        // resource has been modified by another application
         pvrCache.remove(key);
-        pvrCache.put(key, retVal);
+        encodedCacheSize -= retVal.getDataSize();
+        removeDecodedTexture(retVal);
+        retVal = null;
+      }
+      if (retVal != null) {
+        cacheStats.hit();
       }
     }
     return retVal;
   }
 
   // Returns a PvrDecoder object of the specified key if available, or creates and returns a new one otherwise.
-  private static synchronized PvrDecoder createPvrDecoder(String key, InputStream input)
+  private static PvrDecoder createPvrDecoder(String key, CacheManager.ResourceStamp stamp, InputStream input)
   {
-    PvrDecoder retVal = getCachedPvrDecoder(key);
-    if (retVal == null && input != null) {
-      try {
-        retVal = new PvrDecoder(input);
-        if (retVal != null) {
-          pvrCache.put(key, retVal);
-          // removing excess cache entries
-          while (pvrCache.size() > MaxCacheEntries) {
-            pvrCache.remove(pvrCache.keySet().iterator().next());
+    PvrDecoder retVal = null;
+    boolean added = false;
+    synchronized (PvrDecoder.class) {
+      retVal = getCachedPvrDecoder(key);
+      if (retVal == null && input != null) {
+        try {
+          retVal = new PvrDecoder(input);
+          if (retVal != null) {
+            retVal.stamp = stamp;
+            cacheStats.miss();
+            pvrCache.put(key.toUpperCase(Locale.ENGLISH), retVal);
+            encodedCacheSize += retVal.getDataSize();
+            added = true;
+            // removing excess cache entries
+            trimEncodedCache(encodedCacheSize - maxEncodedCacheSize);
           }
+        } catch (Exception e) {
+          e.printStackTrace();
         }
-      } catch (Exception e) {
-        e.printStackTrace();
       }
     }
+    if (added) {
+      CacheManager.notifyAdded(retVal.getDataSize());
+    }
     return retVal;
   }
 
+  // Discards least recently used PvrDecoder objects until the specified amount of data has been freed.
+  private static synchronized long trimEncodedCache(long size)
+  {
+    long freed = 0L;
+    int count = 0;
+    for (final Iterator<PvrDecoder> iter = pvrCache.values().iterator(); freed < size && iter.hasNext(); ) {
+      final PvrDecoder decoder = iter.next();
+      iter.remove();
+      encodedCacheSize -= decoder.getDataSize();
+      freed += decoder.getDataSize() + removeDecodedTexture(decoder);
+      count++;
+    }
+    cacheStats.evicted(count);
+    return freed;
+  }
+
+  // Discards all decoded textures. Encoded data of the textures is kept.
+  private static synchronized void flushDecodedCache()
+  {
+    decodedCache.clear();
+    decodedCacheSize = 0L;
+  }
+
+  // Discards least recently used decoded textures until the specified amount of data has been freed.
+  // Encoded data of the textures is kept.
+  private static synchronized long trimDecodedCache(long size)
+  {
+    long freed = 0L;
+    int count = 0;
+    for (final Iterator<int[]> iter = decodedCache.values().iterator(); freed < size && iter.hasNext(); ) {
+      freed += iter.next().length * 4L;
+      iter.remove();
+      count++;
+    }
+    decodedCacheSize -= freed;
+    decodedCacheStats.evicted(count);
+    return freed;
+  }
+
+  // Removes the decoded texture of the specified PvrDecoder object. Returns the amount of freed data.
+  private static synchronized long removeDecodedTexture(PvrDecoder decoder)
+  {
+    final int[] pixels = decodedCache.remove(decoder);
+    final long size = (pixels != null) ? pixels.length * 4L : 0L;
+    decodedCacheSize -= size;
+    return size;
+  }
+
+  // Removes PvrDecoder objects of the specified resource from the cache.
+  private static synchronized void invalidateCache(ResourceEntry entry)
+  {
+    final String name = entry.getResourceName();
+    final String path = (entry instanceof FileResourceEntry) ? ((FileResourceEntry)entry).getActualPath().toString() : null;
+    for (final Iterator<Map.Entry<String, PvrDecoder>> iter = pvrCache.entrySet().iterator(); iter.hasNext(); ) {
+      final Map.Entry<String, PvrDecoder> e = iter.next();
+      if (e.getKey().equalsIgnoreCase(name) || e.getKey().equalsIgnoreCase(path)) {
+        iter.remove();
+        encodedCacheSize -= e.getValue().getDataSize();
+        removeDecodedTexture(e.getValue());
+      }
+    }
+  }
+
+  /**
+   * Calls the specified decoder for all rows of encoded pixel blocks. Rows are split across the
+   * common fork/join pool if the number of blocks is large enough.
+   * @param numRows Number of block rows.
+   * @param blocksPerRow Number of blocks per row.
+   * @param decoder Decodes a range of block rows. Must not write pixels of other rows.
+   */
+  private static void decodeBlockRows(int numRows, int blocksPerRow, BlockRowDecoder decoder)
+  {
+    if (numRows > 1 && numRows * blocksPerRow >= PARALLEL_MIN_BLOCKS &&
+        ForkJoinPool.getCommonPoolParallelism() > 1) {
+      int rowsPerTask = Math.max(1, TASK_MIN_BLOCKS / Math.max(1, blocksPerRow));
+      ForkJoinPool.commonPool().invoke(new BlockRowTask(decoder, 0, numRows, rowsPerTask));
+    } else {
+      decoder.decode(0, numRows);
+    }
+  }
+
   // Returns a rectangle that is aligned to the values specified as arguments 2 and 3
   private static Rectangle alignRectangle(Rectangle rect, int alignX, int alignY)
   {
@@ -326,6 +456,12 @@ private static Rectangle alignRectangle(Rectangle rect, int alignX, int alignY)
   /** Provides direct access to the content of the encoded pixel data. */
   public byte[] getData() { return info.data; }
 
+  // Returns the size of the encoded pixel data in bytes
+  private long getDataSize()
+  {
+    return (info != null && info.data != null) ? info.data.length : 0L;
+  }
+
   /** Returns whether the pixel format of the current texture is supported by the PvrDecoder. */
   public boolean isSupported()
   {
@@ -407,14 +543,21 @@ public boolean decode(BufferedImage image, int x, int y, int width, int height)
     if (getChannelType() != ChannelType.UBYTE_NORM) {
       throw new Exception(String.format("Channel type '%s' not supported", getChannelType().toString()));
     }
+    int[] pixels = getDecodedTexture(x, y, width, height);
+    if (pixels != null) {
+      width = Math.min(width, image.getWidth());
+      height = Math.min(height, image.getHeight());
+      if (isDirectTarget(image)) {
+        int[] imgData = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        copyPixels(pixels, x, y, width, height, imgData, 0, image.getWidth());
+      } else {
+        image.setRGB(0, 0, width, height, pixels, y*getWidth() + x, getWidth());
+      }
+      return true;
+    }
+
     Rectangle region = new Rectangle(x, y, width, height);
     switch (getPixelFormat()) {
-      case PVRTC_2BPP_RGB:
-      case PVRTC_2BPP_RGBA:
-        return DecodePVRT.decodePVRT2bpp(info, image, region);
-      case PVRTC_4BPP_RGB:
-      case PVRTC_4BPP_RGBA:
-        return DecodePVRT.decodePVRT4bpp(info, image, region);
       case DXT1:
         return DecodeDXT.decodeDXT1(info, image, region);
       case DXT3:
@@ -426,6 +569,128 @@ public boolean decode(BufferedImage image, int x, int y, int width, int height)
     }
   }
 
+  /**
+   * Decodes a rectangular block of pixels of the currently loaded PVR data and writes it as
+   * ARGB pixels into the specified buffer. DXTn data is written directly without intermediate
+   * image objects.
+   * @param buffer The buffer to write the pixel data into.
+   * @param offset Offset of the top-left pixel of the block in the buffer.
+   * @param stride Number of pixels per line in the buffer.
+   * @param x Left-most x coordinate of the pixel block.
+   * @param y Top-most y coordinate of the pixel block.
+   * @param width Width in pixels.
+   * @param height Height in pixels.
+   * @return {@code true} if the pixel data has been written successfully, {@code false} otherwise.
+   * @throws Exception on error.
+   */
+  public boolean decode(int[] buffer, int offset, int stride, int x, int y, int width, int height) throws Exception
+  {
+    if (buffer == null) {
+      throw new Exception("No target buffer specified");
+    }
+    if (x < 0 || y < 0 || width < 1 || height < 1 || x+width > getWidth() || y+height > getHeight()) {
+      throw new Exception("Invalid dimensions specified");
+    }
+    if (offset < 0 || stride < width || offset + (height-1)*stride + width > buffer.length) {
+      throw new Exception("Target buffer too small");
+    }
+    if (!isSupported()) {
+      throw new Exception(String.format("Pixel format '%s' not supported", getPixelFormat().toString()));
+    }
+    if (getChannelType() != ChannelType.UBYTE_NORM) {
+      throw new Exception(String.format("Channel type '%s' not supported", getChannelType().toString()));
+    }
+    int[] pixels = getDecodedTexture(x, y, width, height);
+    if (pixels != null) {
+      copyPixels(pixels, x, y, width, height, buffer, offset, stride);
+      return true;
+    }
+    switch (getPixelFormat()) {
+      case DXT1:
+      case DXT3:
+      case DXT5:
+        return DecodeDXT.decode(info, getPixelFormat(), buffer, offset, stride, new Rectangle(x, y, width, height));
+      default:
+      {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        if (decode(image, x, y, width, height)) {
+          int[] src = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+          for (int row = 0; row < height; row++) {
+            System.arraycopy(src, row*width, buffer, offset + row*stride, width);
+          }
+          return true;
+        }
+        return false;
+      }
+    }
+  }
+
+
+  /**
+   * Returns the fully decoded texture from the cache. PVRTC textures are always decoded as a whole.
+   * Other textures are decoded as a whole only when the same region is requested again, so that
+   * textures whose regions are requested only once are not decoded twice.
+   * @return The decoded texture in ARGB format, or {@code null} if the region should be decoded
+   *         from the encoded data.
+   */
+  private int[] getDecodedTexture(int x, int y, int width, int height) throws Exception
+  {
+    final boolean isPvrt = (getPixelFormat() != PixelFormat.DXT1 &&
+                            getPixelFormat() != PixelFormat.DXT3 &&
+                            getPixelFormat() != PixelFormat.DXT5);
+    final long size = (long)getWidth()*getHeight()*4L;
+    synchronized (PvrDecoder.class) {
+      int[] pixels = decodedCache.get(this);
+      if (pixels != null) {
+        decodedCacheStats.hit();
+        return pixels;
+      }
+      decodedCacheStats.miss();
+      if (!isPvrt && (size > maxDecodedCacheSize || decodedRegions.add(new Rectangle(x, y, width, height)))) {
+        return null;
+      }
+      decodedRegions.clear();
+    }
+
+    int[] pixels;
+    if (isPvrt) {
+      pixels = DecodePVRT.decode(info, getPixelFormat() == PixelFormat.PVRTC_2BPP_RGB ||
+                                       getPixelFormat() == PixelFormat.PVRTC_2BPP_RGBA);
+    } else {
+      pixels = new int[getWidth()*getHeight()];
+      DecodeDXT.decode(info, getPixelFormat(), pixels, 0, getWidth(), new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
+    boolean added = false;
+    synchronized (PvrDecoder.class) {
+      // texture may have been discarded from the cache while it was decoded
+      if (size <= maxDecodedCacheSize && !decodedCache.containsKey(this) && pvrCache.containsValue(this)) {
+        decodedCache.put(this, pixels);
+        decodedCacheSize += size;
+        trimDecodedCache(decodedCacheSize - maxDecodedCacheSize);
+        added = true;
+      }
+    }
+    if (added) {
+      CacheManager.notifyAdded(size);
+    }
+    return pixels;
+  }
+
+  // Returns whether ARGB pixels can be written directly into the data buffer of the specified image
+  private static boolean isDirectTarget(BufferedImage image)
+  {
+    return (image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_ARGB_PRE) &&
+           image.getRaster().getParent() == null;
+  }
+
+  // Copies a region of the fully decoded texture into the specified buffer
+  private void copyPixels(int[] pixels, int x, int y, int width, int height, int[] buffer, int offset, int stride)
+  {
+    for (int ofs = y*getWidth() + x; height > 0; height--, ofs += getWidth(), offset += stride) {
+      System.arraycopy(pixels, ofs, buffer, offset, width);
+    }
+  }
 
   private PvrDecoder(InputStream input) throws Exception
   {
@@ -486,7 +751,98 @@ private PvrDecoder(InputStream input) throws Exception
 
 // ----------------------------- INNER CLASSES -----------------------------
 
-  // Contains preprocessed data of a single PVR resource
+  /** Decodes a range of rows of encoded pixel blocks. */
+  @FunctionalInterface
+  private interface BlockRowDecoder
+  {
+    /** Decodes the block rows in range [rowStart, rowEnd). */
+    void decode(int rowStart, int rowEnd);
+  }
+
+  /** Splits ranges of block rows into tasks of the fork/join pool. */
+  private static class BlockRowTask extends RecursiveAction
+  {
+    private final BlockRowDecoder decoder;
+    private final int rowStart, rowEnd, rowsPerTask;
+
+    public BlockRowTask(BlockRowDecoder decoder, int rowStart, int rowEnd, int rowsPerTask)
+    {
+      this.decoder = decoder;
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.rowsPerTask = rowsPerTask;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (rowEnd - rowStart <= rowsPerTask) {
+        decoder.decode(rowStart, rowEnd);
+      } else {
+        int mid = (rowStart + rowEnd) >>> 1;
+        invokeAll(new BlockRowTask(decoder, rowStart, mid, rowsPerTask),
+                  new BlockRowTask(decoder, mid, rowEnd, rowsPerTask));
+      }
+    }
+  }
+
+  // Provides size and usage of the PVR cache to the cache manager
+  private static class ManagedPvrCache implements CacheManager.ManagedCache
+  {
+    private final boolean decoded;
+
+    public ManagedPvrCache(boolean decoded)
+    {
+      this.decoded = decoded;
+    }
+
+    @Override
+    public String getName() { return decoded ? "PVR textures (decoded)" : "PVR textures"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (PvrDecoder.class) {
+        return decoded ? decodedCache.size() : pvrCache.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      synchronized (PvrDecoder.class) {
+        return decoded ? decodedCacheSize : encodedCacheSize;
+      }
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return decoded ? decodedCacheStats : cacheStats; }
+
+    @Override
+    public void clear()
+    {
+      if (decoded) {
+        flushDecodedCache();
+      } else {
+        flushCache();
+      }
+    }
+
+    @Override
+    public long evict(long size) { return decoded ? trimDecodedCache(size) : trimEncodedCache(size); }
+
+    @Override
+    public void invalidate(ResourceEntry entry)
+    {
+      if (!decoded) {
+        invalidateCache(entry);
+      }
+    }
+  }
+
   private class PvrInfo
   {
     public int signature;             // the "PVR\u0003" signature
@@ -688,119 +1044,7 @@ public static boolean decode(PvrInfo pvr, BufferedImage image, Rectangle region)
      */
     public static boolean decodeDXT1(PvrInfo pvr, BufferedImage image, Rectangle region) throws Exception
     {
-      if (pvr == null || image == null || region == null) {
-        return false;
-      }
-
-      int imgWidth = image.getWidth();
-      int imgHeight = image.getHeight();
-      int[] imgData = null;
-
-      // checking region bounds and alignment
-      if (region.x < 0) {region.width += -region.x; region.x = 0; }
-      if (region.y < 0) {region.height += -region.y; region.y = 0; }
-      if (region.x + region.width > pvr.width) region.width = pvr.width - region.x;
-      if (region.y + region.height > pvr.height) region.height = pvr.height - region.y;
-      Rectangle rect = alignRectangle(region, 4, 4);
-
-      // preparing aligned image buffer for faster rendering
-      BufferedImage alignedImage = null;
-      int imgWidthAligned;
-      if (!region.equals(rect)) {
-        alignedImage = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
-        imgWidthAligned = alignedImage.getWidth();
-        imgData = ((DataBufferInt)alignedImage.getRaster().getDataBuffer()).getData();
-        // translating "region" to be relative to "rect"
-        region.x -= rect.x;
-        region.y -= rect.y;
-        if (imgWidth < region.width) {
-          region.width= imgWidth;
-        }
-        if (imgHeight < region.height) {
-          region.height = imgHeight;
-        }
-      } else {
-        imgWidthAligned = imgWidth;
-        imgData = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-      }
-
-      final int wordSize = 8;                   // data size of an encoded 4x4 pixel block
-      int wordImageWidth = pvr.width >>> 2;     // the image width in data blocks
-      int wordRectWidth = rect.width >>> 2;     // the aligned region's width in data blocks
-      int wordRectHeight = rect.height >>> 2;   // the aligned region's height in data blocks
-      int wordPosX = rect.x >>> 2;
-      int wordPosY = rect.y >>> 2;
-
-      int[] colors = new int[8];
-      int pvrOfs = (wordPosY*wordImageWidth + wordPosX)*wordSize;
-      int imgOfs = 0;
-      for (int y = 0; y < wordRectHeight; y++) {
-        for (int x = 0; x < wordRectWidth; x++) {
-          // decoding single DXT1 block
-          int c = DynamicArray.getInt(pvr.data, pvrOfs);
-          unpackColors565(c, colors);
-          int code = DynamicArray.getInt(pvr.data, pvrOfs+4);
-          for (int idx = 0; idx < 16; idx++, code >>>= 2) {
-            int ofs = imgOfs + (idx >>> 2)*imgWidthAligned + (idx & 3);
-            if ((code & 3) == 0) {
-              // 100% c0, 0% c1
-              imgData[ofs] = 0xff000000 | (colors[2] << 16) | (colors[1] << 8) | colors[0];
-            } else if ((code & 3) == 1) {
-              // 0% c0, 100% c1
-              imgData[ofs] = 0xff000000 | (colors[6] << 16) | (colors[5] << 8) | colors[4];
-            } else if ((code & 3) == 2) {
-              if ((c & 0xffff) > ((c >>> 16) & 0xffff)) {
-                // 66% c0, 33% c1
-                int v = 0xff000000;
-                v |= (((colors[2] << 1) + colors[6]) / 3) << 16;
-                v |= (((colors[1] << 1) + colors[5]) / 3) << 8;
-                v |=  ((colors[0] << 1) + colors[4]) / 3;
-                imgData[ofs] = v;
-              } else {
-                // 50% c0, 50% c1
-                int v = 0xff000000;
-                v |= ((colors[2] + colors[6]) >>> 1) << 16;
-                v |= ((colors[1] + colors[5]) >>> 1) << 8;
-                v |=  (colors[0] + colors[4]) >>> 1;
-                imgData[ofs] = v;
-              }
-            } else {
-              if ((c & 0xffff) > ((c >>> 16) & 0xffff)) {
-                // 33% c0, 66% c1
-                int v = 0xff000000;
-                v |= ((colors[2] + (colors[6] << 1)) / 3) << 16;
-                v |= ((colors[1] + (colors[5] << 1)) / 3) << 8;
-                v |=  (colors[0] + (colors[4] << 1)) / 3;
-                imgData[ofs] = v;
-              } else {
-                // transparent
-                imgData[ofs] = 0;
-              }
-            }
-          }
-
-          pvrOfs += wordSize;
-          imgOfs += 4;
-        }
-        pvrOfs += (wordImageWidth - wordRectWidth)*wordSize;
-        imgOfs += imgWidthAligned*4 - rect.width;
-      }
-      imgData = null;
-
-      // rendering aligned image to target image
-      if (alignedImage != null) {
-        Graphics2D g = image.createGraphics();
-        try {
-          g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-          g.drawImage(alignedImage, 0, 0, region.width, region.height,
-                      region.x, region.y, region.x+region.width, region.y+region.height, null);
-        } finally {
-          g.dispose();
-          g = null;
-        }
-        alignedImage = null;
-      }
-      return true;
+      return decode(pvr, image, region, PixelFormat.DXT1);
     }
 
     /**
@@ -812,15 +1056,31 @@ public static boolean decodeDXT1(PvrInfo pvr, BufferedImage image, Rectangle reg
      * @throws Exception on error.
      */
     public static boolean decodeDXT3(PvrInfo pvr, BufferedImage image, Rectangle region) throws Exception
+    {
+      return decode(pvr, image, region, PixelFormat.DXT3);
+    }
+
+    /**
+     * Decodes PVR data in DXT5 format and draws the specified "region" into "image".
+     * @param pvr The PVR data
+     * @param image The output image
+     * @param region The of the PVR texture region to draw onto "image"
+     * @return The success state of the operation.
+     * @throws Exception on error.
+     */
+    public static boolean decodeDXT5(PvrInfo pvr, BufferedImage image, Rectangle region) throws Exception
+    {
+      return decode(pvr, image, region, PixelFormat.DXT5);
+    }
+
+    // Decodes all DXTn formats
+    private static boolean decode(PvrInfo pvr, BufferedImage image, Rectangle region, PixelFormat format)
+        throws Exception
     {
       if (pvr == null || image == null || region == null) {
         return false;
       }
 
-      int imgWidth = image.getWidth();
-      int imgHeight = image.getHeight();
-      int[] imgData = null;
-
       // checking region bounds and alignment
       if (region.x < 0) {region.width += -region.x; region.x = 0; }
       if (region.y < 0) {region.height += -region.y; region.y = 0; }
@@ -828,119 +1088,66 @@ public static boolean decodeDXT3(PvrInfo pvr, BufferedImage image, Rectangle reg
       if (region.y + region.height > pvr.height) region.height = pvr.height - region.y;
       Rectangle rect = alignRectangle(region, 4, 4);
 
-      // preparing aligned image buffer for faster rendering
-      BufferedImage alignedImage = null;
-      int imgWidthAligned;
-      if (!region.equals(rect)) {
-        alignedImage = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
-        imgWidthAligned = alignedImage.getWidth();
-        imgData = ((DataBufferInt)alignedImage.getRaster().getDataBuffer()).getData();
+      // pixels are written directly into the target image whenever no color conversion is needed
+      final BufferedImage target;
+      final int ofsX, ofsY;         // position of the aligned region in the target image
+      final int clipWidth, clipHeight;
+      if (region.equals(rect) || isDirectTarget(image)) {
+        target = image;
+        ofsX = rect.x - region.x;
+        ofsY = rect.y - region.y;
+        clipWidth = Math.min(image.getWidth(), region.width);
+        clipHeight = Math.min(image.getHeight(), region.height);
+      } else {
+        target = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
+        ofsX = ofsY = 0;
+        clipWidth = rect.width;
+        clipHeight = rect.height;
+      }
+      final int[] imgData = ((DataBufferInt)target.getRaster().getDataBuffer()).getData();
+      decodeRegion(pvr, format, rect, imgData, 0, target.getWidth(), ofsX, ofsY, clipWidth, clipHeight);
+
+      // rendering aligned image to target image
+      if (target != image) {
         // translating "region" to be relative to "rect"
         region.x -= rect.x;
         region.y -= rect.y;
-        if (imgWidth < region.width) {
-          region.width= imgWidth;
+        if (image.getWidth() < region.width) {
+          region.width = image.getWidth();
         }
-        if (imgHeight < region.height) {
-          region.height = imgHeight;
+        if (image.getHeight() < region.height) {
+          region.height = image.getHeight();
         }
-      } else {
-        imgWidthAligned = imgWidth;
-        imgData = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-      }
-
-      final int wordSize = 16;                  // data size of an encoded 4x4 pixel block
-      int wordImageWidth = pvr.width >>> 2;     // the image width in data blocks
-      int wordRectWidth = rect.width >>> 2;     // the aligned region's width in data blocks
-      int wordRectHeight = rect.height >>> 2;   // the aligned region's height in data blocks
-      int wordPosX = rect.x >>> 2;
-      int wordPosY = rect.y >>> 2;
-
-      int[] colors = new int[8];
-      int pvrOfs = (wordPosY*wordImageWidth + wordPosX)*wordSize;
-      int imgOfs = 0;
-      for (int y = 0; y < wordRectHeight; y++) {
-        for (int x = 0; x < wordRectWidth; x++) {
-          // decoding single DXT3 block
-          long alpha = DynamicArray.getByte(pvr.data, pvrOfs);
-          int c = DynamicArray.getInt(pvr.data, pvrOfs+8);
-          unpackColors565(c, colors);
-          int code = DynamicArray.getInt(pvr.data, pvrOfs+12);
-          for (int idx = 0; idx < 16; idx++, code >>>= 2, alpha >>>= 4) {
-            // calculating alpha (4 bit -> 8 bit)
-            int ofs = imgOfs + (idx >>> 2)*imgWidthAligned + (idx & 3);
-            int color = (int)(alpha & 0xf) << 24;
-            color |= color << 4;
-            // decoding pixels
-            if ((code & 3) == 0) {
-              // 100% c0, 0% c1
-              color |= (colors[2] << 16) | (colors[1] << 8) | colors[0];
-            } else if ((code & 3) == 1) {
-              // 0% c0, 100% c1
-              color |= (colors[6] << 16) | (colors[5] << 8) | colors[4];
-            } else if ((code & 3) == 2) {
-              // 66% c0, 33% c1
-              int v = (((colors[2] << 1) + colors[6]) / 3) << 16;
-              color |= v;
-              v = (((colors[1] << 1) + colors[5]) / 3) << 8;
-              color |= v;
-              v = ((colors[0] << 1) + colors[4]) / 3;
-              color |= v;
-            } else {
-              // 33% c0, 66% c1
-              int v = ((colors[2] + (colors[6] << 1)) / 3) << 16;
-              color |= v;
-              v = ((colors[1] + (colors[5] << 1)) / 3) << 8;
-              color |= v;
-              v = (colors[0] + (colors[4] << 1)) / 3;
-              if (v > 255) v = 255;
-              color |= v;
-            }
-            imgData[ofs] = color;
-          }
-
-          pvrOfs += wordSize;
-          imgOfs += 4;
-        }
-        pvrOfs += (wordImageWidth - wordRectWidth)*wordSize;
-        imgOfs += (imgWidthAligned << 2) - rect.width;
-      }
-      imgData = null;
-
-      // rendering aligned image to target image
-      if (alignedImage != null) {
         Graphics2D g = image.createGraphics();
         try {
           g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-          g.drawImage(alignedImage, 0, 0, region.width, region.height,
+          g.drawImage(target, 0, 0, region.width, region.height,
                       region.x, region.y, region.x+region.width, region.y+region.height, null);
         } finally {
           g.dispose();
           g = null;
         }
-        alignedImage = null;
       }
       return true;
     }
 
     /**
-     * Decodes PVR data in DXT5 format and draws the specified "region" into "image".
+     * Decodes PVR data in DXTn format and writes the specified "region" into "buffer".
      * @param pvr The PVR data
-     * @param image The output image
-     * @param region The of the PVR texture region to draw onto "image"
+     * @param format The DXTn format
+     * @param buffer The output buffer
+     * @param offset Offset of the top-left region pixel in "buffer"
+     * @param stride Number of pixels per line in "buffer"
+     * @param region The of the PVR texture region to write into "buffer"
      * @return The success state of the operation.
-     * @throws Exception on error.
      */
-    public static boolean decodeDXT5(PvrInfo pvr, BufferedImage image, Rectangle region) throws Exception
+    public static boolean decode(PvrInfo pvr, PixelFormat format, int[] buffer, int offset, int stride,
+                                 Rectangle region)
     {
-      if (pvr == null || image == null || region == null) {
+      if (pvr == null || buffer == null || region == null) {
         return false;
       }
 
-      int imgWidth = image.getWidth();
-      int imgHeight = image.getHeight();
-      int[] imgData = null;
-
       // checking region bounds and alignment
       if (region.x < 0) {region.width += -region.x; region.x = 0; }
       if (region.y < 0) {region.height += -region.y; region.y = 0; }
@@ -948,43 +1155,99 @@ public static boolean decodeDXT5(PvrInfo pvr, BufferedImage image, Rectangle reg
       if (region.y + region.height > pvr.height) region.height = pvr.height - region.y;
       Rectangle rect = alignRectangle(region, 4, 4);
 
-      // preparing aligned image buffer for faster rendering
-      BufferedImage alignedImage = null;
-      int imgWidthAligned;
-      if (!region.equals(rect)) {
-        alignedImage = new BufferedImage(rect.width, rect.height, BufferedImage.TYPE_INT_ARGB);
-        imgWidthAligned = alignedImage.getWidth();
-        imgData = ((DataBufferInt)alignedImage.getRaster().getDataBuffer()).getData();
-        // translating "region" to be relative to "rect"
-        region.x -= rect.x;
-        region.y -= rect.y;
-        if (imgWidth < region.width) {
-          region.width= imgWidth;
-        }
-        if (imgHeight < region.height) {
-          region.height = imgHeight;
+      decodeRegion(pvr, format, rect, buffer, offset, stride, rect.x - region.x, rect.y - region.y,
+                   region.width, region.height);
+      return true;
+    }
+
+    /**
+     * Decodes all blocks of the aligned rectangle "rect" into "outData". Only pixels inside the
+     * clipping area are written.
+     * @param ofsX Horizontal position of "rect" relative to the clipping area
+     * @param ofsY Vertical position of "rect" relative to the clipping area
+     * @param clipWidth Width of the clipping area
+     * @param clipHeight Height of the clipping area
+     */
+    private static void decodeRegion(PvrInfo pvr, PixelFormat format, Rectangle rect, int[] outData, int offset,
+                                     int stride, int ofsX, int ofsY, int clipWidth, int clipHeight)
+    {
+      final byte[] data = pvr.data;
+      final int wordSize = (format == PixelFormat.DXT1) ? 8 : 16;   // data size of an encoded 4x4 pixel block
+      final int wordImageWidth = pvr.width >>> 2;     // the image width in data blocks
+      final int wordRectWidth = rect.width >>> 2;     // the aligned region's width in data blocks
+      final int wordRectHeight = rect.height >>> 2;   // the aligned region's height in data blocks
+      final int pvrStart = ((rect.y >>> 2)*wordImageWidth + (rect.x >>> 2))*wordSize;
+
+      decodeBlockRows(wordRectHeight, wordRectWidth, (rowStart, rowEnd) -> {
+        final int[] colors = new int[4];
+        final int[] alpha = new int[8];
+        final int[] block = new int[16];
+        for (int y = rowStart; y < rowEnd; y++) {
+          final int imgY = ofsY + (y << 2);
+          int pvrOfs = pvrStart + y*wordImageWidth*wordSize;
+          for (int x = 0; x < wordRectWidth; x++, pvrOfs += wordSize) {
+            final int imgX = ofsX + (x << 2);
+            if (imgX >= 0 && imgY >= 0 && imgX + 4 <= clipWidth && imgY + 4 <= clipHeight) {
+              decodeBlock(format, data, pvrOfs, outData, offset + imgY*stride + imgX, stride, colors, alpha);
+            } else {
+              // block is only partially visible
+              decodeBlock(format, data, pvrOfs, block, 0, 4, colors, alpha);
+              for (int by = Math.max(0, -imgY), byMax = Math.min(4, clipHeight - imgY); by < byMax; by++) {
+                for (int bx = Math.max(0, -imgX), bxMax = Math.min(4, clipWidth - imgX); bx < bxMax; bx++) {
+                  outData[offset + (imgY + by)*stride + imgX + bx] = block[(by << 2) + bx];
+                }
+              }
+            }
+          }
         }
-      } else {
-        imgWidthAligned = imgWidth;
-        imgData = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-      }
+      });
+    }
 
-      final int wordSize = 16;                  // data size of an encoded 4x4 pixel block
-      int wordImageWidth = pvr.width >>> 2;     // the image width in data blocks
-      int wordRectWidth = rect.width >>> 2;     // the aligned region's width in data blocks
-      int wordRectHeight = rect.height >>> 2;   // the aligned region's height in data blocks
-      int wordPosX = rect.x >>> 2;
-      int wordPosY = rect.y >>> 2;
-
-      int[] alpha = new int[8];
-      int[] colors = new int[8];
-      int pvrOfs = (wordPosY*wordImageWidth + wordPosX)*wordSize;
-      int imgOfs = 0;
-      for (int y = 0; y < wordRectHeight; y++) {
-        for (int x = 0; x < wordRectWidth; x++) {
+    /**
+     * Decodes a single 4x4 block of pixels.
+     * @param format The DXTn format.
+     * @param data The encoded pixel data.
+     * @param ofs Start offset of the block in {@code data}.
+     * @param outData The output buffer.
+     * @param outOfs Offset of the top-left block pixel in {@code outData}.
+     * @param stride Number of pixels per line in {@code outData}.
+     * @param colors Temporary storage for the four block colors.
+     * @param alpha Temporary storage for the eight DXT5 alpha values.
+     */
+    private static void decodeBlock(PixelFormat format, byte[] data, int ofs, int[] outData, int outOfs,
+                                    int stride, int[] colors, int[] alpha)
+    {
+      switch (format) {
+        case DXT1:
+        {
+          int c = DynamicArray.getInt(data, ofs);
+          unpackColors565(c, (c & 0xffff) > ((c >>> 16) & 0xffff), 0xff000000, colors);
+          int code = DynamicArray.getInt(data, ofs+4);
+          for (int y = 0; y < 4; y++, outOfs += stride) {
+            for (int x = 0; x < 4; x++, code >>>= 2) {
+              outData[outOfs+x] = colors[code & 3];
+            }
+          }
+          break;
+        }
+        case DXT3:
+        {
+          long a = DynamicArray.getLong(data, ofs);
+          unpackColors565(DynamicArray.getInt(data, ofs+8), true, 0, colors);
+          int code = DynamicArray.getInt(data, ofs+12);
+          for (int y = 0; y < 4; y++, outOfs += stride) {
+            for (int x = 0; x < 4; x++, code >>>= 2, a >>>= 4) {
+              // calculating alpha (4 bit -> 8 bit)
+              outData[outOfs+x] = ((int)(a & 0xf) * 0x11 << 24) | colors[code & 3];
+            }
+          }
+          break;
+        }
+        default:
+        {
           // creating alpha table
-          alpha[0] = DynamicArray.getByte(pvr.data, pvrOfs) & 0xff;
-          alpha[1] = DynamicArray.getByte(pvr.data, pvrOfs+1) & 0xff;
+          alpha[0] = data[ofs] & 0xff;
+          alpha[1] = data[ofs+1] & 0xff;
           if (alpha[0] > alpha[1]) {
             alpha[2] = (6*alpha[0] +   alpha[1]) / 7;
             alpha[3] = (5*alpha[0] + 2*alpha[1]) / 7;
@@ -1001,77 +1264,45 @@ public static boolean decodeDXT5(PvrInfo pvr, BufferedImage image, Rectangle reg
             alpha[7] = 255;
           }
 
-          // decoding single DXT5 block
-          long ctrl = DynamicArray.getLong(pvr.data, pvrOfs+2) & 0xffffffffffffL;
-          int c = DynamicArray.getInt(pvr.data, pvrOfs+8);
-          unpackColors565(c, colors);
-          int code = DynamicArray.getInt(pvr.data, pvrOfs+12);
-          for (int idx = 0; idx < 16; idx++, code >>>= 2, ctrl >>>= 3) {
-            int ofs = imgOfs + (idx >>> 2)*imgWidthAligned + (idx & 3);
-            int color = alpha[(int)(ctrl & 7L)] << 24;
-            if ((code & 3) == 0) {
-              // 100% c0, 0% c1
-              color |= (colors[2] << 16) | (colors[1] << 8) | colors[0];
-            } else if ((code & 3) == 1) {
-              // 0% c0, 100% c1
-              color |= (colors[6] << 16) | (colors[5] << 8) | colors[4];
-            } else if ((code & 3) == 2) {
-              // 66% c0, 33% c1
-              int v = (((colors[2] << 1) + colors[6]) / 3) << 16;
-              color |= v;
-              v = (((colors[1] << 1) + colors[5]) / 3) << 8;
-              color |= v;
-              v = ((colors[0] << 1) + colors[4]) / 3;
-              color |= v;
-            } else {
-              // 33% c0, 66% c1
-              int v = ((colors[2] + (colors[6] << 1)) / 3) << 16;
-              color |= v;
-              v = ((colors[1] + (colors[5] << 1)) / 3) << 8;
-              color |= v;
-              v = (colors[0] + (colors[4] << 1)) / 3;
-              if (v > 255) v = 255;
-              color |= v;
+          long ctrl = DynamicArray.getLong(data, ofs+2) & 0xffffffffffffL;
+          unpackColors565(DynamicArray.getInt(data, ofs+8), true, 0, colors);
+          int code = DynamicArray.getInt(data, ofs+12);
+          for (int y = 0; y < 4; y++, outOfs += stride) {
+            for (int x = 0; x < 4; x++, code >>>= 2, ctrl >>>= 3) {
+              outData[outOfs+x] = (alpha[(int)(ctrl & 7L)] << 24) | colors[code & 3];
             }
-            imgData[ofs] = color;
           }
-
-          pvrOfs += wordSize;
-          imgOfs += 4;
-        }
-        pvrOfs += (wordImageWidth - wordRectWidth)*wordSize;
-        imgOfs += (imgWidthAligned << 2) - rect.width;
-      }
-      imgData = null;
-
-      // rendering aligned image to target image
-      if (alignedImage != null) {
-        Graphics2D g = image.createGraphics();
-        try {
-          g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-          g.drawImage(alignedImage, 0, 0, region.width, region.height,
-                      region.x, region.y, region.x+region.width, region.y+region.height, null);
-        } finally {
-          g.dispose();
-          g = null;
         }
-        alignedImage = null;
       }
-      return true;
     }
 
-
-    // Converts two RGB565 words into separate components, ordered { B, G, R, A, B, G, R, A }
-    private static void unpackColors565(int inData, int[] outData)
+    /**
+     * Converts two RGB565 words into the four colors of a DXTn block.
+     * @param inData The two RGB565 words.
+     * @param fourColors Whether two interpolated colors are used. Otherwise the third color is
+     *                   the average of both colors and the fourth color is transparent.
+     * @param alphaMask Alpha component of the opaque colors.
+     * @param outData Receives the colors in ARGB format.
+     */
+    private static void unpackColors565(int inData, boolean fourColors, int alphaMask, int[] outData)
     {
-      outData[0] = ((inData << 3)  & 0xf8) | (inData >>> 2)  & 0x07;      // b1
-      outData[1] = ((inData >>> 3) & 0xfc) | (inData >>> 9)  & 0x03;      // g1
-      outData[2] = ((inData >>> 8) & 0xf8) | (inData >>> 13) & 0x07;      // r1
-      outData[3] = 255;                                                   // a1
-      outData[4] = ((inData >>> 13) & 0xf8) | (inData >>> 18) & 0x07;     // b2
-      outData[5] = ((inData >>> 19) & 0xfc) | (inData >>> 25) & 0x03;     // g2
-      outData[6] = ((inData >>> 24) & 0xf8) | (inData >>> 29) & 0x07;     // r2
-      outData[7] = 255;                                                   // a2
+      int b1 = ((inData << 3)  & 0xf8) | (inData >>> 2)  & 0x07;
+      int g1 = ((inData >>> 3) & 0xfc) | (inData >>> 9)  & 0x03;
+      int r1 = ((inData >>> 8) & 0xf8) | (inData >>> 13) & 0x07;
+      int b2 = ((inData >>> 13) & 0xf8) | (inData >>> 18) & 0x07;
+      int g2 = ((inData >>> 19) & 0xfc) | (inData >>> 25) & 0x03;
+      int r2 = ((inData >>> 24) & 0xf8) | (inData >>> 29) & 0x07;
+      outData[0] = alphaMask | (r1 << 16) | (g1 << 8) | b1;
+      outData[1] = alphaMask | (r2 << 16) | (g2 << 8) | b2;
+      if (fourColors) {
+        // 66% c0, 33% c1 and 33% c0, 66% c1
+        outData[2] = alphaMask | ((((r1 << 1) + r2) / 3) << 16) | ((((g1 << 1) + g2) / 3) << 8) | (((b1 << 1) + b2) / 3);
+        outData[3] = alphaMask | (((r1 + (r2 << 1)) / 3) << 16) | (((g1 + (g2 << 1)) / 3) << 8) | ((b1 + (b2 << 1)) / 3);
+      } else {
+        // 50% c0, 50% c1 and transparent
+        outData[2] = alphaMask | (((r1 + r2) >>> 1) << 16) | (((g1 + g2) >>> 1) << 8) | ((b1 + b2) >>> 1);
+        outData[3] = 0;
+      }
     }
   }
 
@@ -1079,12 +1310,6 @@ private static void unpackColors565(int inData, int[] outData)
   // Decodes PVRTC pixel data.
   private static class DecodePVRT
   {
-    // The local cache list for decoded PVR textures. The "key" has to be a unique PvrInfo structure.
-    private static final Map<PvrInfo, BufferedImage> textureCache =
-        Collections.synchronizedMap(new LinkedHashMap<PvrInfo, BufferedImage>());
-    // The max. number of cache entries to hold
-    private static int MaxCacheEntries = 8;
-
     // Datatypes as used in the reference implementation:
     // Pixel32/128S:      int[]{red, green, blue, alpha}
     // PVRTCWord:         int[]{modulation, color}
@@ -1105,110 +1330,28 @@ private static void unpackColors565(int inData, int[] outData)
     private static final int BLK_COL  = 1;
 
 
-    /** Removes all PvrDecoder objects from the cache. */
-    public static void flushCache()
-    {
-      textureCache.clear();
-    }
-
-    // Returns a PvrDecoder object only if it already exists in the cache.
-    private static BufferedImage getCachedImage(PvrInfo pvr)
-    {
-      BufferedImage retVal = null;
-      if (pvr != null) {
-        if (textureCache.containsKey(pvr)) {
-          retVal = textureCache.get(pvr);
-          // re-inserting entry to prevent premature removal from cache
-          textureCache.remove(pvr);
-          textureCache.put(pvr, retVal);
-        }
-      }
-      return retVal;
-    }
-
-    // Returns a PvrDecoder object of the specified key if available, or creates and returns a new one otherwise.
-    private static void registerCachedImage(PvrInfo pvr, BufferedImage image)
-    {
-      if (pvr != null && getCachedImage(pvr) == null && image != null) {
-        textureCache.put(pvr, image);
-        // removing excess cache entries
-        while (textureCache.size() > MaxCacheEntries) {
-          textureCache.remove(textureCache.keySet().iterator().next());
-        }
-      }
-    }
-
-
     /**
-     * Decodes PVR data in PVRT 2bpp format and draws the specified "region" into "image".
+     * Decodes PVR data in PVRT 2bpp or 4bpp format.
      * @param pvr The PVR data
-     * @param image The output image
-     * @param region The of the PVR texture region to draw onto "image"
-     * @return The success state of the operation.
-     * @throws Exception on error.
+     * @param is2bpp Whether the data is in 2bpp format
+     * @return The whole texture in ARGB format.
      */
-    public static boolean decodePVRT2bpp(PvrInfo pvr, BufferedImage image, Rectangle region) throws Exception
+    public static int[] decode(PvrInfo pvr, boolean is2bpp)
     {
-      return decodePVRT(pvr, image, region, true);
-    }
-
-    /**
-     * Decodes PVR data in PVRT 4bpp format and draws the specified "region" into "image".
-     * @param pvr The PVR data
-     * @param image The output image
-     * @param region The of the PVR texture region to draw onto "image"
-     * @return The success state of the operation.
-     * @throws Exception on error.
-     */
-    public static boolean decodePVRT4bpp(PvrInfo pvr, BufferedImage image, Rectangle region) throws Exception
-    {
-      return decodePVRT(pvr, image, region, false);
-    }
-
-    // Decodes both 2bpp and 4bpp versions of the PVRT format
-    private static boolean decodePVRT(PvrInfo pvr, BufferedImage image, Rectangle region, boolean is2bpp)
-        throws Exception
-    {
-      if (pvr == null || image == null || region == null) {
-        return false;
-      }
-
-      int imgWidth = image.getWidth();
-      int imgHeight = image.getHeight();
-      int[] imgData = null;
-
-      // bounds checking
-      if (region.x < 0) { region.width += -region.x; region.x = 0; }
-      if (region.y < 0) { region.height += -region.y; region.y = 0; }
-      if (region.x + region.width > pvr.width) region.width = pvr.width - region.x;
-      if (region.y + region.height > pvr.height) region.height = pvr.height - region.y;
-
-
-      // preparing image buffer for faster rendering
-      BufferedImage alignedImage = getCachedImage(pvr);
-      if (alignedImage == null) {
-        if (!region.equals(new Rectangle(0, 0, pvr.width, pvr.height))) {
-          alignedImage = new BufferedImage(pvr.width, pvr.height, BufferedImage.TYPE_INT_ARGB);
-          imgData = ((DataBufferInt)alignedImage.getRaster().getDataBuffer()).getData();
-          if (imgWidth < region.width) {
-            region.width= imgWidth;
-          }
-          if (imgHeight < region.height) {
-            region.height = imgHeight;
-          }
-        } else {
-          imgData = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-        }
-
-        int wordWidth = is2bpp ? 8 : 4;
-        int wordHeight = 4;
-        int numXWords = pvr.width / wordWidth;
-        int numYWords = pvr.height / wordHeight;
+      final int[] outData = new int[pvr.width*pvr.height];
+      final int wordWidth = is2bpp ? 8 : 4;
+      final int wordHeight = 4;
+      final int numXWords = pvr.width / wordWidth;
+      final int numYWords = pvr.height / wordHeight;
+
+      // each word row writes the lower half of row "wordY" and the upper half of row "wordY+1"
+      decodeBlockRows(numYWords, numXWords, (rowStart, rowEnd) -> {
         int[] indices = new int[8];
+        int[] wordOffsets = new int[4];
         int[] p = new int[2], q = new int[2], r = new int[2], s = new int[2];
         int[][] pixels = new int[wordWidth*wordHeight][4];
 
-        for (int wordY = -1; wordY < numYWords-1; wordY++) {
+        for (int wordY = rowStart - 1; wordY < rowEnd - 1; wordY++) {
           for (int wordX = -1; wordX < numXWords-1; wordX++) {
             indices[IDX_P] =   wrapWordIndex(numXWords, wordX);
             indices[IDX_P+1] = wrapWordIndex(numYWords, wordY);
@@ -1220,12 +1363,10 @@ private static boolean decodePVRT(PvrInfo pvr, BufferedImage image, Rectangle re
             indices[IDX_S+1] = wrapWordIndex(numYWords, wordY+1);
 
             // work out the offsets into the twiddle structs, multiply by two as there are two members per word
-            int[] wordOffsets = new int[]{
-                twiddleUV(numXWords, numYWords, indices[IDX_P], indices[IDX_P+1]) << 1,
-                twiddleUV(numXWords, numYWords, indices[IDX_Q], indices[IDX_Q+1]) << 1,
-                twiddleUV(numXWords, numYWords, indices[IDX_R], indices[IDX_R+1]) << 1,
-                twiddleUV(numXWords, numYWords, indices[IDX_S], indices[IDX_S+1]) << 1
-            };
+            wordOffsets[0] = twiddleUV(numXWords, numYWords, indices[IDX_P], indices[IDX_P+1]) << 1;
+            wordOffsets[1] = twiddleUV(numXWords, numYWords, indices[IDX_Q], indices[IDX_Q+1]) << 1;
+            wordOffsets[2] = twiddleUV(numXWords, numYWords, indices[IDX_R], indices[IDX_R+1]) << 1;
+            wordOffsets[3] = twiddleUV(numXWords, numYWords, indices[IDX_S], indices[IDX_S+1]) << 1;
 
             // access individual elements to fill out input words
             p[BLK_MOD] = DynamicArray.getInt(pvr.data,  wordOffsets[0]    << 2);
@@ -1239,34 +1380,11 @@ private static boolean decodePVRT(PvrInfo pvr, BufferedImage image, Rectangle re
 
             // assemble four words into struct to get decompressed pixels from
             getDecompressedPixels(p, q, r, s, pixels, is2bpp);
-            mapDecompressedData(imgData, pvr.width, pixels, indices, is2bpp);
+            mapDecompressedData(outData, pvr.width, pixels, indices, is2bpp);
           }
         }
-        imgData = null;
-        registerCachedImage(pvr, alignedImage);
-      } else {
-        if (imgWidth < region.width) {
-          region.width= imgWidth;
-        }
-        if (imgHeight < region.height) {
-          region.height = imgHeight;
-        }
-      }
-
-      // rendering aligned image to target image
-      if (alignedImage != null) {
-        Graphics2D g = image.createGraphics();
-        try {
-          g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-          g.drawImage(alignedImage, 0, 0, region.width, region.height,
-                      region.x, region.y, region.x+region.width, region.y+region.height, null);
-        } finally {
-          g.dispose();
-          g = null;
-        }
-        alignedImage = null;
-      }
-      return true;
+      });
+      return outData;
     }
 
 
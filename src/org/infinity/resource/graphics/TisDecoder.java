@@ -6,6 +6,8 @@
 
 import java.awt.Image;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.infinity.resource.key.ResourceEntry;
 
@@ -19,6 +21,11 @@ public enum Type { INVALID, PALETTE, PVRZ }
 
   protected static int TileDimension = 64;    // default width and height of a tile
 
+  // Min. number of tiles for decoding a range of tiles in parallel
+  private static final int PARALLEL_MIN_TILES = 32;
+  // Number of tiles decoded by a single task
+  private static final int TASK_TILES = 16;
+
   private final ResourceEntry tisEntry;
 
   private Type type;
@@ -120,7 +127,78 @@ public Type getType()
   public abstract int[] getTileData(int tileIdx);
   /** Writes the specified tile into the buffer. Returns the success state. */
   public abstract boolean getTileData(int tileIdx, int[] buffer);
+  /**
+   * Writes the specified tile into a larger buffer, e.g. a tile atlas. Returns the success state.
+   * @param tileIdx The tile index.
+   * @param buffer The target buffer. (Format: ARGB)
+   * @param offset Offset of the top-left tile pixel in the buffer.
+   * @param stride Number of pixels per line in the buffer.
+   */
+  public abstract boolean getTileData(int tileIdx, int[] buffer, int offset, int stride);
+
+  /**
+   * Writes a range of tiles into a single atlas buffer. Tiles are placed from left to right and
+   * top to bottom, {@code tilesPerRow} tiles per line. The atlas is
+   * {@code tilesPerRow * getTileWidth()} pixels wide. Larger ranges of tiles are decoded in parallel.
+   * @param startIdx Index of the first tile.
+   * @param count Number of tiles.
+   * @param atlas The target buffer. (Format: ARGB)
+   * @param tilesPerRow Number of tiles per atlas line.
+   * @return Number of successfully written tiles.
+   */
+  public int getTileData(int startIdx, int count, int[] atlas, int tilesPerRow)
+  {
+    if (atlas == null || tilesPerRow <= 0 || count <= 0) {
+      return 0;
+    }
+    if (count >= PARALLEL_MIN_TILES && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      return ForkJoinPool.commonPool().invoke(new TileTask(this, startIdx, atlas, tilesPerRow, 0, count)).intValue();
+    } else {
+      return renderTiles(startIdx, atlas, tilesPerRow, 0, count);
+    }
+  }
 
+  /**
+   * Returns a range of tiles as a single int array. Tiles are stored one after another,
+   * {@code getTileWidth() * getTileHeight()} pixels per tile. (Format: ARGB)
+   * @param startIdx Index of the first tile.
+   * @param count Number of tiles.
+   */
+  public int[] getTileData(int startIdx, int count)
+  {
+    int[] buffer = new int[Math.max(0, count)*getTileWidth()*getTileHeight()];
+    getTileData(startIdx, count, buffer, 1);
+    return buffer;
+  }
+
+
+  /**
+   * Writes the tiles at the positions [from, to) of a range of tiles into the atlas.
+   * May be called concurrently for disjoint positions of the same range.
+   * @param startIdx Index of the first tile of the range.
+   * @param atlas The target buffer. (Format: ARGB)
+   * @param tilesPerRow Number of tiles per atlas line.
+   * @param from First position to write, relative to {@code startIdx}.
+   * @param to Position after the last position to write, relative to {@code startIdx}.
+   * @return Number of successfully written tiles.
+   */
+  protected int renderTiles(int startIdx, int[] atlas, int tilesPerRow, int from, int to)
+  {
+    int retVal = 0;
+    int stride = tilesPerRow*getTileWidth();
+    for (int i = from; i < to; i++) {
+      if (getTileData(startIdx + i, atlas, getAtlasOffset(i, tilesPerRow), stride)) {
+        retVal++;
+      }
+    }
+    return retVal;
+  }
+
+  /** Returns the offset of the top-left pixel of the tile at the specified atlas position. */
+  protected int getAtlasOffset(int position, int tilesPerRow)
+  {
+    return (position / tilesPerRow)*getTileHeight()*tilesPerRow*getTileWidth() + (position % tilesPerRow)*getTileWidth();
+  }
 
   /** Does basic initializations */
   protected TisDecoder(ResourceEntry tisEntry)
@@ -134,4 +212,39 @@ protected void setType(Type type)
   {
     this.type = type;
   }
+
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Splits ranges of tiles into tasks of the fork/join pool. */
+  private static class TileTask extends RecursiveTask<Integer>
+  {
+    private final TisDecoder decoder;
+    private final int[] atlas;
+    private final int startIdx, tilesPerRow, from, to;
+
+    public TileTask(TisDecoder decoder, int startIdx, int[] atlas, int tilesPerRow, int from, int to)
+    {
+      this.decoder = decoder;
+      this.startIdx = startIdx;
+      this.atlas = atlas;
+      this.tilesPerRow = tilesPerRow;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Integer compute()
+    {
+      if (to - from <= TASK_TILES) {
+        return Integer.valueOf(decoder.renderTiles(startIdx, atlas, tilesPerRow, from, to));
+      } else {
+        int mid = (from + to) >>> 1;
+        TileTask left = new TileTask(decoder, startIdx, atlas, tilesPerRow, from, mid);
+        TileTask right = new TileTask(decoder, startIdx, atlas, tilesPerRow, mid, to);
+        invokeAll(left, right);
+        return Integer.valueOf(left.join().intValue() + right.join().intValue());
+      }
+    }
+  }
 }
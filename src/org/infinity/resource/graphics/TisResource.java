@@ -83,7 +83,6 @@
 import org.infinity.search.ReferenceSearcher;
 import org.infinity.util.BinPack2D;
 import org.infinity.util.DynamicArray;
-import org.infinity.util.IntegerHashMap;
 import org.infinity.util.io.StreamUtils;
 
 /**
@@ -670,14 +669,13 @@ public Status convertToPaletteTis(Path output, boolean showProgress)
 
           // writing tile data
           int[] palette = new int[255];
+          ColorQuantizer quantizer = new ColorQuantizer();
           byte[] tilePalette = new byte[1024];
           byte[] tileData = new byte[64*64];
           BufferedImage image =
               ColorConvert.createCompatibleImage(decoder.getTileWidth(), decoder.getTileHeight(),
                                                  Transparency.BITMASK);
-          IntegerHashMap<Byte> colorCache = new IntegerHashMap<Byte>(1800);   // caching RGBColor -> index
           for (int tileIdx = 0; tileIdx < decoder.getTileCount(); tileIdx++) {
-            colorCache.clear();
             if (progress != null && progress.isCanceled()) {
               retVal = Status.CANCELLED;
               break;
@@ -700,7 +698,7 @@ public Status convertToPaletteTis(Path output, boolean showProgress)
             }
 
             int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
-            if (ColorConvert.medianCut(pixels, 255, palette, true)) {
+            if (quantizer.medianCut(pixels, 255, palette, true)) {
               // filling palette
               // first palette entry denotes transparency
               tilePalette[0] = tilePalette[2] = tilePalette[3] = 0; tilePalette[1] = (byte)255;
@@ -709,21 +707,14 @@ public Status convertToPaletteTis(Path output, boolean showProgress)
                 tilePalette[(i << 2) + 1] = (byte)((palette[i - 1] >>> 8) & 0xff);
                 tilePalette[(i << 2) + 2] = (byte)((palette[i - 1] >>> 16) & 0xff);
                 tilePalette[(i << 2) + 3] = 0;
-                colorCache.put(palette[i - 1], (byte)(i - 1));
               }
               // filling pixel data
+              PaletteMatcher matcher = new PaletteMatcher(palette, true);
               for (int i = 0; i < tileData.length; i++) {
                 if ((pixels[i] & 0xff000000) == 0) {
                   tileData[i] = 0;
                 } else {
-                  Byte palIndex = colorCache.get(pixels[i]);
-                  if (palIndex != null) {
-                    tileData[i] = (byte)(palIndex + 1);
-                  } else {
-                    byte color = (byte)ColorConvert.nearestColorRGB(pixels[i], palette, true);
-                    tileData[i] = (byte)(color + 1);
-                    colorCache.put(pixels[i], color);
-                  }
+                  tileData[i] = (byte)(matcher.nearestColor(pixels[i]) + 1);
                 }
               }
             } else {
@@ -180,6 +180,27 @@ public boolean getTileData(int tileIdx, int[] buffer)
     return renderTile(tileIdx, buffer);
   }
 
+  @Override
+  public boolean getTileData(int tileIdx, int[] buffer, int offset, int stride)
+  {
+    return renderTile(tileIdx, buffer, offset, stride, workingPalette);
+  }
+
+  @Override
+  protected int renderTiles(int startIdx, int[] atlas, int tilesPerRow, int from, int to)
+  {
+    // ranges may be rendered concurrently
+    int[] palette = new int[256];
+    int retVal = 0;
+    int stride = tilesPerRow*TileDimension;
+    for (int i = from; i < to; i++) {
+      if (renderTile(startIdx + i, atlas, getAtlasOffset(i, tilesPerRow), stride, palette)) {
+        retVal++;
+      }
+    }
+    return retVal;
+  }
+
 
   private void init()
   {
@@ -250,14 +271,22 @@ private boolean renderTile(int tileIdx, Image canvas)
   // Writes the specified tile data into the buffer
   private boolean renderTile(int tileIdx, int[] buffer)
   {
-    int size = TileDimension*TileDimension;
-    if (buffer != null && buffer.length >= size) {
+    return renderTile(tileIdx, buffer, 0, TileDimension, workingPalette);
+  }
+
+  // Writes the specified tile data into the buffer at the given position, using the palette as working buffer
+  private boolean renderTile(int tileIdx, int[] buffer, int offset, int stride, int[] palette)
+  {
+    if (buffer != null && offset >= 0 && stride >= TileDimension &&
+        offset + (TileDimension-1)*stride + TileDimension <= buffer.length) {
       int ofs = getTileOffset(tileIdx);
       if (ofs > 0) {
         ofs += 1024;    // skipping palette data
-        getTilePalette(tileIdx, workingPalette);
-        for (int i = 0; i < size; i++, ofs++) {
-          buffer[i] = workingPalette[tisBuffer.get(ofs) & 0xff];
+        getTilePalette(tileIdx, palette);
+        for (int y = 0; y < TileDimension; y++, offset += stride) {
+          for (int x = 0; x < TileDimension; x++, ofs++) {
+            buffer[offset+x] = palette[tisBuffer.get(ofs) & 0xff];
+          }
         }
         return true;
       }
@@ -5,12 +5,12 @@
 package org.infinity.resource.graphics;
 
 import java.awt.AlphaComposite;
-import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
@@ -76,7 +76,6 @@ public String getPvrzFileName(int tileIdx)
   @Override
   public void close()
   {
-    PvrDecoder.flushCache();
     tisBuffer = null;
     tileCount = 0;
     tileSize = 0;
@@ -135,14 +134,20 @@ public boolean getTile(int tileIdx, Image canvas)
   public int[] getTileData(int tileIdx)
   {
     int[] buffer = new int[TileDimension*TileDimension];
-    renderTile(tileIdx, buffer);
+    renderTile(tileIdx, buffer, 0, TileDimension);
     return buffer;
   }
 
   @Override
   public boolean getTileData(int tileIdx, int[] buffer)
   {
-    return renderTile(tileIdx, buffer);
+    return renderTile(tileIdx, buffer, 0, TileDimension);
+  }
+
+  @Override
+  public boolean getTileData(int tileIdx, int[] buffer, int offset, int stride)
+  {
+    return renderTile(tileIdx, buffer, offset, stride);
   }
 
 
@@ -172,8 +177,6 @@ private void init()
                        getResourceEntry().getResourceName().substring(2, name.length());
 
         setType(Type.PVRZ);
-
-        workingCanvas = new BufferedImage(TileDimension, TileDimension, BufferedImage.TYPE_INT_ARGB);
       } catch (Exception e) {
         e.printStackTrace();
         close();
@@ -210,7 +213,19 @@ private int getTileOffset(int tileIdx)
   private boolean renderTile(int tileIdx, Image canvas)
   {
     if (canvas != null && canvas.getWidth(null) >= TileDimension && canvas.getHeight(null) >= TileDimension) {
-      if (updateWorkingCanvas(tileIdx)) {
+      if (canvas instanceof BufferedImage && ((BufferedImage)canvas).getType() == BufferedImage.TYPE_INT_ARGB &&
+          ((BufferedImage)canvas).getRaster().getParent() == null) {
+        // writing pixels directly into the canvas
+        int[] buffer = ((DataBufferInt)((BufferedImage)canvas).getRaster().getDataBuffer()).getData();
+        return renderTile(tileIdx, buffer, 0, canvas.getWidth(null));
+      }
+
+      if (workingCanvas == null) {
+        workingCanvas = new BufferedImage(TileDimension, TileDimension, BufferedImage.TYPE_INT_ARGB);
+      }
+      int[] buffer = ((DataBufferInt)workingCanvas.getRaster().getDataBuffer()).getData();
+      if (renderTile(tileIdx, buffer, 0, TileDimension)) {
+        buffer = null;
         Graphics2D g = (Graphics2D)canvas.getGraphics();
         try {
           g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
@@ -225,53 +240,32 @@ private boolean renderTile(int tileIdx, Image canvas)
     return false;
   }
 
-  // Writes the specified tile data into the buffer
-  private boolean renderTile(int tileIdx, int[] buffer)
+  // Writes the specified tile data into the buffer at the given position
+  private boolean renderTile(int tileIdx, int[] buffer, int offset, int stride)
   {
-    int size = TileDimension*TileDimension;
-    if (buffer != null && buffer.length >= size) {
-      if (updateWorkingCanvas(tileIdx)) {
-        int[] src = ((DataBufferInt)workingCanvas.getRaster().getDataBuffer()).getData();
-        System.arraycopy(src, 0, buffer, 0, size);
-        src = null;
-        return true;
-      }
+    if (buffer == null || offset < 0 || stride < TileDimension ||
+        offset + (TileDimension-1)*stride + TileDimension > buffer.length) {
+      return false;
     }
-    return false;
-  }
 
-  // Draws the specified tile into the working canvas and returns the success state.
-  private boolean updateWorkingCanvas(int tileIdx)
-  {
     int ofs = getTileOffset(tileIdx);
     if (ofs > 0) {
       int page = tisBuffer.getInt(ofs);
       int x = tisBuffer.getInt(ofs+4);
       int y = tisBuffer.getInt(ofs+8);
+      if (page == -1) {
+        // tile without graphics data
+        for (int row = 0; row < TileDimension; row++, offset += stride) {
+          Arrays.fill(buffer, offset, offset + TileDimension, 0xff000000);
+        }
+        return true;
+      }
       PvrDecoder decoder = getPVR(page);
-      if (decoder != null || page == -1) {
-        // removing old content
+      if (decoder != null) {
         try {
-          if (page == -1) {
-            Graphics2D g = workingCanvas.createGraphics();
-            try {
-              g.setColor(Color.BLACK);
-              g.fillRect(0, 0, TileDimension, TileDimension);
-            } finally {
-              g.dispose();
-              g = null;
-            }
-          } else {
-            if (decoder != null) {
-              // drawing new content
-              decoder.decode(workingCanvas, x, y, TileDimension, TileDimension);
-              decoder = null;
-            }
-          }
-          return true;
+          return decoder.decode(buffer, offset, stride, x, y, TileDimension, TileDimension);
         } catch (Exception e) {
           e.printStackTrace();
-          decoder = null;
         }
       }
     }
@@ -117,18 +117,15 @@ private static String getAbilityName(Ability ability)
       // fetching tooltip label for ability, if available
       if (resref != null) {
         int[] strrefs = null;
-        for (int row = 0, numRows = table.getRowCount(); row < numRows; row++) {
-          String entry = table.get(row, 0);
-          if (resref.equalsIgnoreCase(entry)) {
-            int numCols = table.getColCount();
-            strrefs = new int[numCols - 1];
-            for (int col = 1; col < numCols; col++) {
-              String value = table.get(row, col);
-              int number = -1;
-              try { number = Integer.parseInt(value); } catch (NumberFormatException nfe) {}
-              strrefs[col - 1] = number;
-            }
-            break;
+        final int row = table.findRow(0, resref);
+        if (row >= 0) {
+          int numCols = table.getColCount();
+          strrefs = new int[numCols - 1];
+          for (int col = 1; col < numCols; col++) {
+            String value = table.get(row, col);
+            int number = -1;
+            try { number = Integer.parseInt(value); } catch (NumberFormatException nfe) {}
+            strrefs[col - 1] = number;
           }
         }
 
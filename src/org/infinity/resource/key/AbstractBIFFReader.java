@@ -11,6 +11,7 @@
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 
+import org.infinity.util.CacheManager;
 import org.infinity.util.io.StreamUtils;
 
 /**
@@ -30,6 +31,11 @@ public enum Type {
 
   // A cache for AbstractBIFFReader instances
   private static final LinkedHashMap<Path, AbstractBIFFReader> BIFF_CACHE = new LinkedHashMap<>();
+  private static final CacheManager.Statistics BIFF_STATS = new CacheManager.Statistics();
+
+  static {
+    CacheManager.register(new ManagedCache());
+  }
 
   // Maps resource locators to BIFF entry structures
   private final HashMap<Integer, Entry> mapEntries = new HashMap<>();
@@ -62,7 +68,7 @@ public static ByteBuffer getTisHeader(int tileCount, int tileSize)
   }
 
   /** Removes all {@code AbstractBIFFReader} entries from the cache. */
-  public static void resetCache()
+  public static synchronized void resetCache()
   {
     BIFF_CACHE.clear();
   }
@@ -74,7 +80,10 @@ private static AbstractBIFFReader queryBIFFReader(Path file) throws Exception
     if (file != null) {
       // get and remove an available cached entry
       retVal = BIFF_CACHE.get(file);
-      if (retVal == null) {
+      if (retVal != null) {
+        BIFF_STATS.hit();
+      } else {
+        BIFF_STATS.miss();
         Type type = detectBiffType(file);
         switch (type) {
           case BIFF:
@@ -247,4 +256,40 @@ public Entry(int locator, int offset, int count, int size, short type)
       this.isTile = (type == Keyfile.TYPE_TIS);
     }
   }
+
+  /** Provides usage of the BIFF reader cache to the cache manager. */
+  private static final class ManagedCache implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "BIFF readers"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.NONE; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (AbstractBIFFReader.class) {
+        return BIFF_CACHE.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      synchronized (AbstractBIFFReader.class) {
+        long size = 0L;
+        for (final AbstractBIFFReader reader : BIFF_CACHE.values()) {
+          size += 128L + reader.mapEntries.size() * 64L;
+        }
+        return size;
+      }
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return BIFF_STATS; }
+
+    @Override
+    public void clear() { resetCache(); }
+  }
 }
@@ -29,8 +29,8 @@
 import org.infinity.resource.pro.ProResource;
 import org.infinity.resource.spl.SplResource;
 import org.infinity.resource.sto.StoResource;
-import org.infinity.resource.text.PlainTextResource;
 import org.infinity.search.SearchOptions;
+import org.infinity.util.SearchNameCache;
 import org.infinity.util.io.StreamUtils;
 
 public abstract class ResourceEntry implements Comparable<ResourceEntry>
@@ -44,6 +44,7 @@ public abstract class ResourceEntry implements Comparable<ResourceEntry>
   }
 
   private String searchString;
+  private volatile boolean searchStringLoaded;
 
   static int[] getLocalFileInfo(Path file)
   {
@@ -181,32 +182,12 @@ public int[] getResourceInfo() throws Exception
    */
   public String getSearchString()
   {
-    if (searchString == null) {
+    if (searchStringLoaded && !SearchNameCache.isCurrent(this)) {
+      resetSearchString();
+    }
+    if (!searchStringLoaded) {
       try {
-        String extension = getExtension().toUpperCase();
-        if (extension.equals("CRE") || extension.equals("CHR")) {
-          try (InputStream is = getResourceDataAsStream()) {
-            searchString = CreResource.getSearchString(is);
-          }
-        } else if (extension.equals("ITM")) {
-          try (InputStream is = getResourceDataAsStream()) {
-            searchString = ItmResource.getSearchString(is);
-          }
-        } else if (extension.equals("SPL")) {
-          try (InputStream is = getResourceDataAsStream()) {
-            searchString = SplResource.getSearchString(is);
-          }
-        } else if (extension.equals("STO")) {
-          try (InputStream is = getResourceDataAsStream()) {
-            searchString = StoResource.getSearchString(is);
-          }
-        } else if (extension.equals("ARE")) {
-          searchString = AreResource.getSearchString(this);
-        } else if (extension.equals("PRO")) {
-          searchString = ProResource.getSearchString(this);
-        } else if (extension.equals("INI")) {
-          searchString = PlainTextResource.getSearchString(this);
-        }
+        searchString = SearchNameCache.getName(this);
       } catch (Exception e) {
         if ((NearInfinity.getInstance() != null) &&
             !BrowserMenuBar.getInstance().ignoreReadErrors()) {
@@ -216,10 +197,18 @@ public String getSearchString()
         searchString = "Error";
         e.printStackTrace();
       }
+      searchStringLoaded = true;
     }
     return searchString;
   }
 
+  /** Discards the localized name of the resource. It is determined again on next request. */
+  public void resetSearchString()
+  {
+    searchStringLoaded = false;
+    searchString = null;
+  }
+
   /**
    * Returns whether the current resource matches all of the search options specified in the
    * SearchOptions argument.
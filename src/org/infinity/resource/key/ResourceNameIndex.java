@@ -0,0 +1,385 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.resource.key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.SwingUtilities;
+
+import org.infinity.util.SearchNameCache;
+
+/**
+ * Immutable index of the resource names of a {@link ResourceTreeModel}.<br>
+ * <br>
+ * Resource names are kept in a sorted array, so that resources starting with a given prefix
+ * are found by binary search. Resources containing a given text are found by a table which maps
+ * each sequence of two or three characters to the resources containing it. Localized
+ * resource names are included if they are already available in the {@link SearchNameCache}.
+ * The shared index is rebuilt in a background thread only after resources have been added to or
+ * removed from the model. The last complete index remains available until the rebuilt index
+ * has been published.
+ */
+public final class ResourceNameIndex
+{
+  private static final int[] EMPTY = new int[0];
+
+  private static ResourceNameIndex current;
+  /** Thread building a new index. {@code null} if no index is being built. */
+  private static Thread builder;
+  /** Tree model of the index being built. */
+  private static ResourceTreeModel builderModel;
+  /** Notified when the index being built has been published. */
+  private static final Set<Runnable> listeners = new LinkedHashSet<>();
+
+  private final ResourceTreeModel model;
+  private final int modCount;
+  private final boolean hasSearchNames;
+  /** Resources sorted by name. */
+  private final ResourceEntry[] entries;
+  /** Upper-cased resource names in sort order. */
+  private final String[] names;
+  /** Upper-cased localized names, or {@code null} if not available. */
+  private final String[] searchNames;
+  private final SubstringTable nameTable;
+  private final SubstringTable searchNameTable;
+
+  /**
+   * Returns the most recent complete index of the specified tree model without blocking.
+   * Starts rebuilding the index in a background thread if the tree model has changed since the
+   * index has been built.
+   * @param model The resource tree model.
+   * @param listener Called on the event dispatch thread when the rebuilt index has been
+   *                 published. Can be {@code null}.
+   * @return The most recent index of the model, which may be outdated. Returns {@code null} if no
+   *         index of the model is available yet.
+   */
+  public static synchronized ResourceNameIndex get(ResourceTreeModel model, Runnable listener)
+  {
+    final ResourceNameIndex index = (current != null && current.model == model) ? current : null;
+    if (index == null || !index.isCurrent()) {
+      if (listener != null) {
+        listeners.add(listener);
+      }
+      startBuild(model);
+    }
+    return index;
+  }
+
+  /** Discards the shared index. */
+  public static synchronized void clearCache()
+  {
+    current = null;
+    builder = null;
+    builderModel = null;
+    listeners.clear();
+  }
+
+  /** Builds the index of the specified model in a background thread, unless already in progress. */
+  private static synchronized void startBuild(ResourceTreeModel model)
+  {
+    if (builder != null && builderModel == model) {
+      return;
+    }
+    builderModel = model;
+    builder = new Thread(() -> {
+      final ResourceNameIndex index = new ResourceNameIndex(model);
+      final List<Runnable> list;
+      synchronized (ResourceNameIndex.class) {
+        if (builder != Thread.currentThread()) {
+          // discarded or superseded in the meantime
+          return;
+        }
+        builder = null;
+        builderModel = null;
+        current = index;
+        list = new ArrayList<>(listeners);
+        listeners.clear();
+      }
+      for (final Runnable listener : list) {
+        SwingUtilities.invokeLater(listener);
+      }
+    }, "ResourceNameIndex");
+    builder.setDaemon(true);
+    builder.start();
+  }
+
+  private ResourceNameIndex(ResourceTreeModel model)
+  {
+    this.model = model;
+    this.modCount = model.getModificationCount();
+    this.hasSearchNames = SearchNameCache.isInitialized();
+
+    // gathering unique resource names from all folders
+    final List<ResourceEntry> list = new ArrayList<>(model.getResourceEntries().size() + 1024);
+    addEntries(model.getRoot(), list);
+    final String[] keys = new String[list.size()];
+    final Integer[] order = new Integer[list.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = list.get(i).getResourceName().toUpperCase(Locale.ENGLISH);
+      order[i] = Integer.valueOf(i);
+    }
+    // binary search requires the same ordering as String.compareTo
+    Arrays.sort(order, (a, b) -> keys[a.intValue()].compareTo(keys[b.intValue()]));
+    final ResourceEntry[] array = new ResourceEntry[keys.length];
+    final String[] sortedKeys = new String[keys.length];
+    int count = 0;
+    for (final Integer idx : order) {
+      final String key = keys[idx.intValue()];
+      if (count == 0 || !sortedKeys[count - 1].equals(key)) {
+        array[count] = list.get(idx.intValue());
+        sortedKeys[count] = key;
+        count++;
+      }
+    }
+    this.entries = Arrays.copyOf(array, count);
+    this.names = Arrays.copyOf(sortedKeys, count);
+    this.nameTable = new SubstringTable(names);
+
+    if (hasSearchNames) {
+      this.searchNames = new String[count];
+      for (int i = 0; i < count; i++) {
+        final String s = SearchNameCache.peekName(entries[i]);
+        searchNames[i] = (s != null && !s.isEmpty()) ? s.toUpperCase(Locale.ENGLISH) : null;
+      }
+      this.searchNameTable = new SubstringTable(searchNames);
+    } else {
+      this.searchNames = null;
+      this.searchNameTable = null;
+    }
+  }
+
+  /** Returns whether the index reflects the current content of the tree model. */
+  private boolean isCurrent()
+  {
+    return modCount == model.getModificationCount() &&
+           (hasSearchNames || !SearchNameCache.isInitialized());
+  }
+
+  /** Returns the number of indexed resources. */
+  public int size()
+  {
+    return entries.length;
+  }
+
+  /**
+   * Returns resources matching the specified text. Resources starting with the text are returned
+   * first, followed by resources containing the text, followed by resources whose localized
+   * names contain the text. Text is compared case-insensitive.
+   * @param text The text to search.
+   * @param includeSearchNames Whether localized resource names should be searched as well.
+   * @param maxResults Max. number of returned resources.
+   * @return List of matching resources.
+   */
+  public List<ResourceEntry> find(String text, boolean includeSearchNames, int maxResults)
+  {
+    final List<ResourceEntry> retVal = new ArrayList<>();
+    if (text == null || text.isEmpty() || maxResults <= 0) {
+      return retVal;
+    }
+    final String key = text.toUpperCase(Locale.ENGLISH);
+
+    // 1. prefix matches
+    final int from = lowerBound(key);
+    final int to = upperBound(key, from);
+    for (int i = from; i < to && retVal.size() < maxResults; i++) {
+      retVal.add(entries[i]);
+    }
+
+    // 2. substring matches
+    if (retVal.size() < maxResults) {
+      for (final int i : nameTable.find(key, maxResults + to - from)) {
+        if ((i < from || i >= to) && names[i].indexOf(key) > 0) {
+          retVal.add(entries[i]);
+          if (retVal.size() >= maxResults) {
+            break;
+          }
+        }
+      }
+    }
+
+    // 3. matching localized names
+    if (includeSearchNames && searchNames != null && retVal.size() < maxResults) {
+      for (final int i : searchNameTable.find(key, Integer.MAX_VALUE)) {
+        if (searchNames[i] != null && searchNames[i].contains(key) && !names[i].contains(key)) {
+          retVal.add(entries[i]);
+          if (retVal.size() >= maxResults) {
+            break;
+          }
+        }
+      }
+    }
+
+    return retVal;
+  }
+
+  /** Returns the index of the first name which is greater than or equal to the specified prefix. */
+  private int lowerBound(String prefix)
+  {
+    int lo = 0, hi = names.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (names[mid].compareTo(prefix) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** Returns the index after the last name starting with the specified prefix. */
+  private int upperBound(String prefix, int from)
+  {
+    int lo = from, hi = names.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (names[mid].startsWith(prefix)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private static void addEntries(ResourceTreeFolder folder, List<ResourceEntry> list)
+  {
+    if (folder != null) {
+      list.addAll(folder.getResourceEntries());
+      for (final ResourceTreeFolder subFolder : folder.getFolders()) {
+        addEntries(subFolder, list);
+      }
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /**
+   * Maps sequences of two and three characters to the indices of the strings containing them.
+   */
+  private static final class SubstringTable
+  {
+    private final String[] strings;
+    /** Sorted string indices by sequence of characters. */
+    private final Map<Long, int[]> postings;
+
+    public SubstringTable(String[] strings)
+    {
+      this.strings = strings;
+
+      // collecting postings in growable arrays: element 0 contains number of indices
+      final Map<Long, int[]> map = new HashMap<>(strings.length * 8);
+      for (int i = 0; i < strings.length; i++) {
+        final String s = strings[i];
+        if (s == null) {
+          continue;
+        }
+        for (int j = 0, len = s.length() - 1; j < len; j++) {
+          add(map, gram(s, j, 2), i);
+          if (j + 2 < s.length()) {
+            add(map, gram(s, j, 3), i);
+          }
+        }
+      }
+      for (final Map.Entry<Long, int[]> e : map.entrySet()) {
+        final int[] list = e.getValue();
+        e.setValue(Arrays.copyOfRange(list, 1, list[0] + 1));
+      }
+      this.postings = map;
+    }
+
+    /**
+     * Returns the sorted indices of all strings which may contain the specified text.
+     * Candidates have to be verified by the caller.
+     * @param text The text to search.
+     * @param limit Max. number of candidates for single characters.
+     */
+    public int[] find(String text, int limit)
+    {
+      if (text.length() < 2) {
+        // too short for lookup: checking strings until limit is reached
+        final int[] retVal = new int[Math.min(limit, strings.length)];
+        int count = 0;
+        for (int i = 0; i < strings.length && count < retVal.length; i++) {
+          if (strings[i] != null && strings[i].indexOf(text.charAt(0)) >= 0) {
+            retVal[count++] = i;
+          }
+        }
+        return Arrays.copyOf(retVal, count);
+      } else if (text.length() == 2) {
+        final int[] retVal = postings.get(Long.valueOf(gram(text, 0, 2)));
+        return (retVal != null) ? retVal : EMPTY;
+      }
+
+      // intersecting postings, starting with the shortest list
+      final int[][] lists = new int[text.length() - 2][];
+      for (int j = 0; j < lists.length; j++) {
+        lists[j] = postings.get(Long.valueOf(gram(text, j, 3)));
+        if (lists[j] == null) {
+          return EMPTY;
+        }
+      }
+      Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+      int[] retVal = lists[0];
+      for (int j = 1; j < lists.length && retVal.length > 0; j++) {
+        retVal = intersect(retVal, lists[j]);
+      }
+      return retVal;
+    }
+
+    private static void add(Map<Long, int[]> map, long gram, int index)
+    {
+      final Long key = Long.valueOf(gram);
+      int[] list = map.get(key);
+      if (list == null) {
+        list = new int[4];
+        map.put(key, list);
+      } else if (list[list[0]] == index) {
+        return;   // sequence occurs several times in the same string
+      }
+      if (list[0] + 1 == list.length) {
+        list = Arrays.copyOf(list, list.length << 1);
+        map.put(key, list);
+      }
+      list[++list[0]] = index;
+    }
+
+    private static int[] intersect(int[] a, int[] b)
+    {
+      final int[] retVal = new int[Math.min(a.length, b.length)];
+      int count = 0;
+      for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+        if (a[i] < b[j]) {
+          i++;
+        } else if (a[i] > b[j]) {
+          j++;
+        } else {
+          retVal[count++] = a[i];
+          i++;
+          j++;
+        }
+      }
+      return Arrays.copyOf(retVal, count);
+    }
+
+    /** Returns the key of the sequence of {@code len} characters (2 or 3) at the specified position. */
+    private static long gram(String s, int pos, int len)
+    {
+      long value = ((long)len << 48) | ((long)s.charAt(pos) << 32) | ((long)s.charAt(pos + 1) << 16);
+      if (len > 2) {
+        value |= s.charAt(pos + 2);
+      }
+      // scrambling bits for a better distribution of hash codes (multiplication by an odd constant is reversible)
+      return value * 0x9e3779b97f4a7c15L;
+    }
+  }
+}
@@ -31,6 +31,8 @@ public final class ResourceTreeModel implements TreeModel
   private final Map<String, ResourceEntry> entries = new HashMap<>(25000);
   private final Map<String, ResourceTreeFolder> folders = new TreeMap<>(Misc.getIgnoreCaseComparator());
   private final ResourceTreeFolder root = new ResourceTreeFolder(null, "");
+  /** Incremented whenever resources are added or removed. */
+  private volatile int modCount;
 
   public ResourceTreeModel()
   {
@@ -119,6 +121,7 @@ public void addDirectory(ResourceTreeFolder parentFolder, Path directory, boolea
             folder.addResourceEntry(new FileResourceEntry(path), overwrite);
           }
         });
+        modCount++;
         parentFolder.sortChildren(true);
       }
     } catch (IOException e) {
@@ -134,6 +137,7 @@ public ResourceTreeFolder addResourceEntry(ResourceEntry entry, String folderNam
       folder.addResourceEntry(entry, overwrite);
       entries.put(entry.getResourceName().toUpperCase(Locale.ENGLISH), entry);
       folder.sortChildren(false);
+      modCount++;
       return folder;
     }
     return getFolder(folderName);
@@ -293,6 +297,7 @@ public List<ResourceEntry> removeDirectory(ResourceTreeFolder parentFolder, Stri
         parentFolder.removeFolder(folder);
         folders.remove(folder.folderName());
         retVal.addAll(entries);
+        modCount++;
       }
     }
     return retVal;
@@ -314,6 +319,7 @@ public void removeResourceEntry(ResourceEntry entry, String folder)
                                               new Object[]{entry});
     parent.removeResourceEntry(entry);
     entries.remove(entry.getResourceName().toUpperCase(Locale.ENGLISH));
+    modCount++;
     if (parent.getChildCount() == 0) {
       root.removeFolder(parent);
       folders.remove(parent.folderName());
@@ -334,6 +340,15 @@ public void resourceEntryChanged(FileResourceEntry entry)
     }
   }
 
+  /**
+   * Returns a counter which is incremented whenever resources are added to or removed from the model.
+   * Can be used to determine whether data derived from the model is outdated.
+   */
+  public int getModificationCount()
+  {
+    return modCount;
+  }
+
   public int size()
   {
     int size = 0;
@@ -8,25 +8,35 @@
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.sound.AudioBuffer;
 import org.infinity.resource.sound.AudioFactory;
+import org.infinity.util.CacheManager;
 import org.infinity.util.io.FileManager;
 import org.infinity.util.io.StreamUtils;
 
 public class Entry
 {
-  // Caches AudioBuffer objects for faster reload
-  private static final LinkedHashMap<Path, AudioBuffer> BufferCache = new LinkedHashMap<>(100);
+  // Caches AudioBuffer objects for faster reload, in least recently used order
+  private static final LinkedHashMap<Path, AudioBuffer> BufferCache = new LinkedHashMap<>(100, 0.75f, true);
+  // Stamps of the audio files of cached AudioBuffer objects
+  private static final HashMap<Path, CacheManager.ResourceStamp> BufferStamps = new HashMap<>(100);
   private static final long MAX_CACHE_SIZE = getMaxCacheSize();
+  private static final CacheManager.Statistics CacheStats = new CacheManager.Statistics();
   private static long currentCacheSize = 0L;
 
+  static {
+    CacheManager.register(new ManagedBufferCache());
+  }
+
   private final List<Entry> entryList;
   private final ResourceEntry entry;
   private final String line;
@@ -38,39 +48,69 @@
   /**
    * Clears the whole AudioBuffer cache
    */
-  public static void clearCache()
+  public static synchronized void clearCache()
   {
     BufferCache.clear();
+    BufferStamps.clear();
     currentCacheSize = 0L;
   }
 
   // adds an AudioBuffer object to the cache
-  private static void addCacheEntry(Path path, String name, AudioBuffer buffer)
+  private static void addCacheEntry(Path path, String name, AudioBuffer buffer, CacheManager.ResourceStamp stamp)
   {
     if (name != null && buffer != null) {
-      while (currentCacheSize + buffer.getAudioData().length > MAX_CACHE_SIZE &&
-             !BufferCache.isEmpty()) {
-        Iterator<Path> iter = BufferCache.keySet().iterator();
-        if (iter.hasNext()) {
-          AudioBuffer ab = BufferCache.get(iter.next());
-          iter.remove();
-          currentCacheSize -= ab.getAudioData().length;
+      synchronized (Entry.class) {
+        if (currentCacheSize + buffer.getAudioData().length > MAX_CACHE_SIZE) {
+          evictCacheEntries(currentCacheSize + buffer.getAudioData().length - MAX_CACHE_SIZE);
+        }
+        Path key = getCacheKey(path, name);
+        BufferStamps.put(key, stamp);
+        AudioBuffer old = BufferCache.put(key, buffer);
+        if (old != null) {
+          currentCacheSize -= old.getAudioData().length;
         }
+        currentCacheSize += buffer.getAudioData().length;
       }
-      BufferCache.put(getCacheKey(path, name), buffer);
-      currentCacheSize += buffer.getAudioData().length;
+      CacheManager.notifyAdded(buffer.getAudioData().length);
     }
   }
 
+  // removes least recently used AudioBuffer objects until the specified amount of data has been freed
+  private static synchronized long evictCacheEntries(long size)
+  {
+    long freed = 0L;
+    int count = 0;
+    for (Iterator<Map.Entry<Path, AudioBuffer>> iter = BufferCache.entrySet().iterator(); freed < size && iter.hasNext(); ) {
+      Map.Entry<Path, AudioBuffer> e = iter.next();
+      freed += e.getValue().getAudioData().length;
+      BufferStamps.remove(e.getKey());
+      iter.remove();
+      count++;
+    }
+    currentCacheSize -= freed;
+    CacheStats.evicted(count);
+    return freed;
+  }
+
   // returns a cached AudioBuffer object or null if none found
-  private static AudioBuffer getCacheEntry(Path path, String name)
+  private static synchronized AudioBuffer getCacheEntry(Path path, String name)
   {
     if (name != null) {
       Path key = getCacheKey(path, name);
-      if (BufferCache.containsKey(key)) {
-        AudioBuffer ab = BufferCache.get(key);
+      AudioBuffer ab = BufferCache.get(key);
+      CacheManager.ResourceStamp stamp = BufferStamps.get(key);
+      if (ab != null && stamp != null && !stamp.isCurrent()) {
+        // audio file has been modified by another application
+        BufferCache.remove(key);
+        BufferStamps.remove(key);
+        currentCacheSize -= ab.getAudioData().length;
+        ab = null;
+      }
+      if (ab != null) {
+        CacheStats.hit();
         return ab;
       }
+      CacheStats.miss();
     }
     return null;
   }
@@ -186,11 +226,12 @@ private AudioBuffer getAudioBuffer(String fileName) throws IOException
     }
 
     // simplest case: grab AudioBuffer from cache
-    AudioBuffer audio = getCacheEntry(acmFile, fileName);
+    AudioBuffer audio = getCacheEntry(acmFile.getParent(), fileName);
     if (audio != null) {
       return audio;
     }
 
+    CacheManager.ResourceStamp stamp = new CacheManager.ResourceStamp(acmFile);
     try (InputStream is = StreamUtils.getInputStream(acmFile)) {
       byte[] buffer = new byte[(int)Files.size(acmFile)];
       int bytesRead = is.read(buffer);
@@ -198,7 +239,7 @@ private AudioBuffer getAudioBuffer(String fileName) throws IOException
         // ignore # channels in header (only ACM will be affected)
         audio = AudioFactory.getAudioBuffer(buffer, 0, AudioBuffer.AudioOverride.overrideChannels(2));
         if (audio != null) {
-          addCacheEntry(acmFile.getParent(), fileName, audio);
+          addCacheEntry(acmFile.getParent(), fileName, audio, stamp);
         }
       } else {
         throw new IOException("Unexpected end of file");
@@ -209,4 +250,40 @@ private AudioBuffer getAudioBuffer(String fileName) throws IOException
     return audio;
   }
 
+//-------------------------- INNER CLASSES --------------------------
+
+  // Provides size and usage of the AudioBuffer cache to the cache manager
+  private static final class ManagedBufferCache implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "Music buffers"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (Entry.class) {
+        return BufferCache.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      synchronized (Entry.class) {
+        return currentCacheSize;
+      }
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return CacheStats; }
+
+    @Override
+    public void clear() { clearCache(); }
+
+    @Override
+    public long evict(long size) { return evictCacheEntries(size); }
+  }
 }
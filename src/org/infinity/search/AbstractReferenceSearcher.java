@@ -115,7 +115,7 @@ else if (event.getSource() == bCancel) {
   public void run()
   {
     // executing multithreaded search
-    if (runSearch("Searching", files)) {
+    if (runSearch("Searching", filterFiles(files))) {
       hitFrame.close();
       return;
     }
@@ -128,14 +128,42 @@ public void run()
   protected Runnable newWorker(ResourceEntry entry)
   {
     return () -> {
-      final Resource resource = ResourceFactory.getResource(entry);
-      if (resource != null) {
-        search(entry, resource);
+      if (mayContainMatch(entry)) {
+        final Resource resource = ResourceFactory.getResource(entry);
+        if (resource != null) {
+          search(entry, resource);
+        }
       }
       advanceProgress();
     };
   }
 
+  /**
+   * Returns whether the specified resource may contain matches. Called before the resource
+   * is loaded. The default implementation always returns {@code true}. Implementations can use
+   * the {@link ReferenceLayout} to check the raw resource data without parsing the resource.
+   *
+   * @param entry Resource in which the search will be performed
+   * @return {@code false} if the resource is known to contain no matches, {@code true} otherwise
+   */
+  boolean mayContainMatch(ResourceEntry entry)
+  {
+    return true;
+  }
+
+  /**
+   * Returns the subset of {@code files} which may contain matches. The default implementation
+   * returns {@code files} unchanged. Implementations can use the {@link ReferenceIndex} to skip
+   * resources which are known to contain no matches.
+   *
+   * @param files List of resources selected for the search
+   * @return List of resources in which the search must be performed
+   */
+  List<ResourceEntry> filterFiles(List<ResourceEntry> files)
+  {
+    return files;
+  }
+
   /**
    * Registers match hit.
    *
@@ -6,11 +6,12 @@
 
 import java.awt.Component;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JOptionPane;
 import javax.swing.ProgressMonitor;
 import org.infinity.NearInfinity;
 import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.BoundedExecutor;
 import org.infinity.util.Debugging;
 import org.infinity.util.Misc;
 
@@ -29,6 +30,9 @@
   public static final String CHECK_ONE_TYPE_FORMAT   = "Checking resource %2$d/%3$d";
   public static final String CHECK_MULTI_TYPE_FORMAT = "Checking %1$ss %2$d/%3$d";
 
+  /** Interval for checking whether the user has cancelled the search, in milliseconds. */
+  private static final int PROGRESS_POLL_MS = 50;
+
   /**
    * Handle to widget that shows search progress. Creates when {@link #runSearch}
    * invoked and resetted to {@code null} when {@link #advanceProgress advanceProgress(true)}
@@ -37,6 +41,8 @@
   private ProgressMonitor progress;
   /** Current number of checked items, that progress shows. */
   private int progressIndex;
+  /** Executor of the currently running search. */
+  private volatile BoundedExecutor executor;
   /** Extension of the last processed resource. */
   private String lastExt;
   /** Text for progress note. Contains two int placeholders: current and maximum count of items. */
@@ -86,46 +92,44 @@ protected boolean runSearch(String operation, List<ResourceEntry> entries)
       lastExt = entries.get(0).getExtension();
       updateProgressNote();
 
-      final ThreadPoolExecutor executor = Misc.createThreadPool();
-      boolean isCancelled = false;
+      executor = new BoundedExecutor();
       Debugging.timerReset();
       int i = 0;
-      for (ResourceEntry entry : entries) {
-        if (progress.isCanceled()) {
-          break;
-        }
-        if (entry == null) {
-          ++i;
-          advanceProgress(false);
-          continue;
-        }
-        if (i++ % 10 == 0) {
-          final String ext = entry.getExtension();
-          if (!lastExt.equalsIgnoreCase(ext)) {
-            lastExt = ext;
-            updateProgressNote();
+      try {
+        for (ResourceEntry entry : entries) {
+          if (progress.isCanceled()) {
+            executor.cancel();
+            break;
+          }
+          if (entry == null) {
+            ++i;
+            advanceProgress(false);
+            continue;
+          }
+          if (i++ % 10 == 0) {
+            final String ext = entry.getExtension();
+            if (!lastExt.equalsIgnoreCase(ext)) {
+              lastExt = ext;
+              updateProgressNote();
+            }
           }
-        }
-
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(newWorker(entry));
-      }
 
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
+          executor.execute(newWorker(entry));
+        }
 
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
+        // waiting for pending tasks to finish
+        while (!executor.awaitCompletion(PROGRESS_POLL_MS, TimeUnit.MILLISECONDS)) {
+          if (!executor.isCancelled() && progress.isCanceled()) {
+            executor.cancel();
+          }
         }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      } catch (InterruptedException e) {
+        executor.cancel();
+        Thread.currentThread().interrupt();
+      } finally {
+        executor.shutdown();
       }
+      final boolean isCancelled = executor.isCancelled();
 
       Debugging.timerShow(operation + " completed", Debugging.TimeFormat.MILLISECONDS);
 
@@ -136,9 +140,20 @@ protected boolean runSearch(String operation, List<ResourceEntry> entries)
       return isCancelled;
     } finally {
       advanceProgress(true);
+      executor = null;
     }
   }
 
+  /**
+   * Returns whether the current search has been cancelled by the user. Workers are interrupted
+   * on cancellation and should also poll this method to finish early if it returns {@code true}.
+   */
+  protected final boolean isCancelled()
+  {
+    final BoundedExecutor e = executor;
+    return e != null && e.isCancelled();
+  }
+
   /** Move progress along. */
   protected final void advanceProgress() { advanceProgress(false); }
 
@@ -0,0 +1,565 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.infinity.datatype.Flag;
+import org.infinity.datatype.IsNumeric;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.BoundedExecutor;
+import org.infinity.util.Pair;
+import org.infinity.util.PersistentCache;
+
+/**
+ * Column-oriented index of numeric and flag attributes used by the {@link SearchResource
+ * extended search}. Each resource type is indexed separately. Attribute values of all resources
+ * of a type are stored in primitive arrays, so that search options can be evaluated as simple
+ * column scans whose results are combined by bitmap intersection.<br>
+ * <br>
+ * Only search options with a known, resource-independent matching rule are covered by the index.
+ * Resources matching all covered options have to be checked by the regular
+ * {@code matchSearchOptions()} method if the search contains further options.<br>
+ * <br>
+ * The {@link PersistentCache#getStamp(ResourceEntry) stamp} of each resource is validated on every
+ * query, so that resources modified by other applications are checked conventionally as well.
+ */
+public final class AttributeIndex
+{
+  /** Option keys matched with {@link SearchOptions.Utils#matchNumber(StructEntry, Object)}. */
+  private static final Map<String, String[]> NUMBER_KEYS = new HashMap<>();
+  /** Option keys matched with {@link SearchOptions.Utils#matchFlags(StructEntry, Object)}. */
+  private static final Map<String, String[]> FLAG_KEYS = new HashMap<>();
+  /** Option keys matched against the global effects. Second element defines the effect label. */
+  private static final Map<String, String[]> EFFECT_KEYS = new HashMap<>();
+
+  static {
+    NUMBER_KEYS.put("ARE", new String[0]);
+    FLAG_KEYS.put("ARE", new String[]{SearchOptions.ARE_AreaType, SearchOptions.ARE_Location});
+
+    NUMBER_KEYS.put("CRE", new String[]{SearchOptions.CRE_Animation, SearchOptions.CRE_General,
+                                        SearchOptions.CRE_Class, SearchOptions.CRE_Specifics,
+                                        SearchOptions.CRE_Alignment, SearchOptions.CRE_Gender,
+                                        SearchOptions.CRE_Sex, SearchOptions.CRE_Race,
+                                        SearchOptions.CRE_Allegiance, SearchOptions.CRE_Kit,
+                                        SearchOptions.CRE_Level1, SearchOptions.CRE_Level2,
+                                        SearchOptions.CRE_Level3, SearchOptions.CRE_IWD2LevelTotal,
+                                        SearchOptions.CRE_IWD2LevelBarbarian, SearchOptions.CRE_IWD2LevelBard,
+                                        SearchOptions.CRE_IWD2LevelCleric, SearchOptions.CRE_IWD2LevelDruid,
+                                        SearchOptions.CRE_IWD2LevelFighter, SearchOptions.CRE_IWD2LevelMonk,
+                                        SearchOptions.CRE_IWD2LevelPaladin, SearchOptions.CRE_IWD2LevelRanger,
+                                        SearchOptions.CRE_IWD2LevelRogue, SearchOptions.CRE_IWD2LevelSorcerer,
+                                        SearchOptions.CRE_IWD2LevelWizard});
+    FLAG_KEYS.put("CRE", new String[]{SearchOptions.CRE_Flags, SearchOptions.CRE_Feats1,
+                                      SearchOptions.CRE_Feats2, SearchOptions.CRE_Feats3,
+                                      SearchOptions.CRE_Attributes});
+    EFFECT_KEYS.put("CRE", new String[]{SearchOptions.CRE_Effect, SearchOptions.CRE_Effect_Type1,
+                                        SearchOptions.CRE_Effect_Type2, SearchOptions.CRE_Effect_Type3,
+                                        SearchOptions.CRE_Effect_Type4});
+
+    NUMBER_KEYS.put("EFF", new String[]{SearchOptions.EFF_Effect, SearchOptions.EFF_Param1,
+                                        SearchOptions.EFF_Param2, SearchOptions.EFF_TimingMode,
+                                        SearchOptions.EFF_Duration});
+    FLAG_KEYS.put("EFF", new String[]{SearchOptions.EFF_SaveType});
+
+    NUMBER_KEYS.put("ITM", new String[]{SearchOptions.ITM_Category, SearchOptions.ITM_Price,
+                                        SearchOptions.ITM_Enchantment, SearchOptions.ITM_MinLevel,
+                                        SearchOptions.ITM_MinSTR, SearchOptions.ITM_MinSTRExtra,
+                                        SearchOptions.ITM_MinCON, SearchOptions.ITM_MinDEX,
+                                        SearchOptions.ITM_MinINT, SearchOptions.ITM_MinWIS,
+                                        SearchOptions.ITM_MinCHA});
+    FLAG_KEYS.put("ITM", new String[]{SearchOptions.ITM_Flags, SearchOptions.ITM_Unusable,
+                                      SearchOptions.ITM_KitsUnusable1, SearchOptions.ITM_KitsUnusable2,
+                                      SearchOptions.ITM_KitsUnusable3, SearchOptions.ITM_KitsUnusable4});
+    EFFECT_KEYS.put("ITM", new String[]{SearchOptions.ITM_Effect, SearchOptions.ITM_Effect_Type1,
+                                        SearchOptions.ITM_Effect_Type2, SearchOptions.ITM_Effect_Type3});
+
+    NUMBER_KEYS.put("SPL", new String[]{SearchOptions.SPL_SpellType, SearchOptions.SPL_CastingAnimation,
+                                        SearchOptions.SPL_PrimaryType, SearchOptions.SPL_SecondaryType,
+                                        SearchOptions.SPL_Level});
+    FLAG_KEYS.put("SPL", new String[]{SearchOptions.SPL_Flags, SearchOptions.SPL_Exclusion});
+    EFFECT_KEYS.put("SPL", new String[]{SearchOptions.SPL_Effect, SearchOptions.SPL_Effect_Type1,
+                                        SearchOptions.SPL_Effect_Type2, SearchOptions.SPL_Effect_Type3});
+
+    NUMBER_KEYS.put("STO", new String[]{SearchOptions.STO_Type, SearchOptions.STO_Depreciation,
+                                        SearchOptions.STO_SellMarkup, SearchOptions.STO_BuyMarkup,
+                                        SearchOptions.STO_Stealing, SearchOptions.STO_Capacity});
+    FLAG_KEYS.put("STO", new String[]{SearchOptions.STO_Flags, SearchOptions.STO_RoomsAvailable});
+
+    NUMBER_KEYS.put("VVC", new String[0]);
+    FLAG_KEYS.put("VVC", new String[]{SearchOptions.VVC_Flags, SearchOptions.VVC_ColorAdjustment,
+                                      SearchOptions.VVC_Sequencing, SearchOptions.VVC_Orientation});
+  }
+
+  /** Available indices by resource type. */
+  private static final Map<String, AttributeIndex> indices = new HashMap<>();
+  /** Resource types which are currently being indexed. */
+  private static final Set<String> pending = new HashSet<>();
+
+  private final String type;
+  private final Map<ResourceEntry, Integer> rows;
+  /** Columns by option key. Multiple keys may share the same column. */
+  private final Map<String, Column> columns = new HashMap<>();
+  /** Resource stamps at the time the rows have been loaded. */
+  private final long[] stamps;
+  /** Rows which don't reflect the current resource content anymore. */
+  private final BitSet stale = new BitSet();
+
+  /** Returns whether the specified resource type is supported by the index. */
+  public static boolean isSupported(String type)
+  {
+    return type != null && FLAG_KEYS.containsKey(type.toUpperCase());
+  }
+
+  /**
+   * Returns the index of the specified resource type.
+   * @return The index or {@code null} if not available.
+   */
+  public static AttributeIndex get(String type)
+  {
+    synchronized (indices) {
+      return indices.get(type.toUpperCase());
+    }
+  }
+
+  /**
+   * Creates the index of the specified resource type in a background thread. Does nothing if the
+   * resource type is not supported or the index is already available or being created.
+   */
+  public static void build(String type)
+  {
+    if (!isSupported(type)) {
+      return;
+    }
+    final String key = type.toUpperCase();
+    synchronized (indices) {
+      if (indices.containsKey(key) || !pending.add(key)) {
+        return;
+      }
+    }
+
+    final Thread t = new Thread(() -> {
+      AttributeIndex index = null;
+      try {
+        index = new AttributeIndex(key, ResourceFactory.getResources(key));
+      } finally {
+        synchronized (indices) {
+          // discard result if cache has been cleared in the meantime
+          if (pending.remove(key) && index != null) {
+            indices.put(key, index);
+          }
+        }
+      }
+    }, "AttributeIndex-" + key);
+    t.setDaemon(true);
+    t.setPriority(Thread.MIN_PRIORITY);
+    t.start();
+  }
+
+  /** Marks the index data of the specified resource as outdated. */
+  public static void invalidate(ResourceEntry entry)
+  {
+    if (entry != null) {
+      final AttributeIndex index = get(entry.getExtension());
+      if (index != null) {
+        final Integer row = index.rows.get(entry);
+        if (row != null) {
+          synchronized (index.stale) {
+            index.stale.set(row.intValue());
+          }
+        }
+      }
+    }
+  }
+
+  /** Removes all indices from memory. */
+  public static void clearCache()
+  {
+    synchronized (indices) {
+      indices.clear();
+      pending.clear();
+    }
+  }
+
+  private AttributeIndex(String type, List<ResourceEntry> entries)
+  {
+    this.type = type;
+    this.rows = new HashMap<>(entries.size() * 2);
+    for (int i = 0; i < entries.size(); i++) {
+      rows.put(entries.get(i), Integer.valueOf(i));
+    }
+
+    final int numRows = entries.size();
+    this.stamps = new long[numRows];
+    for (final String key : NUMBER_KEYS.get(type)) {
+      columns.put(key, new NumberColumn(key, numRows));
+    }
+    for (final String key : FLAG_KEYS.get(type)) {
+      columns.put(key, new FlagColumn(key, numRows));
+    }
+    final String[] effectKeys = EFFECT_KEYS.get(type);
+    if (effectKeys != null) {
+      final EffectColumn column = new EffectColumn(effectKeys[0], effectKeys[1], numRows);
+      for (int i = 1; i < effectKeys.length; i++) {
+        columns.put(effectKeys[i], column);
+      }
+    }
+
+    // rows that could not be parsed are always checked conventionally
+    final boolean[] failed = new boolean[numRows];
+    final BoundedExecutor executor = new BoundedExecutor();
+    try {
+      for (int i = 0; i < numRows; i++) {
+        final int row = i;
+        final ResourceEntry entry = entries.get(i);
+        executor.execute(() -> {
+          try {
+            stamps[row] = PersistentCache.getStamp(entry);
+            final Resource res = ResourceFactory.getResource(entry);
+            if (res instanceof AbstractStruct) {
+              for (final Column column : new HashSet<>(columns.values())) {
+                column.load(row, (AbstractStruct)res);
+              }
+            } else {
+              failed[row] = true;
+            }
+          } catch (Exception e) {
+            failed[row] = true;
+          }
+        });
+      }
+      executor.awaitCompletion(-1, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } finally {
+      executor.shutdown();
+    }
+
+    for (final Column column : new HashSet<>(columns.values())) {
+      column.complete();
+    }
+    for (int i = 0; i < numRows; i++) {
+      if (failed[i]) {
+        stale.set(i);
+      }
+    }
+  }
+
+  /** Returns the resource type covered by this index. */
+  public String getType()
+  {
+    return type;
+  }
+
+  /**
+   * Evaluates the specified search options against the index.
+   * @param resources Resources to search.
+   * @param so The search options.
+   * @return A {@link Result} object with resources known to match and resources which have to be
+   *         checked conventionally.
+   */
+  public Result query(List<ResourceEntry> resources, SearchOptions so)
+  {
+    final BitSet candidates = new BitSet(rows.size());
+    candidates.set(0, rows.size());
+    boolean exact = true;
+    for (final String key : so.getOptionKeys()) {
+      final Column column = columns.get(key);
+      final Object value = so.getOption(key);
+      if (value == null) {
+        continue;
+      } else if (column != null) {
+        candidates.and(column.match(value));
+      } else {
+        exact = false;
+      }
+    }
+
+    final BitSet outdated;
+    synchronized (stale) {
+      outdated = (BitSet)stale.clone();
+    }
+
+    final Result result = new Result();
+    for (final ResourceEntry entry : resources) {
+      final Integer row = rows.get(entry);
+      if (row == null || outdated.get(row.intValue())) {
+        result.candidates.add(entry);
+      } else if (stamps[row.intValue()] != PersistentCache.getStamp(entry)) {
+        // resource has been modified by another application
+        synchronized (stale) {
+          stale.set(row.intValue());
+        }
+        result.candidates.add(entry);
+      } else if (candidates.get(row.intValue())) {
+        if (exact) {
+          result.matches.add(entry);
+        } else {
+          result.candidates.add(entry);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Returns the field of the specified option key from the given structure. */
+  private static StructEntry getField(AbstractStruct struct, String key)
+  {
+    if (SearchOptions.isResourceByOffset(key)) {
+      return struct.getAttribute(SearchOptions.getResourceIndex(key), false);
+    } else {
+      return struct.getAttribute(SearchOptions.getResourceName(key), false);
+    }
+  }
+
+  /** Decodes a numeric search value. Returns {@code null} if the value is not supported. */
+  private static int[] getRange(Object value)
+  {
+    if (value instanceof Integer) {
+      return new int[]{(Integer)value, (Integer)value};
+    } else if (value instanceof Pair<?> && ((Pair<?>)value).getFirst() instanceof Integer &&
+               ((Pair<?>)value).getSecond() instanceof Integer) {
+      final int n1 = (Integer)((Pair<?>)value).getFirst();
+      final int n2 = (Integer)((Pair<?>)value).getSecond();
+      return new int[]{Math.min(n1, n2), Math.max(n1, n2)};
+    }
+    return null;
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Result of an index query. */
+  public static final class Result
+  {
+    private final List<ResourceEntry> matches = new ArrayList<>();
+    private final List<ResourceEntry> candidates = new ArrayList<>();
+
+    private Result() {}
+
+    /** Returns resources which are known to match the search options. */
+    public List<ResourceEntry> getMatches() { return matches; }
+
+    /** Returns resources which may match and have to be checked conventionally. */
+    public List<ResourceEntry> getCandidates() { return candidates; }
+  }
+
+  /** Common base of all index columns. */
+  private static abstract class Column
+  {
+    protected final String key;
+    protected final BitSet present;
+    /** Temporary storage of available values while the index is being created. */
+    private boolean[] available;
+
+    protected Column(String key, int numRows)
+    {
+      this.key = key;
+      this.present = new BitSet(numRows);
+      this.available = new boolean[numRows];
+    }
+
+    /** Stores the value of the specified row. Called concurrently for different rows. */
+    protected abstract void load(int row, AbstractStruct struct);
+
+    /** Returns the rows matching the specified search value. */
+    protected abstract BitSet match(Object value);
+
+    protected void setAvailable(int row)
+    {
+      available[row] = true;
+    }
+
+    /** Finalizes column data after all rows have been loaded. */
+    protected void complete()
+    {
+      for (int i = 0; i < available.length; i++) {
+        if (available[i]) {
+          present.set(i);
+        }
+      }
+      available = null;
+    }
+  }
+
+  /** Column of numeric header fields. Implements {@link SearchOptions.Utils#matchNumber}. */
+  private static final class NumberColumn extends Column
+  {
+    private final int[] values;
+
+    public NumberColumn(String key, int numRows)
+    {
+      super(key, numRows);
+      this.values = new int[numRows];
+    }
+
+    @Override
+    protected void load(int row, AbstractStruct struct)
+    {
+      final StructEntry se = getField(struct, key);
+      if (se instanceof IsNumeric) {
+        values[row] = ((IsNumeric)se).getValue();
+        setAvailable(row);
+      }
+    }
+
+    @Override
+    protected BitSet match(Object value)
+    {
+      final BitSet retVal = new BitSet(values.length);
+      final int[] range = getRange(value);
+      if (range != null) {
+        final int min = range[0], max = range[1];
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+          if (values[i] >= min && values[i] <= max) {
+            retVal.set(i);
+          }
+        }
+      }
+      return retVal;
+    }
+  }
+
+  /** Column of flag header fields. Implements {@link SearchOptions.Utils#matchFlags}. */
+  private static final class FlagColumn extends Column
+  {
+    private final int[] values;
+    private final byte[] sizes;
+
+    public FlagColumn(String key, int numRows)
+    {
+      super(key, numRows);
+      this.values = new int[numRows];
+      this.sizes = new byte[numRows];
+    }
+
+    @Override
+    protected void load(int row, AbstractStruct struct)
+    {
+      final StructEntry se = getField(struct, key);
+      if (se instanceof Flag) {
+        values[row] = ((Flag)se).getValue();
+        sizes[row] = (byte)Math.min(4, se.getSize());
+        setAvailable(row);
+      }
+    }
+
+    @Override
+    protected BitSet match(Object value)
+    {
+      final BitSet retVal = new BitSet(values.length);
+      int v;
+      boolean isExact;
+      if (value instanceof Pair<?> && ((Pair<?>)value).getFirst() instanceof Integer &&
+          ((Pair<?>)value).getSecond() instanceof Boolean) {
+        v = (Integer)((Pair<?>)value).getFirst();
+        isExact = (Boolean)((Pair<?>)value).getSecond();
+      } else if (value instanceof Integer) {
+        v = (Integer)value;
+        isExact = false;
+      } else {
+        return retVal;
+      }
+
+      for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+        // only bits covered by the field size are evaluated
+        final int mask = (sizes[i] >= 4) ? -1 : (1 << (sizes[i] << 3)) - 1;
+        final boolean match = isExact ? ((v ^ values[i]) & mask) == 0
+                                      : (v & mask & ~values[i]) == 0;
+        if (match) {
+          retVal.set(i);
+        }
+      }
+      return retVal;
+    }
+  }
+
+  /**
+   * Column with the numeric values of a field of all global effects.
+   * A row matches if any of the effects matches.
+   */
+  private static final class EffectColumn extends Column
+  {
+    private final String label;
+    private final int[][] rowValues;
+    private int[] start;
+    private int[] values;
+
+    public EffectColumn(String label, String key, int numRows)
+    {
+      super(key, numRows);
+      this.label = SearchOptions.getResourceName(label);
+      this.rowValues = new int[numRows][];
+    }
+
+    @Override
+    protected void load(int row, AbstractStruct struct)
+    {
+      final List<Integer> list = new ArrayList<>();
+      for (int idx = 0; ; idx++) {
+        final StructEntry effect = struct.getAttribute(String.format(label, idx), false);
+        if (!(effect instanceof AbstractStruct)) {
+          break;
+        }
+        final StructEntry se = getField((AbstractStruct)effect, key);
+        if (se instanceof IsNumeric) {
+          list.add(((IsNumeric)se).getValue());
+        }
+      }
+      rowValues[row] = list.stream().mapToInt(Integer::intValue).toArray();
+      setAvailable(row);
+    }
+
+    @Override
+    protected void complete()
+    {
+      super.complete();
+      // compacting values into a single array
+      start = new int[rowValues.length + 1];
+      int total = 0;
+      for (int i = 0; i < rowValues.length; i++) {
+        start[i] = total;
+        total += (rowValues[i] != null) ? rowValues[i].length : 0;
+      }
+      start[rowValues.length] = total;
+      values = new int[total];
+      for (int i = 0; i < rowValues.length; i++) {
+        if (rowValues[i] != null) {
+          System.arraycopy(rowValues[i], 0, values, start[i], rowValues[i].length);
+          rowValues[i] = null;
+        }
+      }
+    }
+
+    @Override
+    protected BitSet match(Object value)
+    {
+      final BitSet retVal = new BitSet(start.length - 1);
+      final int[] range = getRange(value);
+      if (range != null) {
+        final int min = range[0], max = range[1];
+        for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+          for (int j = start[i], end = start[i + 1]; j < end; j++) {
+            if (values[j] >= min && values[j] <= max) {
+              retVal.set(i);
+              break;
+            }
+          }
+        }
+      }
+      return retVal;
+    }
+  }
+}
@@ -236,6 +236,9 @@ protected Runnable newWorker(ResourceEntry entry)
       if (resource instanceof AbstractStruct) {
         final AbstractStruct struct = (AbstractStruct)resource;
         for (final StructEntry searchEntry : struct.getFlatFields()) {
+          if (isCancelled()) {
+            break;
+          }
           // skipping fields located in different parent structures
           if (structEntry.getParent().getClass() != searchEntry.getParent().getClass()) {
             continue;
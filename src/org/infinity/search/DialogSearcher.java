@@ -16,8 +16,6 @@
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import javax.swing.JButton;
@@ -53,7 +51,7 @@ public final class DialogSearcher extends AbstractSearcher implements Runnable,
   private final JTextField tfinput = new JTextField("", 15);
   private final List<ResourceEntry> files;
 
-  private Pattern regPattern;
+  private SearchTerm searchTerm;
   private ReferenceHitFrame resultFrame;
 
   public DialogSearcher(List<ResourceEntry> files, Component parent)
@@ -135,39 +133,26 @@ public void actionPerformed(ActionEvent event)
   @Override
   public void run()
   {
-    String term = tfinput.getText();
-    if (!cbregex.isSelected()) {
-      term = Pattern.quote(term);
-    }
-    if (cbwhole.isSelected()) {
-      term = ".*\\b" + term + "\\b.*";
-    } else {
-      term = ".*" + term + ".*";
-    }
-
     try {
-      if (cbcase.isSelected()) {
-        regPattern = Pattern.compile(term, Pattern.DOTALL);
-      } else {
-        regPattern = Pattern.compile(term, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-      }
+      searchTerm = SearchTerm.compile(tfinput.getText(), cbregex.isSelected(),
+                                      cbwhole.isSelected(), cbcase.isSelected());
     } catch (PatternSyntaxException e) {
       JOptionPane.showMessageDialog(parent, "Syntax error in search string.", "Error", JOptionPane.ERROR_MESSAGE);
-      regPattern = null;
+      searchTerm = null;
       return;
     }
 
     try {
       // executing multithreaded search
       inputFrame.setVisible(false);
-      resultFrame = new ReferenceHitFrame(term, parent);
+      resultFrame = new ReferenceHitFrame(searchTerm.getQuery(), parent);
       if (runSearch("Searching", files)) {
         resultFrame.close();
       } else {
         resultFrame.setVisible(true);
       }
     } finally {
-      regPattern = null;
+      searchTerm = null;
       resultFrame = null;
     }
   }
@@ -182,6 +167,9 @@ protected Runnable newWorker(ResourceEntry entry)
       if (resource instanceof AbstractStruct) {
         final Map<StructEntry, StructEntry> searchMap = makeSearchMap((AbstractStruct)resource);
         for (final Map.Entry<StructEntry, StructEntry> e : searchMap.entrySet()) {
+          if (isCancelled()) {
+            break;
+          }
           final StructEntry searchEntry = e.getKey();
           String s = null;
           if (searchEntry instanceof StringRef) {
@@ -212,8 +200,7 @@ protected Runnable newWorker(ResourceEntry entry)
               s = "";
             }
           }
-          final Matcher matcher = regPattern.matcher(s);
-          if (matcher.matches()) {
+          if (searchTerm.matches(s)) {
             addResult(entry, e.getValue().getName(), searchEntry);
           }
         }
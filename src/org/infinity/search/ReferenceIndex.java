@@ -0,0 +1,739 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.infinity.datatype.ProRef;
+import org.infinity.datatype.ResourceRef;
+import org.infinity.datatype.StringRef;
+import org.infinity.datatype.TextString;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.Resource;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.bcs.BcsResource;
+import org.infinity.resource.bcs.Compiler;
+import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
+import org.infinity.resource.bcs.ScriptType;
+import org.infinity.resource.dlg.AbstractCode;
+import org.infinity.resource.dlg.Action;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.other.EffResource;
+import org.infinity.resource.text.PlainTextResource;
+import org.infinity.util.BoundedExecutor;
+import org.infinity.util.PersistentCache;
+
+/**
+ * Maintains an index of outgoing references for every resource which can refer to other
+ * resources or strings. Each indexed resource is described by a {@link Record} which contains
+ * the resource names, words and string references used by the resource.<br>
+ * <br>
+ * The index is built in a background thread on first use and stored on disk. On subsequent
+ * sessions only resources which have been changed since (as determined by
+ * {@link PersistentCache#getStamp(ResourceEntry) resource stamps}) are parsed again. Resources
+ * modified by Near Infinity are updated incrementally. Records are validated by the resource
+ * stamp whenever they are looked up, so that resources modified by other applications are
+ * processed conventionally and updated in the background. The whole index is rebuilt if IDS
+ * resources have been modified, since they affect the decompiled script code.<br>
+ * <br>
+ * The index is used to narrow down the list of resources which have to be parsed by reference
+ * searches and to answer usage checks without parsing resources at all. Resources without
+ * an index record are always reported as "not covered" and have to be processed conventionally.
+ */
+public final class ReferenceIndex
+{
+  /** Resource types covered by the index. */
+  public static final String[] FILE_TYPES = {"2DA", "ARE", "BCS", "BS", "CHR", "CHU", "CRE", "DLG",
+                                             "EFF", "GAM", "INI", "ITM", "MENU", "PRO", "SPL", "SRC",
+                                             "STO", "TOH", "VEF", "VVC", "WED", "WMP"};
+
+  private static final String INDEX_FILE = "references.idx";
+  private static final int INDEX_MAGIC = 0x4e495249;  // "NIRI"
+  private static final int INDEX_VERSION = 2;
+
+  /** Matches string literals in decompiled script code. */
+  private static final Pattern QUOTED_PATTERN = Pattern.compile("\"([^\"\\r\\n]*)\"");
+  /** Matches symbolic names (e.g. from SPELL.IDS) in decompiled script code. */
+  private static final Pattern SYMBOL_PATTERN = Pattern.compile("\\b[A-Za-z0-9]*_\\w*\\b");
+  /** Matches words in text resources. */
+  private static final Pattern WORD_PATTERN = Pattern.compile("\\w+");
+
+  private static final ReferenceIndex instance = new ReferenceIndex();
+
+  /** Maps upper-cased resource names to index records. */
+  private final Map<String, Record> records = new ConcurrentHashMap<>();
+
+  /** Resources waiting to be parsed again by key, in request order. Repeated requests are merged. */
+  private final Map<String, ResourceEntry> updateQueue = new LinkedHashMap<>();
+
+  /** Incremented whenever the index is discarded. Used to detect outdated background tasks. */
+  private volatile int generation;
+  private volatile boolean ready;
+  private volatile boolean dirty;
+  /** Stamp of the IDS resources the index records depend on. */
+  private volatile long idsStamp;
+  private Thread builder;
+  private Thread updater;
+
+  /** Returns whether the index has been fully built and can be queried. */
+  public static boolean isReady()
+  {
+    return instance.ready;
+  }
+
+  /**
+   * Starts building the index in a background thread if it is not available yet.
+   * Does nothing if the index is already available or currently being built.
+   */
+  public static void requestBuild()
+  {
+    instance.startBuild();
+  }
+
+  /** Discards the index from memory. Pending changes are written to disk first. */
+  public static void clearCache()
+  {
+    instance.discard();
+  }
+
+  /**
+   * Removes the index record of the specified resource and updates it in a background thread.
+   * Should be called whenever the content of the resource has been changed.
+   */
+  public static void invalidate(ResourceEntry entry)
+  {
+    instance.update(entry);
+  }
+
+  /**
+   * Calls the specified action for every resource in {@code files} which is covered by the index.
+   * @param files List of resources to process.
+   * @param action Action to perform for each covered resource and its index record.
+   * @return List of resources not covered by the index. These have to be processed conventionally.
+   *         Returns {@code files} if the index is not available yet.
+   */
+  public static List<ResourceEntry> forEachRecord(List<ResourceEntry> files,
+                                                  BiConsumer<ResourceEntry, Record> action)
+  {
+    if (!isReady() || !instance.isIdsCurrent()) {
+      requestBuild();
+      return files;
+    }
+
+    final List<ResourceEntry> retVal = new ArrayList<>();
+    for (final ResourceEntry entry : files) {
+      final Record record = instance.records.get(key(entry));
+      if (record != null && record.stamp == PersistentCache.getStamp(entry)) {
+        action.accept(entry, record);
+      } else {
+        retVal.add(entry);
+        if (record != null) {
+          // resource has been modified by another application
+          instance.update(entry);
+        }
+      }
+    }
+    return retVal;
+  }
+
+  /**
+   * Returns all resources in {@code files} which may refer to the specified resource.
+   * @param files List of resources to filter.
+   * @param target The referenced resource.
+   * @param aliases Optional list of alternate names, such as script names or symbolic names.
+   *                {@code null} items are ignored.
+   * @return Resources which may contain references. Includes all resources not covered by the index.
+   */
+  public static List<ResourceEntry> filterReferences(List<ResourceEntry> files, ResourceEntry target,
+                                                     String... aliases)
+  {
+    final String name = target.getResourceName().toUpperCase(Locale.ENGLISH);
+    final List<String> tokens = new ArrayList<>();
+    tokens.add(target.getResourceRef().toUpperCase(Locale.ENGLISH));
+    for (final String alias : aliases) {
+      if (alias != null && !alias.isEmpty()) {
+        tokens.add(alias.toUpperCase(Locale.ENGLISH));
+      }
+    }
+    // text resources are tokenized into words: other tokens can't be matched reliably
+    final boolean matchAllText = tokens.stream().anyMatch(s -> !WORD_PATTERN.matcher(s).matches());
+
+    final List<ResourceEntry> retVal = new ArrayList<>();
+    final List<ResourceEntry> uncovered = forEachRecord(files, (entry, record) -> {
+      if ((matchAllText && record.isText()) || record.hasName(name) ||
+          tokens.stream().anyMatch(record::hasToken)) {
+        retVal.add(entry);
+      }
+    });
+    retVal.addAll(uncovered);
+    return retVal;
+  }
+
+  /**
+   * Returns all resources in {@code files} which may refer to the specified string reference.
+   * @param files List of resources to filter.
+   * @param strref The string reference.
+   * @return Resources which may contain references. Includes all resources not covered by the index.
+   */
+  public static List<ResourceEntry> filterStringReferences(List<ResourceEntry> files, int strref)
+  {
+    final List<ResourceEntry> retVal = new ArrayList<>();
+    final List<ResourceEntry> uncovered = forEachRecord(files, (entry, record) -> {
+      if (record.hasStringRef(strref)) {
+        retVal.add(entry);
+      }
+    });
+    retVal.addAll(uncovered);
+    return retVal;
+  }
+
+  private static String key(ResourceEntry entry)
+  {
+    return entry.getResourceName().toUpperCase(Locale.ENGLISH);
+  }
+
+  private ReferenceIndex()
+  {
+  }
+
+  private synchronized void startBuild()
+  {
+    if (ready || builder != null || ResourceFactory.getKeyfile() == null) {
+      return;
+    }
+
+    final int gen = generation;
+    builder = new Thread(() -> {
+      try {
+        build(gen);
+      } finally {
+        synchronized (this) {
+          if (gen == generation) {
+            builder = null;
+          }
+        }
+      }
+    }, "ReferenceIndex");
+    builder.setDaemon(true);
+    builder.setPriority(Thread.MIN_PRIORITY);
+    builder.start();
+  }
+
+  private synchronized void discard()
+  {
+    if (ready && dirty) {
+      save();
+    }
+    generation++;
+    ready = false;
+    dirty = false;
+    builder = null;
+    records.clear();
+    updateQueue.clear();
+  }
+
+  /**
+   * Removes the record of the specified resource and queues the resource for parsing. Resources
+   * changed while the index is being built are parsed after the build has finished.
+   */
+  private synchronized void update(ResourceEntry entry)
+  {
+    if (entry == null || !isIndexed(entry)) {
+      return;
+    }
+    final String key = key(entry);
+    records.remove(key);
+    dirty = true;
+    updateQueue.remove(key);
+    updateQueue.put(key, entry);
+    if (ready) {
+      startUpdater();
+    }
+  }
+
+  /** Starts a background thread which processes queued resources if it is not already running. */
+  private synchronized void startUpdater()
+  {
+    if (updater == null && !updateQueue.isEmpty()) {
+      updater = new Thread(this::processUpdates, "ReferenceIndex");
+      updater.setDaemon(true);
+      updater.setPriority(Thread.MIN_PRIORITY);
+      updater.start();
+    }
+  }
+
+  /** Parses queued resources one at a time, so that records are updated in request order. */
+  private void processUpdates()
+  {
+    while (true) {
+      final ResourceEntry entry;
+      final int gen;
+      synchronized (this) {
+        final Iterator<ResourceEntry> iter = updateQueue.values().iterator();
+        if (!ready || !iter.hasNext()) {
+          updater = null;
+          return;
+        }
+        entry = iter.next();
+        iter.remove();
+        gen = generation;
+      }
+
+      final Record record = createRecord(entry);
+      if (record != null) {
+        putRecord(gen, key(entry), record);
+      }
+    }
+  }
+
+  /**
+   * Adds the specified record unless the index has been discarded or the resource has been
+   * queued for parsing again in the meantime.
+   */
+  private synchronized void putRecord(int gen, String key, Record record)
+  {
+    if (gen == generation && !updateQueue.containsKey(key)) {
+      records.put(key, record);
+    }
+  }
+
+  /**
+   * Returns whether the IDS resources have not been modified since the index has been built.
+   * Discards the index otherwise.
+   */
+  private boolean isIdsCurrent()
+  {
+    if (getIdsStamp() != idsStamp) {
+      discard();
+      return false;
+    }
+    return true;
+  }
+
+  /** Returns the stamp of all IDS resources, which affect the decompiled script code. */
+  private static long getIdsStamp()
+  {
+    long stamp = 17L;
+    for (final ResourceEntry ids : ResourceFactory.getResources("IDS")) {
+      stamp = stamp * 31L + ids.getResourceName().hashCode();
+      stamp = stamp * 31L + PersistentCache.getStamp(ids);
+    }
+    return (stamp != 0L) ? stamp : 1L;
+  }
+
+  private void build(int gen)
+  {
+    final long ids = getIdsStamp();
+    final Map<String, Record> stored = load(ids);
+
+    final List<ResourceEntry> files = new ArrayList<>();
+    for (final String type : FILE_TYPES) {
+      files.addAll(ResourceFactory.getResources(type));
+    }
+
+    final BoundedExecutor executor = new BoundedExecutor();
+    try {
+      for (final ResourceEntry entry : files) {
+        if (gen != generation) {
+          executor.cancel();
+          return;
+        }
+        final String key = key(entry);
+        final long stamp = PersistentCache.getStamp(entry);
+        final Record record = stored.get(key);
+        if (record != null && stamp != 0L && record.stamp == stamp) {
+          putRecord(gen, key, record);
+        } else {
+          executor.execute(() -> {
+            final Record r = createRecord(entry);
+            if (r != null) {
+              putRecord(gen, key, r);
+            }
+          });
+          dirty = true;
+        }
+      }
+      executor.awaitCompletion(-1, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      return;
+    } finally {
+      executor.shutdown();
+    }
+
+    synchronized (this) {
+      if (gen == generation) {
+        idsStamp = ids;
+        ready = true;
+        if (dirty || stored.size() != records.size()) {
+          save();
+        }
+        // parsing resources which have been modified during the build
+        startUpdater();
+      }
+    }
+  }
+
+  private static boolean isIndexed(ResourceEntry entry)
+  {
+    final String ext = entry.getExtension();
+    for (final String type : FILE_TYPES) {
+      if (type.equalsIgnoreCase(ext)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Parses the specified resource and returns the index record. Returns {@code null} on error. */
+  private static Record createRecord(ResourceEntry entry)
+  {
+    final long stamp = PersistentCache.getStamp(entry);
+    final Collector c = new Collector();
+    try {
+      final Resource resource = ResourceFactory.getResource(entry);
+      if (resource instanceof BcsResource) {
+        final ScriptCache.Script script = ScriptCache.get(entry, ((BcsResource)resource).getCode(), false);
+        c.addCode(script.getSource(), script.getResourcesUsed(), script.getStringRefsUsed());
+      } else if (resource instanceof PlainTextResource) {
+        c.text = true;
+        c.addText(((PlainTextResource)resource).getText());
+      } else if (resource instanceof AbstractStruct) {
+        c.addStruct((AbstractStruct)resource);
+        if (resource instanceof EffResource) {
+          c.addEffResources((EffResource)resource);
+        }
+      } else if (resource == null) {
+        return null;
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+    return c.toRecord(stamp);
+  }
+
+  /**
+   * Loads the stored index of the current game. Returns an empty map on error or if the index
+   * has been built with different IDS resources.
+   */
+  private Map<String, Record> load(long ids)
+  {
+    final Map<String, Record> retVal = new HashMap<>();
+    final Path file = PersistentCache.getFile(INDEX_FILE);
+    if (file == null || !Files.isRegularFile(file)) {
+      return retVal;
+    }
+
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (dis.readInt() != INDEX_MAGIC || dis.readInt() != INDEX_VERSION || dis.readLong() != ids) {
+        return retVal;
+      }
+      final int count = dis.readInt();
+      for (int i = 0; i < count; i++) {
+        final String key = dis.readUTF();
+        final Record record = Record.read(dis);
+        retVal.put(key, record);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      retVal.clear();
+    }
+    return retVal;
+  }
+
+  /** Writes the current index to disk. */
+  private void save()
+  {
+    final Path file = PersistentCache.getFile(INDEX_FILE);
+    if (file == null) {
+      return;
+    }
+
+    final Path tmpFile = file.resolveSibling(INDEX_FILE + ".tmp");
+    try {
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        final Map<String, Record> snapshot = new HashMap<>(records);
+        dos.writeInt(INDEX_MAGIC);
+        dos.writeInt(INDEX_VERSION);
+        dos.writeLong(idsStamp);
+        dos.writeInt(snapshot.size());
+        for (final Map.Entry<String, Record> e : snapshot.entrySet()) {
+          dos.writeUTF(e.getKey());
+          e.getValue().write(dos);
+        }
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+      dirty = false;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Outgoing references of a single resource. */
+  public static final class Record
+  {
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    private final long stamp;
+    private final boolean text;
+    /** Sorted list of full resource names (upper case). */
+    private final String[] names;
+    /** Sorted list of words, resrefs, script literals and symbols (upper case). */
+    private final String[] tokens;
+    /** Sorted list of string references. */
+    private final int[] strrefs;
+
+    private Record(long stamp, boolean text, String[] names, String[] tokens, int[] strrefs)
+    {
+      this.stamp = stamp;
+      this.text = text;
+      this.names = names;
+      this.tokens = tokens;
+      this.strrefs = strrefs;
+    }
+
+    /** Returns whether the record has been created from a plain text resource. */
+    public boolean isText() { return text; }
+
+    /** Returns whether the resource refers to the specified full resource name (e.g. "SW1H01.ITM"). */
+    public boolean hasName(String name)
+    {
+      return Arrays.binarySearch(names, name.toUpperCase(Locale.ENGLISH)) >= 0;
+    }
+
+    /** Returns whether the resource contains the specified word, resref, script literal or symbol. */
+    public boolean hasToken(String token)
+    {
+      return Arrays.binarySearch(tokens, token.toUpperCase(Locale.ENGLISH)) >= 0;
+    }
+
+    /** Returns whether the resource refers to the specified string reference. */
+    public boolean hasStringRef(int strref)
+    {
+      return Arrays.binarySearch(strrefs, strref) >= 0;
+    }
+
+    /** Returns the full resource names referenced by the resource. Do not modify. */
+    public String[] getNames() { return names; }
+
+    /** Returns words, resrefs, script literals and symbols found in the resource. Do not modify. */
+    public String[] getTokens() { return tokens; }
+
+    /** Returns the string references used by the resource. Do not modify. */
+    public int[] getStringRefs() { return strrefs; }
+
+    private void write(DataOutputStream dos) throws IOException
+    {
+      dos.writeLong(stamp);
+      dos.writeBoolean(text);
+      writeStrings(dos, names);
+      writeStrings(dos, tokens);
+      dos.writeInt(strrefs.length);
+      for (final int v : strrefs) {
+        dos.writeInt(v);
+      }
+    }
+
+    private static Record read(DataInputStream dis) throws IOException
+    {
+      final long stamp = dis.readLong();
+      final boolean text = dis.readBoolean();
+      final String[] names = readStrings(dis);
+      final String[] tokens = readStrings(dis);
+      final int[] strrefs = new int[dis.readInt()];
+      for (int i = 0; i < strrefs.length; i++) {
+        strrefs[i] = dis.readInt();
+      }
+      return new Record(stamp, text, names, tokens, strrefs);
+    }
+
+    private static void writeStrings(DataOutputStream dos, String[] list) throws IOException
+    {
+      dos.writeInt(list.length);
+      for (final String s : list) {
+        dos.writeUTF(s);
+      }
+    }
+
+    private static String[] readStrings(DataInputStream dis) throws IOException
+    {
+      final int count = dis.readInt();
+      if (count == 0) {
+        return EMPTY_STRINGS;
+      }
+      final String[] retVal = new String[count];
+      for (int i = 0; i < count; i++) {
+        retVal[i] = dis.readUTF().intern();
+      }
+      return retVal;
+    }
+  }
+
+  /** Collects references of a single resource. */
+  private static final class Collector
+  {
+    private final Set<String> names = new TreeSet<>();
+    private final Set<String> tokens = new TreeSet<>();
+    private final Set<Integer> strrefs = new TreeSet<>();
+    private boolean text;
+
+    private void addStruct(AbstractStruct struct)
+    {
+      for (final StructEntry o : struct.getFields()) {
+        if (o instanceof ResourceRef) {
+          final ResourceRef ref = (ResourceRef)o;
+          if (!ref.isEmpty()) {
+            names.add(ref.getResourceName().toUpperCase(Locale.ENGLISH));
+            tokens.add(ref.getText().toUpperCase(Locale.ENGLISH));
+          }
+        } else if (o instanceof ProRef) {
+          final ResourceEntry entry = ((ProRef)o).getSelectedEntry();
+          if (entry != null) {
+            names.add(key(entry));
+          }
+        } else if (o instanceof StringRef) {
+          strrefs.add(((StringRef)o).getValue());
+        } else if (o instanceof AbstractCode) {
+          final AbstractCode code = (AbstractCode)o;
+          final ScriptType type = code instanceof Action ? ScriptType.ACTION : ScriptType.TRIGGER;
+          try {
+            final Compiler compiler = new Compiler(code.getText(), type);
+            addCode(compiler.getCode(), type);
+          } catch (Exception e) {
+            e.printStackTrace();
+          }
+        } else if (o instanceof AbstractStruct) {
+          addStruct((AbstractStruct)o);
+        }
+      }
+    }
+
+    private void addEffResources(EffResource eff)
+    {
+      for (final String field : new String[]{"Resource 2", "Resource 3"}) {
+        final StructEntry o = eff.getAttribute(field);
+        if (o instanceof TextString) {
+          final String s = ((TextString)o).getText().trim();
+          if (!s.isEmpty()) {
+            tokens.add(s.toUpperCase(Locale.ENGLISH));
+          }
+        }
+      }
+    }
+
+    private void addCode(String compiledCode, ScriptType type) throws Exception
+    {
+      final Decompiler decompiler = new Decompiler(compiledCode, type, true);
+      decompiler.setGenerateComments(false);
+      decompiler.setGenerateResourcesUsed(true);
+      final String code = decompiler.decompile();
+      addCode(code, decompiler.getResourcesUsed(), decompiler.getStringRefsUsed());
+    }
+
+    private void addCode(String code, Set<ResourceEntry> resourcesUsed, Set<Integer> stringRefsUsed)
+    {
+      for (final ResourceEntry entry : resourcesUsed) {
+        names.add(key(entry));
+      }
+      strrefs.addAll(stringRefsUsed);
+
+      Matcher m = QUOTED_PATTERN.matcher(code);
+      while (m.find()) {
+        tokens.add(m.group(1).toUpperCase(Locale.ENGLISH));
+      }
+      m = SYMBOL_PATTERN.matcher(code);
+      while (m.find()) {
+        tokens.add(m.group().toUpperCase(Locale.ENGLISH));
+      }
+    }
+
+    private void addText(String content)
+    {
+      Matcher m = WORD_PATTERN.matcher(content);
+      while (m.find()) {
+        final String word = m.group().toUpperCase(Locale.ENGLISH);
+        if (isNumber(word)) {
+          // numbers are covered by string references
+          continue;
+        }
+        tokens.add(word);
+        // area and game script prefixes
+        if (word.length() > 3 && (word.startsWith("AP_") || word.startsWith("GA_"))) {
+          tokens.add(word.substring(3));
+        }
+      }
+
+      m = StringReferenceSearcher.NUMBER_PATTERN.matcher(content);
+      while (m.find()) {
+        final String s = m.group();
+        if (s.length() <= 10) {
+          final long nr = Long.parseLong(s);
+          if (nr <= Integer.MAX_VALUE) {
+            strrefs.add((int)nr);
+          }
+        }
+      }
+    }
+
+    private Record toRecord(long stamp)
+    {
+      final int[] refs = new int[strrefs.size()];
+      int i = 0;
+      for (final Integer v : strrefs) {
+        refs[i++] = v.intValue();
+      }
+      return new Record(stamp, text, toArray(names), toArray(tokens), refs);
+    }
+
+    private static boolean isNumber(String s)
+    {
+      for (int i = 0, len = s.length(); i < len; i++) {
+        if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static String[] toArray(Set<String> set)
+    {
+      if (set.isEmpty()) {
+        return Record.EMPTY_STRINGS;
+      }
+      final String[] retVal = set.toArray(new String[set.size()]);
+      for (int i = 0; i < retVal.length; i++) {
+        retVal[i] = retVal[i].intern();
+      }
+      return retVal;
+    }
+  }
+}
@@ -0,0 +1,341 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.util.Misc;
+
+/**
+ * Describes the locations of string references and resource references in the raw data of
+ * resource types. Reference searchers use it to skip resources which can not contain a match
+ * without creating the whole structure tree of the resource.<br>
+ * <br>
+ * Resource types with a fixed layout (ITM, SPL, STO) define the exact location of every
+ * reference field. Effect structures are treated as opaque blocks, since the meaning of their
+ * fields depends on the opcode. Other structured resource types whose fields are all read
+ * directly from the resource data are scanned as a single opaque block. Resource types which
+ * contain compressed, derived or script-based references (e.g. DLG, GAM, SAV) are not covered
+ * and must be parsed completely.
+ */
+final class ReferenceLayout
+{
+  /** Size of a V1 effect structure. */
+  private static final int EFFECT_SIZE = 48;
+
+  private static final Map<String, ReferenceLayout> layouts = new HashMap<>();
+
+  static {
+    layouts.put("ITM", new ReferenceLayout(ReferenceLayout::collectItm));
+    layouts.put("SPL", new ReferenceLayout(ReferenceLayout::collectSpl));
+    layouts.put("STO", new ReferenceLayout(ReferenceLayout::collectSto));
+    for (final String ext : new String[]{"ARE", "CHR", "CHU", "CRE", "EFF", "PRO", "SRC",
+                                         "VEF", "VVC", "WED", "WMP"}) {
+      layouts.put(ext, new ReferenceLayout(ReferenceLayout::collectOpaque));
+    }
+  }
+
+  private final Collector collector;
+
+  /**
+   * Returns whether the specified resource may contain the given string reference.
+   * Returns {@code true} if the resource type is not covered by a layout or the resource
+   * data could not be evaluated.
+   */
+  public static boolean mayContainStringRef(ResourceEntry entry, int strref)
+  {
+    final ReferenceLayout layout = get(entry);
+    if (layout != null) {
+      final Slots slots = layout.getSlots(entry);
+      if (slots != null) {
+        return slots.hasStringRef(strref);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the specified resource may contain a reference to the given resource.
+   * Returns {@code true} if the resource type is not covered by a layout or the resource
+   * data could not be evaluated.
+   */
+  public static boolean mayContainResourceRef(ResourceEntry entry, ResourceEntry target)
+  {
+    final byte[] resref = getResRef(target);
+    final ReferenceLayout layout = (resref != null) ? get(entry) : null;
+    if (layout != null) {
+      final Slots slots = layout.getSlots(entry);
+      if (slots != null) {
+        return slots.hasResRef(resref);
+      }
+    }
+    return true;
+  }
+
+  /** Returns the layout of the specified resource type. Returns {@code null} if not available. */
+  private static ReferenceLayout get(ResourceEntry entry)
+  {
+    return (entry != null) ? layouts.get(entry.getExtension().toUpperCase(Locale.ENGLISH)) : null;
+  }
+
+  /**
+   * Returns the upper-cased resref of the specified resource as raw bytes. Returns {@code null}
+   * if the resref can not be matched byte-wise in a case-insensitive way.
+   */
+  private static byte[] getResRef(ResourceEntry entry)
+  {
+    if (entry != null) {
+      final String resref = entry.getResourceRef().toUpperCase(Locale.ENGLISH);
+      if (!resref.isEmpty() && resref.length() <= 8) {
+        for (int i = 0; i < resref.length(); i++) {
+          if (resref.charAt(i) == 0 || resref.charAt(i) > 0x7f) {
+            return null;
+          }
+        }
+        return resref.getBytes(Misc.CHARSET_DEFAULT);
+      }
+    }
+    return null;
+  }
+
+  private ReferenceLayout(Collector collector)
+  {
+    this.collector = collector;
+  }
+
+  /** Returns the reference locations of the specified resource. Returns {@code null} on error. */
+  private Slots getSlots(ResourceEntry entry)
+  {
+    try {
+      final ByteBuffer buffer = entry.getResourceBuffer().order(ByteOrder.LITTLE_ENDIAN);
+      final Slots slots = new Slots(buffer);
+      collector.collect(buffer, slots);
+      return slots;
+    } catch (Exception e) {
+      // resource must be parsed completely
+    }
+    return null;
+  }
+
+  private static void collectOpaque(ByteBuffer buffer, Slots slots)
+  {
+    slots.addBlock(0, buffer.limit());
+  }
+
+  private static void collectItm(ByteBuffer buffer, Slots slots)
+  {
+    final String version = getVersion(buffer);
+    slots.addStringRefs(0, 0x08, 0x0c, 0x50, 0x54);
+    slots.addResRefs(0, 0x10, 0x3a, 0x44, 0x58);
+    if ("V1.1".equals(version)) {
+      slots.addResRefs(0, 0x72);
+      slots.addStringRefs(0, 0x7a);
+    }
+    collectAbilities(buffer, slots, 56);
+  }
+
+  private static void collectSpl(ByteBuffer buffer, Slots slots)
+  {
+    slots.addStringRefs(0, 0x08, 0x0c, 0x50, 0x54);
+    slots.addResRefs(0, 0x10, 0x3a, 0x58);
+    collectAbilities(buffer, slots, 40);
+  }
+
+  /** Handles the common ability and effect structures of ITM and SPL resources. */
+  private static void collectAbilities(ByteBuffer buffer, Slots slots, int abilitySize)
+  {
+    final int ofsAbilities = buffer.getInt(0x64);
+    final int numAbilities = buffer.getShort(0x68) & 0xffff;
+    final int ofsEffects = buffer.getInt(0x6a);
+    int numEffects = buffer.getShort(0x70) & 0xffff;
+    for (int i = 0; i < numAbilities; i++) {
+      final int ofs = ofsAbilities + i * abilitySize;
+      slots.addResRefs(ofs, 0x04);
+      numEffects += slots.getShort(ofs + 0x1e);
+    }
+    slots.addBlock(ofsEffects, numEffects * EFFECT_SIZE);
+  }
+
+  private static void collectSto(ByteBuffer buffer, Slots slots)
+  {
+    final String version = getVersion(buffer);
+    final int saleSize;
+    if ("V1.0".equals(version) || "V9.0".equals(version)) {
+      saleSize = 28;
+    } else if ("V1.1".equals(version)) {
+      saleSize = 88;
+    } else {
+      throw new IllegalArgumentException("Unsupported version: " + version);
+    }
+
+    slots.addStringRefs(0, 0x0c);
+    slots.addResRefs(0, 0x44, 0x54);
+
+    // items for sale
+    int ofs = buffer.getInt(0x34);
+    for (int i = 0, cnt = buffer.getInt(0x38); i < cnt; i++, ofs += saleSize) {
+      slots.addResRefs(ofs, 0);
+      if (saleSize == 88) {
+        slots.addStringRefs(ofs, 0x1c);
+      }
+    }
+
+    // drinks
+    ofs = buffer.getInt(0x4c);
+    for (int i = 0, cnt = buffer.getInt(0x50); i < cnt; i++, ofs += 20) {
+      slots.addStringRefs(ofs, 0x08);
+    }
+
+    // cures
+    ofs = buffer.getInt(0x70);
+    for (int i = 0, cnt = buffer.getInt(0x74); i < cnt; i++, ofs += 12) {
+      slots.addResRefs(ofs, 0);
+    }
+  }
+
+  private static String getVersion(ByteBuffer buffer)
+  {
+    final byte[] data = new byte[4];
+    buffer.position(4);
+    buffer.get(data);
+    buffer.position(0);
+    return new String(data, Misc.CHARSET_ASCII);
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Determines the reference locations of a resource. */
+  private interface Collector
+  {
+    void collect(ByteBuffer buffer, Slots slots);
+  }
+
+  /**
+   * Reference locations of a single resource. Locations which exceed the resource data
+   * throw an {@link IndexOutOfBoundsException}.
+   */
+  private static final class Slots
+  {
+    private final ByteBuffer buffer;
+    private int[] strrefs = new int[16];
+    private int numStrrefs;
+    private int[] resrefs = new int[16];
+    private int numResrefs;
+    /** Pairs of start and end offsets of opaque blocks. */
+    private int[] blocks = new int[4];
+    private int numBlocks;
+
+    public Slots(ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    public int getShort(int offset)
+    {
+      return buffer.getShort(offset) & 0xffff;
+    }
+
+    public void addStringRefs(int base, int... offsets)
+    {
+      for (final int ofs : offsets) {
+        checkRange(base + ofs, 4);
+        if (numStrrefs == strrefs.length) {
+          strrefs = Arrays.copyOf(strrefs, numStrrefs << 1);
+        }
+        strrefs[numStrrefs++] = base + ofs;
+      }
+    }
+
+    public void addResRefs(int base, int... offsets)
+    {
+      for (final int ofs : offsets) {
+        checkRange(base + ofs, 8);
+        if (numResrefs == resrefs.length) {
+          resrefs = Arrays.copyOf(resrefs, numResrefs << 1);
+        }
+        resrefs[numResrefs++] = base + ofs;
+      }
+    }
+
+    public void addBlock(int offset, int length)
+    {
+      if (length > 0) {
+        checkRange(offset, length);
+        if (numBlocks + 2 > blocks.length) {
+          blocks = Arrays.copyOf(blocks, blocks.length << 1);
+        }
+        blocks[numBlocks++] = offset;
+        blocks[numBlocks++] = offset + length;
+      }
+    }
+
+    public boolean hasStringRef(int strref)
+    {
+      for (int i = 0; i < numStrrefs; i++) {
+        if (buffer.getInt(strrefs[i]) == strref) {
+          return true;
+        }
+      }
+
+      final byte b0 = (byte)strref, b1 = (byte)(strref >> 8), b2 = (byte)(strref >> 16), b3 = (byte)(strref >> 24);
+      for (int i = 0; i < numBlocks; i += 2) {
+        for (int ofs = blocks[i], end = blocks[i + 1] - 4; ofs <= end; ofs++) {
+          if (buffer.get(ofs) == b0 && buffer.get(ofs + 1) == b1 &&
+              buffer.get(ofs + 2) == b2 && buffer.get(ofs + 3) == b3) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    public boolean hasResRef(byte[] resref)
+    {
+      for (int i = 0; i < numResrefs; i++) {
+        final int ofs = resrefs[i];
+        if (matches(ofs, resref) && (resref.length == 8 || buffer.get(ofs + resref.length) == 0)) {
+          return true;
+        }
+      }
+
+      for (int i = 0; i < numBlocks; i += 2) {
+        for (int ofs = blocks[i], end = blocks[i + 1] - resref.length; ofs <= end; ofs++) {
+          if (matches(ofs, resref)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /** Compares the specified upper-cased ASCII string with the data at the given offset. */
+    private boolean matches(int offset, byte[] resref)
+    {
+      for (int i = 0; i < resref.length; i++) {
+        int b = buffer.get(offset + i);
+        if (b >= 'a' && b <= 'z') {
+          b -= 'a' - 'A';
+        }
+        if (b != resref[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void checkRange(int offset, int length)
+    {
+      if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+        throw new IndexOutOfBoundsException("Invalid data range: " + offset);
+      }
+    }
+  }
+}
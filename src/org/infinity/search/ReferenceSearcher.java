@@ -22,6 +22,7 @@
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Compiler;
 import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.bcs.ScriptType;
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.dlg.AbstractCode;
@@ -65,6 +66,26 @@ public ReferenceSearcher(ResourceEntry targetEntry, String[] fileTypes, Componen
     }
   }
 
+  @Override
+  List<ResourceEntry> filterFiles(List<ResourceEntry> files)
+  {
+    String symbol = null;
+    if (targetEntry.getExtension().equalsIgnoreCase("SPL")) {
+      symbol = org.infinity.resource.spl.Viewer.getSymbolicName(targetEntry, false);
+    }
+    return ReferenceIndex.filterReferences(files, targetEntry, creDeathVar, symbol);
+  }
+
+  @Override
+  boolean mayContainMatch(ResourceEntry entry)
+  {
+    // projectiles are referenced by index
+    if (targetEntry.getExtension().equalsIgnoreCase("PRO")) {
+      return true;
+    }
+    return ReferenceLayout.mayContainResourceRef(entry, targetEntry);
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
@@ -162,12 +183,10 @@ private void searchSave(ResourceEntry entry, SavResource savfile)
 
   private void searchScript(ResourceEntry entry, BcsResource bcsfile)
   {
-    Decompiler decompiler = new Decompiler(bcsfile.getCode(), true);
-    decompiler.setGenerateComments(false);
-    decompiler.setGenerateResourcesUsed(true);
     try {
-      String code = decompiler.decompile();
-      boolean resourceExists = decompiler.getResourcesUsed().contains(targetEntry);
+      final ScriptCache.Script script = ScriptCache.get(entry, bcsfile.getCode(), false);
+      String code = script.getSource();
+      boolean resourceExists = script.getResourcesUsed().contains(targetEntry);
       try (final BufferedReader br = new BufferedReader(new StringReader(code))) {
         // resref match
         Pattern regName = Pattern.compile("\"" + Pattern.quote(targetEntry.getResourceRef()) + "\"", Pattern.CASE_INSENSITIVE);
@@ -13,7 +13,6 @@
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import javax.swing.BorderFactory;
@@ -182,21 +181,9 @@ public void run()
   {
     index = 0;
     String term = tfinput.getText();
-    if (!cbregex.isSelected()) {
-      term = term.replaceAll("(\\W)", "\\\\$1");
-    }
-    if (cbwhole.isSelected()) {
-      term = ".*\\b" + term + "\\b.*";
-    } else {
-      term = ".*" + term + ".*";
-    }
-    Pattern regPattern;
+    SearchTerm searchTerm;
     try {
-      if (cbcase.isSelected()) {
-        regPattern = Pattern.compile(term, Pattern.DOTALL);
-      } else {
-        regPattern = Pattern.compile(term, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-      }
+      searchTerm = SearchTerm.compile(term, cbregex.isSelected(), cbwhole.isSelected(), cbcase.isSelected());
     } catch (PatternSyntaxException e) {
       JOptionPane.showMessageDialog(this, "Syntax error in search string.", "Error", JOptionPane.ERROR_MESSAGE);
       return;
@@ -210,7 +197,7 @@ public void run()
       String s = slave.getText(index);
       if (s == null)
         break;
-      if (regPattern.matcher(s).matches()) {
+      if (searchTerm.matches(s)) {
         slave.hitFound(index);
         blocker.setBlocked(false);
         container.requestFocus();
@@ -28,7 +28,6 @@
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.Vector;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javax.swing.BorderFactory;
@@ -95,6 +94,7 @@
 import org.infinity.resource.sto.StoResource;
 import org.infinity.resource.ui.ResourceCellRenderer;
 import org.infinity.resource.ui.ResourceListModel;
+import org.infinity.util.BoundedExecutor;
 import org.infinity.util.Debugging;
 import org.infinity.util.IdsMapEntry;
 import org.infinity.util.Misc;
@@ -239,19 +239,33 @@ public void run()
         if (panel != null) {
           SearchOptions so = panel.getOptions();
 
-          // using parallel jobs to speed up search
-          ThreadPoolExecutor executor = Misc.createThreadPool();
-          for (int i = 0; i < resources.size(); i++) {
-            Misc.isQueueReady(executor, true, -1);
-            executor.execute(new SearchWorker(found, so, resources.get(i)));
+          // narrowing down search by attribute index if available
+          AttributeIndex index = AttributeIndex.get(type);
+          if (index != null) {
+            AttributeIndex.Result result = index.query(resources, so);
+            found.addAll(result.getMatches());
+            resources = result.getCandidates();
+            pbProgress.setMaximum(resources.size());
           }
 
-          // waiting for threads to finish
-          executor.shutdown();
+          // using parallel jobs to speed up search
+          BoundedExecutor executor = new BoundedExecutor();
           try {
-            executor.awaitTermination(60, TimeUnit.SECONDS);
+            for (int i = 0; i < resources.size(); i++) {
+              executor.execute(new SearchWorker(found, so, resources.get(i)));
+            }
+
+            // waiting for threads to finish
+            executor.awaitCompletion(60, TimeUnit.SECONDS);
           } catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
+          } finally {
+            executor.shutdown();
+          }
+
+          // speeding up subsequent searches
+          if (index == null) {
+            AttributeIndex.build(type);
           }
 
           // preparing results for output
@@ -0,0 +1,431 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled representation of a user-defined search term, as used by the text-based searchers.
+ * <br><br>
+ * A text matches if it contains the search term anywhere. Literal search terms are executed by a
+ * Boyer-Moore-Horspool search, regular expressions consisting only of literal alternatives
+ * ({@code "abc|def"}) are executed by an Aho-Corasick automaton which checks all alternatives in a
+ * single pass. Only true regular expressions are executed by the regular expression engine.
+ * Case-insensitive matching folds US-ASCII characters only, which is consistent with the
+ * {@link Pattern#CASE_INSENSITIVE} flag.
+ */
+public final class SearchTerm
+{
+  /** Characters with a special meaning in regular expressions. */
+  private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+  private final String query;
+  private final Engine engine;
+
+  /**
+   * Compiles the specified search term.
+   *
+   * @param term The search term.
+   * @param isRegex Whether {@code term} is a regular expression.
+   * @param isWholeWord Whether the search term must match whole words only.
+   * @param isCaseSensitive Whether the search term is matched case-sensitively.
+   * @return The compiled search term.
+   * @throws PatternSyntaxException if {@code term} is not a valid regular expression.
+   */
+  public static SearchTerm compile(String term, boolean isRegex, boolean isWholeWord, boolean isCaseSensitive)
+  {
+    if (term == null) {
+      term = "";
+    }
+
+    final String regex = isRegex ? term : Pattern.quote(term);
+    final String query = isWholeWord ? ".*\\b" + regex + "\\b.*" : ".*" + regex + ".*";
+
+    final List<String> literals = isRegex ? getLiterals(term) : Arrays.asList(term);
+    final Engine engine;
+    if (literals == null) {
+      int flags = Pattern.DOTALL;
+      if (!isCaseSensitive) {
+        flags |= Pattern.CASE_INSENSITIVE;
+      }
+      final String s = isWholeWord ? "\\b(?:" + regex + ")\\b" : "(?:" + regex + ")";
+      engine = new RegexEngine(Pattern.compile(s, flags));
+    } else if (literals.size() == 1) {
+      engine = new LiteralEngine(literals.get(0), isWholeWord, isCaseSensitive);
+    } else {
+      engine = new MultiLiteralEngine(literals, isWholeWord, isCaseSensitive);
+    }
+    return new SearchTerm(query, engine);
+  }
+
+  private SearchTerm(String query, Engine engine)
+  {
+    this.query = query;
+    this.engine = engine;
+  }
+
+  /**
+   * Returns whether the specified text contains a match of the search term.
+   * This method can be called concurrently.
+   */
+  public boolean matches(CharSequence text)
+  {
+    return (text != null) && engine.find(text);
+  }
+
+  /**
+   * Returns the search term as a regular expression which matches whole lines containing the
+   * search term. It is suitable for highlighting matches in text resources.
+   */
+  public String getQuery()
+  {
+    return query;
+  }
+
+  @Override
+  public String toString()
+  {
+    return query;
+  }
+
+  /**
+   * Splits the specified regular expression into literal alternatives.
+   * Returns {@code null} if the expression contains elements other than literal characters,
+   * escaped non-alphanumeric characters and top-level alternations.
+   */
+  private static List<String> getLiterals(String regex)
+  {
+    final List<String> retVal = new ArrayList<>();
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0, len = regex.length(); i < len; i++) {
+      final char ch = regex.charAt(i);
+      if (ch == '\\') {
+        if (i + 1 >= len) {
+          return null;
+        }
+        final char ch2 = regex.charAt(++i);
+        if (ch2 < 0x80 && Character.isLetterOrDigit(ch2)) {
+          return null;
+        }
+        sb.append(ch2);
+      } else if (ch == '|') {
+        if (sb.length() == 0) {
+          return null;
+        }
+        retVal.add(sb.toString());
+        sb.setLength(0);
+      } else if (META_CHARS.indexOf(ch) >= 0) {
+        return null;
+      } else {
+        sb.append(ch);
+      }
+    }
+    if (sb.length() == 0 && !retVal.isEmpty()) {
+      return null;
+    }
+    retVal.add(sb.toString());
+    return retVal;
+  }
+
+  /** Folds US-ASCII characters to upper case. */
+  private static char fold(char ch)
+  {
+    return (ch >= 'a' && ch <= 'z') ? (char)(ch - ('a' - 'A')) : ch;
+  }
+
+  private static String fold(String s)
+  {
+    final char[] buf = s.toCharArray();
+    for (int i = 0; i < buf.length; i++) {
+      buf[i] = fold(buf[i]);
+    }
+    return new String(buf);
+  }
+
+  /** Returns whether a word boundary (regex {@code \b}) exists at the specified text position. */
+  private static boolean isBoundary(CharSequence text, int index)
+  {
+    final boolean left = (index > 0) && isWord(text, index - 1);
+    final boolean right = (index < text.length()) && isWord(text, index);
+    return left ^ right;
+  }
+
+  private static boolean isWord(CharSequence text, int index)
+  {
+    final char ch = text.charAt(index);
+    if (ch == '_' || Character.isLetterOrDigit(ch)) {
+      return true;
+    }
+    if (Character.getType(ch) == Character.NON_SPACING_MARK) {
+      // combining marks belong to the preceding base character
+      for (int i = index - 1; i >= 0; i--) {
+        final char c = text.charAt(i);
+        if (Character.isLetterOrDigit(c)) {
+          return true;
+        } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+          break;
+        }
+      }
+    }
+    return false;
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private interface Engine
+  {
+    boolean find(CharSequence text);
+  }
+
+  /** Executes true regular expressions. */
+  private static final class RegexEngine implements Engine
+  {
+    private final Pattern pattern;
+
+    public RegexEngine(Pattern pattern)
+    {
+      this.pattern = pattern;
+    }
+
+    @Override
+    public boolean find(CharSequence text)
+    {
+      return pattern.matcher(text).find();
+    }
+  }
+
+  /** Boyer-Moore-Horspool search for a single literal. */
+  private static final class LiteralEngine implements Engine
+  {
+    private final char[] pattern;
+    private final int[] skip = new int[256];
+    private final boolean isWholeWord;
+    private final boolean isCaseSensitive;
+
+    public LiteralEngine(String literal, boolean isWholeWord, boolean isCaseSensitive)
+    {
+      this.pattern = (isCaseSensitive ? literal : fold(literal)).toCharArray();
+      this.isWholeWord = isWholeWord;
+      this.isCaseSensitive = isCaseSensitive;
+
+      // characters sharing the same table slot get the smallest shift
+      final int m = pattern.length;
+      Arrays.fill(skip, Math.max(1, m));
+      for (int i = 0; i < m - 1; i++) {
+        skip[pattern[i] & 0xff] = m - 1 - i;
+      }
+    }
+
+    @Override
+    public boolean find(CharSequence text)
+    {
+      final int m = pattern.length;
+      final int n = text.length();
+      if (m == 0) {
+        for (int i = 0; i <= n; i++) {
+          if (!isWholeWord || isBoundary(text, i)) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      final char last = pattern[m - 1];
+      for (int pos = 0; pos <= n - m; ) {
+        final char ch = isCaseSensitive ? text.charAt(pos + m - 1) : fold(text.charAt(pos + m - 1));
+        if (ch == last && matchesAt(text, pos) &&
+            (!isWholeWord || (isBoundary(text, pos) && isBoundary(text, pos + m)))) {
+          return true;
+        }
+        pos += skip[ch & 0xff];
+      }
+      return false;
+    }
+
+    private boolean matchesAt(CharSequence text, int pos)
+    {
+      for (int i = pattern.length - 2; i >= 0; i--) {
+        final char ch = isCaseSensitive ? text.charAt(pos + i) : fold(text.charAt(pos + i));
+        if (ch != pattern[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Aho-Corasick search for several literals in a single pass. */
+  private static final class MultiLiteralEngine implements Engine
+  {
+    /** Transitions of US-ASCII characters, indexed by [state][char]. -1 if undefined. */
+    private final int[][] asciiNext;
+    /** Transitions of other characters, keyed by {@code (state << 16) | char}. */
+    private final Map<Integer, Integer> wideNext = new HashMap<>();
+    private final int[] fail;
+    /** Lengths of all literals ending in a state, including those of the failure chain. */
+    private final int[][] output;
+    private final boolean isWholeWord;
+    private final boolean isCaseSensitive;
+
+    public MultiLiteralEngine(List<String> literals, boolean isWholeWord, boolean isCaseSensitive)
+    {
+      this.isWholeWord = isWholeWord;
+      this.isCaseSensitive = isCaseSensitive;
+
+      // building trie
+      final List<int[]> next = new ArrayList<>();
+      final List<int[]> out = new ArrayList<>();
+      next.add(newStates());
+      out.add(new int[0]);
+      for (final String literal : literals) {
+        final String s = isCaseSensitive ? literal : fold(literal);
+        int state = 0;
+        for (int i = 0; i < s.length(); i++) {
+          final char ch = s.charAt(i);
+          int target = getNext(next, state, ch);
+          if (target < 0) {
+            target = next.size();
+            next.add(newStates());
+            out.add(new int[0]);
+            setNext(next, state, ch, target);
+          }
+          state = target;
+        }
+        out.set(state, append(out.get(state), s.length()));
+      }
+
+      // building failure links in breadth-first order
+      final int numStates = next.size();
+      fail = new int[numStates];
+      final int[] queue = new int[numStates];
+      int head = 0, tail = 0;
+      for (int ch = 0; ch < 128; ch++) {
+        final int s = next.get(0)[ch];
+        if (s > 0) {
+          queue[tail++] = s;
+        }
+      }
+      for (final Map.Entry<Integer, Integer> e : wideNext.entrySet()) {
+        if ((e.getKey() >>> 16) == 0) {
+          queue[tail++] = e.getValue();
+        }
+      }
+      while (head < tail) {
+        final int state = queue[head++];
+        final List<int[]> children = getChildren(next, state);
+        for (final int[] child : children) {
+          final char ch = (char)child[0];
+          final int target = child[1];
+          int f = fail[state];
+          while (f > 0 && getNext(next, f, ch) < 0) {
+            f = fail[f];
+          }
+          final int t = getNext(next, f, ch);
+          fail[target] = (t >= 0 && t != target) ? t : 0;
+          out.set(target, concat(out.get(target), out.get(fail[target])));
+          queue[tail++] = target;
+        }
+      }
+
+      asciiNext = next.toArray(new int[numStates][]);
+      output = out.toArray(new int[numStates][]);
+    }
+
+    @Override
+    public boolean find(CharSequence text)
+    {
+      int state = 0;
+      for (int i = 0, n = text.length(); i < n; i++) {
+        final char ch = isCaseSensitive ? text.charAt(i) : fold(text.charAt(i));
+        int t;
+        while ((t = next(state, ch)) < 0 && state != 0) {
+          state = fail[state];
+        }
+        state = (t >= 0) ? t : 0;
+        for (final int len : output[state]) {
+          if (!isWholeWord || (isBoundary(text, i + 1 - len) && isBoundary(text, i + 1))) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    private int next(int state, char ch)
+    {
+      if (ch < 128) {
+        return asciiNext[state][ch];
+      }
+      final Integer t = wideNext.get((state << 16) | ch);
+      return (t != null) ? t.intValue() : -1;
+    }
+
+    private int getNext(List<int[]> next, int state, char ch)
+    {
+      if (ch < 128) {
+        return next.get(state)[ch];
+      }
+      final Integer t = wideNext.get((state << 16) | ch);
+      return (t != null) ? t.intValue() : -1;
+    }
+
+    private void setNext(List<int[]> next, int state, char ch, int target)
+    {
+      if (ch < 128) {
+        next.get(state)[ch] = target;
+      } else {
+        wideNext.put((state << 16) | ch, target);
+      }
+    }
+
+    /** Returns all pairs of (character, target state) of the specified state. */
+    private List<int[]> getChildren(List<int[]> next, int state)
+    {
+      final List<int[]> retVal = new ArrayList<>();
+      final int[] states = next.get(state);
+      for (int ch = 0; ch < states.length; ch++) {
+        if (states[ch] >= 0) {
+          retVal.add(new int[]{ch, states[ch]});
+        }
+      }
+      for (final Map.Entry<Integer, Integer> e : wideNext.entrySet()) {
+        if ((e.getKey() >>> 16) == state) {
+          retVal.add(new int[]{e.getKey() & 0xffff, e.getValue()});
+        }
+      }
+      return retVal;
+    }
+
+    private static int[] newStates()
+    {
+      final int[] retVal = new int[128];
+      Arrays.fill(retVal, -1);
+      return retVal;
+    }
+
+    private static int[] append(int[] array, int value)
+    {
+      final int[] retVal = Arrays.copyOf(array, array.length + 1);
+      retVal[array.length] = value;
+      return retVal;
+    }
+
+    private static int[] concat(int[] a, int[] b)
+    {
+      if (b.length == 0) {
+        return a;
+      }
+      final int[] retVal = Arrays.copyOf(a, a.length + b.length);
+      System.arraycopy(b, 0, retVal, a.length, b.length);
+      return retVal;
+    }
+  }
+}
@@ -18,7 +18,7 @@
 import org.infinity.resource.are.AreResource;
 import org.infinity.resource.are.Song;
 import org.infinity.resource.bcs.BcsResource;
-import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.dlg.AbstractCode;
 import org.infinity.resource.dlg.DlgResource;
 import org.infinity.resource.key.ResourceEntry;
@@ -99,11 +99,8 @@ private void searchBcs(ResourceEntry entry, BcsResource bcs)
   {
     if (pattern == null) { return; }
 
-    final Decompiler decompiler = new Decompiler(bcs.getCode(), true);
-    decompiler.setGenerateComments(false);
-    decompiler.setGenerateResourcesUsed(false);
     try {
-      String text = decompiler.decompile();
+      String text = ScriptCache.get(entry, bcs.getCode(), false).getSource();
       searchText(entry, null, text);
     } catch (Exception e) {
       e.printStackTrace();
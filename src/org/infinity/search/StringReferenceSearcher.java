@@ -5,6 +5,7 @@
 package org.infinity.search;
 
 import java.awt.Component;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +17,7 @@
 import org.infinity.resource.bcs.BcsResource;
 import org.infinity.resource.bcs.Compiler;
 import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.bcs.ScriptType;
 import org.infinity.resource.dlg.AbstractCode;
 import org.infinity.resource.dlg.Action;
@@ -58,6 +60,18 @@ public StringReferenceSearcher(int stringRef, Component parent)
     this.searchvalue = stringRef;
   }
 
+  @Override
+  List<ResourceEntry> filterFiles(List<ResourceEntry> files)
+  {
+    return ReferenceIndex.filterStringReferences(files, searchvalue);
+  }
+
+  @Override
+  boolean mayContainMatch(ResourceEntry entry)
+  {
+    return ReferenceLayout.mayContainStringRef(entry, searchvalue);
+  }
+
   @Override
   protected void search(ResourceEntry entry, Resource resource)
   {
@@ -136,12 +150,9 @@ private void searchSave(ResourceEntry entry, SavResource savfile)
 
   private void searchScript(ResourceEntry entry, BcsResource bcsfile)
   {
-    Decompiler decompiler = new Decompiler(bcsfile.getCode(), true);
-    decompiler.setGenerateComments(false);
-    decompiler.setGenerateResourcesUsed(true);
     try {
-      decompiler.decompile();
-      for (final Integer stringRef : decompiler.getStringRefsUsed()) {
+      final ScriptCache.Script script = ScriptCache.get(entry, bcsfile.getCode(), false);
+      for (final Integer stringRef : script.getStringRefsUsed()) {
         if (stringRef.intValue() == searchvalue)
           addHit(entry, null, null);
       }
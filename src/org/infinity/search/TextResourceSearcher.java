@@ -15,7 +15,6 @@
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.List;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import javax.swing.JButton;
@@ -43,7 +42,7 @@ public final class TextResourceSearcher extends AbstractSearcher implements Runn
   private final JTextField tfinput = new JTextField("", 15);
   private final List<ResourceEntry> files;
 
-  private Pattern regPattern;
+  private SearchTerm searchTerm;
   private TextHitFrame resultFrame;
 
   public TextResourceSearcher(List<ResourceEntry> files, Container parent)
@@ -129,32 +128,19 @@ public void actionPerformed(ActionEvent event)
   @Override
   public void run()
   {
-    String term = tfinput.getText();
-    if (!cbregex.isSelected()) {
-      term = Pattern.quote(term);
-    }
-    if (cbwhole.isSelected()) {
-      term = ".*\\b" + term + "\\b.*";
-    } else {
-      term = ".*" + term + ".*";
-    }
-
     try {
-      if (cbcase.isSelected()) {
-        regPattern = Pattern.compile(term, Pattern.DOTALL);
-      } else {
-        regPattern = Pattern.compile(term, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-      }
+      searchTerm = SearchTerm.compile(tfinput.getText(), cbregex.isSelected(),
+                                      cbwhole.isSelected(), cbcase.isSelected());
     } catch (PatternSyntaxException e) {
       JOptionPane.showMessageDialog(parent, "Syntax error in search string.", "Error", JOptionPane.ERROR_MESSAGE);
-      regPattern = null;
+      searchTerm = null;
       return;
     }
 
     try {
       // executing multithreaded search
       inputFrame.setVisible(false);
-      resultFrame = new TextHitFrame(term, parent);
+      resultFrame = new TextHitFrame(searchTerm.getQuery(), parent);
 
       if (runSearch("Searching", files)) {
         resultFrame.close();
@@ -162,7 +148,7 @@ public void run()
         resultFrame.setVisible(true);
       }
     } finally {
-      regPattern = null;
+      searchTerm = null;
       resultFrame = null;
     }
   }
@@ -178,9 +164,9 @@ protected Runnable newWorker(ResourceEntry entry)
         try (final BufferedReader br = new BufferedReader(new StringReader(((TextResource)resource).getText()))) {
           String line;
           int linenr = 0;
-          while ((line = br.readLine()) != null) {
+          while (!isCancelled() && (line = br.readLine()) != null) {
             linenr++;
-            if (regPattern.matcher(line).matches()) {
+            if (searchTerm.matches(line)) {
               addHit(entry, line, linenr);
             }
           }
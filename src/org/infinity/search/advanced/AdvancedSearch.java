@@ -27,8 +27,8 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 import javax.swing.AbstractButton;
@@ -74,6 +74,7 @@
 import org.infinity.resource.dlg.DlgResource;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.search.ReferenceHitFrame;
+import org.infinity.util.BoundedExecutor;
 import org.infinity.util.Debugging;
 import org.infinity.util.Misc;
 import org.infinity.util.SimpleListModel;
@@ -514,20 +515,29 @@ public void run()
       try {
         Debugging.timerReset();
         List<SearchOptions> searchOptions = getSearchOptions();
-
-        // using parallel jobs to speed up search
-        ThreadPoolExecutor executor = Misc.createThreadPool();
-        for (final ResourceEntry entry : resources) {
-          Misc.isQueueReady(executor, true, -1);
-          executor.execute(new AdvancedSearchWorker(found, filterOp, searchOptions, entry, pbProgress));
+        CompiledSearch search;
+        try {
+          // search options are prepared only once for all resources
+          search = new CompiledSearch(filterOp, searchOptions);
+        } catch (PatternSyntaxException e) {
+          JOptionPane.showMessageDialog(this, "Invalid regular expression:\n" + e.getMessage(),
+                                        "Error", JOptionPane.ERROR_MESSAGE);
+          return;
         }
 
-        // waiting for threads to finish
-        executor.shutdown();
+        // using parallel jobs to speed up search
+        BoundedExecutor executor = new BoundedExecutor();
         try {
-          executor.awaitTermination(60, TimeUnit.SECONDS);
+          for (final ResourceEntry entry : resources) {
+            executor.execute(new AdvancedSearchWorker(found, search, entry, pbProgress));
+          }
+
+          // waiting for threads to finish
+          executor.awaitCompletion(60, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
-          e.printStackTrace();
+          Thread.currentThread().interrupt();
+        } finally {
+          executor.shutdown();
         }
 
         // preparing results for output
@@ -15,10 +15,6 @@
 
 import javax.swing.JProgressBar;
 
-import org.infinity.datatype.Flag;
-import org.infinity.datatype.IsNumeric;
-import org.infinity.datatype.IsReference;
-import org.infinity.datatype.IsTextual;
 import org.infinity.resource.AbstractStruct;
 import org.infinity.resource.Resource;
 import org.infinity.resource.ResourceFactory;
@@ -33,7 +29,7 @@ public class AdvancedSearchWorker implements Runnable
 {
   private final List<ReferenceHitFrame.ReferenceHit> matched;
   private final AdvancedSearch.FilterMode filterOp;
-  private final List<SearchOptions> searchOptions;
+  private final CompiledSearch search;
   private final ResourceEntry entry;
   private final JProgressBar progress;
 
@@ -44,10 +40,21 @@ public class AdvancedSearchWorker implements Runnable
    */
   public AdvancedSearchWorker(List<ReferenceHitFrame.ReferenceHit> matched, AdvancedSearch.FilterMode filterOp,
                               List<SearchOptions> searchOptions, ResourceEntry entry, JProgressBar progress)
+  {
+    this(matched, (searchOptions != null) ? new CompiledSearch(filterOp, searchOptions) : null, entry, progress);
+  }
+
+  /**
+   * @param matched List containing search results.
+   * @param search Precompiled search options. Should be shared by all workers of the same search.
+   * @param entry Resource entry to match.
+   */
+  public AdvancedSearchWorker(List<ReferenceHitFrame.ReferenceHit> matched, CompiledSearch search,
+                              ResourceEntry entry, JProgressBar progress)
   {
     this.matched = matched;
-    this.filterOp = (filterOp != null) ? filterOp : AdvancedSearch.FilterMode.MatchAll;
-    this.searchOptions = searchOptions;
+    this.search = search;
+    this.filterOp = (search != null) ? search.getFilterMode() : AdvancedSearch.FilterMode.MatchAll;
     this.entry = entry;
     this.progress = progress;
   }
@@ -55,12 +62,34 @@ public AdvancedSearchWorker(List<ReferenceHitFrame.ReferenceHit> matched, Advanc
   @Override
   public void run()
   {
-    if (matched == null || searchOptions == null || entry == null)
+    if (matched == null || search == null || entry == null)
+      return;
+
+    try {
+      match();
+    } finally {
+      if (progress != null) {
+        synchronized (progress) {
+          progress.setValue(progress.getValue() + 1);
+        }
+      }
+    }
+  }
+
+  private void match()
+  {
+    // rejecting resources by raw header data if possible
+    final byte[] header = search.readHeader(entry);
+    if (search.isRejected(entry, header))
       return;
 
     Resource res = ResourceFactory.getResource(entry);
     if (res instanceof AbstractStruct) {
       AbstractStruct structRoot = (AbstractStruct)res;
+      search.updateLayout(entry, header, structRoot);
+
+      final List<CompiledSearch.Filter> filters = search.getFilters();
+      final boolean shortCircuit = search.isShortCircuit();
       // storage for evaluated matches
       List<ReferenceHitFrame.ReferenceHit> entryMatches = new ArrayList<>();
       // stores number of grouped filters applied per structure level
@@ -69,25 +98,27 @@ public void run()
       Map<List<String>, Set<StructEntry>> groupCache = new HashMap<>();
 
       int matches = 0;
-      for (int filterIdx = 0; filterIdx < searchOptions.size(); filterIdx++) {
-        SearchOptions so = searchOptions.get(filterIdx);
+      for (final CompiledSearch.Filter filter : filters) {
+        SearchOptions so = filter.getOptions();
 
         // keep track of grouped filter count per structure
         if (so.isStructureGroup()) {
-          Integer count = groupFilters.get(so.getStructure());
-          if (count == null)
-            count = Integer.valueOf(0);
-          groupFilters.put(so.getStructure(), Integer.valueOf(count.intValue() + 1));
+          groupFilters.merge(so.getStructure(), Integer.valueOf(1), (a, b) -> a + b);
         }
 
         // list of structures to search
         boolean isMatch = false;
-        List<AbstractStruct> structs = collectStructures(structRoot, so, 0);
+        List<AbstractStruct> structs = collectStructures(structRoot, filter, 0);
         for (AbstractStruct struct : structs) {
-          isMatch |= findMatches(entryMatches, groupCache, struct, so);
+          isMatch |= findMatches(entryMatches, groupCache, struct, filter);
         }
-        if (isMatch)
+        if (isMatch) {
           matches++;
+          if (shortCircuit && filterOp == AdvancedSearch.FilterMode.MatchOne && matches > 1)
+            return;
+        } else if (shortCircuit && filterOp == AdvancedSearch.FilterMode.MatchAll) {
+          return;
+        }
       }
 
       // evaluating grouped matches
@@ -103,7 +134,7 @@ public void run()
       // evaluating filter mode
       switch (filterOp) {
         case MatchAll:
-          if (matches >= searchOptions.size())
+          if (matches >= filters.size())
             matched.addAll(entryMatches);
           break;
         case MatchAny:
@@ -116,58 +147,44 @@ public void run()
           break;
       }
     }
-
-    if (progress != null) {
-      synchronized (progress) {
-        progress.setValue(progress.getValue() + 1);
-      }
-    }
   }
 
   // Search for matching structures recursively
-  private List<AbstractStruct> collectStructures(AbstractStruct struct, SearchOptions so, int index)
+  private List<AbstractStruct> collectStructures(AbstractStruct struct, CompiledSearch.Filter filter, int index)
   {
     final List<AbstractStruct> list = new ArrayList<>();
+    final boolean recursive = filter.getOptions().isStructureRecursive();
 
-    if (index < so.getStructure().size()) {
+    if (index < filter.getStructureLevels()) {
       // Field name may contain additional indices
-      Pattern pattern;
-      if (so.isStructureRegex()) {
-        pattern = Pattern.compile(so.getStructure().get(index), Pattern.CASE_INSENSITIVE);
-      } else {
-        pattern = Pattern.compile(Pattern.quote(so.getStructure().get(index)) + "(\\s*[0-9]+)?", Pattern.CASE_INSENSITIVE);
-      }
-      struct
-      .getFields()
-      .stream()
-      .filter(se -> se instanceof AbstractStruct && pattern.matcher(se.getName()).find())
-      .forEachOrdered(se -> {
-        // processing only matching AbstractStruct fields
-        AbstractStruct as = (AbstractStruct)se;
-        if (index + 1 < so.getStructure().size()) {
-          // traverse more substructures?
-          list.addAll(collectStructures(as, so, index + 1));
-        } else {
-          // leaf structure
-          list.add(as);
-          // search more substructures recursively?
-          if (so.isStructureRecursive()) {
-            as
-            .getFields()
-            .stream()
-            .filter(se2 -> se2 instanceof AbstractStruct)
-            .forEachOrdered(se2 -> list.addAll(collectStructures((AbstractStruct)se2, so, index + 1)));
+      final Pattern pattern = filter.getStructurePattern(index);
+      for (final StructEntry se : struct.getFields()) {
+        if (se instanceof AbstractStruct && pattern.matcher(se.getName()).find()) {
+          // processing only matching AbstractStruct fields
+          AbstractStruct as = (AbstractStruct)se;
+          if (index + 1 < filter.getStructureLevels()) {
+            // traverse more substructures?
+            list.addAll(collectStructures(as, filter, index + 1));
+          } else {
+            // leaf structure
+            list.add(as);
+            // search more substructures recursively?
+            if (recursive) {
+              for (final StructEntry se2 : as.getFields()) {
+                if (se2 instanceof AbstractStruct)
+                  list.addAll(collectStructures((AbstractStruct)se2, filter, index + 1));
+              }
+            }
           }
         }
-      });
+      }
     } else {
       list.add(struct);
-      if (so.isStructureRecursive()) {
-        struct
-        .getFields()
-        .stream()
-        .filter(se -> se instanceof AbstractStruct)
-        .forEachOrdered(se -> list.addAll(collectStructures((AbstractStruct)se, so, index + 1)));
+      if (recursive) {
+        for (final StructEntry se : struct.getFields()) {
+          if (se instanceof AbstractStruct)
+            list.addAll(collectStructures((AbstractStruct)se, filter, index + 1));
+        }
       }
     }
 
@@ -232,22 +249,16 @@ private void addGroupFilter(Map<List<String>, Set<StructEntry>> groupCache, Stru
   // Search for matching fields in specified structure
   private boolean findMatches(List<ReferenceHitFrame.ReferenceHit> matchList,
                               Map<List<String>, Set<StructEntry>> groupCache,
-                              AbstractStruct struct, SearchOptions so)
+                              AbstractStruct struct, CompiledSearch.Filter filter)
   {
-    if (struct != null && so != null) {
+    if (struct != null && filter != null) {
+      SearchOptions so = filter.getOptions();
       if (so.getSearchType() == SearchOptions.FieldMode.ByName) {
         // search by name
-        Pattern pattern;
-        int flags = so.isSearchNameCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
-        if (so.isSearchNameRegex()) {
-          pattern = Pattern.compile(so.getSearchName(), flags);
-        } else {
-          pattern = Pattern.compile(Pattern.quote(so.getSearchName()), flags);
-        }
         boolean result = false;
         for (final StructEntry se : struct.getFields()) {
-          if (pattern.matcher(se.getName()).find()) {
-            result |= isMatch(matchList, groupCache, se, so);
+          if (filter.isNameMatch(se.getName())) {
+            result |= isMatch(matchList, groupCache, se, filter);
           }
         }
         return result;
@@ -257,7 +268,7 @@ private boolean findMatches(List<ReferenceHitFrame.ReferenceHit> matchList,
         if (so.getSearchType() == SearchOptions.FieldMode.ByRelativeOffset) {
           offset += struct.getOffset();
         }
-        return isMatch(matchList, groupCache, struct.getAttribute(offset), so);
+        return isMatch(matchList, groupCache, struct.getAttribute(offset), filter);
       }
     }
     return false;
@@ -265,27 +276,12 @@ private boolean findMatches(List<ReferenceHitFrame.ReferenceHit> matchList,
 
   // Match value against search options
   private boolean isMatch(List<ReferenceHitFrame.ReferenceHit> matchList, Map<List<String>, Set<StructEntry>> groupCache,
-                          StructEntry se, SearchOptions so)
+                          StructEntry se, CompiledSearch.Filter filter)
   {
     boolean retVal = false;
-    if (se != null && so != null) {
-      switch (so.getValueType()) {
-        case Text:
-          retVal = isMatchText(se, so.getValueText(), so.isValueTextCaseSensitive(), so.isValueTextRegex());
-          break;
-        case Number:
-          retVal = isMatchNumber(se, so.getValueNumberMin(), so.getValueNumberMax());
-          break;
-        case Resource:
-          retVal = isMatchResource(se, so.getValueResourceRef(), so.getValueResourceType());
-          break;
-        case Bitfield:
-          retVal = isMatchBitfield(se, so.getValueBitfield(), so.getBitfieldMode());
-          break;
-      }
-
-      if (so.isInvertMatch())
-        retVal = !retVal;
+    if (se != null && filter != null) {
+      SearchOptions so = filter.getOptions();
+      retVal = filter.test(se);
 
       if (retVal) {
         if (so.isStructureGroup()) {
@@ -301,121 +297,5 @@ private boolean isMatch(List<ReferenceHitFrame.ReferenceHit> matchList, Map<List
     return retVal;
   }
 
-  // Match value textually
-  private boolean isMatchText(StructEntry se, String text, boolean caseSensitive, boolean regex)
-  {
-    // check numeric values as well
-    boolean isNumber = false;
-    int number = 0;
-    try {
-      if (text.trim().startsWith("0x") || text.trim().startsWith("0X"))
-        number = Integer.parseInt(text.trim().substring(2), 16);
-      else if (text.trim().endsWith("h"))
-        number = Integer.parseInt(text.trim().substring(0, text.length() - 1).trim(), 16);
-      else
-        number = Integer.parseInt(text.trim());
-      isNumber = true;
-    } catch (NumberFormatException e) {
-    }
-
-    Pattern pattern;
-    int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-    if (regex) {
-      pattern = Pattern.compile(text, flags);
-    } else {
-      pattern = Pattern.compile(Pattern.quote(text), flags);
-    }
-
-    if (se instanceof IsTextual) {
-      IsTextual textEntry = (IsTextual)se;
-      if (pattern.matcher(textEntry.getText()).find())
-        return true;
-    }
-
-    if (se instanceof IsReference) {
-      IsReference refEntry = (IsReference)se;
-      String resName = refEntry.getResourceName();
-      if (resName.equalsIgnoreCase("None"))
-        resName = "";
-      if (pattern.matcher(resName).find())
-        return true;
-      ResourceEntry resEntry = ResourceFactory.getResourceEntry(resName);
-      if (resEntry != null) {
-        String searchName = resEntry.getSearchString();
-        if (searchName != null) {
-          if (pattern.matcher(searchName).find())
-            return true;
-        }
-      }
-    }
-
-    if (se instanceof IsNumeric && isNumber) {
-      IsNumeric numberEntry = (IsNumeric)se;
-      if (numberEntry.getValue() == number)
-        return true;
-    }
-
-    // "catch all" check
-    if (pattern.matcher(se.toString()).find())
-      return true;
-
-    return false;
-  }
-
-  // Match value numerically
-  private boolean isMatchNumber(StructEntry se, int valueMin, int valueMax)
-  {
-    if (se instanceof IsNumeric) {
-      IsNumeric entry = (IsNumeric)se;
-      return (entry.getValue() >= valueMin && entry.getValue() <= valueMax);
-    }
-    return false;
-  }
-
-  // Match value by resource
-  private boolean isMatchResource(StructEntry se, String resref, String ext)
-  {
-    if (se instanceof IsReference) {
-      IsReference entry = (IsReference)se;
-      String resName = entry.getResourceName();
-      if (resName.equalsIgnoreCase("None"))
-        resName = "";
-      if (resref.isEmpty())
-        return (resref.equalsIgnoreCase(resName));
-      else
-        return (resref + "." + ext).equalsIgnoreCase(resName);
-    }
-    return false;
-  }
-
-  // Match value as bitfield
-  private boolean isMatchBitfield(StructEntry se, int value, SearchOptions.BitFieldMode mode)
-  {
-    if (se instanceof Flag) {
-      Flag flag = (Flag)se;
-      int bits = flag.getValue();
-      switch (mode) {
-        case Exact:
-          return bits == value;
-        case And:
-          return (bits & value) == value;
-        case Or:
-          return (bits & value) != 0;
-        case Xor:
-        {
-          bits = bits & value;
-          int cnt = 0;
-          while (bits != 0 && cnt < 2) {
-            if ((bits & 1) != 0)
-              cnt++;
-            bits >>>= 1;
-          }
-          return cnt == 1;
-        }
-      }
-    }
-    return false;
-  }
-
 //-------------------------- INNER CLASSES --------------------------
 }
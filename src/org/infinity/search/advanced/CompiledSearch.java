@@ -0,0 +1,525 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.search.advanced;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.infinity.datatype.Flag;
+import org.infinity.datatype.IsNumeric;
+import org.infinity.datatype.IsReference;
+import org.infinity.datatype.IsTextual;
+import org.infinity.resource.AbstractStruct;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.StructEntry;
+import org.infinity.resource.key.ResourceEntry;
+
+/**
+ * Immutable, precompiled representation of the search options of an "Advanced Search".
+ * Regular expressions, numeric values and bitmasks are prepared once per search and shared
+ * by all {@link AdvancedSearchWorker} instances.<br>
+ * <br>
+ * If the result of a resource is already determined by a subset of the filters (e.g. the first
+ * failed filter in "match all" mode), evaluation stops early. Numeric filters targeting fields
+ * at a fixed offset in the resource header are additionally checked against the raw resource
+ * data, so that most non-matching resources don't have to be parsed at all. The header layout
+ * is learned from the first parsed resource of each signature and version.
+ */
+public final class CompiledSearch
+{
+  private final AdvancedSearch.FilterMode filterOp;
+  /** Filters in evaluation order. */
+  private final List<Filter> filters;
+  /** Whether any filter is evaluated as part of a structure group. */
+  private final boolean grouped;
+  /** Indices of filters which qualify for raw data checks. */
+  private final int[] rawFilters;
+  /** Number of bytes to read from the start of a resource for raw data checks. */
+  private final int rawHeaderSize;
+  /** Learned header layouts by resource type, signature and version. */
+  private final Map<String, RawField[]> layouts = new ConcurrentHashMap<>();
+
+  /**
+   * Compiles the specified list of search options.
+   * @param filterOp How to combine the filter results.
+   * @param searchOptions List of search options.
+   * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid.
+   */
+  public CompiledSearch(AdvancedSearch.FilterMode filterOp, List<SearchOptions> searchOptions)
+  {
+    this.filterOp = (filterOp != null) ? filterOp : AdvancedSearch.FilterMode.MatchAll;
+
+    final List<Filter> list = new ArrayList<>();
+    boolean isGrouped = false;
+    for (final SearchOptions so : searchOptions) {
+      list.add(new Filter(so));
+      isGrouped |= so.isStructureGroup();
+    }
+    this.grouped = isGrouped;
+
+    if (isShortCircuit()) {
+      // cheapest filters first: order of evaluation doesn't affect results in this mode
+      Collections.sort(list, Comparator.comparingInt(Filter::getCost));
+    }
+    this.filters = Collections.unmodifiableList(list);
+
+    // raw data checks are only conclusive if a single failed filter rejects the whole resource
+    final List<Integer> raw = new ArrayList<>();
+    int headerSize = 0;
+    if (isShortCircuit() && this.filterOp == AdvancedSearch.FilterMode.MatchAll) {
+      for (int i = 0; i < filters.size(); i++) {
+        final Filter f = filters.get(i);
+        if (f.isRawCandidate()) {
+          raw.add(i);
+          headerSize = Math.max(headerSize, f.options.getSearchOffset() + 4);
+        }
+      }
+    }
+    this.rawFilters = raw.stream().mapToInt(Integer::intValue).toArray();
+    this.rawHeaderSize = Math.max(8, headerSize);
+  }
+
+  /** Returns how the filter results are combined. */
+  public AdvancedSearch.FilterMode getFilterMode() { return filterOp; }
+
+  /** Returns the compiled filters in evaluation order. */
+  public List<Filter> getFilters() { return filters; }
+
+  /** Returns whether evaluation of a resource can stop as soon as the result is determined. */
+  public boolean isShortCircuit()
+  {
+    return !grouped && filterOp != AdvancedSearch.FilterMode.MatchAny;
+  }
+
+  /** Returns whether the raw resource header should be read before parsing a resource. */
+  public boolean isRawCheckEnabled()
+  {
+    return rawFilters.length > 0;
+  }
+
+  /**
+   * Reads the resource header needed for raw data checks.
+   * @return Header data or {@code null} if raw checks are disabled or data could not be read.
+   */
+  public byte[] readHeader(ResourceEntry entry)
+  {
+    if (!isRawCheckEnabled()) {
+      return null;
+    }
+    try (InputStream is = entry.getResourceDataAsStream()) {
+      final byte[] buf = new byte[rawHeaderSize];
+      int len = 0;
+      while (len < buf.length) {
+        final int n = is.read(buf, len, buf.length - len);
+        if (n < 0) {
+          break;
+        }
+        len += n;
+      }
+      if (len < buf.length) {
+        final byte[] tmp = new byte[len];
+        System.arraycopy(buf, 0, tmp, 0, len);
+        return tmp;
+      }
+      return buf;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the specified resource can be rejected by looking at the raw header data only.
+   * @param entry The resource entry.
+   * @param header Raw header data as returned by {@link #readHeader(ResourceEntry)}.
+   */
+  public boolean isRejected(ResourceEntry entry, byte[] header)
+  {
+    final RawField[] layout = (header != null) ? layouts.get(getLayoutKey(entry, header)) : null;
+    if (layout == null || layout.length == 0) {
+      return false;
+    }
+    for (int i = 0; i < rawFilters.length; i++) {
+      final RawField field = layout[i];
+      if (field != null && field.offset + field.size <= header.length) {
+        final long value = field.read(header);
+        if (value != Long.MIN_VALUE && !filters.get(rawFilters[i]).testRaw((int)value, field.isFlag)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Learns or verifies the header layout of the specified parsed resource.
+   * @param entry The resource entry.
+   * @param header Raw header data as returned by {@link #readHeader(ResourceEntry)}.
+   * @param root The parsed resource.
+   */
+  public void updateLayout(ResourceEntry entry, byte[] header, AbstractStruct root)
+  {
+    if (header == null || header.length < 8 || root == null) {
+      return;
+    }
+
+    final String key = getLayoutKey(entry, header);
+    final RawField[] layout = layouts.get(key);
+    if (layout == null) {
+      // determining end of fixed header data
+      int headerEnd = root.getSize();
+      for (final StructEntry se : root.getFields()) {
+        if (se instanceof AbstractStruct) {
+          headerEnd = Math.min(headerEnd, se.getOffset());
+        }
+      }
+      final RawField[] newLayout = new RawField[rawFilters.length];
+      for (int i = 0; i < rawFilters.length; i++) {
+        final int offset = filters.get(rawFilters[i]).options.getSearchOffset();
+        newLayout[i] = RawField.create(root, offset, headerEnd, header);
+      }
+      layouts.putIfAbsent(key, newLayout);
+    } else if (layout.length > 0) {
+      // layout must be consistent across all resources of the same signature
+      for (int i = 0; i < rawFilters.length; i++) {
+        if (layout[i] != null && !layout[i].verify(root, header)) {
+          layouts.put(key, new RawField[0]);
+          break;
+        }
+      }
+    }
+  }
+
+  private static String getLayoutKey(ResourceEntry entry, byte[] header)
+  {
+    final int len = Math.min(8, header.length);
+    return entry.getExtension() + ':' + new String(header, 0, len, StandardCharsets.ISO_8859_1);
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Precompiled representation of a single {@link SearchOptions} instance. */
+  public static final class Filter
+  {
+    private final SearchOptions options;
+    private final Pattern[] structurePatterns;
+    private final Pattern namePattern;
+    private final Pattern textPattern;
+    private final boolean textIsNumber;
+    private final int textNumber;
+    private final String resourceName;
+
+    private Filter(SearchOptions so)
+    {
+      options = so;
+
+      final List<String> structure = so.getStructure();
+      structurePatterns = new Pattern[structure.size()];
+      for (int i = 0; i < structurePatterns.length; i++) {
+        if (so.isStructureRegex()) {
+          structurePatterns[i] = Pattern.compile(structure.get(i), Pattern.CASE_INSENSITIVE);
+        } else {
+          structurePatterns[i] = Pattern.compile(Pattern.quote(structure.get(i)) + "(\\s*[0-9]+)?", Pattern.CASE_INSENSITIVE);
+        }
+      }
+
+      if (so.getSearchType() == SearchOptions.FieldMode.ByName) {
+        final int flags = so.isSearchNameCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
+        final String name = so.getSearchName();
+        namePattern = Pattern.compile(so.isSearchNameRegex() ? name : Pattern.quote(name), flags);
+      } else {
+        namePattern = null;
+      }
+
+      if (so.getValueType() == SearchOptions.ValueType.Text) {
+        final String text = so.getValueText();
+        final int flags = so.isValueTextCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
+        textPattern = Pattern.compile(so.isValueTextRegex() ? text : Pattern.quote(text), flags);
+
+        // check numeric values as well
+        boolean isNumber = false;
+        int number = 0;
+        try {
+          if (text.trim().startsWith("0x") || text.trim().startsWith("0X"))
+            number = Integer.parseInt(text.trim().substring(2), 16);
+          else if (text.trim().endsWith("h"))
+            number = Integer.parseInt(text.trim().substring(0, text.length() - 1).trim(), 16);
+          else
+            number = Integer.parseInt(text.trim());
+          isNumber = true;
+        } catch (NumberFormatException e) {
+        }
+        textIsNumber = isNumber;
+        textNumber = number;
+      } else {
+        textPattern = null;
+        textIsNumber = false;
+        textNumber = 0;
+      }
+
+      if (so.getValueType() == SearchOptions.ValueType.Resource) {
+        final String resref = so.getValueResourceRef();
+        resourceName = resref.isEmpty() ? "" : resref + "." + so.getValueResourceType();
+      } else {
+        resourceName = null;
+      }
+    }
+
+    /** Returns the source search options. */
+    public SearchOptions getOptions() { return options; }
+
+    /** Returns the precompiled pattern for the structure path element at the specified level. */
+    public Pattern getStructurePattern(int level) { return structurePatterns[level]; }
+
+    /** Returns the number of structure path elements. */
+    public int getStructureLevels() { return structurePatterns.length; }
+
+    /** Returns whether the specified field name matches the field name filter. */
+    public boolean isNameMatch(String name)
+    {
+      return namePattern != null && namePattern.matcher(name).find();
+    }
+
+    /** Matches the value of the specified field against the filter. Takes inverted matches into account. */
+    public boolean test(StructEntry se)
+    {
+      boolean retVal = false;
+      switch (options.getValueType()) {
+        case Text:
+          retVal = isMatchText(se);
+          break;
+        case Number:
+          retVal = isMatchNumber(se);
+          break;
+        case Resource:
+          retVal = isMatchResource(se);
+          break;
+        case Bitfield:
+          retVal = (se instanceof Flag) && isMatchBitfield(((Flag)se).getValue());
+          break;
+      }
+      return options.isInvertMatch() ? !retVal : retVal;
+    }
+
+    /** Matches a raw numeric value against the filter. Takes inverted matches into account. */
+    private boolean testRaw(int value, boolean isFlag)
+    {
+      boolean retVal = false;
+      if (options.getValueType() == SearchOptions.ValueType.Number) {
+        retVal = (value >= options.getValueNumberMin() && value <= options.getValueNumberMax());
+      } else if (options.getValueType() == SearchOptions.ValueType.Bitfield) {
+        retVal = isFlag && isMatchBitfield(value);
+      }
+      return options.isInvertMatch() ? !retVal : retVal;
+    }
+
+    /** Returns whether the filter can be evaluated against raw resource data. */
+    private boolean isRawCandidate()
+    {
+      return options.getSearchType() == SearchOptions.FieldMode.ByAbsoluteOffset &&
+             (options.getValueType() == SearchOptions.ValueType.Number ||
+              options.getValueType() == SearchOptions.ValueType.Bitfield);
+    }
+
+    /** Returns a rough estimate of the evaluation cost. */
+    private int getCost()
+    {
+      int cost;
+      switch (options.getSearchType()) {
+        case ByAbsoluteOffset:
+          cost = 0;
+          break;
+        case ByRelativeOffset:
+          cost = 2;
+          break;
+        default:
+          cost = 4;
+      }
+      if (options.isStructureRecursive()) {
+        cost++;
+      }
+      if (options.getValueType() == SearchOptions.ValueType.Text) {
+        cost += 2;
+      }
+      return cost;
+    }
+
+    // Match value textually
+    private boolean isMatchText(StructEntry se)
+    {
+      if (se instanceof IsTextual) {
+        if (textPattern.matcher(((IsTextual)se).getText()).find())
+          return true;
+      }
+
+      if (se instanceof IsReference) {
+        String resName = ((IsReference)se).getResourceName();
+        if (resName.equalsIgnoreCase("None"))
+          resName = "";
+        if (textPattern.matcher(resName).find())
+          return true;
+        ResourceEntry resEntry = ResourceFactory.getResourceEntry(resName);
+        if (resEntry != null) {
+          String searchName = resEntry.getSearchString();
+          if (searchName != null && textPattern.matcher(searchName).find())
+            return true;
+        }
+      }
+
+      if (se instanceof IsNumeric && textIsNumber) {
+        if (((IsNumeric)se).getValue() == textNumber)
+          return true;
+      }
+
+      // "catch all" check
+      return textPattern.matcher(se.toString()).find();
+    }
+
+    // Match value numerically
+    private boolean isMatchNumber(StructEntry se)
+    {
+      if (se instanceof IsNumeric) {
+        final int value = ((IsNumeric)se).getValue();
+        return (value >= options.getValueNumberMin() && value <= options.getValueNumberMax());
+      }
+      return false;
+    }
+
+    // Match value by resource
+    private boolean isMatchResource(StructEntry se)
+    {
+      if (se instanceof IsReference) {
+        String resName = ((IsReference)se).getResourceName();
+        if (resName.equalsIgnoreCase("None"))
+          resName = "";
+        return resourceName.equalsIgnoreCase(resName);
+      }
+      return false;
+    }
+
+    // Match value as bitfield
+    private boolean isMatchBitfield(int bits)
+    {
+      final int value = options.getValueBitfield();
+      switch (options.getBitfieldMode()) {
+        case Exact:
+          return bits == value;
+        case And:
+          return (bits & value) == value;
+        case Or:
+          return (bits & value) != 0;
+        case Xor:
+          return Integer.bitCount(bits & value) == 1;
+      }
+      return false;
+    }
+  }
+
+  /** Location and encoding of a numeric header field in the raw resource data. */
+  private static final class RawField
+  {
+    private final Class<? extends StructEntry> type;
+    private final int offset;
+    private final int size;
+    private final boolean isFlag;
+    /** 0: unknown, 1: unsigned, -1: signed */
+    private final int signedness;
+
+    private RawField(Class<? extends StructEntry> type, int offset, int size, boolean isFlag, int signedness)
+    {
+      this.type = type;
+      this.offset = offset;
+      this.size = size;
+      this.isFlag = isFlag;
+      this.signedness = signedness;
+    }
+
+    /**
+     * Creates a raw field definition if the field at the specified offset is a plain numeric
+     * field of the fixed resource header. Returns {@code null} otherwise.
+     */
+    private static RawField create(AbstractStruct root, int offset, int headerEnd, byte[] header)
+    {
+      final StructEntry se = root.getAttribute(offset);
+      if (!(se instanceof IsNumeric) || se instanceof AbstractStruct || se.getParent() != root ||
+          se.getOffset() != offset) {
+        return null;
+      }
+      final int size = se.getSize();
+      if ((size != 1 && size != 2 && size != 4) || offset + size > headerEnd || offset + size > header.length) {
+        return null;
+      }
+
+      final int value = ((IsNumeric)se).getValue();
+      final int unsigned = (int)readUnsigned(header, offset, size);
+      final int signed = (int)readSigned(header, offset, size);
+      int signedness;
+      if (size == 4 || unsigned == signed) {
+        signedness = 0;
+        if (value != unsigned) {
+          return null;
+        }
+      } else if (value == unsigned) {
+        signedness = 1;
+      } else if (value == signed) {
+        signedness = -1;
+      } else {
+        return null;
+      }
+      return new RawField(se.getClass(), offset, size, se instanceof Flag, signedness);
+    }
+
+    /** Returns whether the specified parsed resource conforms to this field definition. */
+    private boolean verify(AbstractStruct root, byte[] header)
+    {
+      final StructEntry se = root.getAttribute(offset);
+      if (se == null || se.getClass() != type || se.getOffset() != offset || se.getSize() != size ||
+          se.getParent() != root || offset + size > header.length) {
+        return false;
+      }
+      final long raw = read(header);
+      return raw == Long.MIN_VALUE || (int)raw == ((IsNumeric)se).getValue();
+    }
+
+    /**
+     * Returns the field value from the raw data. Returns {@code Long.MIN_VALUE} if the value
+     * can't be determined reliably.
+     */
+    private long read(byte[] header)
+    {
+      final long unsigned = readUnsigned(header, offset, size);
+      if (size == 4 || signedness > 0) {
+        return (int)unsigned;
+      } else if (signedness < 0) {
+        return readSigned(header, offset, size);
+      } else {
+        // unknown signedness: only values without sign bit are unambiguous
+        return (unsigned == readSigned(header, offset, size)) ? unsigned : Long.MIN_VALUE;
+      }
+    }
+
+    private static long readUnsigned(byte[] buf, int ofs, int size)
+    {
+      long v = 0;
+      for (int i = size - 1; i >= 0; i--) {
+        v = (v << 8) | (buf[ofs + i] & 0xff);
+      }
+      return v;
+    }
+
+    private static long readSigned(byte[] buf, int ofs, int size)
+    {
+      final long v = readUnsigned(buf, ofs, size);
+      final int shift = 64 - size * 8;
+      return (v << shift) >> shift;
+    }
+  }
+}
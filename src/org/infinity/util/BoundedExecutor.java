@@ -0,0 +1,141 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes tasks in a thread pool while limiting the number of pending tasks.<br>
+ * <br>
+ * {@link #execute(Runnable)} blocks the calling thread as long as the limit is reached and
+ * {@link #awaitCompletion(long, TimeUnit)} blocks until all submitted tasks have finished.
+ * Both operations are based on a single semaphore: each pending task holds one permit, so all
+ * tasks are finished as soon as all permits are available again.<br>
+ * <br>
+ * After {@link #cancel()} has been called, tasks that have not yet started are skipped and running
+ * tasks are interrupted. Running tasks can also poll {@link #isCancelled()} to finish early.
+ */
+public class BoundedExecutor
+{
+  private final ExecutorService executor;
+  private final Semaphore permits;
+  private final int maxPending;
+
+  private volatile boolean cancelled;
+
+  /**
+   * Creates an executor with a pool size depending on the number of available CPU cores.<br>
+   * <br>
+   * <b>numThreads:</b> Number of available CPU cores.<br>
+   * <b>maxPending:</b> 3 x {@code numThreads}.<br>
+   */
+  public BoundedExecutor()
+  {
+    this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 3, false);
+  }
+
+  /**
+   * Creates an executor with the specified parameters.
+   * @param numThreads Max. number of parallel threads to execute. Must be >= 1.
+   * @param maxPending Max. number of tasks which are either running or waiting for execution.
+   *                   Must be >= {@code numThreads}.
+   * @param workStealing Whether a work-stealing pool should be used.
+   */
+  public BoundedExecutor(int numThreads, int maxPending, boolean workStealing)
+  {
+    numThreads = Math.max(1, numThreads);
+    this.maxPending = Math.max(numThreads, maxPending);
+    this.permits = new Semaphore(this.maxPending);
+    this.executor = workStealing ? Executors.newWorkStealingPool(numThreads)
+                                 : Executors.newFixedThreadPool(numThreads);
+  }
+
+  /**
+   * Submits the specified task for execution. Blocks while the max. number of pending tasks
+   * is reached.
+   * @param task The task to execute.
+   * @return {@code true} if the task has been submitted, {@code false} if the executor has been
+   *         cancelled.
+   * @throws InterruptedException if the current thread has been interrupted while waiting.
+   */
+  public boolean execute(Runnable task) throws InterruptedException
+  {
+    if (task == null) {
+      throw new NullPointerException();
+    }
+    if (cancelled) {
+      return false;
+    }
+
+    permits.acquire();
+    try {
+      executor.execute(() -> {
+        try {
+          if (!cancelled) {
+            task.run();
+          }
+        } finally {
+          permits.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      // executor may have been shut down concurrently by cancel()
+      permits.release();
+      if (cancelled) {
+        return false;
+      }
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * Waits until all submitted tasks have finished or the specified time has elapsed.
+   * @param timeout Max. time to wait. Specify a negative value to wait indefinitely.
+   * @param unit Time unit of the {@code timeout} argument.
+   * @return {@code true} if all tasks have finished, {@code false} otherwise.
+   * @throws InterruptedException if the current thread has been interrupted while waiting.
+   */
+  public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    boolean retVal;
+    if (timeout < 0) {
+      permits.acquire(maxPending);
+      retVal = true;
+    } else {
+      retVal = permits.tryAcquire(maxPending, timeout, unit);
+    }
+    if (retVal) {
+      permits.release(maxPending);
+    }
+    return retVal;
+  }
+
+  /**
+   * Cancels execution. Tasks which have not been started yet are skipped, running tasks are
+   * interrupted and no more tasks are accepted.
+   */
+  public void cancel()
+  {
+    cancelled = true;
+    // skipped tasks still hold their permits
+    permits.release(executor.shutdownNow().size());
+  }
+
+  /** Returns whether execution has been cancelled. Can be polled by running tasks. */
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  /** Initiates an orderly shutdown. Previously submitted tasks are still executed. */
+  public void shutdown()
+  {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,346 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import org.infinity.resource.key.ResourceEntry;
+
+/**
+ * Central registry of the resource caches.<br>
+ * <br>
+ * Each cache reports its approximate memory size, number of entries and access statistics, and
+ * declares how entries can be discarded. The total size of all caches is limited by a global
+ * memory budget: when exceeded, entries are discarded from the evictable caches, largest caches
+ * first. Registered caches are cleared when the game is closed and notified about resources
+ * modified by Near Infinity. Resources modified by other applications are detected by caches
+ * through the {@link ResourceStamp} of their entries when the entries are read.
+ */
+public final class CacheManager
+{
+  /** Caches are checked against the budget after this amount of data has been added. */
+  private static final long CHECK_INTERVAL = 1024L * 1024L;
+  /** Min. time between two checks of the same resource stamp, in milliseconds. */
+  static final long STAMP_CHECK_INTERVAL = 1000L;
+
+  private static final List<ManagedCache> caches = new CopyOnWriteArrayList<>();
+  /** Amount of data added since the last budget check. */
+  private static final AtomicLong pendingSize = new AtomicLong();
+
+  private static volatile long budget = getDefaultBudget();
+
+  /** Adds the specified cache to the registry. */
+  public static void register(ManagedCache cache)
+  {
+    if (cache != null && !caches.contains(cache)) {
+      caches.add(cache);
+    }
+  }
+
+  /** Returns an unmodifiable list of all registered caches. */
+  public static List<ManagedCache> getCaches()
+  {
+    return Collections.unmodifiableList(caches);
+  }
+
+  /** Returns the max. total size of all caches, in bytes. */
+  public static long getBudget()
+  {
+    return budget;
+  }
+
+  /** Sets the max. total size of all caches, in bytes. Caches are trimmed immediately if needed. */
+  public static void setBudget(long size)
+  {
+    budget = Math.max(0L, size);
+    enforceBudget();
+  }
+
+  /** Returns the approximate total size of all caches, in bytes. */
+  public static long getTotalSize()
+  {
+    long size = 0L;
+    for (final ManagedCache cache : caches) {
+      size += Math.max(0L, cache.getMemorySize());
+    }
+    return size;
+  }
+
+  /**
+   * Should be called by caches whenever new data has been added. The global budget is enforced
+   * in regular intervals.
+   * @param size Approximate size of the added data, in bytes.
+   */
+  public static void notifyAdded(long size)
+  {
+    if (pendingSize.addAndGet(size) >= CHECK_INTERVAL) {
+      pendingSize.set(0L);
+      enforceBudget();
+    }
+  }
+
+  /** Discards entries from evictable caches until the total size of all caches is within the budget. */
+  public static synchronized void enforceBudget()
+  {
+    long excess = getTotalSize() - budget;
+    if (excess <= 0L) {
+      return;
+    }
+
+    // trimming caches with the largest memory footprint first
+    final List<ManagedCache> list = new ArrayList<>(caches);
+    list.removeIf(c -> c.getPolicy() == Policy.NONE);
+    final List<Map.Entry<ManagedCache, Long>> sizes = new ArrayList<>(list.size());
+    for (final ManagedCache cache : list) {
+      sizes.add(new AbstractMap.SimpleImmutableEntry<>(cache, Long.valueOf(cache.getMemorySize())));
+    }
+    sizes.sort((a, b) -> Long.compare(b.getValue().longValue(), a.getValue().longValue()));
+    for (final Map.Entry<ManagedCache, Long> e : sizes) {
+      if (excess <= 0L) {
+        break;
+      }
+      final ManagedCache cache = e.getKey();
+      if (cache.getPolicy() == Policy.CLEAR) {
+        final long size = Math.max(0L, cache.getMemorySize());
+        final int count = cache.getEntryCount();
+        cache.clear();
+        cache.getStatistics().evicted(count);
+        excess -= size;
+      } else {
+        excess -= cache.evict(excess);
+      }
+    }
+  }
+
+  /** Removes the content of all registered caches. */
+  public static void clearAll()
+  {
+    for (final ManagedCache cache : caches) {
+      cache.clear();
+    }
+    pendingSize.set(0L);
+  }
+
+  /** Notifies all registered caches that the specified resource has been modified. */
+  public static void invalidate(ResourceEntry entry)
+  {
+    if (entry != null) {
+      for (final ManagedCache cache : caches) {
+        cache.invalidate(entry);
+      }
+    }
+  }
+
+  /** Returns a textual overview of size, usage and statistics of all registered caches. */
+  public static String getReport()
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-24s %-6s %8s %12s %10s %10s %9s %10s%n",
+                            "Cache", "Policy", "Entries", "Size (KB)", "Hits", "Misses", "Hit rate", "Evictions"));
+    for (final ManagedCache cache : caches) {
+      final Statistics stats = cache.getStatistics();
+      final long size = cache.getMemorySize();
+      sb.append(String.format(Locale.ENGLISH, "%-24s %-6s %8d %12s %10d %10d %8.1f%% %10d%n",
+                              cache.getName(), cache.getPolicy(), cache.getEntryCount(),
+                              (size >= 0L) ? Long.toString(size / 1024L) : "n/a",
+                              stats.getHits(), stats.getMisses(), stats.getHitRate() * 100.0,
+                              stats.getEvictions()));
+    }
+    sb.append(String.format("Total size: %d KB, budget: %d KB%n", getTotalSize() / 1024L, getBudget() / 1024L));
+    return sb.toString();
+  }
+
+  /**
+   * Discards least recently used entries of the specified map until at least the given amount
+   * of data has been freed.
+   * @param map The cache content. Must support concurrent modification.
+   * @param lastAccess Returns the access stamp of a cache entry.
+   * @param weight Returns the approximate size of a cache entry.
+   * @param size Amount of data to free, in bytes.
+   * @return List of discarded entries.
+   */
+  public static <K, V> List<V> evictLeastRecent(Map<K, V> map, ToLongFunction<V> lastAccess,
+                                               ToLongFunction<V> weight, long size)
+  {
+    // access stamps may change while sorting: using a snapshot
+    final List<Map.Entry<K, Long>> entries = new ArrayList<>(map.size());
+    for (final Map.Entry<K, V> e : map.entrySet()) {
+      entries.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), Long.valueOf(lastAccess.applyAsLong(e.getValue()))));
+    }
+    entries.sort(Map.Entry.comparingByValue());
+
+    final List<V> retVal = new ArrayList<>();
+    for (int i = 0; i < entries.size() && size > 0L; i++) {
+      final K key = entries.get(i).getKey();
+      final V value = map.get(key);
+      if (value != null && map.remove(key, value)) {
+        retVal.add(value);
+        size -= weight.applyAsLong(value);
+      }
+    }
+    return retVal;
+  }
+
+  /** Use 1/4 of the max. available memory for caching. */
+  private static long getDefaultBudget()
+  {
+    final long memSize = Runtime.getRuntime().maxMemory();
+    if (memSize == Long.MAX_VALUE) {
+      return 512L * 1024L * 1024L;
+    } else {
+      return Math.max(memSize / 4L, 64L * 1024L * 1024L);
+    }
+  }
+
+  private CacheManager()
+  {
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Defines how entries of a cache can be discarded to meet the global memory budget. */
+  public enum Policy
+  {
+    /** Least recently used entries are discarded by {@link ManagedCache#evict(long)}. */
+    LRU,
+    /** The whole cache is cleared. */
+    CLEAR,
+    /** Entries can not be discarded. The cache is only cleared when the game is closed. */
+    NONE,
+  }
+
+  /** Interface of caches managed by the {@link CacheManager}. */
+  public interface ManagedCache
+  {
+    /** Returns a short name of the cache. */
+    String getName();
+
+    /** Returns how entries of the cache can be discarded. */
+    Policy getPolicy();
+
+    /** Returns the number of cached entries. */
+    int getEntryCount();
+
+    /** Returns the approximate memory size of all cached entries, in bytes. Returns -1 if unknown. */
+    long getMemorySize();
+
+    /** Returns access statistics of the cache. */
+    Statistics getStatistics();
+
+    /** Removes all entries from the cache. */
+    void clear();
+
+    /**
+     * Discards entries according to the {@link #getPolicy() eviction policy} until the specified
+     * amount of data has been freed or the cache is empty.
+     * @param size Amount of data to free, in bytes.
+     * @return Amount of data actually freed, in bytes.
+     */
+    default long evict(long size)
+    {
+      return 0L;
+    }
+
+    /** Removes data associated with the specified resource. Does nothing by default. */
+    default void invalidate(ResourceEntry entry)
+    {
+    }
+  }
+
+  /** Access statistics of a single cache. */
+  public static final class Statistics
+  {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Records a successful cache lookup. */
+    public void hit() { hits.incrementAndGet(); }
+
+    /** Records a cache lookup that required loading the data. */
+    public void miss() { misses.incrementAndGet(); }
+
+    /** Records the specified number of discarded cache entries. */
+    public void evicted(int count) { evictions.addAndGet(count); }
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    public long getEvictions() { return evictions.get(); }
+
+    /** Returns the ratio of successful lookups in range [0.0, 1.0]. */
+    public double getHitRate()
+    {
+      final long h = hits.get(), total = h + misses.get();
+      return (total > 0L) ? (double)h / total : 0.0;
+    }
+  }
+
+  /**
+   * Remembers the stamp of the resource or file a cache entry has been created from (see
+   * {@link PersistentCache#getStamp(ResourceEntry)}), so that modifications by other applications
+   * can be detected when the cache entry is read. File attributes are checked at most once per
+   * second for each cache entry.
+   */
+  public static final class ResourceStamp
+  {
+    private final ResourceEntry entry;
+    private final Path path;
+    private final long stamp;
+    private volatile long nextCheck;
+
+    /** Determines the current stamp of the specified resource. */
+    public ResourceStamp(ResourceEntry entry)
+    {
+      this(entry, null);
+    }
+
+    /** Determines the current stamp of the specified file. */
+    public ResourceStamp(Path path)
+    {
+      this(null, path);
+    }
+
+    private ResourceStamp(ResourceEntry entry, Path path)
+    {
+      this.entry = entry;
+      this.path = path;
+      this.stamp = getCurrentStamp();
+      this.nextCheck = System.currentTimeMillis() + STAMP_CHECK_INTERVAL;
+    }
+
+    /** Returns the resource entry, or {@code null} if the stamp has been created for a file path. */
+    public ResourceEntry getResourceEntry() { return entry; }
+
+    /** Returns whether the resource has not been modified since the stamp was created. */
+    public boolean isCurrent()
+    {
+      final long time = System.currentTimeMillis();
+      if (time < nextCheck) {
+        return true;
+      }
+      if (getCurrentStamp() != stamp) {
+        return false;
+      }
+      nextCheck = time + STAMP_CHECK_INTERVAL;
+      return true;
+    }
+
+    private long getCurrentStamp()
+    {
+      return (entry != null) ? PersistentCache.getStamp(entry) : PersistentCache.getStamp(path);
+    }
+  }
+}
@@ -4,13 +4,24 @@
 
 package org.infinity.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.infinity.NearInfinity;
@@ -22,19 +33,62 @@
 import org.infinity.resource.key.ResourceEntry;
 
 /**
- * Maintains a list of script names to CRE resource mappings.
+ * Maintains a list of script names to CRE resource mappings.<br>
+ * <br>
+ * Script names are gathered per resource and stored on disk. When a game is opened again only
+ * resources which have been changed since (as determined by {@link PersistentCache#getStamp(ResourceEntry)
+ * resource stamps}) are parsed again. Resources modified by Near Infinity are updated incrementally.
+ * Stamps of all resources are validated in the background when script names are requested, at most
+ * once per {@link #VALIDATE_INTERVAL}, to detect resources modified or removed by other applications.
  */
 public final class CreMapCache
 {
-  private static final Map<String, Set<ResourceEntry>> scriptNamesCre = new HashMap<>();
-  private static final Set<String> scriptNamesAre = new HashSet<>();
-
-  private static boolean initialized = false;
+  private static final String INDEX_FILE = "scriptnames.idx";
+  private static final int INDEX_MAGIC = 0x4e49534e;  // "NISN"
+  private static final int INDEX_VERSION = 1;
+  /** Min. time between two validations of the resource stamps, in milliseconds. */
+  private static final long VALIDATE_INTERVAL = 10000L;
+
+  /** Script names by resource key. */
+  private static final Map<String, Record> records = new ConcurrentHashMap<>();
+
+  /** Script names of CRE resources. Replaced as a whole whenever the records change. */
+  private static volatile Map<String, Set<ResourceEntry>> scriptNamesCre = Collections.emptyMap();
+  /** Script names of ARE resources. Replaced as a whole whenever the records change. */
+  private static volatile Set<String> scriptNamesAre = Collections.emptySet();
+
+  private static volatile boolean initialized = false;
+  private static volatile boolean dirty = false;
+  /** Released when the pending initialization has finished. {@code null} if no initialization is pending. */
+  private static volatile CountDownLatch pending;
+  /** Incremented whenever the cache is discarded. Used to detect outdated background tasks. */
+  private static volatile int generation;
+  /** Time of the next validation of resource stamps. */
+  private static volatile long nextValidation;
+  private static Thread validator;
+
+  static {
+    CacheManager.register(new Managed());
+  }
 
+  /**
+   * Updates the script names of the specified resource. Should be called whenever the content
+   * of the resource has been changed.
+   */
   public static void creInvalid(ResourceEntry entry)
   {
-    if (entry != null) {
-      scriptNamesCre.remove(normalized(entry.getResourceName()));
+    if (entry != null && isIndexed(entry)) {
+      final int gen = generation;
+      final String key = key(entry);
+      records.remove(key);
+      dirty = true;
+      if (isInitialized()) {
+        final Record record = createRecord(entry);
+        if (record != null) {
+          putRecord(gen, key, record);
+        }
+        publish();
+      }
     }
   }
 
@@ -45,21 +99,39 @@ public static void init()
     }
   }
 
+  /** Writes pending changes to disk and removes all script names from memory. */
   public static void clearCache()
   {
-    if (isInitialized()) {
-      scriptNamesCre.clear();
-      scriptNamesAre.clear();
-      initialized = false;
-    }
+    discard(true);
   }
 
+  /**
+   * Discards the script names and gathers them again for the current game. Script names of the
+   * previous game are not written to disk, since this method is called after the game has been
+   * switched. Pending changes are written by {@link #clearCache()} before that.
+   */
   public static void reset()
   {
-    clearCache();
+    discard(false);
     init();
   }
 
+  private static void discard(boolean save)
+  {
+    synchronized (CreMapCache.class) {
+      if (save && isInitialized() && dirty) {
+        save();
+      }
+      generation++;
+      initialized = false;
+      dirty = false;
+      pending = null;
+      records.clear();
+      scriptNamesCre = Collections.emptyMap();
+      scriptNamesAre = Collections.emptySet();
+    }
+  }
+
   public static boolean isInitialized()
   {
     return initialized;
@@ -113,15 +185,25 @@ public static Set<String> getCreScriptNames()
     }
   }
 
-  /** Waits until indexing process has finished or time out occurred. */
+  /**
+   * Waits until indexing process has finished or time out occurred. Returns immediately
+   * if no indexing process is pending.
+   */
   private static boolean ensureInitialized(int timeOutMS)
   {
-    long timeOut = (timeOutMS >= 0) ? System.nanoTime() + (timeOutMS * 1000000L) : -1L;
-    while (!isInitialized() &&
-           (timeOut == -1L || System.nanoTime() < timeOut)) {
+    if (isInitialized() && System.currentTimeMillis() >= nextValidation) {
+      validate();
+    }
+    final CountDownLatch latch = pending;
+    if (latch != null && !isInitialized()) {
       try {
-        Thread.sleep(1);
+        if (timeOutMS >= 0) {
+          latch.await(timeOutMS, TimeUnit.MILLISECONDS);
+        } else {
+          latch.await();
+        }
       } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
     }
 
@@ -137,147 +219,365 @@ private static String normalized(String s)
     }
   }
 
-  private static void initialize()
+  /** Returns the key of the specified resource. CHR resources may be located in several extra folders. */
+  private static String key(ResourceEntry entry)
   {
-    if (!isInitialized()) {
-      Runnable worker = new Runnable() {
-
-        @Override
-        public void run()
-        {
-          StatusBar statusBar = NearInfinity.getInstance().getStatusBar();
-          String message = "Gathering creature and area names ...";
-          String oldMessage = null;
-          if (statusBar != null) {
-            oldMessage = statusBar.getMessage();
-            statusBar.setMessage(message);
-          }
+    final Path path = "CHR".equalsIgnoreCase(entry.getExtension()) ? entry.getActualPath() : null;
+    return ((path != null) ? path.toString() : entry.getResourceName()).toUpperCase(Locale.ENGLISH);
+  }
 
-          ThreadPoolExecutor executor = Misc.createThreadPool();
-          List<ResourceEntry> files = ResourceFactory.getResources("CRE");
-          // Including CHR resources to reduce number of warnings in IWD/IWD2 if NPC mods are installed
-          files.addAll(ResourceFactory.getResources("CHR", Profile.getProperty(Profile.Key.GET_GAME_EXTRA_FOLDERS)));
-          for (final ResourceEntry entry : files) {
-            if (entry == null) { continue; }
+  private static boolean isIndexed(ResourceEntry entry)
+  {
+    final String ext = entry.getExtension().toUpperCase(Locale.ENGLISH);
+    switch (ext) {
+      case "CRE":
+      case "CHR":
+      case "ARE":
+        return true;
+      case "INI":
+        return entry.getResourceName().length() >= 10;
+      default:
+        return false;
+    }
+  }
 
-            Misc.isQueueReady(executor, true, -1);
-            executor.execute(new CreWorker(entry));
-          }
+  private static void initialize()
+  {
+    synchronized (CreMapCache.class) {
+      if (isInitialized() || pending != null) {
+        return;
+      }
+      final int gen = generation;
+      final CountDownLatch latch = new CountDownLatch(1);
+      pending = latch;
+      final Thread t = new Thread(() -> {
+        try {
+          build(gen);
+        } finally {
+          latch.countDown();
+        }
+      }, "CreMapCache");
+      t.setDaemon(true);
+      t.start();
+    }
+  }
 
-          scriptNamesAre.add("none"); // default script name for many CRE resources
-          for (final ResourceEntry entry : ResourceFactory.getResources("ARE")) {
-            if (entry == null) { continue; }
+  private static void build(int gen)
+  {
+    final StatusBar statusBar = (NearInfinity.getInstance() != null) ? NearInfinity.getInstance().getStatusBar() : null;
+    final String message = "Gathering creature and area names ...";
+    String oldMessage = null;
+    if (statusBar != null) {
+      oldMessage = statusBar.getMessage();
+      statusBar.setMessage(message);
+    }
 
-            Misc.isQueueReady(executor, true, -1);
-            executor.execute(new AreWorker(entry));
-          }
+    final Map<String, Record> stored = load();
+    final List<ResourceEntry> files = new ArrayList<>(ResourceFactory.getResources("CRE"));
+    // Including CHR resources to reduce number of warnings in IWD/IWD2 if NPC mods are installed
+    files.addAll(ResourceFactory.getResources("CHR", Profile.getProperty(Profile.Key.GET_GAME_EXTRA_FOLDERS)));
+    files.addAll(ResourceFactory.getResources("ARE"));
+    files.addAll(ResourceFactory.getResources("INI"));
+
+    boolean changed = false;
+    final BoundedExecutor executor = new BoundedExecutor();
+    try {
+      for (final ResourceEntry entry : files) {
+        if (entry == null || !isIndexed(entry)) { continue; }
+        if (gen != generation) {
+          executor.cancel();
+          return;
+        }
 
-          for (final ResourceEntry entry : ResourceFactory.getResources("INI")) {
-            if (entry == null) { continue; }
+        final String key = key(entry);
+        final long stamp = PersistentCache.getStamp(entry);
+        final Record record = stored.get(key);
+        if (record != null && stamp != 0L && record.stamp == stamp) {
+          putRecord(gen, key, new Record(entry, record.stamp, record.names));
+        } else {
+          executor.execute(() -> {
+            final Record r = createRecord(entry);
+            if (r != null) {
+              putRecord(gen, key, r);
+            }
+          });
+          changed = true;
+        }
+      }
+      executor.awaitCompletion(-1, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      return;
+    } finally {
+      executor.shutdown();
+      if (statusBar != null && statusBar.getMessage().startsWith(message)) {
+        statusBar.setMessage(oldMessage);
+      }
+    }
 
-            Misc.isQueueReady(executor, true, -1);
-            executor.execute(new IniWorker(entry));
-          }
+    synchronized (CreMapCache.class) {
+      if (gen == generation) {
+        publish();
+        initialized = true;
+        nextValidation = System.currentTimeMillis() + VALIDATE_INTERVAL;
+        if (changed || dirty || stored.size() != records.size()) {
+          save();
+        }
+      }
+    }
+  }
 
-          executor.shutdown();
-          try {
-            executor.awaitTermination(60, TimeUnit.SECONDS);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
+  /**
+   * Checks the stamps of all resources in a background thread and updates the script names of
+   * resources modified by other applications. Script names of removed resources are discarded.
+   */
+  private static void validate()
+  {
+    synchronized (CreMapCache.class) {
+      if (validator != null) {
+        return;
+      }
+      final int gen = generation;
+      validator = new Thread(() -> {
+        try {
+          boolean changed = false;
+          for (final Record record : new ArrayList<>(records.values())) {
+            if (gen != generation) {
+              break;
+            }
+            if (record.entry == null) {
+              continue;
+            }
+            final long stamp = PersistentCache.getStamp(record.entry);
+            if (stamp != record.stamp) {
+              final String key = key(record.entry);
+              ResourceEntry entry = record.entry;
+              if (stamp == 0L) {
+                // resource has been removed: using remaining version of the resource, if any
+                entry = "CHR".equalsIgnoreCase(entry.getExtension()) ?
+                        null : ResourceFactory.getResourceEntry(entry.getResourceName());
+                if (entry == record.entry || PersistentCache.getStamp(entry) == 0L) {
+                  entry = null;
+                }
+              }
+              if (entry == null) {
+                removeRecord(gen, key, record);
+                dirty = true;
+                changed = true;
+              } else {
+                final Record r = createRecord(entry);
+                if (r != null) {
+                  putRecord(gen, key, r);
+                  dirty = true;
+                  changed = true;
+                }
+              }
+            }
           }
-
-          if (statusBar != null && statusBar.getMessage().startsWith(message)) {
-            statusBar.setMessage(oldMessage);
+          if (changed && gen == generation) {
+            publish();
+          }
+        } finally {
+          synchronized (CreMapCache.class) {
+            validator = null;
+            nextValidation = System.currentTimeMillis() + VALIDATE_INTERVAL;
           }
-
-          initialized = true;
         }
-      };
-      new Thread(worker).start();
+      }, "CreMapCache");
+      validator.setDaemon(true);
+      validator.setPriority(Thread.MIN_PRIORITY);
+      validator.start();
     }
   }
 
-//-------------------------- INNER CLASSES --------------------------
+  /** Adds the specified record unless the cache has been discarded in the meantime. */
+  private static synchronized void putRecord(int gen, String key, Record record)
+  {
+    if (gen == generation) {
+      records.put(key, record);
+    }
+  }
 
-  private static final class CreWorker implements Runnable
+  /** Removes the specified record unless the cache has been discarded or the record has been replaced in the meantime. */
+  private static synchronized void removeRecord(int gen, String key, Record record)
   {
-    final ResourceEntry entry;
+    if (gen == generation) {
+      records.remove(key, record);
+    }
+  }
 
-    public CreWorker(ResourceEntry entry)
-    {
-      this.entry = entry;
+  /** Rebuilds the script name maps from the current records. */
+  private static synchronized void publish()
+  {
+    final Map<String, Set<ResourceEntry>> cre = new HashMap<>();
+    final Set<String> are = new HashSet<>();
+    are.add("none"); // default script name for many CRE resources
+    for (final Record record : records.values()) {
+      final ResourceEntry entry = record.entry;
+      final String ext = entry.getExtension();
+      if ("CRE".equalsIgnoreCase(ext) || "CHR".equalsIgnoreCase(ext)) {
+        for (final String name : record.names) {
+          cre.computeIfAbsent(name, k -> new HashSet<>()).add(entry);
+        }
+      } else if ("ARE".equalsIgnoreCase(ext) ||
+                 ResourceFactory.resourceExists(entry.getResourceName().replace(".INI", ".ARE"))) {
+        Collections.addAll(are, record.names);
+      }
     }
+    scriptNamesCre = cre;
+    scriptNamesAre = are;
+  }
 
-    @Override
-    public void run()
-    {
-      try {
-        CreResource.addScriptName(scriptNamesCre, entry);
-      } catch (Exception e) {
-        synchronized (System.err) {
-          e.printStackTrace();
+  /** Gathers script names of the specified resource. Returns {@code null} on error. */
+  private static Record createRecord(ResourceEntry entry)
+  {
+    final long stamp = PersistentCache.getStamp(entry);
+    final Set<String> names = new HashSet<>();
+    try {
+      final String ext = entry.getExtension().toUpperCase(Locale.ENGLISH);
+      if ("CRE".equals(ext) || "CHR".equals(ext)) {
+        final Map<String, Set<ResourceEntry>> map = new HashMap<>();
+        CreResource.addScriptName(map, entry);
+        names.addAll(map.keySet());
+      } else if ("ARE".equals(ext)) {
+        AreResource.addScriptNames(names, entry.getResourceBuffer());
+      } else if ("INI".equals(ext)) {
+        final IniMap ini = IniMapCache.get(entry);
+        if (ini != null) {
+          for (final IniMapSection section : ini) {
+            final IniMapEntry mapEntry = section.getEntry("script_name");
+            if (mapEntry != null) {
+              final String s = normalized(mapEntry.getValue());
+              if (!s.isEmpty() && s.charAt(0) != '[') {
+                names.add(s);
+              }
+            }
+          }
         }
       }
+    } catch (Exception e) {
+      synchronized (System.err) {
+        e.printStackTrace();
+      }
+      return null;
     }
+    return new Record(entry, stamp, names.toArray(new String[names.size()]));
   }
 
-  private static final class AreWorker implements Runnable
+  /** Loads the stored script names of the current game. Returns an empty map on error. */
+  private static Map<String, Record> load()
   {
-    final ResourceEntry entry;
+    final Map<String, Record> retVal = new HashMap<>();
+    final Path file = PersistentCache.getFile(INDEX_FILE);
+    if (file == null || !Files.isRegularFile(file)) {
+      return retVal;
+    }
 
-    public AreWorker(ResourceEntry entry)
-    {
-      this.entry = entry;
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (dis.readInt() != INDEX_MAGIC || dis.readInt() != INDEX_VERSION) {
+        return retVal;
+      }
+      for (int i = 0, count = dis.readInt(); i < count; i++) {
+        final String key = dis.readUTF();
+        final long stamp = dis.readLong();
+        final String[] names = new String[dis.readInt()];
+        for (int j = 0; j < names.length; j++) {
+          names[j] = dis.readUTF();
+        }
+        retVal.put(key, new Record(null, stamp, names));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      retVal.clear();
     }
+    return retVal;
+  }
 
-    @Override
-    public void run()
-    {
-      try {
-        AreResource.addScriptNames(scriptNamesAre, entry.getResourceBuffer());
-      } catch (Exception e) {
-        synchronized (System.err) {
-          e.printStackTrace();
+  /** Writes the current script names to disk. */
+  private static void save()
+  {
+    final Path file = PersistentCache.getFile(INDEX_FILE);
+    if (file == null) {
+      return;
+    }
+
+    final Path tmpFile = file.resolveSibling(INDEX_FILE + ".tmp");
+    try {
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        final Map<String, Record> snapshot = new HashMap<>(records);
+        dos.writeInt(INDEX_MAGIC);
+        dos.writeInt(INDEX_VERSION);
+        dos.writeInt(snapshot.size());
+        for (final Map.Entry<String, Record> e : snapshot.entrySet()) {
+          dos.writeUTF(e.getKey());
+          dos.writeLong(e.getValue().stamp);
+          dos.writeInt(e.getValue().names.length);
+          for (final String name : e.getValue().names) {
+            dos.writeUTF(name);
+          }
         }
       }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+      dirty = false;
+    } catch (IOException e) {
+      e.printStackTrace();
     }
   }
 
-  private static final class IniWorker implements Runnable
+  private CreMapCache()
+  {
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Script names defined by a single resource. */
+  private static final class Record
   {
-    final ResourceEntry entry;
+    /** The resource. Not available for records loaded from disk. */
+    private final ResourceEntry entry;
+    private final long stamp;
+    /** Normalized script names. */
+    private final String[] names;
 
-    public IniWorker(ResourceEntry entry)
+    public Record(ResourceEntry entry, long stamp, String[] names)
     {
       this.entry = entry;
+      this.stamp = stamp;
+      this.names = names;
     }
+  }
+
+  /** Script names can not be discarded individually. Resources are updated by {@link #creInvalid(ResourceEntry)}. */
+  private static final class Managed implements CacheManager.ManagedCache
+  {
+    private final CacheManager.Statistics stats = new CacheManager.Statistics();
+
+    @Override
+    public String getName() { return "Script names"; }
 
     @Override
-    public void run()
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.NONE; }
+
+    @Override
+    public int getEntryCount() { return records.size(); }
+
+    @Override
+    public long getMemorySize()
     {
-      try {
-        final String name = entry.getResourceName();
-        if (name.length() >= 10 && ResourceFactory.resourceExists(name.replace(".INI", ".ARE"))) {
-          final IniMap ini = IniMapCache.get(entry);
-          if (ini != null) {
-            for (final IniMapSection section : ini) {
-              final IniMapEntry mapEntry = section.getEntry("script_name");
-              if (mapEntry != null) {
-                final String s = normalized(mapEntry.getValue());
-                if (!s.isEmpty() && s.charAt(0) != '[') {
-                  synchronized (scriptNamesAre) {
-                    scriptNamesAre.add(s);
-                  }
-                }
-              }
-            }
-          }
-        }
-      } catch (Exception e) {
-        synchronized (System.err) {
-          e.printStackTrace();
+      long size = 0L;
+      for (final Record record : records.values()) {
+        size += 48L;
+        for (final String name : record.names) {
+          size += 40L + name.length() * 2L;
         }
       }
+      return size;
     }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return stats; }
+
+    @Override
+    public void clear() { clearCache(); }
   }
 }
@@ -23,7 +23,10 @@
 public class IdsMap
 {
   private final TreeMap<Long, IdsMapEntry> idsMap = new TreeMap<>();
-  private final HashMap<String, Long> symbolMap = new HashMap<>();
+  /** Maps case-folded symbols to entries. */
+  private final HashMap<String, IdsMapEntry> symbolMap = new HashMap<>();
+  /** Maps symbols to entries. */
+  private final HashMap<String, IdsMapEntry> exactSymbolMap = new HashMap<>();
   private final ResourceEntry entry;
   private final boolean caseSensitive;
 
@@ -95,24 +98,14 @@ public IdsMapEntry lookup(String symbol)
    */
   public IdsMapEntry lookup(String symbol, boolean exact)
   {
+    if (exact) {
+      return (symbol != null && !symbol.equals("0")) ? exactSymbolMap.get(symbol) : null;
+    }
     final String symbolNorm = normalizedString(symbol);
     if (symbolNorm.isEmpty() || symbolNorm.equals("0")) {
       return null;
     }
-    final Long key = symbolMap.get(symbolNorm);
-    if (key == null) {
-      return null;
-    }
-    final IdsMapEntry e = idsMap.get(key);
-    if (exact && e != null) {
-      for (String s : e) {
-        if (s.equals(symbol)) {
-          return e;
-        }
-      }
-      return null;
-    }
-    return e;
+    return symbolMap.get(symbolNorm);
   }
 
   private void parse2DA() throws Exception
@@ -207,14 +200,16 @@ private void extractIDS(String line)
       }
       if (!vstr.isEmpty()) {
         final long key = normalizedKey(Long.parseLong(istr, radix));
-        final IdsMapEntry value = idsMap.get(key);
+        IdsMapEntry value = idsMap.get(key);
         if (value == null) {
-          idsMap.put(key, new IdsMapEntry(key, vstr));
+          value = new IdsMapEntry(key, vstr);
+          idsMap.put(key, value);
         } else {
           value.addSymbol(vstr);
         }
 
-        symbolMap.put(normalizedString(vstr), Long.valueOf(key));
+        symbolMap.put(normalizedString(vstr), value);
+        exactSymbolMap.put(vstr, value);
       }
     }
   }
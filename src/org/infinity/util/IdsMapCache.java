@@ -6,9 +6,10 @@
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.bcs.ScriptInfo;
@@ -16,8 +17,19 @@
 
 public class IdsMapCache
 {
-  /** Maps upper-cased name of IDS resource to parsed resource. */
-  private static final Map<String, IdsMap> CACHE = new HashMap<>();
+  /**
+   * Maps upper-cased name of IDS resource to parsed resource. Each resource is loaded by the first
+   * thread requesting it, while requests for other resources can proceed without locking.
+   * Missing resources are remembered until they are invalidated or the cache is cleared.
+   */
+  private static final ConcurrentHashMap<String, Loader> CACHE = new ConcurrentHashMap<>();
+  /** Provides access stamps for cached resources. */
+  private static final AtomicLong CLOCK = new AtomicLong();
+  private static final CacheManager.Statistics STATS = new CacheManager.Statistics();
+
+  static {
+    CacheManager.register(new Managed());
+  }
 
   public static void remove(ResourceEntry entry)
   {
@@ -31,26 +43,20 @@ public static void clearCache()
     CACHE.clear();
   }
 
-  public static synchronized IdsMap get(String name)
+  public static IdsMap get(String name)
   {
     IdsMap retVal = null;
     if (name != null) {
       name = name.trim().toUpperCase(Locale.ENGLISH);
-      retVal = CACHE.get(name);
-      if (retVal == null) {
-        ResourceEntry entry = ResourceFactory.getResourceEntry(name);
-        if (entry == null ) {
-          if (name.equals("ATTSTYLE.IDS")) {
-            entry = ResourceFactory.getResourceEntry("ATTSTYL.IDS");
-          } else {
-            System.err.println("Could not find " + name);
-          }
-        }
-        if (entry != null) {
-          retVal = new IdsMap(entry);
-          CACHE.put(name, retVal);
-        }
+      Loader loader = CACHE.computeIfAbsent(name, Loader::new);
+      if (!loader.isCurrent()) {
+        // resource has been modified by another application
+        CACHE.remove(name, loader);
+        CacheManager.invalidate(loader.stamp.getResourceEntry());
+        loader = CACHE.computeIfAbsent(name, Loader::new);
       }
+      retVal = loader.get();
+      loader.lastAccess = CLOCK.incrementAndGet();
     }
     return retVal;
   }
@@ -258,4 +264,115 @@ private static String prettifyName(String name)
     retVal = Character.toUpperCase(retVal.charAt(0)) + retVal.substring(1);
     return retVal;
   }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Loads a single IDS resource on first request. */
+  private static final class Loader
+  {
+    private final String name;
+    private volatile IdsMap map;
+    private volatile CacheManager.ResourceStamp stamp;
+    private volatile long lastAccess;
+    /** Whether loading has been attempted. The map remains {@code null} if the resource is not available. */
+    private volatile boolean loaded;
+
+    public Loader(String name)
+    {
+      this.name = name;
+    }
+
+    public IdsMap get()
+    {
+      if (loaded) {
+        STATS.hit();
+        return map;
+      }
+      synchronized (this) {
+        if (loaded) {
+          STATS.hit();
+        } else {
+          STATS.miss();
+          ResourceEntry entry = ResourceFactory.getResourceEntry(name);
+          if (entry == null ) {
+            if (name.equals("ATTSTYLE.IDS")) {
+              entry = ResourceFactory.getResourceEntry("ATTSTYL.IDS");
+            } else {
+              // reported only once until the resource is invalidated
+              System.err.println("Could not find " + name);
+            }
+          }
+          if (entry != null) {
+            stamp = new CacheManager.ResourceStamp(entry);
+            map = new IdsMap(entry);
+            CacheManager.notifyAdded(getMemorySize());
+          }
+          loaded = true;
+        }
+        return map;
+      }
+    }
+
+    /** Returns whether the loaded IDS resource has not been modified since it was loaded. */
+    public boolean isCurrent()
+    {
+      final CacheManager.ResourceStamp s = stamp;
+      return (s == null || s.isCurrent());
+    }
+
+    /** Returns the approximate memory size of the IDS map, including symbol tables. */
+    public long getMemorySize()
+    {
+      final IdsMap m = map;
+      return (m != null) ? 256L + m.size() * 192L : 0L;
+    }
+  }
+
+  private static final class Managed implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "IDS maps"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount() { return CACHE.size(); }
+
+    @Override
+    public long getMemorySize()
+    {
+      long size = 0L;
+      for (final Loader loader : CACHE.values()) {
+        size += loader.getMemorySize();
+      }
+      return size;
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return STATS; }
+
+    @Override
+    public void clear() { clearCache(); }
+
+    @Override
+    public long evict(long size)
+    {
+      final List<Loader> loaders = CacheManager.evictLeastRecent(CACHE, l -> l.lastAccess, Loader::getMemorySize, size);
+      long freed = 0L;
+      for (final Loader loader : loaders) {
+        freed += loader.getMemorySize();
+      }
+      STATS.evicted(loaders.size());
+      return freed;
+    }
+
+    @Override
+    public void invalidate(ResourceEntry entry)
+    {
+      if (entry != null && "IDS".equalsIgnoreCase(entry.getExtension())) {
+        remove(entry);
+      }
+    }
+  }
 }
@@ -4,7 +4,8 @@
 
 package org.infinity.util;
 
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 
 import org.infinity.resource.ResourceFactory;
@@ -12,18 +13,29 @@
 
 public class IniMapCache
 {
-  private static final HashMap<ResourceEntry, IniMap> map = new HashMap<ResourceEntry, IniMap>();
+  /** Cached INI resources in access order. */
+  private static final LinkedHashMap<ResourceEntry, Item> map = new LinkedHashMap<>(16, 0.75f, true);
+  private static final CacheManager.Statistics stats = new CacheManager.Statistics();
+  private static long totalSize;
 
-  public static void cacheInvalid(ResourceEntry entry)
+  static {
+    CacheManager.register(new Managed());
+  }
+
+  public static synchronized void cacheInvalid(ResourceEntry entry)
   {
     if (entry != null) {
-      map.remove(entry);
+      final Item item = map.remove(entry);
+      if (item != null) {
+        totalSize -= item.size;
+      }
     }
   }
 
-  public static void clearCache()
+  public static synchronized void clearCache()
   {
     map.clear();
+    totalSize = 0L;
   }
 
   public static IniMap get(String name)
@@ -46,23 +58,122 @@ public static IniMap get(String name, boolean ignoreComments)
     return retVal;
   }
 
-  public static synchronized IniMap get(ResourceEntry entry)
+  public static IniMap get(ResourceEntry entry)
   {
     return get(entry, false);
   }
 
-  public static synchronized IniMap get(ResourceEntry entry, boolean ignoreComments)
+  public static IniMap get(ResourceEntry entry, boolean ignoreComments)
   {
     IniMap retVal = null;
     if (entry != null) {
-      retVal = map.get(entry);
-      if (retVal == null) {
-        retVal = new IniMap(entry, ignoreComments);
-        map.put(entry, retVal);
+      Item item;
+      synchronized (IniMapCache.class) {
+        item = map.get(entry);
+      }
+      if (item != null && !item.stamp.isCurrent()) {
+        // resource has been modified by another application
+        CacheManager.invalidate(entry);
+      }
+
+      long size = 0L;
+      synchronized (IniMapCache.class) {
+        item = map.get(entry);
+        if (item != null) {
+          stats.hit();
+        } else {
+          stats.miss();
+          final CacheManager.ResourceStamp stamp = new CacheManager.ResourceStamp(entry);
+          item = new Item(new IniMap(entry, ignoreComments), stamp);
+          map.put(entry, item);
+          totalSize += item.size;
+          size = item.size;
+        }
+        retVal = item.ini;
+      }
+      if (size > 0L) {
+        CacheManager.notifyAdded(size);
       }
     }
     return retVal;
   }
 
+  /** Discards least recently used INI resources until the specified amount of data has been freed. */
+  private static synchronized long evict(long size)
+  {
+    long freed = 0L;
+    int count = 0;
+    for (final Iterator<Item> iter = map.values().iterator(); iter.hasNext() && freed < size; ) {
+      freed += iter.next().size;
+      iter.remove();
+      count++;
+    }
+    totalSize -= freed;
+    stats.evicted(count);
+    return freed;
+  }
+
   private IniMapCache() {}
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private static final class Item
+  {
+    private final IniMap ini;
+    private final CacheManager.ResourceStamp stamp;
+    private final long size;
+
+    public Item(IniMap ini, CacheManager.ResourceStamp stamp)
+    {
+      this.ini = ini;
+      this.stamp = stamp;
+      long size = 64L;
+      for (final IniMapSection section : ini) {
+        size += 64L + ((section.getName() != null) ? section.getName().length() * 2L : 0L);
+        for (final IniMapEntry entry : section) {
+          size += 72L;
+          size += (entry.getKey() != null) ? entry.getKey().length() * 2L : 0L;
+          size += (entry.getValue() != null) ? entry.getValue().length() * 2L : 0L;
+        }
+      }
+      this.size = size;
+    }
+  }
+
+  private static final class Managed implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "INI resources"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (IniMapCache.class) {
+        return map.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      synchronized (IniMapCache.class) {
+        return totalSize;
+      }
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return stats; }
+
+    @Override
+    public void clear() { clearCache(); }
+
+    @Override
+    public long evict(long size) { return IniMapCache.evict(size); }
+
+    @Override
+    public void invalidate(ResourceEntry entry) { cacheInvalid(entry); }
+  }
 }
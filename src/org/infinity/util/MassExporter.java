@@ -6,14 +6,13 @@
 
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
-import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.RenderedImage;
 import java.io.BufferedWriter;
 import java.io.EOFException;
@@ -28,7 +27,7 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.imageio.ImageIO;
 import javax.swing.JButton;
@@ -54,7 +53,7 @@
 import org.infinity.resource.Profile;
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.StructEntry;
-import org.infinity.resource.bcs.Decompiler;
+import org.infinity.resource.bcs.ScriptCache;
 import org.infinity.resource.cre.CreResource;
 import org.infinity.resource.graphics.BamDecoder;
 import org.infinity.resource.graphics.BamResource;
@@ -293,8 +292,7 @@ public void run()
       }
 
       // executing multithreaded search
-      boolean isCancelled = false;
-      ThreadPoolExecutor executor = Misc.createThreadPool();
+      BoundedExecutor executor = new BoundedExecutor();
       progress = new ProgressMonitor(NearInfinity.getInstance(), "Exporting...",
                                      String.format(FMT_PROGRESS, getResourceCount(), getResourceCount()),
                                      0, selectedFiles.size());
@@ -303,30 +301,28 @@ public void run()
       progress.setProgress(0);
       progress.setNote(String.format(FMT_PROGRESS, 0, getResourceCount()));
       Debugging.timerReset();
-      for (int i = 0, count = getResourceCount(); i < count; i++) {
-        Misc.isQueueReady(executor, true, -1);
-        executor.execute(new Worker(selectedFiles.get(i)));
-        if (progress.isCanceled()) {
-          isCancelled = true;
-          break;
+      try {
+        for (int i = 0, count = getResourceCount(); i < count; i++) {
+          if (progress.isCanceled()) {
+            executor.cancel();
+            break;
+          }
+          executor.execute(new Worker(selectedFiles.get(i)));
         }
-      }
-
-      // enforcing thread termination if process has been cancelled
-      if (isCancelled) {
-        executor.shutdownNow();
-      } else {
-        executor.shutdown();
-      }
 
-      // waiting for pending threads to terminate
-      while (!executor.isTerminated()) {
-        if (!isCancelled && progress.isCanceled()) {
-          executor.shutdownNow();
-          isCancelled = true;
+        // waiting for pending tasks to finish
+        while (!executor.awaitCompletion(50, TimeUnit.MILLISECONDS)) {
+          if (!executor.isCancelled() && progress.isCanceled()) {
+            executor.cancel();
+          }
         }
-        try { Thread.sleep(1); } catch (InterruptedException e) {}
+      } catch (InterruptedException e) {
+        executor.cancel();
+        Thread.currentThread().interrupt();
+      } finally {
+        executor.shutdown();
       }
+      boolean isCancelled = executor.isCancelled();
 
       if (isCancelled) {
         JOptionPane.showMessageDialog(NearInfinity.getInstance(), "Mass export aborted",
@@ -394,9 +390,8 @@ private void exportDecompiledScript(ResourceEntry entry, Path output) throws Exc
       if (bb.limit() > 1 && bb.getShort(0) == -1) {
         bb = StaticSimpleXorDecryptor.decrypt(bb, 2);
       }
-      Decompiler decompiler = new Decompiler(StreamUtils.readString(bb, bb.limit()), false);
-      decompiler.setGenerateComments(BrowserMenuBar.getInstance().autogenBCSComments());
-      String script = decompiler.getSource();
+      String script = ScriptCache.get(entry, StreamUtils.readString(bb, bb.limit()),
+                                      BrowserMenuBar.getInstance().autogenBCSComments()).getSource();
       // Keep trying. File may be in use by another thread.
       try (BufferedWriter bw = new BufferedWriter(tryOpenOutputWriter(output, 10, 100))) {
         bw.write(script.replaceAll("\r?\n", Misc.LINE_SEPARATOR));
@@ -494,24 +489,14 @@ private void tisToPng(ResourceEntry entry, Path output) throws Exception
           rows++;
         }
 
-        BufferedImage tile = ColorConvert.createCompatibleImage(64, 64, Transparency.BITMASK);
-        BufferedImage image = ColorConvert.createCompatibleImage(64*columns, 64*rows, Transparency.BITMASK);
+        // tiles are decoded directly into the pixel buffer of the image
+        BufferedImage image = new BufferedImage(64*columns, 64*rows, BufferedImage.TYPE_INT_ARGB);
         try {
-          Graphics2D g = image.createGraphics();
-          try {
-            for (int i = 0; i < tileCount; i++) {
-              int x = 64*(i % columns);
-              int y = 64*(i / columns);
-              decoder.getTile(i, tile);
-              g.drawImage(tile, x, y, null);
-            }
-          } finally {
-            g.dispose();
-            g = null;
-          }
+          int[] buffer = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+          decoder.getTileData(0, tileCount, buffer, columns);
+          buffer = null;
           ImageIO.write(image, "png", output.toFile());
         } finally {
-          tile = null;
           image = null;
         }
       } else {
@@ -274,30 +274,6 @@ public static ThreadPoolExecutor createThreadPool(int numThreads, int maxQueueSi
                                   new ArrayBlockingQueue<Runnable>(maxQueueSize));
   }
 
-  /**
-   * Helper routine which can be used to check or block execution of new threads while the
-   * blocking queue is full.
-   * @param executor The executor to query.
-   * @param block Specify {@code true} to block execution as long as the queue is full.
-   * @param maxWaitMs Specify max. time to block queue, in milliseconds. Specify -1 to block indefinitely.
-   * @return {@code true} if queue is ready for new elements, {@code false} otherwise.
-   */
-  public static boolean isQueueReady(ThreadPoolExecutor executor, boolean block, int maxWaitMs)
-  {
-    if (executor != null) {
-      if (block) {
-        if (maxWaitMs < 0) { maxWaitMs = Integer.MAX_VALUE; }
-        int curWaitMs = 0;
-        while (curWaitMs < maxWaitMs && executor.getQueue().size() > executor.getCorePoolSize()) {
-          try { Thread.sleep(1); } catch (InterruptedException e) {}
-          curWaitMs++;
-        }
-      }
-      return executor.getQueue().size() <= executor.getCorePoolSize();
-    }
-    return false;
-  }
-
   /**
    * Returns a prototype dimension object based on the height of {@code c} and the width of (@code prototype}.
    * @param c The component to derive height and properties for calculating width.
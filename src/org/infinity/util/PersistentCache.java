@@ -0,0 +1,129 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+import org.infinity.resource.Profile;
+import org.infinity.resource.key.BIFFResourceEntry;
+import org.infinity.resource.key.ResourceEntry;
+
+/**
+ * Provides common functionality for caches which are stored on disk between sessions.<br>
+ * <br>
+ * Cache files are stored in a separate folder for each game, so that data of different
+ * game installations never collides. Cached per-resource data should be validated by
+ * {@link #getStamp(ResourceEntry) resource stamps}.
+ */
+public final class PersistentCache
+{
+  /** Name of the base folder in the temporary folder of the system. */
+  private static final String CACHE_FOLDER = "NearInfinity";
+
+  /**
+   * Returns the cache folder for the currently opened game. The folder is not guaranteed
+   * to exist.
+   * @return Path to the cache folder. Returns {@code null} if no game is open.
+   */
+  public static Path getFolder()
+  {
+    final Path key = Profile.getChitinKey();
+    if (key == null) {
+      return null;
+    }
+    final String id = key.toAbsolutePath().normalize().toString().toLowerCase(Locale.ENGLISH);
+    return Paths.get(System.getProperty("java.io.tmpdir"), CACHE_FOLDER, "cache",
+                     String.format("%016x", hash64(id)));
+  }
+
+  /**
+   * Returns the path of the specified cache file for the currently opened game and creates
+   * the cache folder if needed.
+   * @param fileName Name of the cache file.
+   * @return Path of the cache file. Returns {@code null} if no game is open or the cache folder
+   *         could not be created.
+   */
+  public static Path getFile(String fileName)
+  {
+    final Path folder = getFolder();
+    if (folder != null) {
+      try {
+        Files.createDirectories(folder);
+        return folder.resolve(fileName);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a value which changes whenever the content of the specified resource may have changed.
+   * It is based on modification time and size of the file containing the resource. Resources
+   * located in BIFF archives additionally include their locator.
+   * @param entry The resource entry.
+   * @return Resource stamp. Returns 0 if the stamp could not be determined.
+   */
+  public static long getStamp(ResourceEntry entry)
+  {
+    if (entry == null) {
+      return 0L;
+    }
+
+    if (entry instanceof BIFFResourceEntry && !entry.hasOverride()) {
+      final BIFFResourceEntry biffEntry = (BIFFResourceEntry)entry;
+      return getStamp(biffEntry.getBIFFEntry().getPath(), biffEntry.getLocator());
+    } else {
+      return getStamp(entry.getActualPath(), 0L);
+    }
+  }
+
+  /**
+   * Returns a value which changes whenever the content of the specified file may have changed.
+   * It is based on modification time and size of the file.
+   * @param path The file path.
+   * @return File stamp. Returns 0 if the stamp could not be determined.
+   */
+  public static long getStamp(Path path)
+  {
+    return getStamp(path, 0L);
+  }
+
+  private static long getStamp(Path path, long extra)
+  {
+    if (path != null) {
+      try {
+        final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+        long stamp = attr.lastModifiedTime().toMillis();
+        stamp = stamp * 31L + attr.size();
+        stamp = stamp * 31L + extra;
+        return (stamp != 0L) ? stamp : 1L;
+      } catch (IOException e) {
+        // file not available
+      }
+    }
+    return 0L;
+  }
+
+  /** Returns a 64-bit FNV-1a hash of the specified string. */
+  private static long hash64(String s)
+  {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0, len = s.length(); i < len; i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  private PersistentCache()
+  {
+  }
+}
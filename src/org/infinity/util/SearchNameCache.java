@@ -0,0 +1,444 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.infinity.NearInfinity;
+import org.infinity.resource.Profile;
+import org.infinity.resource.ResourceFactory;
+import org.infinity.resource.are.AreResource;
+import org.infinity.resource.cre.CreResource;
+import org.infinity.resource.itm.ItmResource;
+import org.infinity.resource.key.ResourceEntry;
+import org.infinity.resource.pro.ProResource;
+import org.infinity.resource.spl.SplResource;
+import org.infinity.resource.sto.StoResource;
+import org.infinity.resource.text.PlainTextResource;
+
+/**
+ * Caches the localized names of resources as returned by {@link ResourceEntry#getSearchString()}.<br>
+ * <br>
+ * Names are gathered by a parallel background pass and stored on disk together with the
+ * {@link PersistentCache#getStamp(ResourceEntry) resource stamp}. Stored names are discarded
+ * if the talk tables have changed. When the game is opened again, only resources which have
+ * been changed since are read again. Names in memory are validated against the resource stamp
+ * on lookup, so that resources modified by other applications are read again.
+ */
+public final class SearchNameCache
+{
+  private static final String INDEX_FILE = "searchnames.idx";
+  private static final int INDEX_MAGIC = 0x4e49524e;  // "NIRN"
+  private static final int INDEX_VERSION = 1;
+
+  /**
+   * Resource names by resource key. Replaced by a new map whenever the cache is discarded, so that
+   * outdated background tasks can not add names to the current map.
+   */
+  private static volatile Map<String, Record> records = new ConcurrentHashMap<>();
+  private static final CacheManager.Statistics stats = new CacheManager.Statistics();
+
+  private static volatile boolean initialized = false;
+  private static volatile boolean pending = false;
+  private static volatile boolean dirty = false;
+  /** Stamp of the talk tables at the time the names were gathered. */
+  private static long talkTableStamp;
+  /** Incremented whenever the cache is discarded. Used to detect outdated background tasks. */
+  private static volatile int generation;
+
+  static {
+    CacheManager.register(new Managed());
+  }
+
+  /** Returns whether names of the specified resource type are available. */
+  public static boolean isSupported(ResourceEntry entry)
+  {
+    switch (entry.getExtension().toUpperCase(Locale.ENGLISH)) {
+      case "CRE":
+      case "CHR":
+      case "ITM":
+      case "SPL":
+      case "STO":
+      case "ARE":
+      case "PRO":
+      case "INI":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /** Returns whether names of all resources are available. */
+  public static boolean isInitialized()
+  {
+    return initialized;
+  }
+
+  /** Starts gathering names of all supported resources in the background, if needed. */
+  public static void init()
+  {
+    synchronized (SearchNameCache.class) {
+      if (initialized || pending || ResourceFactory.getKeyfile() == null) {
+        return;
+      }
+      pending = true;
+      final int gen = generation;
+      final Map<String, Record> map = records;
+      final Thread t = new Thread(() -> build(gen, map), "SearchNameCache");
+      t.setDaemon(true);
+      t.start();
+    }
+  }
+
+  /**
+   * Returns the name of the specified resource. The name is read from the resource if it is not
+   * available in the cache.
+   * @param entry The resource.
+   * @return Name of the resource. Returns {@code null} if the resource does not define a name.
+   * @throws Exception if the resource could not be read.
+   */
+  public static String getName(ResourceEntry entry) throws Exception
+  {
+    if (!isSupported(entry)) {
+      return null;
+    }
+    final String key = key(entry);
+    final Map<String, Record> map = records;
+    Record record = map.get(key);
+    if (record != null && !record.isCurrent(entry)) {
+      // resource has been modified by another application
+      map.remove(key, record);
+      record = null;
+    }
+    if (record != null) {
+      stats.hit();
+    } else {
+      stats.miss();
+      record = new Record(PersistentCache.getStamp(entry), readName(entry));
+      map.put(key, record);
+      dirty = true;
+    }
+    return record.name;
+  }
+
+  /**
+   * Returns the name of the specified resource only if it is available without reading the
+   * resource. Starts gathering names of all resources in the background if needed.
+   * @param entry The resource.
+   * @return Name of the resource. Returns {@code null} if not available.
+   */
+  public static String peekName(ResourceEntry entry)
+  {
+    if (!isInitialized()) {
+      init();
+    }
+    final Record record = isSupported(entry) ? records.get(key(entry)) : null;
+    return (record != null && record.isCurrent(entry)) ? record.name : null;
+  }
+
+  /**
+   * Returns whether a name previously returned for the specified resource is still valid.
+   * Returns {@code false} if the resource has been modified since the name was read.
+   */
+  public static boolean isCurrent(ResourceEntry entry)
+  {
+    final Record record = isSupported(entry) ? records.get(key(entry)) : null;
+    return record == null || record.isCurrent(entry);
+  }
+
+  /** Updates the name of the specified resource. */
+  public static void invalidate(ResourceEntry entry)
+  {
+    if (entry != null && isSupported(entry)) {
+      records.remove(key(entry));
+      entry.resetSearchString();
+      dirty = true;
+    }
+  }
+
+  /** Stores current names to disk if needed and discards all names. */
+  public static void clearCache()
+  {
+    synchronized (SearchNameCache.class) {
+      if (initialized && dirty) {
+        save(talkTableStamp);
+      }
+      generation++;
+      initialized = false;
+      pending = false;
+      dirty = false;
+      records = new ConcurrentHashMap<>();
+    }
+  }
+
+  /** Reads the name of the specified resource. */
+  private static String readName(ResourceEntry entry) throws Exception
+  {
+    switch (entry.getExtension().toUpperCase(Locale.ENGLISH)) {
+      case "CRE":
+      case "CHR":
+        try (InputStream is = entry.getResourceDataAsStream()) {
+          return CreResource.getSearchString(is);
+        }
+      case "ITM":
+        try (InputStream is = entry.getResourceDataAsStream()) {
+          return ItmResource.getSearchString(is);
+        }
+      case "SPL":
+        try (InputStream is = entry.getResourceDataAsStream()) {
+          return SplResource.getSearchString(is);
+        }
+      case "STO":
+        try (InputStream is = entry.getResourceDataAsStream()) {
+          return StoResource.getSearchString(is);
+        }
+      case "ARE":
+        return AreResource.getSearchString(entry);
+      case "PRO":
+        return ProResource.getSearchString(entry);
+      case "INI":
+        return PlainTextResource.getSearchString(entry);
+      default:
+        return null;
+    }
+  }
+
+  /** Returns the key of the specified resource. CHR resources may be located in several extra folders. */
+  private static String key(ResourceEntry entry)
+  {
+    final Path path = "CHR".equalsIgnoreCase(entry.getExtension()) ? entry.getActualPath() : null;
+    return ((path != null) ? path.toString() : entry.getResourceName()).toUpperCase(Locale.ENGLISH);
+  }
+
+  /** Returns the stamp of the talk tables the names are taken from. */
+  private static long getTalkTableStamp()
+  {
+    final Path[] paths = { Profile.getProperty(Profile.Key.GET_GAME_DIALOG_FILE),
+                           Profile.getProperty(Profile.Key.GET_GAME_DIALOGF_FILE) };
+    long stamp = 17L;
+    for (final Path path : paths) {
+      try {
+        if (path != null && Files.exists(path)) {
+          stamp = stamp * 31L + path.toString().hashCode();
+          stamp = stamp * 31L + Files.getLastModifiedTime(path).toMillis();
+          stamp = stamp * 31L + Files.size(path);
+        }
+      } catch (IOException e) {
+        // file not available
+      }
+    }
+    return (stamp != 0L) ? stamp : 1L;
+  }
+
+  /**
+   * Gathers the names of all supported resources.
+   * @param gen Generation of the cache at the time the task has been started.
+   * @param map Map of the specified generation which receives the names.
+   */
+  private static void build(int gen, Map<String, Record> map)
+  {
+    final long tlkStamp = getTalkTableStamp();
+    final Map<String, Record> stored = load(tlkStamp);
+    final List<ResourceEntry> files = new ArrayList<>();
+    for (final String ext : new String[]{"CRE", "ITM", "SPL", "STO", "ARE", "PRO", "INI"}) {
+      files.addAll(ResourceFactory.getResources(ext));
+    }
+    files.addAll(ResourceFactory.getResources("CHR", Profile.getProperty(Profile.Key.GET_GAME_EXTRA_FOLDERS)));
+
+    boolean changed = false;
+    final BoundedExecutor executor = new BoundedExecutor();
+    try {
+      for (final ResourceEntry entry : files) {
+        if (entry == null) { continue; }
+        if (gen != generation) {
+          executor.cancel();
+          return;
+        }
+
+        final String key = key(entry);
+        final long stamp = PersistentCache.getStamp(entry);
+        final Record record = stored.get(key);
+        if (record != null && stamp != 0L && record.stamp == stamp) {
+          map.putIfAbsent(key, record);
+        } else {
+          executor.execute(() -> {
+            try {
+              map.putIfAbsent(key, new Record(stamp, readName(entry)));
+            } catch (Exception e) {
+              // resource will be read again on request
+            }
+          });
+          changed = true;
+        }
+      }
+      executor.awaitCompletion(-1, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+      return;
+    } finally {
+      executor.shutdown();
+    }
+
+    synchronized (SearchNameCache.class) {
+      if (gen == generation) {
+        talkTableStamp = tlkStamp;
+        initialized = true;
+        pending = false;
+        if (changed || dirty || stored.size() != map.size()) {
+          save(tlkStamp);
+        }
+      }
+    }
+
+    // showing names in resource tree
+    SwingUtilities.invokeLater(() -> {
+      if (NearInfinity.getInstance() != null && NearInfinity.getInstance().getResourceTree() != null) {
+        NearInfinity.getInstance().getResourceTree().repaint();
+      }
+    });
+  }
+
+  /** Loads the stored names of the current game. Returns an empty map on error or if talk tables have changed. */
+  private static Map<String, Record> load(long tlkStamp)
+  {
+    final Map<String, Record> retVal = new HashMap<>();
+    final Path file = PersistentCache.getFile(INDEX_FILE);
+    if (file == null || !Files.isRegularFile(file)) {
+      return retVal;
+    }
+
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (dis.readInt() != INDEX_MAGIC || dis.readInt() != INDEX_VERSION || dis.readLong() != tlkStamp) {
+        return retVal;
+      }
+      for (int i = 0, count = dis.readInt(); i < count; i++) {
+        final String key = dis.readUTF();
+        final long stamp = dis.readLong();
+        final String name = dis.readBoolean() ? dis.readUTF() : null;
+        retVal.put(key, new Record(stamp, name));
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      retVal.clear();
+    }
+    return retVal;
+  }
+
+  /** Writes the current names to disk. */
+  private static void save(long tlkStamp)
+  {
+    final Path file = PersistentCache.getFile(INDEX_FILE);
+    if (file == null) {
+      return;
+    }
+
+    final Path tmpFile = file.resolveSibling(INDEX_FILE + ".tmp");
+    try {
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        final Map<String, Record> snapshot = new HashMap<>(records);
+        snapshot.values().removeIf(r -> r.stamp == 0L);
+        dos.writeInt(INDEX_MAGIC);
+        dos.writeInt(INDEX_VERSION);
+        dos.writeLong(tlkStamp);
+        dos.writeInt(snapshot.size());
+        for (final Map.Entry<String, Record> e : snapshot.entrySet()) {
+          dos.writeUTF(e.getKey());
+          dos.writeLong(e.getValue().stamp);
+          dos.writeBoolean(e.getValue().name != null);
+          if (e.getValue().name != null) {
+            dos.writeUTF(e.getValue().name);
+          }
+        }
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+      dirty = false;
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private SearchNameCache()
+  {
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Name of a single resource. */
+  private static final class Record
+  {
+    private final long stamp;
+    /** Name of the resource. {@code null} if the resource does not define a name. */
+    private final String name;
+    private volatile long nextCheck;
+
+    public Record(long stamp, String name)
+    {
+      this.stamp = stamp;
+      this.name = name;
+    }
+
+    /** Returns whether the specified resource has not been modified since the name was read. */
+    public boolean isCurrent(ResourceEntry entry)
+    {
+      final long time = System.currentTimeMillis();
+      if (time < nextCheck) {
+        return true;
+      }
+      if (PersistentCache.getStamp(entry) != stamp) {
+        return false;
+      }
+      nextCheck = time + CacheManager.STAMP_CHECK_INTERVAL;
+      return true;
+    }
+  }
+
+  private static final class Managed implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "Resource names"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.NONE; }
+
+    @Override
+    public int getEntryCount() { return records.size(); }
+
+    @Override
+    public long getMemorySize()
+    {
+      long size = 0L;
+      for (final Record record : records.values()) {
+        size += 72L + ((record.name != null) ? record.name.length() * 2L : 0L);
+      }
+      return size;
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return stats; }
+
+    @Override
+    public void clear() { clearCache(); }
+
+    @Override
+    public void invalidate(ResourceEntry entry) { SearchNameCache.invalidate(entry); }
+  }
+}
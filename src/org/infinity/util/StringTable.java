@@ -4,6 +4,7 @@
 
 package org.infinity.util;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
@@ -13,9 +14,14 @@
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import org.infinity.NearInfinity;
 import org.infinity.datatype.DecNumber;
@@ -84,6 +90,13 @@ public String format(String text, int strRef)
   /** Strref start index for virtual strings referenced by ENGINEST.2DA (EE only) */
   public static final int STRREF_VIRTUAL = 0xf00000;
 
+  // Number of string entries per work unit for TRA export
+  private static final int TRA_BLOCK_SIZE = 1024;
+  // Max. number of entries a TRA import may add beyond the current end of the string table
+  private static final int TRA_MAX_INDEX_GAP = 65536;
+  private static final Pattern PATTERN_NEWLINE = Pattern.compile("\r?\n");
+  private static final Pattern PATTERN_TOKEN = Pattern.compile("<[^<>]+>");
+
   private static final EnumMap<Type, StringTable> TLK_TABLE = new EnumMap<>(Type.class);
 
   private static Charset charset = null;
@@ -824,6 +837,7 @@ public static boolean exportText(Type type, Path outFile, ProgressCallback callb
    *  <ul>
    *  <li>{@code %Variables%} (will not be evaluated, may cause issues if % is used as string delimiter)</li>
    *  <li>negative indices (will be ignored)</li>
+   *  <li>indices far beyond the current end of the string table (will be ignored)</li>
    *  </ul>
    * @param inFile Path to text file that should be imported.
    * @param reset Indicates whether original entries are removed before the import operation.
@@ -834,23 +848,101 @@ public static boolean exportText(Type type, Path outFile, ProgressCallback callb
    */
   public static boolean importTra(Path inFile, boolean reset, ProgressCallback callback)
   {
+    if (inFile == null) {
+      return false;
+    }
+
+    StringTable tableMale = instance(Type.MALE);
+    StringTable tableFemale = hasFemaleTable() ? instance(Type.FEMALE) : null;
+
+    if (callback != null) {
+      // progress is tracked by TRA entries
+      int numEntries = 0;
+      try {
+        numEntries = _countTraEntries(inFile);
+      } catch (IOException e) {
+        // reported by the import operation
+      }
+      callback.init(numEntries);
+    }
     boolean retVal = false;
+    // based on the size before a reset, so that entries of a full TRA can be imported in any order
+    final int maxIndex = tableMale._getNumEntries() + TRA_MAX_INDEX_GAP;
+    ArrayList<Integer> skipped = new ArrayList<>();
+    try (TraParser parser = new TraParser(Files.newBufferedReader(inFile, getCharset()))) {
+      tableMale._prepareImport(reset);
+      if (tableFemale != null) {
+        tableFemale._prepareImport(reset);
+      }
 
-//    Pattern regCmtLine = Pattern.compile("//.*$");
-//    Pattern regCmtBlock = Pattern.compile("/\\*.*\\*/", Pattern.DOTALL);
-//    Pattern[] regStrings = new Pattern[]{ Pattern.compile("\"[^\"]*\"", Pattern.DOTALL),
-//                                          Pattern.compile("~~~~~.*?~~~~~", Pattern.DOTALL),
-//                                          Pattern.compile("~[^~]*~", Pattern.DOTALL),
-//                                          Pattern.compile("%[^%]*%", Pattern.DOTALL) };
-//    Pattern regResRef = Pattern.compile("\\[[^\\[\\]]{1,8}\\]");
+      // entries are applied as soon as they are parsed
+      int count = 0;
+      TraParser.Entry entry;
+      while ((entry = parser.next()) != null) {
+        if (callback != null && !callback.progress(count)) {
+          throw new IOException("Operation cancelled");
+        }
+        count++;
+        if (entry.getIndex() < 0) {
+          continue;
+        }
+        if (entry.getIndex() >= STRREF_VIRTUAL || entry.getIndex() > maxIndex) {
+          skipped.add(entry.getIndex());
+          continue;
+        }
+        tableMale._importEntry(entry.getIndex(), entry.getText(), entry.getSound());
+        if (tableFemale != null) {
+          tableFemale._importEntry(entry.getIndex(), entry.getTextFemale(), entry.getSoundFemale());
+        }
+      }
 
-    // TODO: create separate TRA importer class
+      // string tables must provide the same number of entries
+      if (tableFemale != null) {
+        int numEntries = Math.max(tableMale._getNumEntries(), tableFemale._getNumEntries());
+        tableMale._ensureEntries(numEntries);
+        tableFemale._ensureEntries(numEntries);
+      }
+      retVal = true;
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (!skipped.isEmpty()) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(skipped.size()).append(" TRA entries with out of range indices have been skipped:");
+        for (int i = 0; i < Math.min(skipped.size(), 10); i++) {
+          sb.append(" @").append(skipped.get(i));
+        }
+        if (skipped.size() > 10) {
+          sb.append(" ...");
+        }
+        if (callback != null) {
+          callback.warning(sb.toString());
+        } else {
+          System.err.println(sb.toString());
+        }
+      }
+      if (callback != null) { callback.done(retVal); }
+    }
 
     return retVal;
   }
 
+  // Returns the number of entries in the specified TRA file
+  private static int _countTraEntries(Path inFile) throws IOException
+  {
+    int count = 0;
+    try (TraParser parser = new TraParser(Files.newBufferedReader(inFile, getCharset()))) {
+      while (parser.next() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   /**
    * Exports current state of all available string tables into a single WeiDU TRA file.
+   * String entries are formatted in parallel on the common fork/join pool in blocks of
+   * {@code TRA_BLOCK_SIZE} entries and written to disk in their original order.
    * @param callback An optional callback interface that can be used to track the whole operation.
    */
   public static boolean exportTra(Path outFile, ProgressCallback callback)
@@ -866,11 +958,12 @@ public static boolean exportTra(Path outFile, ProgressCallback callback)
       tableFemale._ensureFullyLoaded();
     }
 
-    if (callback != null) { callback.init(tableMale._getNumEntries()); }
+    // one TRA entry per string
+    final int numEntries = tableMale._getNumEntries();
+    if (callback != null) { callback.init(numEntries); }
     boolean retVal = true;
-    PrintWriter writer = null;
-    try {
-      writer = new PrintWriter(outFile.toFile(), getCharset().name());
+    ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+    try (BufferedWriter writer = Files.newBufferedWriter(outFile, getCharset())) {
       String newline = System.getProperty("line.separator");
       // writing header
       String niPath = Utils.getJarFileName(NearInfinity.class);
@@ -878,81 +971,102 @@ public static boolean exportTra(Path outFile, ProgressCallback callback)
         niPath = "Near Infinity";
       }
       niPath += " (" + NearInfinity.getVersion() + ")";
-      writer.println("// creator : " + niPath);
-      writer.println("// game    : " + Profile.getGameRoot().toString());
-      writer.println("// dialog  : " + Profile.getGameRoot().relativize(tableMale._getPath()));
-      writer.print("// dialogF : ");
+      writer.write("// creator : " + niPath + newline);
+      writer.write("// game    : " + Profile.getGameRoot().toString() + newline);
+      writer.write("// dialog  : " + Profile.getGameRoot().relativize(tableMale._getPath()) + newline);
+      writer.write("// dialogF : ");
       if (tableFemale != null) {
-        writer.println(Profile.getGameRoot().relativize(tableFemale._getPath()));
+        writer.write(Profile.getGameRoot().relativize(tableFemale._getPath()) + newline);
       } else {
-        writer.println("(none)");
+        writer.write("(none)" + newline);
       }
-      writer.println();
-
-      // writing tra lines
-      int numEntries = tableMale._getNumEntries();
-      int colWidth = Integer.toString(numEntries - 1).length() + 2;
-      for (int idx = 0; idx < numEntries; idx++) {
-        if (callback != null) {
-          retVal = callback.progress(idx);
-          if (!retVal) {
-            break;
-          }
+      writer.write(newline);
+
+      // writing tra lines: blocks are formatted in parallel, results are consumed in order
+      final int colWidth = Integer.toString(numEntries - 1).length() + 2;
+      final ForkJoinPool pool = ForkJoinPool.commonPool();
+      final int maxPending = pool.getParallelism() * 2;
+      int nextBlock = 0;
+      int idx = 0;
+      while (retVal && idx < numEntries) {
+        while (nextBlock < numEntries && pending.size() < maxPending) {
+          final int start = nextBlock;
+          final int end = Math.min(numEntries, start + TRA_BLOCK_SIZE);
+          pending.add(pool.submit(() -> _formatTraBlock(tableMale, tableFemale, start, end, colWidth, newline)));
+          nextBlock = end;
         }
 
-        String traNum = "@" + idx;
-        writer.print(traNum);
-        for (int n = 0, cnt = colWidth - traNum.length(); n < cnt; n++) { writer.print(' '); }
-        writer.print("= ");
-
-        // writing male string
-        String msg1 = tableMale._getStringRef(idx, Format.NONE).replaceAll("\r?\n", newline);
-        String res1 = tableMale._getSoundResource(idx);
-        String delim = "~";
-        if (msg1.indexOf('~') >= 0) {
-          if (msg1.indexOf('"') < 0) {
-            delim = "\"";
-          } else {
-            delim = "~~~~~";
+        String block = pending.remove().get();
+        int end = Math.min(numEntries, idx + TRA_BLOCK_SIZE);
+        if (callback != null) {
+          for (; idx < end && retVal; idx++) {
+            retVal = callback.progress(idx);
           }
         }
-        writer.print(delim + msg1 + delim);
-        if (!res1.isEmpty()) {
-          writer.print(" [" + res1 + "]");
-        }
-
-        // writing female string
-        if (tableFemale != null) {
-          String msg2 = tableFemale._getStringRef(idx, Format.NONE).replaceAll("\r?\n", newline);
-          String res2 = tableFemale._getSoundResource(idx);
-          if (!msg2.equals(msg1) || !res2.equals(res1)) {
-            delim = "~";
-            if (msg1.indexOf('~') >= 0) {
-              if (msg1.indexOf('"') < 0) {
-                delim = "\"";
-              } else {
-                delim = "~~~~~";
-              }
-            }
-            writer.print(" " + delim + msg2 + delim);
-            if (!res2.isEmpty()) {
-              writer.print(" [" + res2 + "]");
-            }
-          }
+        idx = end;
+        if (retVal) {
+          writer.write(block);
         }
-        writer.println();
       }
-    } catch (IOException e) {
+    } catch (IOException | InterruptedException | ExecutionException e) {
       e.printStackTrace();
       retVal = false;
     } finally {
-      if (writer != null) { writer.close(); }
+      for (final Future<String> f : pending) {
+        f.cancel(false);
+      }
       if (callback != null) { callback.done(retVal); }
     }
 
     return retVal;
   }
 
+  // Returns the TRA representation of the string entries in range [start, end)
+  private static String _formatTraBlock(StringTable tableMale, StringTable tableFemale, int start, int end,
+                                        int colWidth, String newline)
+  {
+    StringBuilder sb = new StringBuilder((end - start) * 64);
+    for (int idx = start; idx < end; idx++) {
+      int len = sb.length();
+      sb.append('@').append(idx);
+      for (int n = sb.length() - len; n < colWidth; n++) { sb.append(' '); }
+      sb.append("= ");
+
+      // writing male string
+      StringEntry entry1 = tableMale.entries.get(idx);
+      _appendTraString(sb, entry1.getText(), entry1.getSoundRef(), newline);
+
+      // writing female string
+      if (tableFemale != null && idx < tableFemale.entries.size()) {
+        StringEntry entry2 = tableFemale.entries.get(idx);
+        if (!entry2.getText().equals(entry1.getText()) || !entry2.getSoundRef().equals(entry1.getSoundRef())) {
+          sb.append(' ');
+          _appendTraString(sb, entry2.getText(), entry2.getSoundRef(), newline);
+        }
+      }
+      sb.append(newline);
+    }
+    return sb.toString();
+  }
+
+  // Appends a single delimited TRA string with optional sound reference
+  private static void _appendTraString(StringBuilder sb, String text, String soundRef, String newline)
+  {
+    String msg = PATTERN_NEWLINE.matcher(text).replaceAll(newline);
+    String delim = "~";
+    if (msg.indexOf('~') >= 0) {
+      if (msg.indexOf('"') < 0) {
+        delim = "\"";
+      } else {
+        delim = "~~~~~";
+      }
+    }
+    sb.append(delim).append(msg).append(delim);
+    if (!soundRef.isEmpty()) {
+      sb.append(" [").append(soundRef).append(']');
+    }
+  }
+
 
   // Returns specified talk table instance (defaults to male if specified type not available)
   private static StringTable instance(Type type)
@@ -1299,6 +1413,59 @@ private void _resetEntries()
     }
   }
 
+  // Prepares the string table for a TRA import operation
+  private void _prepareImport(boolean reset)
+  {
+    if (reset) {
+      synchronized (entries) {
+        entries.clear();
+        entriesPending = 0;
+        _setModified();
+      }
+    } else {
+      _ensureFullyLoaded();
+    }
+  }
+
+  // Makes sure that the string table contains at least the specified number of entries
+  private void _ensureEntries(int count)
+  {
+    if (count > entries.size()) {
+      _ensureFullyLoaded();
+      synchronized (entries) {
+        entries.ensureCapacity(count);
+        while (entries.size() < count) {
+          StringEntry entry = new StringEntry(this);
+          entry.setModified();
+          entries.add(entry);
+        }
+      }
+    }
+  }
+
+  // Applies a single TRA string to the specified entry. Expects a prior call to _prepareImport().
+  private void _importEntry(int index, String text, String soundRef)
+  {
+    _ensureEntries(index + 1);
+    synchronized (entries) {
+      StringEntry entry = entries.get(index);
+      entry.setText(text);
+      entry.setSoundRef(soundRef);
+      // flags are derived from the imported data, so that re-importing can also remove them
+      short flags = (short)(entry.getFlags() & ~FLAGS_DEFAULT);
+      if (!entry.getText().isEmpty()) {
+        flags |= FLAGS_HAS_TEXT;
+      }
+      if (!entry.getSoundRef().isEmpty()) {
+        flags |= FLAGS_HAS_SOUND;
+      }
+      if (PATTERN_TOKEN.matcher(entry.getText()).find()) {
+        flags |= FLAGS_HAS_TOKEN;
+      }
+      entry.setFlags(flags);
+    }
+  }
+
   private boolean _isModified()
   {
     return modified;
@@ -1703,6 +1870,13 @@ public void fillList(int index)
      */
     public abstract void init(int numEntries);
 
+    /**
+     * (Optional) Called when parts of the data have been skipped. Called at most once
+     * before {@link #done(boolean)}.
+     * @param message Description of the skipped data.
+     */
+    public void warning(String message) {}
+
     /**
      * (Optional) Called once after operation has ended.
      * @param success Whether operation has been finished successfully.
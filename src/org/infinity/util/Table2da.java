@@ -4,15 +4,21 @@
 
 package org.infinity.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
 import org.infinity.resource.text.PlainTextResource;
 
 /**
- * Stores content of a 2DA resource as table.
+ * Stores content of a 2DA resource as table.<br>
+ * <br>
+ * Table content is parsed in a single pass. Distinct cell values are stored only once in a string
+ * pool and cells are stored as indices into the pool. Row lookups by cell value are supported by
+ * per-column hash indices which are created on first use.
  */
 public class Table2da
 {
@@ -21,10 +27,23 @@
   /** Row index pointing to row labels. */
   public static final int ROW_HEADER    = 0;
 
-  private final List<String> header = new ArrayList<String>();
-  private final List<List<String>> table = new ArrayList<List<String>>();
+  /** Pool index of cells added to normalize row lengths. Refers to {@link #defaultValue}. */
+  private static final int CELL_DEFAULT = -1;
+  private static final String[] EMPTY_STRINGS = new String[0];
+  private static final int[] EMPTY_CELLS = new int[0];
+
   private final ResourceEntry entry;
   private String defaultValue;
+  /** Column labels. First label is always empty. */
+  private String[] header = EMPTY_STRINGS;
+  /** Distinct cell values. */
+  private String[] pool = EMPTY_STRINGS;
+  /** Pool indices of all cells in row-major order. */
+  private int[] cells = EMPTY_CELLS;
+  private int rowCount;
+  private int colCount;
+  /** Maps upper-cased cell values to the first row containing the value, per column. */
+  private Map<String, Integer>[] columnIndex;
 
   public Table2da(String resource)
   {
@@ -51,13 +70,13 @@ public void reload()
   /** Returns number of columns, including header column. */
   public int getColCount()
   {
-    return table.isEmpty() ? header.size() : table.get(0).size();
+    return (rowCount == 0) ? header.length : colCount;
   }
 
   /** Returns number of rows, including header row. */
   public int getRowCount()
   {
-    return table.size();
+    return rowCount;
   }
 
   /**
@@ -66,10 +85,9 @@ public int getRowCount()
    */
   public String get(int row, int col)
   {
-    if (row >= 0 && row < getRowCount()) {
-      if (col >= 0 && col < getColCount()) {
-        return table.get(row).get(col);
-      }
+    if (row >= 0 && row < rowCount && col >= 0 && col < colCount) {
+      final int idx = cells[row * colCount + col];
+      return (idx != CELL_DEFAULT) ? pool[idx] : defaultValue;
     }
     return defaultValue;
   }
@@ -81,13 +99,47 @@ public String get(int row, int col)
    */
   public String getHeader(int col)
   {
-    return (col >= 0 && col < header.size()) ? header.get(col) : null;
+    return (col >= 0 && col < header.length) ? header[col] : null;
+  }
+
+  /**
+   * Returns the index of the first column with the specified header label. Labels are compared
+   * case-insensitive. Returns -1 if not found.
+   */
+  public int findColumn(String label)
+  {
+    if (label != null) {
+      for (int col = 1; col < header.length; col++) {
+        if (header[col].equalsIgnoreCase(label)) {
+          return col;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the first row containing the specified value in the given column.
+   * Values are compared case-insensitive.
+   * @param col The column to search.
+   * @param value The cell value.
+   * @return Row index, or -1 if not found.
+   */
+  public int findRow(int col, String value)
+  {
+    if (value != null && col >= 0 && col < colCount) {
+      final Integer row = getColumnIndex(col).get(value.toUpperCase(Locale.ENGLISH));
+      if (row != null) {
+        return row.intValue();
+      }
+    }
+    return -1;
   }
 
   /** Returns whether table contains any data. */
   public boolean isEmpty()
   {
-    return table.isEmpty() && header.isEmpty();
+    return rowCount == 0 && header.length == 0;
   }
 
   /** Returns the default value of the table. */
@@ -96,76 +148,304 @@ public String getDefaultValue()
     return (defaultValue != null && !defaultValue.isEmpty()) ? defaultValue : "0";
   }
 
+  /** Returns the approximate amount of memory occupied by the table content, in bytes. */
+  long getMemorySize()
+  {
+    long size = 64L + cells.length * 4L;
+    for (final String s : pool) {
+      size += 40L + s.length() * 2L;
+    }
+    for (final String s : header) {
+      size += 40L + s.length() * 2L;
+    }
+    return size;
+  }
+
+  /** Returns the hash index of the specified column. The index is created on first access. */
+  private synchronized Map<String, Integer> getColumnIndex(int col)
+  {
+    if (columnIndex == null) {
+      @SuppressWarnings({"unchecked", "rawtypes"})
+      final Map<String, Integer>[] indices = new Map[colCount];
+      columnIndex = indices;
+    }
+    Map<String, Integer> index = columnIndex[col];
+    if (index == null) {
+      index = new HashMap<>(rowCount * 2);
+      for (int row = 0; row < rowCount; row++) {
+        final String value = get(row, col);
+        if (value != null) {
+          index.putIfAbsent(value.toUpperCase(Locale.ENGLISH), Integer.valueOf(row));
+        }
+      }
+      columnIndex[col] = index;
+    }
+    return index;
+  }
+
   private void init(ResourceEntry entry)
   {
-    table.clear();
+    String text = null;
+    if (entry != null) {
+      try {
+        text = new PlainTextResource(entry).getText();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+    parse(text);
+  }
+
+  /** Removes old content and parses the specified 2DA text. Table is empty if text is {@code null}. */
+  void parse(String text)
+  {
+    defaultValue = null;
+    header = EMPTY_STRINGS;
+    pool = EMPTY_STRINGS;
+    cells = EMPTY_CELLS;
+    rowCount = colCount = 0;
+    synchronized (this) {
+      columnIndex = null;
+    }
 
-    if (entry == null) {
+    if (text == null) {
       return;
     }
 
     try {
-      PlainTextResource text = new PlainTextResource(entry);
-      String[] lines = text.getText().split("\r?\n");
-      if (lines.length >= 2) {
-        int minSize = 0;
-
-        // checking signature
-        String[] sig = lines[0].trim().split("\\s+");
-        if (sig.length > 1) {
-          if (!sig[0].equalsIgnoreCase("2DA")) {
-            throw new Exception("Invalid signature: " + sig[0]);
+      final Tokenizer tokenizer = new Tokenizer(text);
+
+      // checking signature
+      if (!tokenizer.nextLine()) {
+        return;
+      }
+      final String[] sig = tokenizer.readLine();
+      if (sig.length > 1) {
+        if (!sig[0].equalsIgnoreCase("2DA")) {
+          throw new Exception("Invalid signature: " + sig[0]);
+        }
+        if (!sig[1].equalsIgnoreCase("V1.0")) {
+          throw new Exception("Invalid version: " + sig[1]);
+        }
+      } else {
+        return;
+      }
+
+      // storing default value
+      if (!tokenizer.hasContent() || !tokenizer.nextLine()) {
+        return;
+      }
+      final String defValue = tokenizer.readLineText();
+
+      // setting table header
+      String[] labels = EMPTY_STRINGS;
+      if (tokenizer.hasContent() && tokenizer.nextLine()) {
+        final String[] elements = tokenizer.readLine();
+        labels = new String[elements.length + 1];
+        labels[0] = ""; // first column does not contain label
+        System.arraycopy(elements, 0, labels, 1, elements.length);
+      }
+
+      // adding actual table entries
+      final StringPool strings = new StringPool();
+      int[] values = new int[256];
+      int numValues = 0;
+      int[] rowStart = new int[64];
+      int numRows = 0;
+      int minSize = 0;
+      while (tokenizer.nextLine()) {
+        final int start = numValues;
+        while (tokenizer.nextToken()) {
+          if (numValues == values.length) {
+            values = Arrays.copyOf(values, numValues << 1);
           }
-          if (!sig[1].equalsIgnoreCase("V1.0")) {
-            throw new Exception("Invalid version: " + sig[1]);
+          values[numValues++] = strings.add(text, tokenizer.tokenStart, tokenizer.tokenEnd);
+        }
+        if (numValues > start) {
+          if (numRows + 1 >= rowStart.length) {
+            rowStart = Arrays.copyOf(rowStart, rowStart.length << 1);
           }
-        } else {
-          return;
+          rowStart[numRows++] = start;
+          minSize = Math.max(minSize, numValues - start);
         }
+      }
+      rowStart[numRows] = numValues;
 
-        // storing default value
-        defaultValue = lines[1].trim();
-
-        // setting table header
-        if (lines.length > 2) {
-          String[] elements = lines[2].split("\\s+");
-          header.add(""); // first column does not contain label
-          for (final String s: elements) {
-            if (!s.isEmpty()) {
-              header.add(s);
-            }
-          }
+      // normalizing row lengths
+      final int[] matrix = new int[numRows * minSize];
+      Arrays.fill(matrix, CELL_DEFAULT);
+      for (int row = 0; row < numRows; row++) {
+        System.arraycopy(values, rowStart[row], matrix, row * minSize, rowStart[row + 1] - rowStart[row]);
+      }
+      if (labels.length < minSize) {
+        final int oldLength = labels.length;
+        labels = Arrays.copyOf(labels, minSize);
+        Arrays.fill(labels, oldLength, minSize, "");
+      }
+
+      defaultValue = defValue;
+      header = labels;
+      pool = strings.toArray();
+      cells = matrix;
+      colCount = minSize;
+      rowCount = numRows;
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Splits text into lines and lines into whitespace-separated tokens. */
+  private static final class Tokenizer
+  {
+    private final String text;
+    /** Start of the next line. */
+    private int pos;
+    /** End of the current line, excluding line break. */
+    private int lineEnd;
+    /** Current position within the current line. */
+    private int linePos;
+    private int tokenStart;
+    private int tokenEnd;
+
+    public Tokenizer(String text)
+    {
+      this.text = text;
+    }
+
+    /** Returns whether any of the remaining lines contains text. */
+    public boolean hasContent()
+    {
+      for (int i = pos, len = text.length(); i < len; i++) {
+        final char ch = text.charAt(i);
+        if (ch == '\r' && i + 1 < len && text.charAt(i + 1) == '\n') {
+          i++;
+        } else if (ch != '\n') {
+          return true;
         }
+      }
+      return false;
+    }
 
-        // adding actual table entries
-        for (int idx = 3; idx < lines.length; idx++) {
-          String curLine = lines[idx].trim();
-          String[] elements = curLine.split("\\s+");
-          if (elements.length > 0 && !elements[0].isEmpty()) {
-            List<String> listLine = new ArrayList<String>();
-            for (final String s: elements) {
-              if (!s.isEmpty()) {
-                listLine.add(s);
-              }
-            }
-            table.add(listLine);
-            minSize = Math.max(minSize, listLine.size());
-          }
+    /** Advances to the next line. Returns {@code false} if no more lines are available. */
+    public boolean nextLine()
+    {
+      if (pos >= text.length()) {
+        return false;
+      }
+      int end = text.indexOf('\n', pos);
+      final int next = (end < 0) ? text.length() : end + 1;
+      if (end < 0) {
+        end = text.length();
+      }
+      if (end > pos && text.charAt(end - 1) == '\r') {
+        end--;
+      }
+      linePos = pos;
+      lineEnd = end;
+      pos = next;
+      return true;
+    }
+
+    /** Advances to the next token of the current line. Returns {@code false} if no more tokens are available. */
+    public boolean nextToken()
+    {
+      while (linePos < lineEnd && text.charAt(linePos) <= ' ') {
+        linePos++;
+      }
+      if (linePos >= lineEnd) {
+        return false;
+      }
+      tokenStart = linePos;
+      while (linePos < lineEnd && text.charAt(linePos) > ' ') {
+        linePos++;
+      }
+      tokenEnd = linePos;
+      return true;
+    }
+
+    /** Returns all remaining tokens of the current line. */
+    public String[] readLine()
+    {
+      String[] retVal = new String[4];
+      int count = 0;
+      while (nextToken()) {
+        if (count == retVal.length) {
+          retVal = Arrays.copyOf(retVal, count << 1);
         }
+        retVal[count++] = text.substring(tokenStart, tokenEnd);
+      }
+      return Arrays.copyOf(retVal, count);
+    }
 
-        // normalizing row lengths
-        for (int idx = 0, size = table.size(); idx < size; idx++) {
-          List<String> curList = table.get(idx);
-          while (curList.size() < minSize) {
-            curList.add(defaultValue);
-          }
+    /** Returns the remaining text of the current line without leading and trailing whitespace. */
+    public String readLineText()
+    {
+      final String retVal = text.substring(linePos, lineEnd).trim();
+      linePos = lineEnd;
+      return retVal;
+    }
+  }
+
+  /** Stores distinct strings. Strings are only created for values which have not been added before. */
+  private static final class StringPool
+  {
+    private String[] strings = new String[64];
+    private int count;
+    /** Open addressing hash table of pool indices + 1. Empty slots contain 0. */
+    private int[] slots = new int[128];
+
+    /** Adds the specified text range and returns its pool index. */
+    public int add(String text, int start, int end)
+    {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + text.charAt(i);
+      }
+      final int len = end - start;
+      int mask = slots.length - 1;
+      int slot = mix(hash) & mask;
+      while (slots[slot] != 0) {
+        final String s = strings[slots[slot] - 1];
+        if (s.length() == len && s.hashCode() == hash && text.regionMatches(start, s, 0, len)) {
+          return slots[slot] - 1;
         }
-        while (header.size() < minSize) {
-          header.add("");
+        slot = (slot + 1) & mask;
+      }
+
+      if (count == strings.length) {
+        strings = Arrays.copyOf(strings, count << 1);
+      }
+      strings[count] = text.substring(start, end);
+      slots[slot] = ++count;
+      if (count * 2 > slots.length) {
+        rehash();
+      }
+      return count - 1;
+    }
+
+    public String[] toArray()
+    {
+      return Arrays.copyOf(strings, count);
+    }
+
+    private void rehash()
+    {
+      slots = new int[slots.length << 1];
+      final int mask = slots.length - 1;
+      for (int i = 0; i < count; i++) {
+        int slot = mix(strings[i].hashCode()) & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
         }
+        slots[slot] = i + 1;
       }
-    } catch (Exception e) {
-      e.printStackTrace();
+    }
+
+    private static int mix(int hash)
+    {
+      return hash ^ (hash >>> 16);
     }
   }
 }
@@ -4,20 +4,40 @@
 
 package org.infinity.util;
 
-import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.infinity.resource.ResourceFactory;
 import org.infinity.resource.key.ResourceEntry;
 
+/**
+ * Caches parsed 2DA resources. Cached tables can be retrieved concurrently without locking.
+ * Least recently used tables are discarded when the total size of all tables exceeds a fixed limit.
+ */
 public class Table2daCache
 {
-  private static final HashMap<ResourceEntry, Table2da> map = new HashMap<ResourceEntry, Table2da>();
+  /** Max. approximate memory size of all cached tables, in bytes. */
+  private static final long MAX_SIZE = 32L * 1024L * 1024L;
+
+  private static final ConcurrentHashMap<ResourceEntry, Item> map = new ConcurrentHashMap<>();
+  private static final AtomicLong totalSize = new AtomicLong();
+  /** Provides access stamps for cached tables. */
+  private static final AtomicLong clock = new AtomicLong();
+  private static final CacheManager.Statistics stats = new CacheManager.Statistics();
+
+  static {
+    CacheManager.register(new Managed());
+  }
 
   /** Removes the specified 2DA resource from the cache. */
-  public static synchronized void cacheInvalid(ResourceEntry entry)
+  public static void cacheInvalid(ResourceEntry entry)
   {
     if (entry != null) {
-      map.remove(entry);
+      final Item item = map.remove(entry);
+      if (item != null) {
+        totalSize.addAndGet(-item.size);
+      }
     }
   }
 
@@ -25,6 +45,7 @@ public static synchronized void cacheInvalid(ResourceEntry entry)
   public static synchronized void clearCache()
   {
     map.clear();
+    totalSize.set(0L);
   }
 
   /**
@@ -42,22 +63,107 @@ public static Table2da get(String resource)
    * @param entry 2DA resource entry.
    * @return 2DA content as Table2da object or {@code null} on error.
    */
-  public static synchronized Table2da get(ResourceEntry entry)
+  public static Table2da get(ResourceEntry entry)
   {
-    Table2da table = null;
-    if (entry != null) {
-      table = map.get(entry);
-      if (table == null) {
-        table = new Table2da(entry);
-        if (!table.isEmpty()) {
-          map.put(table.getResourceEntry(), table);
-        } else {
-          table = null;
+    if (entry == null) {
+      return null;
+    }
+
+    Item item = map.get(entry);
+    if (item != null && !item.stamp.isCurrent()) {
+      // resource has been modified by another application
+      CacheManager.invalidate(entry);
+      item = null;
+    }
+    if (item != null) {
+      stats.hit();
+    } else {
+      stats.miss();
+      final CacheManager.ResourceStamp stamp = new CacheManager.ResourceStamp(entry);
+      final Table2da table = new Table2da(entry);
+      if (table.isEmpty()) {
+        return null;
+      }
+      final Item newItem = new Item(table, stamp);
+      item = map.putIfAbsent(entry, newItem);
+      if (item == null) {
+        item = newItem;
+        if (totalSize.addAndGet(item.size) > MAX_SIZE) {
+          trim(item);
         }
+        CacheManager.notifyAdded(item.size);
       }
     }
-    return table;
+    item.lastAccess = clock.incrementAndGet();
+    return item.table;
+  }
+
+  /** Discards least recently used tables until the cache size falls below the limit. */
+  private static synchronized void trim(Item keep)
+  {
+    if (totalSize.get() <= MAX_SIZE) {
+      return;
+    }
+    keep.lastAccess = clock.incrementAndGet();
+    evict(totalSize.get() - MAX_SIZE * 3L / 4L);
+  }
+
+  /** Discards least recently used tables until the specified amount of data has been freed. */
+  private static synchronized long evict(long size)
+  {
+    final List<Item> items = CacheManager.evictLeastRecent(map, item -> item.lastAccess, item -> item.size, size);
+    long freed = 0L;
+    for (final Item item : items) {
+      freed += item.size;
+    }
+    totalSize.addAndGet(-freed);
+    stats.evicted(items.size());
+    return freed;
   }
 
   private Table2daCache() {}
+
+//-------------------------- INNER CLASSES --------------------------
+
+  private static final class Item
+  {
+    private final Table2da table;
+    private final CacheManager.ResourceStamp stamp;
+    private final long size;
+    private volatile long lastAccess;
+
+    public Item(Table2da table, CacheManager.ResourceStamp stamp)
+    {
+      this.table = table;
+      this.stamp = stamp;
+      this.size = table.getMemorySize();
+    }
+  }
+
+  private static final class Managed implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "2DA tables"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.LRU; }
+
+    @Override
+    public int getEntryCount() { return map.size(); }
+
+    @Override
+    public long getMemorySize() { return totalSize.get(); }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return stats; }
+
+    @Override
+    public void clear() { clearCache(); }
+
+    @Override
+    public long evict(long size) { return Table2daCache.evict(size); }
+
+    @Override
+    public void invalidate(ResourceEntry entry) { cacheInvalid(entry); }
+  }
 }
@@ -0,0 +1,297 @@
+// Near Infinity - An Infinity Engine Browser and Editor
+// Copyright (C) 2001 - 2020 Jon Olav Hauglid
+// See LICENSE.txt for license information
+
+package org.infinity.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming parser for WeiDU TRA files. Entries are returned one at a time in the order they
+ * appear in the file without having to keep the whole file content in memory.<br><br>
+ * Supported syntax:
+ * <ul>
+ * <li>Line comments ({@code // ...}) and block comments ({@code /* ... *&#47;})</li>
+ * <li>String delimiters {@code ~...~}, {@code "..."}, {@code %...%} and {@code ~~~~~...~~~~~}</li>
+ * <li>Optional sound resource after each string ({@code [RESREF]})</li>
+ * <li>Optional second string for the female string table</li>
+ * </ul>
+ * Not supported: {@code %Variables%} (treated as regular string delimiters) and string concatenation.
+ */
+public class TraParser implements Closeable
+{
+  private static final int BUFFER_SIZE = 65536;
+
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder sb = new StringBuilder(256);
+
+  private int bufPos, bufLen;
+  private int line = 1;
+
+  /**
+   * Creates a new TRA parser that reads from the specified character stream.
+   * @param reader The character stream. It will be closed together with the parser.
+   */
+  public TraParser(Reader reader)
+  {
+    if (reader == null) {
+      throw new NullPointerException();
+    }
+    this.reader = reader;
+  }
+
+  /** Returns the current line number in the source stream. */
+  public int getLine()
+  {
+    return line;
+  }
+
+  /**
+   * Returns the next TRA entry from the stream.
+   * @return The next {@link Entry} or {@code null} if end of stream has been reached.
+   * @throws IOException if the stream could not be read or contains invalid TRA syntax.
+   */
+  public Entry next() throws IOException
+  {
+    if (!skipWhitespace()) {
+      return null;
+    }
+
+    int ch = read();
+    if (ch != '@') {
+      throw error("'@' expected");
+    }
+    int index = readNumber();
+
+    if (!skipWhitespace() || read() != '=') {
+      throw error("'=' expected");
+    }
+
+    Entry entry = new Entry(index);
+    entry.text = readString();
+    entry.sound = readSound();
+
+    // optional female string
+    if (skipWhitespace() && peek() != '@') {
+      entry.textFemale = readString();
+      entry.soundFemale = readSound();
+    }
+
+    return entry;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    reader.close();
+  }
+
+  // Parses a (possibly negative) decimal number
+  private int readNumber() throws IOException
+  {
+    boolean negative = false;
+    if (peek() == '-') {
+      read();
+      negative = true;
+    }
+    long value = 0;
+    int digits = 0;
+    while (peek() >= '0' && peek() <= '9') {
+      value = value * 10 + (read() - '0');
+      if (value > Integer.MAX_VALUE) {
+        throw error("Number out of range");
+      }
+      digits++;
+    }
+    if (digits == 0) {
+      throw error("Number expected");
+    }
+    return (int)(negative ? -value : value);
+  }
+
+  // Parses a delimited string literal
+  private String readString() throws IOException
+  {
+    if (!skipWhitespace()) {
+      throw error("String expected");
+    }
+
+    int delim = read();
+    boolean tilde5 = false;
+    if (delim == '~' && peekRun('~', 4)) {
+      for (int i = 0; i < 4; i++) { read(); }
+      tilde5 = true;
+    } else if (delim != '~' && delim != '"' && delim != '%') {
+      throw error("String delimiter expected");
+    }
+
+    sb.setLength(0);
+    while (true) {
+      int ch = read();
+      if (ch < 0) {
+        throw error("Unterminated string");
+      }
+      if (ch == delim) {
+        if (!tilde5) {
+          break;
+        } else if (peekRun('~', 4)) {
+          for (int i = 0; i < 4; i++) { read(); }
+          break;
+        }
+      }
+      if (ch == '\r') {
+        // normalize line breaks
+        if (peek() == '\n') {
+          continue;
+        }
+        ch = '\n';
+      }
+      sb.append((char)ch);
+    }
+    return sb.toString();
+  }
+
+  // Parses an optional sound resource reference. Returns empty string if not available.
+  private String readSound() throws IOException
+  {
+    if (skipWhitespace() && peek() == '[') {
+      read();
+      sb.setLength(0);
+      int ch;
+      while ((ch = read()) != ']') {
+        if (ch < 0 || ch == '\n') {
+          throw error("Unterminated sound reference");
+        }
+        sb.append((char)ch);
+      }
+      return sb.toString().trim();
+    }
+    return "";
+  }
+
+  // Skips whitespace and comments. Returns false if end of stream has been reached.
+  private boolean skipWhitespace() throws IOException
+  {
+    while (true) {
+      int ch = peek();
+      if (ch < 0) {
+        return false;
+      } else if (Character.isWhitespace(ch)) {
+        read();
+      } else if (ch == '/') {
+        if (!fill(2)) {
+          return true;
+        }
+        char ch2 = buffer[bufPos + 1];
+        if (ch2 == '/') {
+          while ((ch = read()) >= 0 && ch != '\n') {}
+        } else if (ch2 == '*') {
+          read(); read();
+          int prev = 0;
+          while ((ch = read()) >= 0 && !(prev == '*' && ch == '/')) {
+            prev = ch;
+          }
+          if (ch < 0) {
+            throw error("Unterminated comment");
+          }
+        } else {
+          return true;
+        }
+      } else {
+        return true;
+      }
+    }
+  }
+
+  // Returns whether the next "count" characters all match "ch" without consuming them
+  private boolean peekRun(char ch, int count) throws IOException
+  {
+    if (!fill(count)) {
+      return false;
+    }
+    for (int i = 0; i < count; i++) {
+      if (buffer[bufPos + i] != ch) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int peek() throws IOException
+  {
+    return fill(1) ? buffer[bufPos] : -1;
+  }
+
+  private int read() throws IOException
+  {
+    if (!fill(1)) {
+      return -1;
+    }
+    char ch = buffer[bufPos++];
+    if (ch == '\n') {
+      line++;
+    }
+    return ch;
+  }
+
+  // Ensures that at least "count" characters are available in the buffer
+  private boolean fill(int count) throws IOException
+  {
+    if (bufLen - bufPos >= count) {
+      return true;
+    }
+    if (bufPos > 0) {
+      System.arraycopy(buffer, bufPos, buffer, 0, bufLen - bufPos);
+      bufLen -= bufPos;
+      bufPos = 0;
+    }
+    while (bufLen < count) {
+      int n = reader.read(buffer, bufLen, buffer.length - bufLen);
+      if (n < 0) {
+        return false;
+      }
+      bufLen += n;
+    }
+    return true;
+  }
+
+  private IOException error(String msg)
+  {
+    return new IOException("TRA syntax error at line " + line + ": " + msg);
+  }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Represents a single TRA entry. */
+  public static class Entry
+  {
+    private final int index;
+    private String text, sound, textFemale, soundFemale;
+
+    private Entry(int index)
+    {
+      this.index = index;
+    }
+
+    /** Returns the string index of the entry. */
+    public int getIndex() { return index; }
+
+    /** Returns the (male) string. Line breaks are normalized to {@code '\n'}. */
+    public String getText() { return text; }
+
+    /** Returns the sound resource associated with the (male) string. Returns empty string if not available. */
+    public String getSound() { return sound; }
+
+    /** Returns whether a separate female string has been defined. */
+    public boolean hasFemale() { return textFemale != null; }
+
+    /** Returns the female string. Falls back to the male string if not available. */
+    public String getTextFemale() { return hasFemale() ? textFemale : text; }
+
+    /** Returns the sound resource associated with the female string. Falls back to male sound if not available. */
+    public String getSoundFemale() { return hasFemale() ? soundFemale : sound; }
+  }
+}
@@ -18,6 +18,7 @@
 import java.util.Locale;
 import java.util.stream.Stream;
 
+import org.infinity.util.CacheManager;
 import org.infinity.util.io.FileWatcher.FileWatchEvent;
 import org.infinity.util.io.FileWatcher.FileWatchListener;
 
@@ -26,7 +27,13 @@
  */
 public class FileManager implements FileWatchListener
 {
+  /** Cached directory listings. Access is synchronized on the map. */
   private static final HashMap<Path, HashSet<Path>> pathCache = new HashMap<>();
+  private static final CacheManager.Statistics pathCacheStats = new CacheManager.Statistics();
+
+  static {
+    CacheManager.register(new ManagedPathCache());
+  }
 
   private static FileManager instance;
 
@@ -35,7 +42,9 @@ public class FileManager implements FileWatchListener
 
   public static void reset()
   {
-    pathCache.clear();
+    synchronized (pathCache) {
+      pathCache.clear();
+    }
     if (instance != null) {
       instance.close();
     }
@@ -523,9 +532,11 @@ private static void _registerFile(Path file)
   {
     if (file != null) {
       file = _resolve(file);
-      HashSet<Path> set = pathCache.get(file.getParent());
-      if (set != null) {
-        set.add(file);
+      synchronized (pathCache) {
+        HashSet<Path> set = pathCache.get(file.getParent());
+        if (set != null) {
+          set.add(file);
+        }
       }
     }
   }
@@ -534,22 +545,26 @@ private static void _unregisterFile(Path file)
   {
     if (file != null) {
       file = _resolve(file);
-      HashSet<Path> set = pathCache.get(file.getParent());
-      if (set != null) {
-        set.remove(file);
-        if (set.isEmpty()) {
-          pathCache.remove(file.getParent());
+      synchronized (pathCache) {
+        HashSet<Path> set = pathCache.get(file.getParent());
+        if (set != null) {
+          set.remove(file);
+          if (set.isEmpty()) {
+            pathCache.remove(file.getParent());
+          }
+        } else if (pathCache.containsKey(file)) {
+          pathCache.remove(file);
         }
-      } else if (pathCache.containsKey(file)) {
-        pathCache.remove(file);
       }
     }
   }
 
   private static void _invalidateDirectory(Path dir)
   {
-    if (dir != null && pathCache.containsKey(dir)) {
-      pathCache.remove(dir);
+    if (dir != null) {
+      synchronized (pathCache) {
+        pathCache.remove(dir);
+      }
     }
   }
 
@@ -558,11 +573,25 @@ private static Path _resolveExisting(Path path)
     Path retVal = _resolve(path);
     if (retVal != null) {
       Path folder = retVal.getParent();
-      HashSet<Path> list = pathCache.get(folder);
+      HashSet<Path> list;
+      boolean exists = false;
+      synchronized (pathCache) {
+        list = pathCache.get(folder);
+        if (list != null) {
+          pathCacheStats.hit();
+          exists = list.contains(retVal);
+        }
+      }
       if (list == null) {
+        pathCacheStats.miss();
         list = _cacheDirectory(folder, false);
+        if (list != null) {
+          synchronized (pathCache) {
+            exists = list.contains(retVal);
+          }
+        }
       }
-      if (list == null || !list.contains(retVal)) {
+      if (!exists) {
         retVal = null;
       }
     }
@@ -576,18 +605,27 @@ private static HashSet<Path> _cacheDirectory(Path path, boolean force)
   {
     HashSet<Path> retVal = null;
     if (path != null && Files.isDirectory(path)) {
-      if (force) {
-        pathCache.remove(path);
+      synchronized (pathCache) {
+        if (force) {
+          pathCache.remove(path);
+        }
+        retVal = pathCache.get(path);
       }
-      retVal = pathCache.get(path);
       if (retVal == null) {
+        // directory is listed without holding the lock
         HashSet<Path> fileList = new HashSet<>();
         try (Stream<Path> pathStream = Files.list(path)) {
           pathStream.forEach((file) -> { fileList.add(file); });
         } catch (IOException e) {
         }
-        retVal = fileList;
-        pathCache.put(path, retVal);
+        synchronized (pathCache) {
+          // keeping listings added by other threads in the meantime, unless enforced
+          retVal = force ? null : pathCache.get(path);
+          if (retVal == null) {
+            retVal = fileList;
+            pathCache.put(path, retVal);
+          }
+        }
       }
     }
     return retVal;
@@ -619,4 +657,47 @@ private static boolean isFileSystemCaseSensitive(FileSystem fs)
     }
     return retVal.booleanValue();
   }
+
+//-------------------------- INNER CLASSES --------------------------
+
+  /** Provides usage of the directory cache to the cache manager. */
+  private static final class ManagedPathCache implements CacheManager.ManagedCache
+  {
+    @Override
+    public String getName() { return "Directory listings"; }
+
+    @Override
+    public CacheManager.Policy getPolicy() { return CacheManager.Policy.NONE; }
+
+    @Override
+    public int getEntryCount()
+    {
+      synchronized (pathCache) {
+        return pathCache.size();
+      }
+    }
+
+    @Override
+    public long getMemorySize()
+    {
+      synchronized (pathCache) {
+        long size = 0L;
+        for (final HashSet<Path> set : pathCache.values()) {
+          size += 128L + set.size() * 96L;
+        }
+        return size;
+      }
+    }
+
+    @Override
+    public CacheManager.Statistics getStatistics() { return pathCacheStats; }
+
+    @Override
+    public void clear()
+    {
+      synchronized (pathCache) {
+        pathCache.clear();
+      }
+    }
+  }
 }
@@ -0,0 +1,152 @@
+package org.infinity.resource.graphics;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColorQuantizerTest {
+  private static Set<Integer> toSet(int[] colors) {
+    final Set<Integer> set = new HashSet<>();
+    for (final int color : colors) {
+      set.add(color);
+    }
+    return set;
+  }
+
+  private static int[] createPixels(Random random, int count) {
+    final int[] pixels = new int[count];
+    for (int i = 0; i < count; i++) {
+      pixels[i] = random.nextInt();
+    }
+    return pixels;
+  }
+
+  //medianCut(int[], int, boolean)
+  @Test
+  public void testPaletteSize() {
+    final Random random = new Random(12345);
+    final int[] pixels = createPixels(random, 5000);
+    final ColorQuantizer quantizer = new ColorQuantizer();
+    for (final int desiredColors : new int[] {1, 2, 16, 255, 256}) {
+      final int[] palette = quantizer.medianCut(pixels, desiredColors, false);
+      Assert.assertNotNull(palette);
+      Assert.assertEquals(desiredColors, palette.length);
+      // enough unique colors available: all entries are used
+      Assert.assertEquals(desiredColors, toSet(palette).size());
+    }
+  }
+
+  @Test
+  public void testInvalidPaletteSize() {
+    final int[] pixels = {0xff000000, 0xffffffff};
+    final ColorQuantizer quantizer = new ColorQuantizer();
+    Assert.assertNull(quantizer.medianCut(pixels, 0, false));
+    Assert.assertNull(quantizer.medianCut(pixels, -1, false));
+    Assert.assertNull(quantizer.medianCut(pixels, 257, false));
+  }
+
+  @Test
+  public void testFewerColorsThanRequested() {
+    final int[] colors = {0xff102030, 0x80405060, 0xff708090, 0x00000000, 0xffffffff};
+    final Random random = new Random(23456);
+    final int[] pixels = new int[1000];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = colors[random.nextInt(colors.length)];
+    }
+    final int[] palette = new ColorQuantizer().medianCut(pixels, 16, false);
+    Assert.assertNotNull(palette);
+    Assert.assertEquals(16, palette.length);
+    // every unique color is preserved exactly, unused entries repeat the first color
+    Assert.assertEquals(toSet(colors), toSet(palette));
+    for (int i = colors.length; i < palette.length; i++) {
+      Assert.assertEquals(palette[0], palette[i]);
+    }
+  }
+
+  @Test
+  public void testSingleColor() {
+    final int[] pixels = new int[100];
+    Arrays.fill(pixels, 0xff336699);
+    final int[] palette = new ColorQuantizer().medianCut(pixels, 4, false);
+    Assert.assertArrayEquals(new int[] {0xff336699, 0xff336699, 0xff336699, 0xff336699}, palette);
+  }
+
+  @Test
+  public void testEmptyInput() {
+    final ColorQuantizer quantizer = new ColorQuantizer();
+    final int[] palette = quantizer.medianCut(new int[0], 8, false);
+    Assert.assertNotNull(palette);
+    Assert.assertArrayEquals(new int[8], palette);
+
+    final int[] dst = {1, 2, 3, 4};
+    Assert.assertTrue(quantizer.medianCut(new int[0], 4, dst, true));
+    Assert.assertArrayEquals(new int[4], dst);
+  }
+
+  @Test
+  public void testIgnoreAlpha() {
+    final int[] pixels = {0x00102030, 0x80102030, 0xff102030, 0x40405060, 0xc0405060};
+    final ColorQuantizer quantizer = new ColorQuantizer();
+
+    // alpha is ignored: colors only differing in alpha are merged and fully opaque
+    final int[] palette = quantizer.medianCut(pixels, 4, true);
+    Assert.assertEquals(4, palette.length);
+    Assert.assertEquals(toSet(new int[] {0xff102030, 0xff405060}), toSet(palette));
+
+    // alpha is considered: all unique colors are preserved
+    final int[] paletteAlpha = quantizer.medianCut(pixels, 8, false);
+    Assert.assertEquals(8, paletteAlpha.length);
+    Assert.assertEquals(toSet(pixels), toSet(paletteAlpha));
+  }
+
+  @Test
+  public void testIgnoreAlphaRandom() {
+    final Random random = new Random(34567);
+    final int[] pixels = createPixels(random, 5000);
+    final int[] palette = new ColorQuantizer().medianCut(pixels, 64, true);
+    Assert.assertEquals(64, palette.length);
+    for (final int color : palette) {
+      Assert.assertEquals(0xff000000, color & 0xff000000);
+    }
+  }
+
+  //medianCut(int[], int, int[], boolean)
+  @Test
+  public void testPaletteArray() {
+    final Random random = new Random(45678);
+    final int[] pixels = createPixels(random, 2000);
+    final ColorQuantizer quantizer = new ColorQuantizer();
+    final int[] palette = new int[32];
+    Arrays.fill(palette, 0x12345678);
+    Assert.assertTrue(quantizer.medianCut(pixels, 16, palette, false));
+    // entries beyond the desired number of colors are not modified
+    for (int i = 16; i < palette.length; i++) {
+      Assert.assertEquals(0x12345678, palette[i]);
+    }
+    Assert.assertArrayEquals(quantizer.medianCut(pixels, 16, false), Arrays.copyOf(palette, 16));
+
+    Assert.assertFalse(quantizer.medianCut(pixels, 33, palette, false));
+    Assert.assertFalse(quantizer.medianCut(pixels, 0, palette, false));
+  }
+
+  @Test
+  public void testReuseInstance() {
+    // results must not depend on data of previous calls
+    final Random random = new Random(56789);
+    final int[] large = createPixels(random, 10000);
+    final int[] small = {0xff000000, 0xffffffff};
+    final ColorQuantizer quantizer = new ColorQuantizer();
+    final int[] expected = new ColorQuantizer().medianCut(small, 4, false);
+    quantizer.medianCut(large, 256, false);
+    Assert.assertArrayEquals(expected, quantizer.medianCut(small, 4, false));
+  }
+
+  @Test(expected=NullPointerException.class)
+  public void testNullPixels() {
+    new ColorQuantizer().medianCut(null, 16, false);
+  }
+}
@@ -0,0 +1,173 @@
+package org.infinity.resource.graphics;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DxtEncoderTest {
+  private static int[] createImage(Random random, int width, int height) {
+    // mix of noise, gradients and flat areas to cover all color fits
+    final int[] pixels = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final int ofs = y * width + x;
+        switch ((x / 16 + y / 16) % 3) {
+          case 0:
+            pixels[ofs] = random.nextInt();
+            break;
+          case 1:
+            pixels[ofs] = ((x * 255 / width) << 24) | ((x & 0xff) << 16) | ((y & 0xff) << 8) | ((x + y) & 0xff);
+            break;
+          default:
+            pixels[ofs] = 0xff336699;
+        }
+      }
+    }
+    return pixels;
+  }
+
+  /** Reference implementation: Encodes the image one block at a time. */
+  private static byte[] encodeBlockwise(int[] pixels, int width, int height, DxtEncoder.DxtType dxtType,
+                                        DxtEncoder.Quality quality) throws Exception {
+    final int blockSize = DxtEncoder.calcBlockSize(dxtType);
+    final byte[] output = new byte[DxtEncoder.calcImageSize(width, height, dxtType)];
+    final int[] inBlock = new int[16];
+    final byte[] outBlock = new byte[blockSize];
+    final int bw = width / 4;
+    for (int by = 0; by < height / 4; by++) {
+      for (int bx = 0; bx < bw; bx++) {
+        for (int i = 0; i < 4; i++) {
+          System.arraycopy(pixels, (by * 4 + i) * width + bx * 4, inBlock, i * 4, 4);
+        }
+        DxtEncoder.encodeBlock(inBlock, outBlock, dxtType, quality);
+        System.arraycopy(outBlock, 0, output, (by * bw + bx) * blockSize, blockSize);
+      }
+    }
+    return output;
+  }
+
+  //encodeImage(int[], int, int, DxtType)
+  @Test
+  public void testRegression() throws Exception {
+    // checksums of the output of the original single-threaded encoder
+    final long[] expected = {0x32d78b9dL, 0xa95ad3deL, 0xf7e20239L};
+    final int[] pixels = createImage(new Random(12345), 256, 128);
+    for (final DxtEncoder.DxtType dxtType : DxtEncoder.DxtType.values()) {
+      final CRC32 crc = new CRC32();
+      crc.update(DxtEncoder.encodeImage(pixels, 256, 128, dxtType));
+      Assert.assertEquals(dxtType.toString(), expected[dxtType.ordinal()], crc.getValue());
+    }
+  }
+
+  //encodeImage(int[], int, int, DxtType, Quality)
+  @Test
+  public void testParallelMatchesBlockwise() throws Exception {
+    // large enough to be encoded in parallel
+    final int width = 256, height = 128;
+    final int[] pixels = createImage(new Random(12345), width, height);
+    for (final DxtEncoder.DxtType dxtType : DxtEncoder.DxtType.values()) {
+      for (final DxtEncoder.Quality quality : DxtEncoder.Quality.values()) {
+        final byte[] expected = encodeBlockwise(pixels, width, height, dxtType, quality);
+        Assert.assertArrayEquals(dxtType + ", " + quality, expected,
+                                 DxtEncoder.encodeImage(pixels, width, height, dxtType, quality));
+      }
+    }
+  }
+
+  @Test
+  public void testSmallImage() throws Exception {
+    final int width = 16, height = 8;
+    final int[] pixels = createImage(new Random(23456), width, height);
+    for (final DxtEncoder.DxtType dxtType : DxtEncoder.DxtType.values()) {
+      final byte[] output = DxtEncoder.encodeImage(pixels, width, height, dxtType);
+      Assert.assertEquals(DxtEncoder.calcImageSize(width, height, dxtType), output.length);
+      Assert.assertArrayEquals(encodeBlockwise(pixels, width, height, dxtType, DxtEncoder.Quality.HIGH), output);
+    }
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    final int[] pixels = new int[64];
+    for (final int[] dim : new int[][] {{0, 4}, {4, 0}, {6, 4}, {4, 6}, {16, 8}}) {
+      try {
+        DxtEncoder.encodeImage(pixels, dim[0], dim[1], DxtEncoder.DxtType.DXT1);
+        Assert.fail("Exception expected: " + dim[0] + "x" + dim[1]);
+      } catch (Exception e) {
+      }
+    }
+    try {
+      DxtEncoder.encodeImage(pixels, 8, 8, null);
+      Assert.fail("Exception expected");
+    } catch (Exception e) {
+    }
+  }
+
+  //encodeBlockRows(int[], int, int, int, int, byte[], DxtType, Quality)
+  @Test
+  public void testBlockRows() throws Exception {
+    final int width = 128, height = 128;
+    final int[] pixels = createImage(new Random(34567), width, height);
+    for (final DxtEncoder.DxtType dxtType : DxtEncoder.DxtType.values()) {
+      final byte[] expected = encodeBlockwise(pixels, width, height, dxtType, DxtEncoder.Quality.HIGH);
+      final byte[] output = new byte[expected.length];
+      // code blocks are stored at the position of the whole image
+      final int rowSize = width / 4 * DxtEncoder.calcBlockSize(dxtType);
+      DxtEncoder.encodeBlockRows(pixels, width, height, 5, 20, output, dxtType, DxtEncoder.Quality.HIGH);
+      Assert.assertArrayEquals(Arrays.copyOfRange(expected, 5 * rowSize, 25 * rowSize),
+                               Arrays.copyOfRange(output, 5 * rowSize, 25 * rowSize));
+      Assert.assertArrayEquals(new byte[5 * rowSize], Arrays.copyOfRange(output, 0, 5 * rowSize));
+      Assert.assertArrayEquals(new byte[output.length - 25 * rowSize],
+                               Arrays.copyOfRange(output, 25 * rowSize, output.length));
+
+      try {
+        DxtEncoder.encodeBlockRows(pixels, width, height, 30, 3, output, dxtType, DxtEncoder.Quality.HIGH);
+        Assert.fail("Exception expected");
+      } catch (Exception e) {
+      }
+    }
+  }
+
+  //encodeBlock(int[], byte[], DxtType)
+  @Test
+  public void testSingleColorBlock() throws Exception {
+    final int[] pixels = new int[16];
+    Arrays.fill(pixels, 0xffffffff);
+    final byte[] block = new byte[8];
+    DxtEncoder.encodeBlock(pixels, block, DxtEncoder.DxtType.DXT1);
+    // black and white endpoints, all indices referring to white
+    Assert.assertArrayEquals(new byte[] {0, 0, (byte)0xff, (byte)0xff, 0x55, 0x55, 0x55, 0x55}, block);
+
+    final byte[] block3 = new byte[16];
+    DxtEncoder.encodeBlock(pixels, block3, DxtEncoder.DxtType.DXT3);
+    // opaque alpha, white and black endpoints (no transparent color), all indices referring to white
+    Assert.assertArrayEquals(new byte[] {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff,
+                                         (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff,
+                                         (byte)0xff, (byte)0xff, 0, 0, 0, 0, 0, 0}, block3);
+  }
+
+  @Test
+  public void testTransparentBlockDxt1() throws Exception {
+    final int[] pixels = new int[16];
+    final byte[] block = new byte[8];
+    DxtEncoder.encodeBlock(pixels, block, DxtEncoder.DxtType.DXT1);
+    // all indices referring to the transparent color
+    for (int i = 4; i < 8; i++) {
+      Assert.assertEquals((byte)0xff, block[i]);
+    }
+  }
+
+  //calcBlockSize(DxtType), calcImageSize(int, int, DxtType)
+  @Test
+  public void testSizes() {
+    Assert.assertEquals(8, DxtEncoder.calcBlockSize(DxtEncoder.DxtType.DXT1));
+    Assert.assertEquals(16, DxtEncoder.calcBlockSize(DxtEncoder.DxtType.DXT3));
+    Assert.assertEquals(16, DxtEncoder.calcBlockSize(DxtEncoder.DxtType.DXT5));
+    Assert.assertEquals(0, DxtEncoder.calcBlockSize(null));
+    Assert.assertEquals(8, DxtEncoder.calcImageSize(1, 1, DxtEncoder.DxtType.DXT1));
+    Assert.assertEquals(4 * 16, DxtEncoder.calcImageSize(5, 8, DxtEncoder.DxtType.DXT5));
+    Assert.assertEquals(0, DxtEncoder.calcImageSize(0, 8, DxtEncoder.DxtType.DXT5));
+  }
+}
@@ -0,0 +1,179 @@
+package org.infinity.resource.graphics;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PaletteMatcherTest {
+  /**
+   * Reference implementation: colors defined by the palette map to their last entry,
+   * all other colors are matched by {@link ColorConvert#nearestColorRGB(int, int[], boolean)}.
+   */
+  private static int nearestColor(int argb, int[] palette, boolean ignoreAlpha) {
+    for (int i = palette.length - 1; i >= 0; i--) {
+      if (palette[i] == argb) {
+        return i;
+      }
+    }
+    return ColorConvert.nearestColorRGB(argb, palette, ignoreAlpha);
+  }
+
+  private static int[] createPalette(Random random, int size, boolean opaque) {
+    final int[] palette = new int[size];
+    for (int i = 0; i < size; i++) {
+      palette[i] = random.nextInt() | (opaque ? 0xff000000 : 0);
+    }
+    return palette;
+  }
+
+  private static void assertMatches(int[] palette, boolean ignoreAlpha, int[] colors) {
+    final PaletteMatcher matcher = new PaletteMatcher(palette, ignoreAlpha);
+    final byte[] indices = new byte[colors.length];
+    matcher.nearestColors(colors, indices);
+    for (int i = 0; i < colors.length; i++) {
+      final int expected = nearestColor(colors[i], palette, ignoreAlpha);
+      final String msg = String.format("color=%08x, ignoreAlpha=%b", colors[i], ignoreAlpha);
+      Assert.assertEquals(msg, expected, matcher.nearestColor(colors[i]));
+      Assert.assertEquals(msg, expected, indices[i] & 0xff);
+    }
+  }
+
+  private static int[] createColors(Random random, int count) {
+    final int[] colors = new int[count];
+    for (int i = 0; i < count; i++) {
+      colors[i] = random.nextInt();
+    }
+    return colors;
+  }
+
+  //nearestColor(int), nearestColors(int[], byte[])
+  @Test
+  public void testRandomPalettes() {
+    final Random random = new Random(12345);
+    for (int round = 0; round < 40; round++) {
+      final int size = 1 + random.nextInt(256);
+      final int[] palette = createPalette(random, size, false);
+      final int[] colors = createColors(random, 2000);
+      assertMatches(palette, false, colors);
+    }
+  }
+
+  @Test
+  public void testRandomPalettesIgnoreAlpha() {
+    final Random random = new Random(23456);
+    for (int round = 0; round < 40; round++) {
+      // opaque palettes, since a transparent entry would match any color
+      final int size = 1 + random.nextInt(256);
+      final int[] palette = createPalette(random, size, true);
+      final int[] colors = createColors(random, 2000);
+      assertMatches(palette, true, colors);
+    }
+  }
+
+  @Test
+  public void testPaletteColors() {
+    final Random random = new Random(34567);
+    final int[] palette = createPalette(random, 256, false);
+    assertMatches(palette, false, palette);
+    assertMatches(palette, true, palette);
+  }
+
+  @Test
+  public void testTransparentColors() {
+    final Random random = new Random(45678);
+    final int[] palette = createPalette(random, 64, true);
+    palette[10] = 0x00123456;
+    palette[20] = 0x00000000;
+    final int[] colors = createColors(random, 2000);
+    for (int i = 0; i < colors.length; i += 4) {
+      colors[i] &= 0x00ffffff;
+    }
+    assertMatches(palette, false, colors);
+    assertMatches(palette, true, colors);
+
+    // green is treated as transparent
+    palette[5] = 0xff00ff00;
+    assertMatches(palette, false, colors);
+    assertMatches(palette, true, colors);
+  }
+
+  @Test
+  public void testLargeBlock() {
+    // large blocks are matched in parallel
+    final Random random = new Random(56789);
+    final int[] palette = createPalette(random, 256, false);
+    final int[] colors = createColors(random, 200000);
+    assertMatches(palette, false, colors);
+  }
+
+  @Test
+  public void testOffsets() {
+    final Random random = new Random(67890);
+    final int[] palette = createPalette(random, 16, true);
+    final int[] colors = createColors(random, 100);
+    final byte[] indices = new byte[110];
+    final PaletteMatcher matcher = new PaletteMatcher(palette, false);
+    matcher.nearestColors(colors, 20, indices, 5, 50);
+    for (int i = 0; i < 50; i++) {
+      Assert.assertEquals(nearestColor(colors[20 + i], palette, false), indices[5 + i]);
+    }
+    Assert.assertEquals(0, indices[4]);
+    Assert.assertEquals(0, indices[55]);
+  }
+
+  @Test
+  public void testEmptyPalette() {
+    final Random random = new Random(78901);
+    final int[] colors = createColors(random, 100);
+    for (final boolean ignoreAlpha : new boolean[] {false, true}) {
+      final PaletteMatcher matcher = new PaletteMatcher(new int[0], ignoreAlpha);
+      for (final int color : colors) {
+        Assert.assertEquals(-1, matcher.nearestColor(color));
+        Assert.assertEquals(ColorConvert.nearestColorRGB(color, new int[0], ignoreAlpha), matcher.nearestColor(color));
+      }
+    }
+  }
+
+  @Test
+  public void testDuplicateEntries() {
+    final Random random = new Random(89012);
+    for (int round = 0; round < 20; round++) {
+      // few distinct colors, each defined several times
+      final int[] distinct = createPalette(random, 1 + random.nextInt(8), true);
+      final int[] palette = new int[1 + random.nextInt(256)];
+      for (int i = 0; i < palette.length; i++) {
+        palette[i] = distinct[random.nextInt(distinct.length)];
+      }
+      final int[] colors = createColors(random, 1000);
+      assertMatches(palette, false, colors);
+      assertMatches(palette, true, colors);
+      assertMatches(palette, false, palette);
+    }
+  }
+
+  @Test
+  public void testDuplicateEntriesMapToLastEntry() {
+    final int[] palette = {0xff102030, 0xff405060, 0xff102030, 0xff708090, 0xff102030};
+    final PaletteMatcher matcher = new PaletteMatcher(palette, false);
+    Assert.assertEquals(4, matcher.nearestColor(0xff102030));
+    // inexact matches resolve ties to the lowest index
+    Assert.assertEquals(0, matcher.nearestColor(0xff102031));
+    Assert.assertEquals(ColorConvert.nearestColorRGB(0xff102031, palette, false), matcher.nearestColor(0xff102031));
+  }
+
+  @Test
+  public void testPaletteIsCopied() {
+    final int[] palette = {0xff000000, 0xffffffff};
+    final PaletteMatcher matcher = new PaletteMatcher(palette, true);
+    palette[0] = 0xffff0000;
+    Assert.assertArrayEquals(new int[] {0xff000000, 0xffffffff}, matcher.getPalette());
+    Assert.assertTrue(matcher.isAlphaIgnored());
+    Assert.assertEquals(0, matcher.nearestColor(0xff101010));
+  }
+
+  @Test(expected=NullPointerException.class)
+  public void testNullPalette() {
+    new PaletteMatcher(null, false);
+  }
+}
@@ -0,0 +1,180 @@
+package org.infinity.search;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchTermTest {
+  /** Reference implementation based on the regular expression engine. */
+  private static boolean regexMatches(String text, String term, boolean isRegex, boolean isWholeWord, boolean isCaseSensitive) {
+    final String regex = isRegex ? term : Pattern.quote(term);
+    final String s = isWholeWord ? "\\b(?:" + regex + ")\\b" : "(?:" + regex + ")";
+    final int flags = Pattern.DOTALL | (isCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+    return Pattern.compile(s, flags).matcher(text).find();
+  }
+
+  private static boolean matches(String text, String term, boolean isRegex, boolean isWholeWord, boolean isCaseSensitive) {
+    return SearchTerm.compile(term, isRegex, isWholeWord, isCaseSensitive).matches(text);
+  }
+
+  //Boyer-Moore-Horspool: single literal
+  @Test
+  public void testLiteralCaseSensitive() {
+    Assert.assertTrue(matches("Hello World", "World", false, false, true));
+    Assert.assertFalse(matches("Hello World", "world", false, false, true));
+  }
+
+  @Test
+  public void testLiteralCaseFolding() {
+    Assert.assertTrue(matches("Hello World", "wORLD", false, false, false));
+    Assert.assertTrue(matches("hello world", "WORLD", false, false, false));
+  }
+
+  @Test
+  public void testLiteralCaseFoldingAsciiOnly() {
+    // consistent with Pattern.CASE_INSENSITIVE without UNICODE_CASE
+    Assert.assertFalse(matches("\u00e4rger", "\u00c4RGER", false, false, false));
+    Assert.assertEquals(regexMatches("\u00e4rger", "\u00c4RGER", false, false, false),
+                        matches("\u00e4rger", "\u00c4RGER", false, false, false));
+  }
+
+  @Test
+  public void testLiteralAtBoundsOfText() {
+    Assert.assertTrue(matches("abcdef", "abc", false, false, true));
+    Assert.assertTrue(matches("abcdef", "def", false, false, true));
+    Assert.assertTrue(matches("abc", "abc", false, false, true));
+    Assert.assertFalse(matches("ab", "abc", false, false, true));
+  }
+
+  @Test
+  public void testLiteralWithMetaCharacters() {
+    Assert.assertTrue(matches("cost: $5.00 (max)", "$5.00 (max)", false, false, true));
+    Assert.assertFalse(matches("cost: $5x00", "$5.00", false, false, true));
+  }
+
+  @Test
+  public void testLiteralWholeWord() {
+    Assert.assertTrue(matches("the cat sat", "cat", false, true, true));
+    Assert.assertFalse(matches("concatenate", "cat", false, true, true));
+    Assert.assertTrue(matches("concatenate cat", "cat", false, true, true));
+    Assert.assertTrue(matches("cat_", "cat_", false, true, true));
+    Assert.assertFalse(matches("cat_x", "cat", false, true, true));
+  }
+
+  @Test
+  public void testEmptyTerm() {
+    Assert.assertTrue(matches("", "", false, false, true));
+    Assert.assertTrue(matches("abc", "", false, false, false));
+    Assert.assertEquals(regexMatches("", "", false, true, true), matches("", "", false, true, true));
+    Assert.assertEquals(regexMatches("a b", "", false, true, true), matches("a b", "", false, true, true));
+    Assert.assertEquals(regexMatches(" ", "", false, true, true), matches(" ", "", false, true, true));
+  }
+
+  @Test
+  public void testNullTextAndTerm() {
+    Assert.assertFalse(SearchTerm.compile("abc", false, false, true).matches(null));
+    Assert.assertTrue(SearchTerm.compile(null, false, false, true).matches("abc"));
+  }
+
+  //Aho-Corasick: literal alternatives
+  @Test
+  public void testAlternatives() {
+    Assert.assertTrue(matches("a fireball", "lightning|fireball", true, false, true));
+    Assert.assertTrue(matches("lightning bolt", "lightning|fireball", true, false, true));
+    Assert.assertFalse(matches("magic missile", "lightning|fireball", true, false, true));
+  }
+
+  @Test
+  public void testAlternativesCaseFolding() {
+    Assert.assertTrue(matches("A FIREBALL", "lightning|fireball", true, false, false));
+    Assert.assertFalse(matches("A FIREBALL", "lightning|fireball", true, false, true));
+  }
+
+  @Test
+  public void testOverlappingAlternatives() {
+    // alternatives sharing prefixes and suffixes are found via failure links
+    Assert.assertTrue(matches("ushers", "he|she|his|hers", true, false, true));
+    Assert.assertTrue(matches("xhisx", "he|she|his|hers", true, false, true));
+    Assert.assertTrue(matches("aab", "ab|aab|b", true, false, true));
+    Assert.assertTrue(matches("abcd", "bcd|abce", true, false, true));
+    Assert.assertFalse(matches("abce_", "bcd|abcf", true, false, true));
+  }
+
+  @Test
+  public void testOverlappingAlternativesWholeWord() {
+    // shorter alternative ends inside a word, longer one is a whole word
+    Assert.assertTrue(matches("the hers", "he|hers", true, true, true));
+    Assert.assertFalse(matches("ushers", "he|she|hers", true, true, true));
+    Assert.assertTrue(matches("us she", "he|she|hers", true, true, true));
+  }
+
+  @Test
+  public void testAlternativesWithEscapedCharacters() {
+    Assert.assertTrue(matches("value a.b", "a\\.b|c\\|d", true, false, true));
+    Assert.assertTrue(matches("value c|d", "a\\.b|c\\|d", true, false, true));
+    Assert.assertFalse(matches("value axb", "a\\.b|c\\|d", true, false, true));
+  }
+
+  @Test
+  public void testAlternativesWithNonAsciiCharacters() {
+    Assert.assertTrue(matches("gr\u00fc\u00dfe", "\u00fc\u00df|\u00e4", true, false, true));
+    Assert.assertTrue(matches("\u00c4rger", "\u00c4|xyz", true, false, false));
+    Assert.assertFalse(matches("\u00e4rger", "\u00c4|xyz", true, false, false));
+  }
+
+  //Regular expression fallback
+  @Test
+  public void testRegexFallback() {
+    Assert.assertTrue(matches("spell level 3", "level \\d", true, false, true));
+    Assert.assertTrue(matches("SPWI304", "spwi[0-9]+", true, false, false));
+    Assert.assertFalse(matches("SPWI", "spwi[0-9]+", true, false, false));
+    Assert.assertTrue(matches("abc", "^a.c$", true, false, true));
+  }
+
+  @Test
+  public void testRegexFallbackForEmptyAlternatives() {
+    Assert.assertTrue(matches("xyz", "abc|", true, false, true));
+    Assert.assertTrue(matches("xyz", "|abc", true, false, true));
+  }
+
+  @Test(expected=PatternSyntaxException.class)
+  public void testInvalidRegex() {
+    SearchTerm.compile("abc(", true, false, true);
+  }
+
+  @Test
+  public void testQuery() {
+    Assert.assertEquals(".*abc.*", SearchTerm.compile("abc", true, false, true).getQuery());
+    Assert.assertEquals(".*\\babc\\b.*", SearchTerm.compile("abc", true, true, true).getQuery());
+    Assert.assertTrue("x a.b y".matches(SearchTerm.compile("a.b", false, false, true).getQuery()));
+    Assert.assertFalse("x axb y".matches(SearchTerm.compile("a.b", false, false, true).getQuery()));
+  }
+
+  //All engines must be consistent with the regular expression engine
+  @Test
+  public void testConsistencyWithRegex() {
+    final Random random = new Random(12345);
+    final String alphabet = "abAB _.|\u00e4";
+    final String[] terms = {"a", "ab", "Ab", "aba", "a.b", "_a", "\u00e4b", "a|b", "ab|ba", "aB|b|bab", "a\\.b|b", "a.|b"};
+    for (int i = 0; i < 2000; i++) {
+      final StringBuilder sb = new StringBuilder();
+      for (int j = random.nextInt(12); j > 0; j--) {
+        sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      final String text = sb.toString();
+      for (final String term : terms) {
+        for (int flags = 0; flags < 8; flags++) {
+          final boolean isRegex = (flags & 1) != 0;
+          final boolean isWholeWord = (flags & 2) != 0;
+          final boolean isCaseSensitive = (flags & 4) != 0;
+          Assert.assertEquals("text=\"" + text + "\", term=\"" + term + "\", flags=" + flags,
+                              regexMatches(text, term, isRegex, isWholeWord, isCaseSensitive),
+                              matches(text, term, isRegex, isWholeWord, isCaseSensitive));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.infinity.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedExecutorTest {
+  //execute(Runnable), awaitCompletion(long, TimeUnit)
+  @Test
+  public void testAllTasksExecuted() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(4, 8, false);
+    final AtomicInteger count = new AtomicInteger();
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertTrue(executor.execute(count::incrementAndGet));
+    }
+    Assert.assertTrue(executor.awaitCompletion(-1, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(1000, count.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testPendingLimit() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(1, 3, false);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger submitted = new AtomicInteger();
+    final Thread producer = new Thread(() -> {
+      try {
+        for (int i = 0; i < 5; i++) {
+          executor.execute(() -> {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+          submitted.incrementAndGet();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    producer.start();
+
+    // producer blocks as soon as all permits are taken
+    Thread.sleep(200);
+    Assert.assertEquals(3, submitted.get());
+    Assert.assertTrue(producer.isAlive());
+    Assert.assertFalse(executor.awaitCompletion(10, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    producer.join(5000);
+    Assert.assertEquals(5, submitted.get());
+    Assert.assertTrue(executor.awaitCompletion(5, TimeUnit.SECONDS));
+    executor.shutdown();
+  }
+
+  @Test
+  public void testMinimumLimits() throws InterruptedException {
+    // pending limit is raised to the number of threads
+    final BoundedExecutor executor = new BoundedExecutor(0, 0, false);
+    final AtomicInteger count = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      executor.execute(count::incrementAndGet);
+    }
+    Assert.assertTrue(executor.awaitCompletion(5, TimeUnit.SECONDS));
+    Assert.assertEquals(10, count.get());
+    executor.shutdown();
+  }
+
+  @Test(expected=NullPointerException.class)
+  public void testNullTask() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(1, 1, false);
+    try {
+      executor.execute(null);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  //cancel(), isCancelled()
+  @Test
+  public void testCancelInterruptsRunningTasks() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(2, 2, false);
+    final CountDownLatch started = new CountDownLatch(2);
+    final AtomicInteger interrupted = new AtomicInteger();
+    for (int i = 0; i < 2; i++) {
+      executor.execute(() -> {
+        started.countDown();
+        try {
+          Thread.sleep(60000);
+        } catch (InterruptedException e) {
+          interrupted.incrementAndGet();
+        }
+      });
+    }
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    Assert.assertFalse(executor.isCancelled());
+
+    executor.cancel();
+    Assert.assertTrue(executor.isCancelled());
+    Assert.assertTrue(executor.awaitCompletion(5, TimeUnit.SECONDS));
+    Assert.assertEquals(2, interrupted.get());
+  }
+
+  @Test
+  public void testCancelSkipsPendingTasks() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(1, 4, false);
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicBoolean pendingExecuted = new AtomicBoolean();
+    executor.execute(() -> {
+      started.countDown();
+      try {
+        Thread.sleep(60000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    for (int i = 0; i < 3; i++) {
+      executor.execute(() -> pendingExecuted.set(true));
+    }
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    executor.cancel();
+    // permits of skipped tasks are released as well
+    Assert.assertTrue(executor.awaitCompletion(5, TimeUnit.SECONDS));
+    Assert.assertFalse(pendingExecuted.get());
+  }
+
+  @Test
+  public void testNoTasksAcceptedAfterCancel() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(1, 1, false);
+    executor.cancel();
+    final AtomicBoolean executed = new AtomicBoolean();
+    Assert.assertFalse(executor.execute(() -> executed.set(true)));
+    Assert.assertTrue(executor.awaitCompletion(5, TimeUnit.SECONDS));
+    Assert.assertFalse(executed.get());
+  }
+
+  @Test
+  public void testCancelPolledByTasks() throws InterruptedException {
+    final BoundedExecutor executor = new BoundedExecutor(1, 1, false);
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicBoolean finished = new AtomicBoolean();
+    executor.execute(() -> {
+      started.countDown();
+      // busy task ignoring interrupts
+      while (!executor.isCancelled()) {
+        Thread.yield();
+      }
+      finished.set(true);
+    });
+    Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+    executor.cancel();
+    Assert.assertTrue(executor.awaitCompletion(5, TimeUnit.SECONDS));
+    Assert.assertTrue(finished.get());
+  }
+}
@@ -0,0 +1,134 @@
+package org.infinity.util;
+
+import org.infinity.resource.key.ResourceEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Table2daTest {
+  private static Table2da load(String text) {
+    final Table2da table = new Table2da((ResourceEntry)null);
+    table.parse(text);
+    return table;
+  }
+
+  //parse(String)
+  @Test
+  public void testTokenizer() {
+    final Table2da table = load("2DA V1.0\r\n" +
+                                "  ****  \r\n" +
+                                "\tCOL1   COL2 COL3\r\n" +
+                                "ROW1 a\tb  c\r\n" +
+                                "\r\n" +
+                                "   \t \n" +
+                                "ROW2 d e\n" +
+                                "ROW3 f g h i");
+    Assert.assertFalse(table.isEmpty());
+    Assert.assertEquals("****", table.getDefaultValue());
+    // blank lines are skipped
+    Assert.assertEquals(3, table.getRowCount());
+    // rows are normalized to the longest row
+    Assert.assertEquals(5, table.getColCount());
+
+    Assert.assertEquals("", table.getHeader(0));
+    Assert.assertEquals("COL1", table.getHeader(1));
+    Assert.assertEquals("COL3", table.getHeader(3));
+    Assert.assertEquals("", table.getHeader(4));
+    Assert.assertNull(table.getHeader(5));
+    Assert.assertNull(table.getHeader(-1));
+
+    Assert.assertEquals("ROW1", table.get(0, 0));
+    Assert.assertEquals("b", table.get(0, 2));
+    Assert.assertEquals("c", table.get(0, 3));
+    Assert.assertEquals("e", table.get(1, 2));
+    Assert.assertEquals("i", table.get(2, 4));
+    // missing and out of range cells
+    Assert.assertEquals("****", table.get(1, 3));
+    Assert.assertEquals("****", table.get(3, 0));
+    Assert.assertEquals("****", table.get(0, -1));
+  }
+
+  @Test
+  public void testDefaultValue() {
+    Assert.assertEquals("0", load("2DA V1.0\n\nA B\nR 1 2").getDefaultValue());
+    Assert.assertEquals("some value", load("2DA V1.0\n some value \nA B\nR 1 2").getDefaultValue());
+  }
+
+  @Test
+  public void testHeaderOnly() {
+    final Table2da table = load("2DA V1.0\n0\nA B C\n");
+    Assert.assertFalse(table.isEmpty());
+    Assert.assertEquals(0, table.getRowCount());
+    Assert.assertEquals(4, table.getColCount());
+    Assert.assertEquals("C", table.getHeader(3));
+  }
+
+  @Test
+  public void testInvalidContent() {
+    Assert.assertTrue(load("").isEmpty());
+    Assert.assertTrue(load("2DA V1.0").isEmpty());
+    Assert.assertTrue(load("2DA V2.0\n0\nA B\nR 1 2").isEmpty());
+    Assert.assertTrue(load("XYZ V1.0\n0\nA B\nR 1 2").isEmpty());
+    Assert.assertTrue(load(null).isEmpty());
+    Assert.assertTrue(new Table2da((ResourceEntry)null).isEmpty());
+  }
+
+  @Test
+  public void testParseResetsContent() {
+    final Table2da table = load("2DA V1.0\n*\nA B C D\nR1 1 2 3 4\nR2 5 6 7 8\n");
+    Assert.assertEquals(5, table.getColCount());
+    Assert.assertEquals(2, table.getRowCount());
+    Assert.assertEquals(2, table.findColumn("B"));
+    Assert.assertEquals(1, table.findRow(3, "7"));
+
+    // header and indices of the previous content are discarded
+    table.parse("2DA V1.0\n-1\nX Y\nS1 10 20\n");
+    Assert.assertEquals("-1", table.getDefaultValue());
+    Assert.assertEquals(3, table.getColCount());
+    Assert.assertEquals(1, table.getRowCount());
+    Assert.assertEquals("Y", table.getHeader(2));
+    Assert.assertNull(table.getHeader(3));
+    Assert.assertEquals(-1, table.findColumn("B"));
+    Assert.assertEquals(1, table.findColumn("X"));
+    Assert.assertEquals(-1, table.findRow(3, "7"));
+    Assert.assertEquals(0, table.findRow(2, "20"));
+
+    // invalid content leaves an empty table
+    table.parse("");
+    Assert.assertTrue(table.isEmpty());
+    Assert.assertEquals(0, table.getColCount());
+    Assert.assertEquals("0", table.getDefaultValue());
+    Assert.assertNull(table.getHeader(1));
+    Assert.assertEquals(-1, table.findColumn("X"));
+    Assert.assertEquals(-1, table.findRow(0, "S1"));
+  }
+
+  //findColumn(String)
+  @Test
+  public void testFindColumn() {
+    final Table2da table = load("2DA V1.0\n0\nName Value name\nR1 a b c\n");
+    Assert.assertEquals(1, table.findColumn("NAME"));
+    Assert.assertEquals(2, table.findColumn("value"));
+    // header column is never matched
+    Assert.assertEquals(-1, table.findColumn(""));
+    Assert.assertEquals(-1, table.findColumn("missing"));
+    Assert.assertEquals(-1, table.findColumn(null));
+  }
+
+  //findRow(int, String)
+  @Test
+  public void testFindRow() {
+    final Table2da table = load("2DA V1.0\n0\nA B\nR1 x 1\nR2 Y 2\nR3 x 3\nr1 z\n");
+    Assert.assertEquals(0, table.findRow(Table2da.COLUMN_HEADER, "R1"));
+    Assert.assertEquals(2, table.findRow(Table2da.COLUMN_HEADER, "r3"));
+    // first matching row is returned
+    Assert.assertEquals(0, table.findRow(1, "X"));
+    Assert.assertEquals(1, table.findRow(1, "y"));
+    Assert.assertEquals(2, table.findRow(2, "3"));
+    // cells added by normalization contain the default value
+    Assert.assertEquals(3, table.findRow(2, "0"));
+    Assert.assertEquals(-1, table.findRow(1, "missing"));
+    Assert.assertEquals(-1, table.findRow(1, null));
+    Assert.assertEquals(-1, table.findRow(3, "x"));
+    Assert.assertEquals(-1, table.findRow(-1, "x"));
+  }
+}
@@ -0,0 +1,187 @@
+package org.infinity.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraParserTest {
+  private static List<TraParser.Entry> parse(String text) throws IOException {
+    final List<TraParser.Entry> list = new ArrayList<>();
+    try (TraParser parser = new TraParser(new StringReader(text))) {
+      TraParser.Entry entry;
+      while ((entry = parser.next()) != null) {
+        list.add(entry);
+      }
+    }
+    return list;
+  }
+
+  private static TraParser.Entry parseSingle(String text) throws IOException {
+    final List<TraParser.Entry> list = parse(text);
+    Assert.assertEquals(1, list.size());
+    return list.get(0);
+  }
+
+  private static void assertError(String text) {
+    try {
+      parse(text);
+      Assert.fail("IOException expected: " + text);
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("TRA syntax error at line "));
+    }
+  }
+
+  //next()
+  @Test
+  public void testEmpty() throws IOException {
+    Assert.assertTrue(parse("").isEmpty());
+    Assert.assertTrue(parse("  \r\n\t ").isEmpty());
+    Assert.assertTrue(parse("// comment only\n/* block\ncomment */").isEmpty());
+  }
+
+  @Test
+  public void testTildes() throws IOException {
+    final TraParser.Entry entry = parseSingle("@12 = ~Hello \"World\"~");
+    Assert.assertEquals(12, entry.getIndex());
+    Assert.assertEquals("Hello \"World\"", entry.getText());
+    Assert.assertEquals("", entry.getSound());
+    Assert.assertFalse(entry.hasFemale());
+  }
+
+  @Test
+  public void testOtherDelimiters() throws IOException {
+    final List<TraParser.Entry> list = parse("@0 = \"It's ~fine~\"\n@1 = %100~ sure%");
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals("It's ~fine~", list.get(0).getText());
+    Assert.assertEquals("100~ sure", list.get(1).getText());
+  }
+
+  @Test
+  public void testFiveTildes() throws IOException {
+    final TraParser.Entry entry = parseSingle("@5 = ~~~~~He said \"~no~\" and %left%~~~~~");
+    Assert.assertEquals("He said \"~no~\" and %left%", entry.getText());
+    Assert.assertEquals("", parseSingle("@5 = ~~~~~~~~~~").getText());
+    Assert.assertEquals("a~~b", parseSingle("@5 = ~~~~~a~~b~~~~~").getText());
+  }
+
+  @Test
+  public void testEmptyString() throws IOException {
+    Assert.assertEquals("", parseSingle("@0 = ~~").getText());
+  }
+
+  @Test
+  public void testMultiLineString() throws IOException {
+    final TraParser.Entry entry = parseSingle("@0 = ~line 1\r\nline 2\rline 3\nline 4~");
+    Assert.assertEquals("line 1\nline 2\nline 3\nline 4", entry.getText());
+  }
+
+  @Test
+  public void testComments() throws IOException {
+    final String text = "// header\n" +
+                        "@1 /* inline */ = /* before */ ~one // not a comment~ // trailing\n" +
+                        "/* multi\n line */\n" +
+                        "@2 = ~two /* not a comment */~\n";
+    final List<TraParser.Entry> list = parse(text);
+    Assert.assertEquals(2, list.size());
+    Assert.assertEquals(1, list.get(0).getIndex());
+    Assert.assertEquals("one // not a comment", list.get(0).getText());
+    Assert.assertEquals(2, list.get(1).getIndex());
+    Assert.assertEquals("two /* not a comment */", list.get(1).getText());
+  }
+
+  @Test
+  public void testSoundRefs() throws IOException {
+    final TraParser.Entry entry = parseSingle("@3 = ~Text~ [ SOUND01 ]");
+    Assert.assertEquals("Text", entry.getText());
+    Assert.assertEquals("SOUND01", entry.getSound());
+    Assert.assertFalse(entry.hasFemale());
+    Assert.assertEquals("Text", entry.getTextFemale());
+    Assert.assertEquals("SOUND01", entry.getSoundFemale());
+  }
+
+  @Test
+  public void testFemaleString() throws IOException {
+    final List<TraParser.Entry> list = parse("@0 = ~Male~ [MSND] ~Female~ [FSND]\n@1 = ~Only male~ ~Only female~\n@2 = ~Next~");
+    Assert.assertEquals(3, list.size());
+    Assert.assertTrue(list.get(0).hasFemale());
+    Assert.assertEquals("Male", list.get(0).getText());
+    Assert.assertEquals("MSND", list.get(0).getSound());
+    Assert.assertEquals("Female", list.get(0).getTextFemale());
+    Assert.assertEquals("FSND", list.get(0).getSoundFemale());
+    Assert.assertTrue(list.get(1).hasFemale());
+    Assert.assertEquals("", list.get(1).getSound());
+    Assert.assertEquals("Only female", list.get(1).getTextFemale());
+    Assert.assertEquals("", list.get(1).getSoundFemale());
+    Assert.assertFalse(list.get(2).hasFemale());
+  }
+
+  @Test
+  public void testIndices() throws IOException {
+    final List<TraParser.Entry> list = parse("@-1 = ~neg~ @2147483647 = ~max~ @007 = ~lead~");
+    Assert.assertEquals(-1, list.get(0).getIndex());
+    Assert.assertEquals(Integer.MAX_VALUE, list.get(1).getIndex());
+    Assert.assertEquals(7, list.get(2).getIndex());
+  }
+
+  @Test
+  public void testLargeInput() throws IOException {
+    // entries spanning the internal buffer boundaries
+    final StringBuilder sb = new StringBuilder();
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      text.append('x');
+    }
+    for (int i = 0; i < 500; i++) {
+      sb.append('@').append(i).append(" = ~~~~~").append(text).append(i).append("~~~~~ [S").append(i).append("]\n");
+    }
+    final List<TraParser.Entry> list = parse(sb.toString());
+    Assert.assertEquals(500, list.size());
+    for (int i = 0; i < 500; i++) {
+      Assert.assertEquals(i, list.get(i).getIndex());
+      Assert.assertEquals(text.toString() + i, list.get(i).getText());
+      Assert.assertEquals("S" + i, list.get(i).getSound());
+    }
+  }
+
+  //Malformed input
+  @Test
+  public void testMalformedInput() {
+    assertError("12 = ~text~");
+    assertError("@ = ~text~");
+    assertError("@- = ~text~");
+    assertError("@12 ~text~");
+    assertError("@12 =");
+    assertError("@12 = text");
+    assertError("@12 = ~text");
+    assertError("@12 = ~~~~~text~");
+    assertError("@12 = ~text~ [SOUND");
+    assertError("@12 = ~text~ [SOU\nND]");
+    assertError("@12 = ~text~ /* comment");
+    assertError("@2147483648 = ~text~");
+    assertError("@1 = ~a~ / @2 = ~b~");
+  }
+
+  @Test
+  public void testErrorLine() throws IOException {
+    try (TraParser parser = new TraParser(new StringReader("@1 = ~a~\n\n@2 = ~b\nc~\n@3 ~d~"))) {
+      Assert.assertNotNull(parser.next());
+      Assert.assertNotNull(parser.next());
+      Assert.assertEquals(5, parser.getLine());
+      try {
+        parser.next();
+        Assert.fail("IOException expected");
+      } catch (IOException e) {
+        Assert.assertEquals("TRA syntax error at line 5: '=' expected", e.getMessage());
+      }
+    }
+  }
+
+  @Test(expected=NullPointerException.class)
+  public void testNullReader() {
+    new TraParser(null);
+  }
+}